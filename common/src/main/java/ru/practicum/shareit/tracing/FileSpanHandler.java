@@ -0,0 +1,67 @@
+package ru.practicum.shareit.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Класс FileSpanHandler экспортирует каждый завершённый span в локальный файл
+ * shareit.tracing.file, по одному объекту в формате Zipkin v2 JSON на строку.
+ * Служит заменой коллектору трассировок при локальных замерах: файлы шлюза и сервера
+ * можно объединить по traceId.
+ * Активируется лишь при заданном пути к файлу.
+ */
+@Component
+@ConditionalOnProperty("shareit.tracing.file")
+@Slf4j
+public class FileSpanHandler extends SpanHandler {
+
+    private final BufferedWriter writer;
+
+    public FileSpanHandler(@Value("${shareit.tracing.file}") String file) throws IOException {
+        Path path = Path.of(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause == Cause.ABANDONED) {
+            return true;
+        }
+        synchronized (writer) {
+            try {
+                writer.write(span.toString());
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                log.warn("Не удалось записать span {} в файл трассировки: {}", span.id(), e.getMessage());
+            }
+        }
+        return true;
+    }
+
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.shareit.unit;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.shareit.tracing.FileSpanHandler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class FileSpanHandlerTest {
+
+    @Test
+    public void testFinishedSpansAreAppendedAsJsonLines(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("traces").resolve("spans.jsonl");
+        FileSpanHandler handler = new FileSpanHandler(file.toString());
+        TraceContext context = TraceContext.newBuilder().traceId(10L).spanId(20L).build();
+
+        MutableSpan finished = new MutableSpan(context, null);
+        finished.name("get /bookings");
+        MutableSpan abandoned = new MutableSpan(context, null);
+        abandoned.name("abandoned");
+
+        Assertions.assertTrue(handler.end(context, finished, SpanHandler.Cause.FINISHED));
+        Assertions.assertTrue(handler.end(context, abandoned, SpanHandler.Cause.ABANDONED));
+        handler.close();
+
+        List<String> lines = Files.readAllLines(file);
+        Assertions.assertEquals(1, lines.size());
+        Assertions.assertTrue(lines.get(0).contains("\"traceId\":\"000000000000000a\""));
+        Assertions.assertTrue(lines.get(0).contains("get /bookings"));
+    }
+}
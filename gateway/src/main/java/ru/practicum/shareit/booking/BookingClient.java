@@ -8,10 +8,12 @@ import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.EventStreamProxy;
 
 /**
  * Класс BookingClient - клиентский слой микросервиса-шлюза приложения,
@@ -31,14 +33,18 @@ import ru.practicum.shareit.client.BaseClient;
 public class BookingClient extends BaseClient {
     private static final String API_PREFIX = "/bookings";
 
+    private final EventStreamProxy eventStreamProxy;
+
     @Autowired
-    public BookingClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public BookingClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder,
+                         EventStreamProxy eventStreamProxy) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
+        this.eventStreamProxy = eventStreamProxy;
     }
 
 
@@ -49,6 +55,8 @@ public class BookingClient extends BaseClient {
      * @param userId (идентификатор пользователя, отправившего заявку на бронирование,
      *                который впоследствии будет представлен в качестве заголовка запроса
      *                к микросервису-серверу)
+     * @param idempotencyKey (ключ идемпотентности, передаваемый серверу в заголовке
+     *                Idempotency-Key, или null)
      * @param bookingDto (объект бронирования(заявка), сформированный пользователем с
      *                идентификатором userId)
      *
@@ -56,8 +64,8 @@ public class BookingClient extends BaseClient {
      * объект бронирования с инициализированным полем-идентификатором, либо иной код ответа
      * с сообщением об ошибке.
      */
-    public ResponseEntity<Object> postBooking(Long userId, BookingDto bookingDto) {
-        return post("", userId, bookingDto);
+    public ResponseEntity<Object> postBooking(Long userId, String idempotencyKey, BookingDto bookingDto) {
+        return postIdempotent("", userId, idempotencyKey, bookingDto);
     }
 
 
@@ -154,4 +162,40 @@ public class BookingClient extends BaseClient {
         );
         return get("/owner?state={state}&from={from}&size={size}", userId, parameters);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Метод формирует запрос на получение сводки по бронированиям вещей конкретного
+     * пользователя к микросервису-серверу приложения с помощью методов
+     * базового класса BaseClient. Сводка заменяет отдельные запросы списка
+     * бронирований вещей в каждом состоянии.
+     * @param userId (идентификатор пользователя, отправившего запрос на
+     *                получение сводки, который впоследствии будет представлен
+     *                в качестве заголовка запроса к микросервису-серверу)
+     * @param limit (наибольшее количество бронирований в каждом состоянии,
+     *               передаваемое в виде параметра HTTP-запроса к микросервису-серверу)
+     *
+     * @return ResponseEntity<Object> - ответ сервера, содержащий либо код ответа 2** и
+     * число бронирований вещей пользователя с userId и последние из них в каждом состоянии,
+     * либо иной код ответа с сообщением об ошибке.
+     */
+    public ResponseEntity<Object> getUserStuffBookingsSummary(Long userId, Integer limit) {
+        Map<String, Object> parameters = Map.of("limit", limit);
+        return get("/owner/summary?limit={limit}", userId, parameters);
+    }
+
+
+    /**
+     * Метод открывает поток событий бронирований пользователя на микросервисе-сервере
+     * (Server-Sent Events) и передаёт его клиенту через EventStreamProxy.
+     * @param userId (идентификатор пользователя, подписывающегося на изменения своих
+     *                бронирований, который впоследствии будет представлен в качестве
+     *                заголовка запроса к микросервису-серверу)
+     *
+     * @return ResponseEntity<ResponseBodyEmitter> - поток событий сервера, либо ответ
+     * с кодом ошибки и её описанием.
+     */
+    public ResponseEntity<ResponseBodyEmitter> streamBookingEvents(Long userId) {
+        return eventStreamProxy.stream(API_PREFIX + "/stream", userId);
+    }
+}
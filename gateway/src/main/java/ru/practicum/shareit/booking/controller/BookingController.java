@@ -6,13 +6,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import ru.practicum.shareit.booking.BookingClient;
 import ru.practicum.shareit.booking.dto.BookingDto;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 
 /**
  * Класс-контроллер шлюза BookingController принимает HTTP-запросы,
@@ -36,6 +39,8 @@ public class BookingController {
      * Эндпоинт. Метод получает запрос пользователя, парсит
      * его в понятные java, валидируемые объекты:
      * @param userId (идентификатор пользователя, добавляющего бронирование на вещь),
+     * @param idempotencyKey (ключ идемпотентности, передаётся серверу: повтор запроса
+     * с тем же ключом возвращает ответ на первый),
      * @param bookingDto (объект бронирования).
      * В рамках эндпоинта происходит маршрутизация на
      * уровень клиента взаимодействия с микросервисом Server.
@@ -45,9 +50,10 @@ public class BookingController {
      */
     @PostMapping
     public ResponseEntity<Object> postBooking(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                              @RequestHeader(value = "Idempotency-Key", required = false) @Size(max = 255) String idempotencyKey,
                                               @Valid @RequestBody @NotNull BookingDto bookingDto) {
         log.debug("Принят запрос на добавление бронирования от пользователя с id={}", userId);
-        return bookingClient.postBooking(userId, bookingDto);
+        return bookingClient.postBooking(userId, idempotencyKey, bookingDto);
     }
 
 
@@ -138,4 +144,42 @@ public class BookingController {
         log.debug("Принят запрос на получение списка всех бронирований");
         return bookingClient.getUserStuffBookings(userId, state, from, size);
     }
+
+
+    /**
+     * Эндпоинт. Метод получает запрос пользователя, парсит
+     * его в понятные java, валидируемые объекты:
+     * @param userId (идентификатор пользователя, получающего сводку по бронированиям своих вещей),
+     * @param limit (наибольшее количество бронирований, возвращаемых в каждом состоянии)
+     * В рамках эндпоинта происходит маршрутизация на
+     * уровень клиента взаимодействия с микросервисом Server.
+     *
+     * @return ResponseEntity<Object> (возвращаемая пользователю сводка: число бронирований
+     * и последние бронирования в состояниях ALL, CURRENT, PAST, FUTURE, WAITING и REJECTED,
+     * или код ответа, отличный от 2**, с описанием причины возникновения ошибки)
+     */
+    @GetMapping("/owner/summary")
+    public ResponseEntity<Object> getUserStuffBookingsSummary(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                              @RequestParam(defaultValue = "5") @Positive @Max(50) Integer limit) {
+        log.debug("Принят запрос на получение сводки по бронированиям вещей пользователя с id={}", userId);
+        return bookingClient.getUserStuffBookingsSummary(userId, limit);
+    }
+
+
+    /**
+     * Эндпоинт. Метод получает запрос пользователя, парсит
+     * его в понятные java, валидируемые объекты:
+     * @param userId (идентификатор пользователя, подписывающегося на изменения своих бронирований)
+     * В рамках эндпоинта открывается поток Server-Sent Events микросервиса Server,
+     * который передаётся пользователю по мере поступления событий.
+     *
+     * @return ResponseEntity<ResponseBodyEmitter> (поток событий booking с изменёнными
+     * бронированиями и событий resync, после которых бронирования следует перечитать,
+     * или код ответа, отличный от 2**, с описанием причины возникновения ошибки)
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamBookingEvents(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Принят запрос на подписку на события бронирований пользователя с id={}", userId);
+        return bookingClient.streamBookingEvents(userId);
+    }
 }
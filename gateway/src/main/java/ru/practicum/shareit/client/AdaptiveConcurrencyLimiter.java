@@ -0,0 +1,93 @@
+package ru.practicum.shareit.client;
+
+/**
+ * Класс AdaptiveConcurrencyLimiter ограничивает число одновременных запросов к серверу
+ * одного класса эндпоинтов. Лимит подстраивается под наблюдаемую задержку ответов
+ * по градиентной схеме: пока задержка держится около долгосрочной средней, лимит
+ * растёт на sqrt(limit), с ростом задержки он уменьшается пропорционально отношению
+ * средней задержки к текущей. Потерянные запросы (5xx перегрузки, ошибки соединения)
+ * мультипликативно снижают лимит.
+ * Поля:
+ *  minLimit, maxLimit - границы, в которых может меняться лимит;
+ *  limit - текущий лимит;
+ *  longRtt - экспоненциально сглаженная задержка ответа в наносекундах;
+ *  inFlight - число выполняющихся в данный момент запросов.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double RTT_SMOOTHING = 0.05;
+    private static final double LIMIT_SMOOTHING = 0.2;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double longRtt;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+
+    /**
+     * Занимает место под запрос. Возвращает false, если лимит исчерпан: такой запрос
+     * следует сразу отклонить, не отправляя его на сервер.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+
+    /**
+     * Освобождает место, занятое tryAcquire, и учитывает задержку ответа.
+     * Запросы, занявшие меньше половины лимита, лимит не увеличивают: при низкой
+     * нагрузке задержка ничего не говорит о его достаточности.
+     */
+    public synchronized void onSuccess(long rttNanos) {
+        boolean saturated = inFlight * 2 >= limit;
+        inFlight--;
+        longRtt = longRtt <= 0 ? rttNanos : longRtt * (1 - RTT_SMOOTHING) + rttNanos * RTT_SMOOTHING;
+        boolean congested = rttNanos > RTT_TOLERANCE * longRtt;
+        if (!congested && !saturated) {
+            return;
+        }
+        double newLimit = congested
+                ? limit * Math.max(MIN_GRADIENT, RTT_TOLERANCE * longRtt / rttNanos)
+                : limit + Math.sqrt(limit);
+        setLimit(limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING);
+    }
+
+
+    /**
+     * Освобождает место, занятое tryAcquire, для запроса, который сервер не смог
+     * обработать из-за перегрузки или который не дошёл до сервера.
+     */
+    public synchronized void onDropped() {
+        inFlight--;
+        setLimit(limit * BACKOFF_RATIO);
+    }
+
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
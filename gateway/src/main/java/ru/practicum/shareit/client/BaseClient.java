@@ -1,18 +1,36 @@
 package ru.practicum.shareit.client;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.*;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.lang.Nullable;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
 public class BaseClient {
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
     protected final RestTemplate rest;
+    private final ConcurrentMap<String, CompletableFuture<ResponseEntity<Object>>> inFlightGets = new ConcurrentHashMap<>();
+    @Nullable
+    private final ObjectMapper smileMapper;
 
     public BaseClient(RestTemplate rest) {
         this.rest = rest;
+        this.smileMapper = rest.getMessageConverters().stream()
+                .filter(MappingJackson2SmileHttpMessageConverter.class::isInstance)
+                .map(converter -> ((MappingJackson2SmileHttpMessageConverter) converter).getObjectMapper())
+                .findFirst()
+                .orElse(null);
     }
 
     public ResponseEntity<Object> get(String path) {
@@ -39,6 +57,14 @@ public class BaseClient {
         return makeAndSendRequest(HttpMethod.POST, path, userId, parameters, body);
     }
 
+    /**
+     * POST-запрос с заголовком Idempotency-Key: сервер не выполняет повторно запрос
+     * с уже обработанным ключом, а возвращает сохранённый результат.
+     */
+    public <T> ResponseEntity<Object> postIdempotent(String path, long userId, @Nullable String idempotencyKey, T body) {
+        return prepareGatewayResponse(exchange(HttpMethod.POST, path, userId, null, body, idempotencyKey));
+    }
+
     public <T> ResponseEntity<Object> put(String path, long userId, T body) {
         return put(path, userId, null, body);
     }
@@ -76,37 +102,126 @@ public class BaseClient {
     }
 
     private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body) {
-        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(userId));
+        if (method == HttpMethod.GET) {
+            return sendCoalescedGet(path, userId, parameters);
+        }
+        return prepareGatewayResponse(exchange(method, path, userId, parameters, body));
+    }
+
+    /**
+     * Одинаковые GET-запросы (тот же URI и тот же пользователь), пришедшие, пока первый
+     * из них ещё выполняется на сервере, не отправляются повторно: все ожидающие получают
+     * ответ первого. Запросы без X-Sharer-User-Id разделяют ответ между всеми пользователями.
+     */
+    private ResponseEntity<Object> sendCoalescedGet(String path, Long userId, @Nullable Map<String, Object> parameters) {
+        String key = expand(path, parameters) + "#" + userId;
+        CompletableFuture<ResponseEntity<Object>> call = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<Object>> inFlight = inFlightGets.putIfAbsent(key, call);
+        if (inFlight != null) {
+            return awaitResponse(inFlight);
+        }
+        try {
+            ResponseEntity<Object> response = prepareGatewayResponse(exchange(HttpMethod.GET, path, userId, parameters, null));
+            call.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightGets.remove(key, call);
+        }
+    }
+
+    private <T> ResponseEntity<Object> exchange(HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body) {
+        return exchange(method, path, userId, parameters, body, null);
+    }
+
+    private <T> ResponseEntity<Object> exchange(HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body,
+                                                @Nullable String idempotencyKey) {
+        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(userId, idempotencyKey));
 
-        ResponseEntity<Object> shareitServerResponse;
         try {
             if (parameters != null) {
-                shareitServerResponse = rest.exchange(path, method, requestEntity, Object.class, parameters);
+                return rest.exchange(path, method, requestEntity, Object.class, parameters);
             } else {
-                shareitServerResponse = rest.exchange(path, method, requestEntity, Object.class);
+                return rest.exchange(path, method, requestEntity, Object.class);
             }
         } catch (HttpStatusCodeException e) {
-            return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsByteArray());
+            return ResponseEntity.status(e.getStatusCode())
+                    .headers(retryAfter(e.getResponseHeaders()))
+                    .body(errorBody(e));
+        }
+    }
+
+    /**
+     * Тело ошибки в Smile декодируется, чтобы не передать внешнему клиенту бинарные данные;
+     * прочие тела (в том числе текстовые сообщения сервера) передаются как есть.
+     */
+    private Object errorBody(HttpStatusCodeException e) {
+        byte[] body = e.getResponseBodyAsByteArray();
+        HttpHeaders headers = e.getResponseHeaders();
+        if (smileMapper == null || body.length == 0 || headers == null || !SMILE.isCompatibleWith(headers.getContentType())) {
+            return body;
+        }
+        try {
+            return smileMapper.readValue(body, Object.class);
+        } catch (IOException notSmile) {
+            return body;
+        }
+    }
+
+    private URI expand(String path, @Nullable Map<String, Object> parameters) {
+        return parameters != null
+                ? rest.getUriTemplateHandler().expand(path, parameters)
+                : rest.getUriTemplateHandler().expand(path);
+    }
+
+    private static ResponseEntity<Object> awaitResponse(CompletableFuture<ResponseEntity<Object>> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
-        return prepareGatewayResponse(shareitServerResponse);
     }
 
-    private HttpHeaders defaultHeaders(Long userId) {
+    /**
+     * Если в RestTemplate установлен конвертер Smile, тела запросов к серверу кодируются
+     * в Smile, и ответ тоже запрашивается в Smile (с JSON как запасным вариантом).
+     * Внешним клиентам шлюз отвечает в JSON: тела ответов сервера разбираются в объекты
+     * и сериализуются заново.
+     */
+    private HttpHeaders defaultHeaders(Long userId, @Nullable String idempotencyKey) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        if (smileMapper != null) {
+            headers.setContentType(SMILE);
+            headers.setAccept(List.of(SMILE, MediaType.APPLICATION_JSON));
+        } else {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        }
         if (userId != null) {
             headers.set("X-Sharer-User-Id", String.valueOf(userId));
         }
+        if (idempotencyKey != null) {
+            headers.set("Idempotency-Key", idempotencyKey);
+        }
         return headers;
     }
 
+    /**
+     * Заголовки ответа сервера (в том числе Content-Type внутреннего формата) клиенту
+     * не передаются: тело ответа шлюз сериализует сам в согласованном с клиентом формате.
+     */
     private static ResponseEntity<Object> prepareGatewayResponse(ResponseEntity<Object> response) {
         if (response.getStatusCode().is2xxSuccessful()) {
-            return response;
+            return ResponseEntity.status(response.getStatusCode()).body(response.getBody());
         }
 
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(response.getStatusCode());
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(response.getStatusCode())
+                .headers(retryAfter(response.getHeaders()));
 
         if (response.hasBody()) {
             return responseBuilder.body(response.getBody());
@@ -114,4 +229,16 @@ public class BaseClient {
 
         return responseBuilder.build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Из заголовков ответа сервера шлюз передаёт клиенту лишь Retry-After,
+     * подсказывающий, когда повторить отклонённый из-за перегрузки запрос.
+     */
+    private static HttpHeaders retryAfter(@Nullable HttpHeaders responseHeaders) {
+        HttpHeaders headers = new HttpHeaders();
+        if (responseHeaders != null && responseHeaders.containsKey(HttpHeaders.RETRY_AFTER)) {
+            headers.put(HttpHeaders.RETRY_AFTER, responseHeaders.get(HttpHeaders.RETRY_AFTER));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,201 @@
+package ru.practicum.shareit.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс ClientIsolationInterceptor изолирует друг от друга маршруты сервера, к которым
+ * обращаются клиенты шлюза (ItemClient, BookingClient, UserClient, RequestClient).
+ * Для каждого маршрута (первого сегмента пути: items, bookings, users, requests)
+ * заводится собственный bulkhead - ограниченный набор разрешений на одновременные запросы,
+ * так что медленные запросы одного маршрута не занимают потоки шлюза, нужные остальным.
+ * Для каждой пары маршрут - экземпляр сервера заводится circuit breaker: он размыкается
+ * при высокой доле ответов 5xx, ошибок соединения или медленных ответов, после чего
+ * запросы маршрута к этому экземпляру отклоняются без обращения к серверу.
+ * Выполняется последним, уже после выбора экземпляра в LoadBalancingInterceptor, поэтому
+ * сбои одного экземпляра не размыкают маршрут целиком, а балансировщик обходит экземпляры
+ * с разомкнутым circuit breaker (см. isCallPermitted). Запросы, сброшенные ограничителем
+ * ConcurrencyLimitingInterceptor, сюда не доходят и ошибками маршрута не считаются.
+ * Отклонённые запросы получают 503 с заголовком Retry-After. Состояние, лимиты и счётчики
+ * отклонений публикуются в метриках resilience4j.* (circuit breaker назван
+ * маршрут@хост:порт) и shareit.gateway.isolation.rejected.
+ * Параметры задаются свойствами shareit-server.isolation.*, лимит одновременных запросов
+ * можно переопределить для отдельного маршрута свойством
+ * shareit-server.isolation.[маршрут].max-concurrent-calls.
+ */
+@Component
+@Order(4)
+@Slf4j
+public class ClientIsolationInterceptor implements ClientHttpRequestInterceptor, RestTemplateCustomizer {
+
+    private static final String PREFIX = "shareit-server.isolation.";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final BulkheadRegistry bulkheads;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final boolean enabled;
+    private final long openRetryAfterSeconds;
+
+    public ClientIsolationInterceptor(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = property("enabled", Boolean.class, true);
+        Duration waitInOpenState = Duration.ofMillis(property("wait-in-open-state-ms", Long.class, 5000L));
+        this.openRetryAfterSeconds = Math.max(1, waitInOpenState.toSeconds());
+        this.bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(property("max-concurrent-calls", Integer.class, 50))
+                .maxWaitDuration(Duration.ofMillis(property("max-wait-ms", Long.class, 0L)))
+                .build());
+        this.circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(property("sliding-window-size", Integer.class, 20))
+                .minimumNumberOfCalls(property("minimum-number-of-calls", Integer.class, 10))
+                .failureRateThreshold(property("failure-rate-threshold", Float.class, 50f))
+                .slowCallDurationThreshold(Duration.ofMillis(property("slow-call-duration-ms", Long.class, 2000L)))
+                .slowCallRateThreshold(property("slow-call-rate-threshold", Float.class, 80f))
+                .waitDurationInOpenState(waitInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(property("permitted-calls-in-half-open-state", Integer.class, 3))
+                .recordResult(status -> (Integer) status >= HttpStatus.INTERNAL_SERVER_ERROR.value())
+                .build());
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+    }
+
+
+    @Override
+    public void customize(RestTemplate restTemplate) {
+        if (enabled) {
+            restTemplate.getInterceptors().add(this);
+        }
+    }
+
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String route = route(request.getURI());
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(circuitName(route, request.getURI()));
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw reject(route, "circuit", "Сервер не справляется с запросами " + route
+                    + ", повторите запрос позже.", openRetryAfterSeconds);
+        }
+        Bulkhead bulkhead = bulkhead(route);
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            throw reject(route, "bulkhead", "Слишком много одновременных запросов " + route
+                    + ", повторите запрос позже.", 1);
+        }
+        long start = System.nanoTime();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            circuitBreaker.onResult(System.nanoTime() - start, TimeUnit.NANOSECONDS, response.getRawStatusCode());
+            return response;
+        } catch (IOException e) {
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.releasePermission();
+            throw e;
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+
+    /**
+     * Проверяет, можно ли направить запрос маршрута на экземпляр сервера: false, пока
+     * circuit breaker этой пары разомкнут. По истечении wait-in-open-state-ms проверка
+     * переводит его в полуоткрытое состояние, чтобы экземпляр снова получил пробные запросы.
+     */
+    public boolean isCallPermitted(String route, URI instance) {
+        return circuitBreakers.find(circuitName(route, instance))
+                .map(circuitBreaker -> circuitBreaker.getState() != CircuitBreaker.State.OPEN
+                        || probe(circuitBreaker))
+                .orElse(true);
+    }
+
+
+    /**
+     * Маршрут запроса - первый сегмент пути, соответствующий префиксу API клиента.
+     */
+    static String route(URI uri) {
+        String path = uri.getPath();
+        if (path == null || path.length() <= 1) {
+            return "";
+        }
+        int end = path.indexOf('/', 1);
+        return end < 0 ? path.substring(1) : path.substring(1, end);
+    }
+
+
+    private static String circuitName(String route, URI uri) {
+        return route + "@" + uri.getHost() + ":" + uri.getPort();
+    }
+
+
+    private static boolean probe(CircuitBreaker circuitBreaker) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return false;
+        }
+        circuitBreaker.releasePermission();
+        return true;
+    }
+
+
+    private Bulkhead bulkhead(String route) {
+        return bulkheads.find(route).orElseGet(() -> {
+            Integer maxConcurrentCalls = environment.getProperty(PREFIX + route + ".max-concurrent-calls", Integer.class);
+            if (maxConcurrentCalls == null) {
+                return bulkheads.bulkhead(route);
+            }
+            return bulkheads.bulkhead(route, BulkheadConfig.from(bulkheads.getDefaultConfig())
+                    .maxConcurrentCalls(maxConcurrentCalls)
+                    .build());
+        });
+    }
+
+
+    private HttpServerErrorException reject(String route, String reason, String message, long retryAfterSeconds) {
+        Counter.builder("shareit.gateway.isolation.rejected")
+                .tag("route", route)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.debug("Запрос к маршруту {} отклонён: {}", route, reason);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", headers,
+                message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+
+    private <T> T property(String name, Class<T> type, T defaultValue) {
+        return environment.getProperty(PREFIX + name, type, defaultValue);
+    }
+}
@@ -0,0 +1,158 @@
+package ru.practicum.shareit.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Класс ConcurrencyLimitingInterceptor ограничивает число одновременных запросов шлюза
+ * к серверу отдельно для каждого класса эндпоинтов: чтения и записи каждого ресурса,
+ * а также поиска вещей. Лимиты адаптивны (см. AdaptiveConcurrencyLimiter), так что
+ * поток поисковых запросов не отнимает у сервера ресурсы, нужные для бронирований.
+ * Запрос сверх лимита на сервер не отправляется: шлюз сразу отвечает 503 с заголовком
+ * Retry-After.
+ * Подключается ко всем RestTemplate, созданным через RestTemplateBuilder, то есть
+ * ко всем клиентам, наследующим BaseClient. Текущие лимиты, число выполняющихся
+ * и отклонённых запросов публикуются в метриках shareit.gateway.limiter.*.
+ */
+@Component
+@Order(2)
+@Slf4j
+public class ConcurrencyLimitingInterceptor implements ClientHttpRequestInterceptor, RestTemplateCustomizer {
+
+    private static final String SEARCH_PATH = "/items/search";
+
+    private final Map<String, EndpointLimiter> limiters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitingInterceptor(MeterRegistry meterRegistry,
+                                          @Value("${shareit-server.limiter.enabled:true}") boolean enabled,
+                                          @Value("${shareit-server.limiter.initial-limit:20}") int initialLimit,
+                                          @Value("${shareit-server.limiter.min-limit:2}") int minLimit,
+                                          @Value("${shareit-server.limiter.max-limit:200}") int maxLimit,
+                                          @Value("${shareit-server.limiter.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+
+    @Override
+    public void customize(RestTemplate restTemplate) {
+        if (enabled) {
+            restTemplate.getInterceptors().add(this);
+        }
+    }
+
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        EndpointLimiter endpoint = limiters.computeIfAbsent(endpointClass(request), this::register);
+        if (!endpoint.limiter.tryAcquire()) {
+            endpoint.rejected.increment();
+            log.debug("Запрос {} {} отклонён: исчерпан лимит {} для {}",
+                    request.getMethod(), request.getURI(), endpoint.limiter.getLimit(), endpoint.name);
+            throw shed(endpoint.name);
+        }
+        long start = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            endpoint.limiter.onDropped();
+            throw e;
+        }
+        if (isOverloaded(response.getRawStatusCode())) {
+            endpoint.limiter.onDropped();
+        } else {
+            endpoint.limiter.onSuccess(System.nanoTime() - start);
+        }
+        return response;
+    }
+
+
+    /**
+     * Класс эндпоинта определяется первым сегментом пути и тем, изменяет ли запрос
+     * данные; поиск вещей выделен в отдельный класс.
+     */
+    static String endpointClass(HttpRequest request) {
+        String path = request.getURI().getPath();
+        if (path != null && path.startsWith(SEARCH_PATH)) {
+            return "items:search";
+        }
+        boolean read = request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD;
+        return ClientIsolationInterceptor.route(request.getURI()) + (read ? ":read" : ":write");
+    }
+
+
+    private EndpointLimiter register(String name) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+        Gauge.builder("shareit.gateway.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("endpoint", name)
+                .register(meterRegistry);
+        Gauge.builder("shareit.gateway.limiter.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("endpoint", name)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("shareit.gateway.limiter.rejected")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+        return new EndpointLimiter(name, limiter, rejected);
+    }
+
+
+    private HttpServerErrorException shed(String name) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        String message = "Сервер перегружен запросами " + name + ", повторите запрос позже.";
+        return HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", headers,
+                message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+
+    private static boolean isOverloaded(int status) {
+        return status == HttpStatus.TOO_MANY_REQUESTS.value()
+                || status == HttpStatus.BAD_GATEWAY.value()
+                || status == HttpStatus.SERVICE_UNAVAILABLE.value()
+                || status == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
+
+
+    private static final class EndpointLimiter {
+        private final String name;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final Counter rejected;
+
+        private EndpointLimiter(String name, AdaptiveConcurrencyLimiter limiter, Counter rejected) {
+            this.name = name;
+            this.limiter = limiter;
+            this.rejected = rejected;
+        }
+    }
+}
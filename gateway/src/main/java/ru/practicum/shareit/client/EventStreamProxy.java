@@ -0,0 +1,163 @@
+package ru.practicum.shareit.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Класс EventStreamProxy передаёт клиенту шлюза поток Server-Sent Events сервера.
+ * Длительные потоки идут в обход RestTemplate клиентов: они не должны занимать места
+ * в ограничителях параллельности (ConcurrencyLimitingInterceptor, ClientIsolationInterceptor)
+ * и прерываться по request-timeout-ms. Экземпляр сервера выбирает LoadBalancingInterceptor.
+ * Тело ответа сервера читается по мере поступления и без потока на каждое соединение:
+ * очередная часть запрашивается у сервера только после того, как предыдущая записана
+ * клиенту шлюза, так что медленный клиент не накапливает данные в памяти шлюза.
+ * Ответ сервера с ошибкой передаётся клиенту с тем же кодом и телом.
+ * Через stream-timeout-ms шлюз закрывает поток, и клиент переподключается.
+ */
+@Component
+@Slf4j
+public class EventStreamProxy {
+
+    private final String serverUrl;
+    private final LoadBalancingInterceptor loadBalancer;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final long streamTimeoutMs;
+
+    public EventStreamProxy(@Value("${shareit-server.url}") String serverUrl,
+                            LoadBalancingInterceptor loadBalancer,
+                            @Value("${shareit-server.http2.enabled:true}") boolean http2,
+                            @Value("${shareit-server.connect-timeout-ms:2000}") long connectTimeoutMs,
+                            @Value("${shareit-server.request-timeout-ms:30000}") long requestTimeoutMs,
+                            @Value("${shareit-server.stream-timeout-ms:660000}") long streamTimeoutMs) {
+        this.serverUrl = serverUrl;
+        this.loadBalancer = loadBalancer;
+        this.httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.streamTimeoutMs = streamTimeoutMs;
+    }
+
+
+    /**
+     * Открывает поток событий сервера по пути path от имени пользователя userId.
+     *
+     * @return ResponseEntity<ResponseBodyEmitter> - ответ с кодом и заголовком Content-Type
+     * ответа сервера, тело которого передаётся клиенту по мере поступления, либо код 503,
+     * если сервер недоступен.
+     */
+    public ResponseEntity<ResponseBodyEmitter> stream(String path, Long userId) {
+        HttpRequest request = HttpRequest.newBuilder(loadBalancer.route(URI.create(serverUrl + path)))
+                .header("Accept", MediaType.TEXT_EVENT_STREAM_VALUE + ", " + MediaType.APPLICATION_JSON_VALUE)
+                .header("X-Sharer-User-Id", String.valueOf(userId))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        HttpResponse<Flow.Publisher<List<ByteBuffer>>> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofPublisher());
+        } catch (IOException e) {
+            log.warn("Не удалось открыть поток событий сервера {}: {}", request.uri(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        MediaType contentType = response.headers().firstValue("Content-Type")
+                .map(MediaType::parseMediaType)
+                .orElse(MediaType.TEXT_EVENT_STREAM);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMs);
+        Forwarder forwarder = new Forwarder(emitter, contentType);
+        emitter.onCompletion(forwarder::cancel);
+        emitter.onTimeout(forwarder::cancel);
+        emitter.onError(e -> forwarder.cancel());
+        response.body().subscribe(forwarder);
+        return ResponseEntity.status(response.statusCode())
+                .contentType(contentType)
+                .header("Cache-Control", "no-cache")
+                .body(emitter);
+    }
+
+
+    private static final class Forwarder implements Flow.Subscriber<List<ByteBuffer>> {
+        private final ResponseBodyEmitter emitter;
+        private final MediaType contentType;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        private Forwarder(ResponseBodyEmitter emitter, MediaType contentType) {
+            this.emitter = emitter;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    emitter.send(bytes, contentType);
+                }
+                subscription.request(1);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Клиент шлюза закрыл поток событий");
+                cancel();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.debug("Поток событий сервера прерван: {}", throwable.getMessage());
+            complete();
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        private void cancel() {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private void complete() {
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                log.debug("Поток событий клиента шлюза уже закрыт");
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Класс Http2RestTemplateCustomizer переводит клиентов шлюза на HTTP/2 (h2c): при
+ * shareit-server.http2.enabled=true RestTemplate всех клиентов выполняют запросы через
+ * общий java.net.http.HttpClient, который держит к серверу одно мультиплексированное
+ * соединение вместо пула соединений HTTP/1.1. При false клиенты используют фабрику
+ * запросов, заданную при их создании (Apache HttpClient).
+ */
+@Component
+public class Http2RestTemplateCustomizer implements RestTemplateCustomizer {
+
+    private final boolean enabled;
+    private final JdkHttp2ClientHttpRequestFactory requestFactory;
+
+    public Http2RestTemplateCustomizer(@Value("${shareit-server.http2.enabled:true}") boolean enabled,
+                                       @Value("${shareit-server.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                       @Value("${shareit-server.request-timeout-ms:30000}") long requestTimeoutMs) {
+        this.enabled = enabled;
+        this.requestFactory = new JdkHttp2ClientHttpRequestFactory(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build(), Duration.ofMillis(requestTimeoutMs));
+    }
+
+
+    @Override
+    public void customize(RestTemplate restTemplate) {
+        if (enabled) {
+            restTemplate.setRequestFactory(requestFactory);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Класс JdkHttp2ClientHttpRequestFactory выполняет запросы RestTemplate через
+ * java.net.http.HttpClient. Клиент предпочитает HTTP/2: к серверу без TLS он переходит
+ * на h2c через Upgrade и затем мультиплексирует все запросы в одном соединении.
+ * Один экземпляр HttpClient разделяется всеми клиентами шлюза.
+ * Ответы, сжатые gzip, распаковываются; если вызывающий не задал Accept-Encoding,
+ * запрашивается gzip.
+ */
+public class JdkHttp2ClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient httpClient;
+    @Nullable
+    private final Duration requestTimeout;
+
+    public JdkHttp2ClientHttpRequestFactory(HttpClient httpClient, @Nullable Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new JdkClientHttpRequest(uri, httpMethod);
+    }
+
+
+    private final class JdkClientHttpRequest extends AbstractClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        private JdkClientHttpRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return method.name();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return body;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .method(method.name(), body.size() == 0
+                            ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+            if (requestTimeout != null) {
+                builder.timeout(requestTimeout);
+            }
+            headers.forEach((name, values) -> {
+                if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+            if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                builder.header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            }
+            try {
+                return new JdkClientHttpResponse(httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Запрос " + method + " " + uri + " прерван");
+            }
+        }
+    }
+
+
+    private static final class JdkClientHttpResponse implements ClientHttpResponse {
+        private final HttpResponse<InputStream> response;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final boolean gzipped;
+        @Nullable
+        private InputStream body;
+
+        private JdkClientHttpResponse(HttpResponse<InputStream> response) {
+            this.response = response;
+            this.gzipped = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)
+                    .filter("gzip"::equalsIgnoreCase)
+                    .isPresent();
+            response.headers().map().forEach((name, values) -> {
+                boolean decoded = gzipped && (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                        || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name));
+                if (!name.startsWith(":") && !decoded) {
+                    headers.addAll(name, values);
+                }
+            });
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.valueOf(response.statusCode());
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String getStatusText() {
+            HttpStatus status = HttpStatus.resolve(response.statusCode());
+            return status != null ? status.getReasonPhrase() : "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = gzipped ? new GZIPInputStream(response.body()) : response.body();
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                (body != null ? body : response.body()).close();
+            } catch (IOException ignored) {
+                // соединение остаётся в пуле HttpClient, закрывается лишь поток ответа
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package ru.practicum.shareit.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Класс LoadBalancingInterceptor распределяет запросы клиентов шлюза между несколькими
+ * экземплярами сервера, перечисленными в shareit-server.instances (базовые адреса вида
+ * http://host:port). В запросе заменяются схема, хост и порт, путь остаётся прежним.
+ * Экземпляр выбирается по схеме power of two choices: из двух случайных доступных
+ * экземпляров берётся тот, у которого меньше выполняющихся запросов.
+ * Доступность определяется:
+ *  активной проверкой - периодическим запросом /actuator/health каждого экземпляра;
+ *  отсечением выбросов - экземпляр, подряд ответивший consecutive-failures раз ошибкой
+ *  5xx или не принявший соединение, исключается на ejection-ms, при повторных
+ *  исключениях - на кратно большее время (до пятикратного).
+ * Кроме того, запрос не направляется на экземпляр, у которого разомкнут circuit breaker
+ * маршрута в ClientIsolationInterceptor.
+ * Если недоступны все экземпляры, запросы распределяются между всеми.
+ * При одном экземпляре (или пустом списке) перехватчик не подключается, и клиенты
+ * обращаются по shareit-server.url. Число выполняющихся запросов и доступность каждого
+ * экземпляра публикуются в метриках shareit.gateway.lb.*.
+ */
+@Component
+@Order(3)
+@Slf4j
+public class LoadBalancingInterceptor implements ClientHttpRequestInterceptor, RestTemplateCustomizer {
+
+    private static final int MAX_EJECTION_MULTIPLIER = 5;
+
+    private final ClientIsolationInterceptor isolation;
+    private final List<ServerInstance> instances;
+    private final int consecutiveFailures;
+    private final long ejectionMs;
+    private final long healthCheckIntervalMs;
+    private final HttpClient healthClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private ScheduledExecutorService healthChecker;
+
+    public LoadBalancingInterceptor(MeterRegistry meterRegistry,
+                                    ClientIsolationInterceptor isolation,
+                                    @Value("${shareit-server.instances:}") List<String> urls,
+                                    @Value("${shareit-server.lb.consecutive-failures:5}") int consecutiveFailures,
+                                    @Value("${shareit-server.lb.ejection-ms:10000}") long ejectionMs,
+                                    @Value("${shareit-server.lb.health-check-interval-ms:5000}") long healthCheckIntervalMs) {
+        this.isolation = isolation;
+        this.instances = urls.stream()
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> new ServerInstance(URI.create(url)))
+                .collect(Collectors.toList());
+        this.consecutiveFailures = consecutiveFailures;
+        this.ejectionMs = ejectionMs;
+        this.healthCheckIntervalMs = healthCheckIntervalMs;
+        for (ServerInstance instance : instances) {
+            Gauge.builder("shareit.gateway.lb.in.flight", instance.inFlight, AtomicInteger::get)
+                    .tag("instance", instance.base.toString())
+                    .register(meterRegistry);
+            Gauge.builder("shareit.gateway.lb.available", instance, i -> i.isAvailable(System.currentTimeMillis()) ? 1 : 0)
+                    .tag("instance", instance.base.toString())
+                    .register(meterRegistry);
+        }
+    }
+
+
+    @PostConstruct
+    public void startHealthChecks() {
+        if (instances.size() > 1 && healthCheckIntervalMs > 0) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "server-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stopHealthChecks() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+
+    @Override
+    public void customize(RestTemplate restTemplate) {
+        if (instances.size() > 1) {
+            restTemplate.getInterceptors().add(this);
+        }
+    }
+
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        ServerInstance instance = choose(ClientIsolationInterceptor.route(request.getURI()));
+        URI uri = rewrite(request.getURI(), instance);
+        instance.inFlight.incrementAndGet();
+        try {
+            ClientHttpResponse response = execution.execute(new HttpRequestWrapper(request) {
+                @Override
+                public URI getURI() {
+                    return uri;
+                }
+            }, body);
+            if (response.getRawStatusCode() >= 500) {
+                onFailure(instance);
+            } else {
+                onSuccess(instance);
+            }
+            return response;
+        } catch (IOException e) {
+            onFailure(instance);
+            throw e;
+        } finally {
+            instance.inFlight.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * Направляет на один из экземпляров сервера запрос, выполняемый в обход RestTemplate
+     * (потоки событий): при одном экземпляре адрес не меняется. Такие запросы не учитываются
+     * в числе выполняющихся и в ошибках экземпляра.
+     */
+    public URI route(URI uri) {
+        return instances.size() > 1 ? rewrite(uri, choose(ClientIsolationInterceptor.route(uri))) : uri;
+    }
+
+
+    /**
+     * Проверяет /actuator/health каждого экземпляра; экземпляр, не ответивший 2xx,
+     * исключается из балансировки до следующей успешной проверки.
+     */
+    public void checkHealth() {
+        for (ServerInstance instance : instances) {
+            boolean healthy;
+            try {
+                java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder(instance.base.resolve("/actuator/health"))
+                        .timeout(Duration.ofSeconds(2))
+                        .method("GET", BodyPublishers.noBody())
+                        .build();
+                int status = healthClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                healthy = status >= 200 && status < 300;
+            } catch (IOException e) {
+                healthy = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (instance.healthy != healthy) {
+                log.warn("Экземпляр сервера {} {}", instance.base, healthy ? "снова доступен" : "не прошёл проверку здоровья");
+            }
+            instance.healthy = healthy;
+        }
+    }
+
+
+    private ServerInstance choose(String route) {
+        long now = System.currentTimeMillis();
+        List<ServerInstance> available = new ArrayList<>(instances.size());
+        for (ServerInstance instance : instances) {
+            if (instance.isAvailable(now) && isolation.isCallPermitted(route, instance.base)) {
+                available.add(instance);
+            }
+        }
+        if (available.isEmpty()) {
+            available = instances;
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServerInstance a = available.get(first);
+        ServerInstance b = available.get(second);
+        return a.inFlight.get() <= b.inFlight.get() ? a : b;
+    }
+
+
+    private static URI rewrite(URI uri, ServerInstance instance) {
+        return UriComponentsBuilder.fromUri(uri)
+                .scheme(instance.base.getScheme())
+                .host(instance.base.getHost())
+                .port(instance.base.getPort())
+                .build(true)
+                .toUri();
+    }
+
+
+    /**
+     * Успешный ответ сбрасывает счётчик ошибок подряд, а если экземпляр проработал без
+     * исключения ещё ejection-ms после последнего, забывается и число его исключений.
+     */
+    private void onSuccess(ServerInstance instance) {
+        instance.failures.set(0);
+        if (instance.ejections > 0 && System.currentTimeMillis() > instance.ejectedUntil + ejectionMs) {
+            synchronized (instance) {
+                instance.ejections = 0;
+            }
+        }
+    }
+
+
+    private void onFailure(ServerInstance instance) {
+        if (instance.failures.incrementAndGet() < consecutiveFailures) {
+            return;
+        }
+        synchronized (instance) {
+            if (instance.failures.get() < consecutiveFailures) {
+                return;
+            }
+            instance.failures.set(0);
+            instance.ejections = Math.min(instance.ejections + 1, MAX_EJECTION_MULTIPLIER);
+            instance.ejectedUntil = System.currentTimeMillis() + ejectionMs * instance.ejections;
+            log.warn("Экземпляр сервера {} исключён из балансировки на {} мс после {} ошибок подряд",
+                    instance.base, ejectionMs * instance.ejections, consecutiveFailures);
+        }
+    }
+
+
+    private static final class ServerInstance {
+        private final URI base;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private volatile long ejectedUntil;
+        private volatile int ejections;
+
+        private ServerInstance(URI base) {
+            this.base = base;
+        }
+
+        private boolean isAvailable(long now) {
+            return healthy && now >= ejectedUntil;
+        }
+    }
+}
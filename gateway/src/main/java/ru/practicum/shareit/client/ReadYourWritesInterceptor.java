@@ -0,0 +1,65 @@
+package ru.practicum.shareit.client;
+
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Класс ReadYourWritesInterceptor переносит окно чтения собственных изменений между
+ * экземплярами сервера. Сервер в ответ на изменяющий запрос пользователя присылает
+ * заголовок X-Primary-Until (момент окончания окна, мс с начала эпохи); шлюз запоминает
+ * его для пользователя из X-Sharer-User-Id и, пока окно не истекло, добавляет к каждому
+ * его запросу. Так экземпляр, на который балансировщик направил чтение, тоже читает
+ * с основного сервера базы данных, а не с отстающей реплики.
+ */
+@Component
+@Order(1)
+public class ReadYourWritesInterceptor implements ClientHttpRequestInterceptor, RestTemplateCustomizer {
+
+    private static final String USER_HEADER = "X-Sharer-User-Id";
+    public static final String PRIMARY_UNTIL_HEADER = "X-Primary-Until";
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final Map<String, Long> primaryUntil = new ConcurrentHashMap<>();
+
+    @Override
+    public void customize(RestTemplate restTemplate) {
+        restTemplate.getInterceptors().add(this);
+    }
+
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String userId = request.getHeaders().getFirst(USER_HEADER);
+        if (userId == null) {
+            return execution.execute(request, body);
+        }
+        Long until = primaryUntil.get(userId);
+        if (until != null && until > System.currentTimeMillis()) {
+            request.getHeaders().set(PRIMARY_UNTIL_HEADER, String.valueOf(until));
+        }
+        ClientHttpResponse response = execution.execute(request, body);
+        String returned = response.getHeaders().getFirst(PRIMARY_UNTIL_HEADER);
+        if (returned != null) {
+            try {
+                primaryUntil.merge(userId, Long.parseLong(returned.trim()), Math::max);
+            } catch (NumberFormatException e) {
+                // Некорректный заголовок не продлевает окно.
+            }
+            if (primaryUntil.size() > CLEANUP_THRESHOLD) {
+                long now = System.currentTimeMillis();
+                primaryUntil.values().removeIf(expiresAt -> expiresAt <= now);
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.shareit.client;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Класс SmileRestTemplateCustomizer определяет формат тел запросов шлюза к серверу.
+ * При shareit-server.smile.enabled=true (по умолчанию) в RestTemplate клиентов
+ * устанавливается конвертер Smile с настройками ObjectMapper от Spring Boot, и BaseClient
+ * отправляет тела в Smile и запрашивает ответы в Smile. При false конвертер Smile
+ * удаляется, и обмен с сервером идёт в JSON.
+ * Внешним клиентам шлюз в любом случае отвечает в JSON.
+ */
+@Component
+public class SmileRestTemplateCustomizer implements RestTemplateCustomizer {
+
+    private final MappingJackson2SmileHttpMessageConverter smileConverter;
+    private final boolean enabled;
+
+    public SmileRestTemplateCustomizer(Jackson2ObjectMapperBuilder builder,
+                                       @Value("${shareit-server.smile.enabled:true}") boolean enabled) {
+        this.smileConverter = new MappingJackson2SmileHttpMessageConverter(
+                builder.createXmlMapper(false).factory(new SmileFactory()).build());
+        this.enabled = enabled;
+    }
+
+
+    @Override
+    public void customize(RestTemplate restTemplate) {
+        restTemplate.getMessageConverters().removeIf(MappingJackson2SmileHttpMessageConverter.class::isInstance);
+        if (enabled) {
+            restTemplate.getMessageConverters().add(smileConverter);
+        }
+    }
+}
@@ -50,14 +50,16 @@ public class ItemClient extends BaseClient {
      * @param userId (идентификатор пользователя, отправившего заявку на публикацию вещи,
      *                который впоследствии будет представлен в качестве заголовка запроса
      *                к микросервису-серверу)
+     * @param idempotencyKey (ключ идемпотентности, передаваемый серверу в заголовке
+     *                Idempotency-Key, или null)
      * @param itemDto (объект вещи, сформированный пользователем с идентификатором userId)
      *
      * @return ResponseEntity<Object> - ответ сервера, содержащий либо код ответа 2** и
      * объект вещи с инициализированным полем-идентификатором, либо иной код ответа
      * с сообщением об ошибке.
      */
-    public ResponseEntity<Object> postItem(Long userId, ItemPostDto itemDto) {
-        return post("", userId, itemDto);
+    public ResponseEntity<Object> postItem(Long userId, String idempotencyKey, ItemPostDto itemDto) {
+        return postIdempotent("", userId, idempotencyKey, itemDto);
     }
 
 
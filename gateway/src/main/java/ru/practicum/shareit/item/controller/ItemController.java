@@ -15,6 +15,7 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 
 /**
  * Класс-контроллер шлюза ItemController принимает HTTP-запросы,
@@ -38,6 +39,8 @@ public class ItemController {
      * Эндпоинт. Метод получает запрос пользователя, парсит
      * его в понятные java, валидируемые объекты:
      * @param userId (идентификатор пользователя, публкующего информацию о своей вещи),
+     * @param idempotencyKey (ключ идемпотентности, передаётся серверу: повтор запроса
+     * с тем же ключом возвращает ответ на первый),
      * @param itemDto (объект вещи).
      * В рамках эндпоинта происходит маршрутизация на
      * уровень клиента взаимодействия с микросервисом Server.
@@ -47,9 +50,10 @@ public class ItemController {
      */
     @PostMapping
     public ResponseEntity<Object> postItem(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) @Size(max = 255) String idempotencyKey,
                                            @Valid @RequestBody @NotNull ItemPostDto itemDto) {
         log.debug("Принят запрос на добавление вещи {} от пользователя с id = {}", itemDto.getName(), userId);
-        return itemClient.postItem(userId, itemDto);
+        return itemClient.postItem(userId, idempotencyKey, itemDto);
     }
 
 
@@ -6,8 +6,10 @@ import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.EventStreamProxy;
 import ru.practicum.shareit.request.dto.ItemRequestPatchDto;
 import ru.practicum.shareit.request.dto.ItemRequestPostDto;
 
@@ -32,14 +34,18 @@ public class RequestClient extends BaseClient {
 
     private static final String API_PREFIX = "/requests";
 
+    private final EventStreamProxy eventStreamProxy;
+
     @Autowired
-    public RequestClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public RequestClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder,
+                         EventStreamProxy eventStreamProxy) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
+        this.eventStreamProxy = eventStreamProxy;
     }
 
 
@@ -136,4 +142,42 @@ public class RequestClient extends BaseClient {
         );
         return get("/all?from={from}&size={size}", userId, parameters);
     }
+
+
+    /**
+     * Метод формирует запрос на получение запросов вещей других пользователей,
+     * созданных после запроса с идентификатором after, к микросервису-серверу
+     * приложения с помощью методов базового класса BaseClient.
+     * @param userId (идентификатор пользователя, получающего новые запросы вещей,
+     *                который впоследствии будет представлен в качестве заголовка
+     *                запроса к микросервису-серверу),
+     * @param after (идентификатор последнего полученного пользователем запроса вещи),
+     * @param size (наибольшее количество запросов вещей в ответе)
+     *
+     * @return ResponseEntity<Object> - ответ сервера, содержащий либо код ответа 2** и
+     * список новых запросов вещей, либо иной код ответа с сообщением об ошибке.
+     */
+    public ResponseEntity<Object> getItemRequestsAfter(Long userId, Long after, Integer size) {
+        Map<String, Object> parameters = Map.of(
+                "after", after,
+                "size", size
+        );
+        return get("/feed?after={after}&size={size}", userId, parameters);
+    }
+
+
+    /**
+     * Метод открывает поток новых запросов вещей на микросервисе-сервере
+     * (Server-Sent Events) и передаёт его клиенту через EventStreamProxy.
+     * @param userId (идентификатор пользователя, подписывающегося на новые запросы вещей,
+     *                который впоследствии будет представлен в качестве заголовка
+     *                запроса к микросервису-серверу),
+     * @param after (идентификатор последнего полученного запроса вещи или null)
+     *
+     * @return ResponseEntity<ResponseBodyEmitter> - поток событий сервера, либо ответ
+     * с кодом ошибки и её описанием.
+     */
+    public ResponseEntity<ResponseBodyEmitter> streamItemRequests(Long userId, Long after) {
+        return eventStreamProxy.stream(API_PREFIX + "/feed/stream" + (after != null ? "?after=" + after : ""), userId);
+    }
 }
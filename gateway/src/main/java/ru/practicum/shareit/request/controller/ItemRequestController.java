@@ -6,11 +6,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import ru.practicum.shareit.request.RequestClient;
 import ru.practicum.shareit.request.dto.ItemRequestPatchDto;
 import ru.practicum.shareit.request.dto.ItemRequestPostDto;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
@@ -130,4 +132,50 @@ public class ItemRequestController {
         log.debug("Принят запрос на получение всех запросов в количестве {} с позиции {}", size, from);
         return requestClient.getAllItemRequests(userId, from, size);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Эндпоинт. Метод получает запрос пользователя на получение новых запросов вещей,
+     * парсит его в понятные java, валидируемые объекты:
+     * @param userId (идентификатор пользователя, получающего новые запросы вещей),
+     * @param after (идентификатор последнего полученного пользователем запроса вещи;
+     *              ответ содержит только запросы, созданные после него)
+     * @param size (наибольшее количество объектов запросов вещей, которое требуется вернуть)
+     * В рамках эндпоинта происходит маршрутизация на
+     * уровень клиента взаимодействия с микросервисом Server.
+     *
+     * @return ResponseEntity<Object> (возвращаемый пользователю список новых запросов вещей
+     * других пользователей по возрастанию идентификатора, или код ответа, отличный от 2**,
+     * с описанием причины возникновения ошибки)
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<Object> getItemRequestsAfter(@RequestParam(defaultValue = "0") @PositiveOrZero Long after,
+                                                       @RequestParam(defaultValue = "20") @Positive @Max(100) Integer size,
+                                                       @RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Принят запрос на получение новых запросов вещей после id={} в количестве {}", after, size);
+        return requestClient.getItemRequestsAfter(userId, after, size);
+    }
+
+
+    /**
+     * Эндпоинт. Метод получает запрос пользователя на подписку на новые запросы вещей,
+     * парсит его в понятные java, валидируемые объекты:
+     * @param userId (идентификатор пользователя, подписывающегося на новые запросы вещей),
+     * @param lastEventId (идентификатор последнего полученного запроса вещи, который
+     *                    браузер передаёт при переподключении),
+     * @param after (идентификатор последнего полученного запроса вещи при первом подключении).
+     * В рамках эндпоинта открывается поток Server-Sent Events микросервиса Server,
+     * который передаётся пользователю по мере поступления событий.
+     *
+     * @return ResponseEntity<ResponseBodyEmitter> (поток событий request с новыми запросами
+     * вещей или код ответа, отличный от 2**, с описанием причины возникновения ошибки)
+     */
+    @GetMapping("/feed/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamItemRequests(@RequestHeader(value = "Last-Event-ID", required = false)
+                                                                  @PositiveOrZero Long lastEventId,
+                                                                  @RequestParam(required = false) @PositiveOrZero Long after,
+                                                                  @RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Принят запрос на подписку на новые запросы вещей пользователя с id={}", userId);
+        return requestClient.streamItemRequests(userId, lastEventId != null ? lastEventId : after);
+    }
+}
@@ -25,6 +25,7 @@ import ru.practicum.shareit.user.dto.UserDto;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.when;
@@ -54,7 +55,7 @@ public class BookingControllerTest {
 
         BookingDto bookingDto = new BookingDto(1L, start, end, 1L, 1L, null);
         BookingOutcomingTestDto bookingOutcomingDto = new BookingOutcomingTestDto(1L, start, end, itemDto, booker, "WAITING");
-        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(BookingDto.class)))
+        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(), Mockito.any(BookingDto.class)))
                 .thenReturn(new ResponseEntity<>(bookingOutcomingDto, HttpStatus.OK));
 
         mvc.perform(post("/bookings")
@@ -69,6 +70,33 @@ public class BookingControllerTest {
     }
 
 
+    @Test
+    public void testPostBookingForwardsIdempotencyKey() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        LocalDateTime end = LocalDateTime.now().plusDays(2);
+        ItemPostDto itemDto = new ItemPostDto(1L, "name", "description", true, 2L, 2L, List.of());
+        UserDto booker = new UserDto(1L, "Petr Petrov", "petrpetrov@gmail.com");
+        BookingDto bookingDto = new BookingDto(null, start, end, 1L, 1L, null);
+        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(), Mockito.any(BookingDto.class)))
+                .thenReturn(new ResponseEntity<>(new BookingOutcomingTestDto(1L, start, end, itemDto, booker, "WAITING"),
+                        HttpStatus.OK));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mvc.perform(post("/bookings")
+                            .content(mapper.writeValueAsString(bookingDto))
+                            .header("X-Sharer-User-Id", 1L)
+                            .header("Idempotency-Key", "booking-retry")
+                            .characterEncoding(StandardCharsets.UTF_8)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id", is(1L), Long.class));
+        }
+        Mockito.verify(bookingClient, Mockito.times(2))
+                .postBooking(Mockito.eq(1L), Mockito.eq("booking-retry"), Mockito.any(BookingDto.class));
+    }
+
+
     @Test
     public void testPostBookingNotFoundException() throws Exception {
 
@@ -76,7 +104,7 @@ public class BookingControllerTest {
         LocalDateTime end = LocalDateTime.now().plusDays(2);
         BookingDto bookingDto = new BookingDto(1L, start, end, 1L, 1L, null);
 
-        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(BookingDto.class)))
+        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(), Mockito.any(BookingDto.class)))
                 .thenThrow(NotFoundException.class);
 
         mvc.perform(post("/bookings")
@@ -97,7 +125,7 @@ public class BookingControllerTest {
         LocalDateTime end = LocalDateTime.now().plusDays(2);
         BookingDto bookingDto = new BookingDto(1L, start, end, 1L, 1L, null);
 
-        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(BookingDto.class)))
+        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(), Mockito.any(BookingDto.class)))
                 .thenThrow(BadRequestException.class);
 
         mvc.perform(post("/bookings")
@@ -118,7 +146,7 @@ public class BookingControllerTest {
         LocalDateTime end = LocalDateTime.now().plusDays(2);
         BookingDto bookingDto = new BookingDto(1L, start, end, 1L, 1L, null);
 
-        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(BookingDto.class)))
+        when(bookingClient.postBooking(Mockito.anyLong(), Mockito.any(), Mockito.any(BookingDto.class)))
                 .thenThrow(ValidationException.class);
 
         mvc.perform(post("/bookings")
@@ -437,4 +465,38 @@ public class BookingControllerTest {
                 .andDo(MockMvcResultHandlers.print())
                 .andExpect(status().is(400));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testGetUserStuffBookingsSummaryOk() throws Exception {
+
+        List<Map<String, Object>> summary = List.of(
+                Map.of("state", "ALL", "count", 2, "bookings", List.of()),
+                Map.of("state", "WAITING", "count", 1, "bookings", List.of()));
+        when(bookingClient.getUserStuffBookingsSummary(1L, 3))
+                .thenReturn(new ResponseEntity<>(summary, HttpStatus.OK));
+
+        mvc.perform(get("/bookings/owner/summary?limit=3")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].state", is("ALL")))
+                .andExpect(jsonPath("$[0].count", is(2)))
+                .andExpect(jsonPath("$[1].state", is("WAITING")));
+    }
+
+
+    @Test
+    public void testGetUserStuffBookingsSummaryWithWrongLimit() throws Exception {
+
+        mvc.perform(get("/bookings/owner/summary?limit=0")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+        mvc.perform(get("/bookings/owner/summary?limit=51")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+        Mockito.verify(bookingClient, Mockito.never()).getUserStuffBookingsSummary(Mockito.anyLong(), Mockito.anyInt());
+    }
+}
@@ -53,7 +53,7 @@ public class ItemControllerTest {
 
     @Test
     public void testPostItemOk() throws Exception {
-        when(itemClient.postItem(Mockito.anyLong(), Mockito.any(ItemPostDto.class)))
+        when(itemClient.postItem(Mockito.anyLong(), Mockito.any(), Mockito.any(ItemPostDto.class)))
                 .thenReturn(new ResponseEntity<>(itemDto, HttpStatus.OK));
 
         mvc.perform(post("/items")
@@ -74,7 +74,7 @@ public class ItemControllerTest {
 
     @Test
     public void testPostItemNotFoundException() throws Exception {
-        when(itemClient.postItem(Mockito.anyLong(), any(ItemPostDto.class)))
+        when(itemClient.postItem(Mockito.anyLong(), Mockito.any(), any(ItemPostDto.class)))
                 .thenThrow(NotFoundException.class);
 
         mvc.perform(post("/items")
@@ -90,7 +90,7 @@ public class ItemControllerTest {
 
     @Test
     public void testPostItemValidationException() throws Exception {
-        when(itemClient.postItem(Mockito.anyLong(), any(ItemPostDto.class)))
+        when(itemClient.postItem(Mockito.anyLong(), Mockito.any(), any(ItemPostDto.class)))
                 .thenThrow(ValidationException.class);
 
         mvc.perform(post("/items")
@@ -106,7 +106,7 @@ public class ItemControllerTest {
 
     @Test
     public void testPostItemBadRequestException() throws Exception {
-        when(itemClient.postItem(Mockito.anyLong(), any(ItemPostDto.class)))
+        when(itemClient.postItem(Mockito.anyLong(), Mockito.any(), any(ItemPostDto.class)))
                 .thenThrow(BadRequestException.class);
 
         mvc.perform(post("/items")
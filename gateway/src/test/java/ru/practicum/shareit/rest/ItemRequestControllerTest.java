@@ -10,6 +10,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
@@ -328,4 +329,55 @@ public class ItemRequestControllerTest {
                 .andDo(MockMvcResultHandlers.print())
                 .andExpect(status().is(400));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testGetItemRequestsAfterOk() throws Exception {
+
+        when(requestClient.getItemRequestsAfter(1L, 5L, 20))
+                .thenReturn(new ResponseEntity<>(List.of(itemRequestOutDto), HttpStatus.OK));
+
+        mvc.perform(get("/requests/feed?after=5")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(itemRequestOutDto.getId()), Long.class));
+    }
+
+
+    @Test
+    public void testGetItemRequestsAfterValidation() throws Exception {
+
+        mvc.perform(get("/requests/feed?after=-1")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+
+        mvc.perform(get("/requests/feed?after=0&size=101")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+
+    @Test
+    public void testStreamItemRequestsResumesFromLastEventId() throws Exception {
+
+        when(requestClient.streamItemRequests(1L, 7L))
+                .thenReturn(ResponseEntity.ok(new ResponseBodyEmitter()));
+        when(requestClient.streamItemRequests(1L, 3L))
+                .thenReturn(ResponseEntity.ok(new ResponseBodyEmitter()));
+
+        mvc.perform(get("/requests/feed/stream?after=3")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header("Last-Event-ID", 7L))
+                .andExpect(status().isOk());
+        mvc.perform(get("/requests/feed/stream?after=3")
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isOk());
+
+        Mockito.verify(requestClient).streamItemRequests(1L, 7L);
+        Mockito.verify(requestClient).streamItemRequests(1L, 3L);
+    }
+}
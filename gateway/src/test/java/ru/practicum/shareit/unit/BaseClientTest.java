@@ -0,0 +1,208 @@
+package ru.practicum.shareit.unit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.client.BaseClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BaseClientTest {
+    private static final int WAITERS = 5;
+
+    private final AtomicInteger serverCalls = new AtomicInteger();
+    private final CountDownLatch allWaiting = new CountDownLatch(1);
+    private volatile HttpStatus responseStatus = HttpStatus.OK;
+    private volatile boolean failConnection = false;
+    private volatile MockClientHttpRequest lastRequest;
+
+    @Test
+    public void testConcurrentIdenticalGetsShareOneServerCall() throws Exception {
+        BaseClient client = new BaseClient(blockingRestTemplate());
+
+        List<ResponseEntity<Object>> responses = runConcurrently(() -> client.get("/search?text={text}", 1L, Map.of("text", "drill")));
+
+        Assertions.assertEquals(1, serverCalls.get());
+        responses.forEach(response -> {
+            Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+            Assertions.assertEquals(Map.of("id", 1), response.getBody());
+        });
+    }
+
+
+    @Test
+    public void testDifferentUsersAreNotCoalesced() {
+        BaseClient client = new BaseClient(restTemplate());
+
+        client.get("/1", 1L);
+        client.get("/1", 2L);
+
+        Assertions.assertEquals(2, serverCalls.get());
+    }
+
+
+    @Test
+    public void testErrorsAreSharedWithWaiters() throws Exception {
+        responseStatus = HttpStatus.NOT_FOUND;
+        BaseClient client = new BaseClient(blockingRestTemplate());
+
+        List<ResponseEntity<Object>> responses = runConcurrently(() -> client.get("/1", 1L));
+
+        Assertions.assertEquals(1, serverCalls.get());
+        responses.forEach(response -> Assertions.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode()));
+    }
+
+
+    @Test
+    public void testConnectionFailureIsRethrownToWaiters() throws Exception {
+        failConnection = true;
+        BaseClient client = new BaseClient(blockingRestTemplate());
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        ExecutorService executor = executor(threads);
+        List<Future<ResponseEntity<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            futures.add(executor.submit(() -> client.get("/1")));
+        }
+        awaitParked(threads);
+        allWaiting.countDown();
+
+        for (Future<ResponseEntity<Object>> future : futures) {
+            Exception e = Assertions.assertThrows(Exception.class, future::get);
+            Assertions.assertTrue(e.getCause() instanceof ResourceAccessException);
+        }
+        executor.shutdown();
+        Assertions.assertEquals(1, serverCalls.get());
+    }
+
+
+    @Test
+    public void testWritesAreNeverCoalesced() {
+        BaseClient client = new BaseClient(restTemplate());
+
+        client.post("", 1L, Map.of("name", "drill"));
+        client.post("", 1L, Map.of("name", "drill"));
+
+        Assertions.assertEquals(2, serverCalls.get());
+    }
+
+
+    @Test
+    public void testIdempotencyKeyIsForwarded() {
+        BaseClient client = new BaseClient(restTemplate());
+
+        client.postIdempotent("", 1L, "drill-1", Map.of("name", "drill"));
+        Assertions.assertEquals("drill-1", lastRequest.getHeaders().getFirst("Idempotency-Key"));
+
+        client.post("", 1L, Map.of("name", "drill"));
+        Assertions.assertNull(lastRequest.getHeaders().getFirst("Idempotency-Key"));
+    }
+
+
+    @Test
+    public void testConflictIsPassedThrough() {
+        BaseClient client = new BaseClient(restTemplate());
+        responseStatus = HttpStatus.CONFLICT;
+
+        ResponseEntity<Object> response = client.patch("/1", 1L, Map.of("name", "drill"));
+
+        Assertions.assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        Assertions.assertEquals(1, serverCalls.get());
+    }
+
+
+    private List<ResponseEntity<Object>> runConcurrently(Callable<ResponseEntity<Object>> call)
+            throws Exception {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        ExecutorService executor = executor(threads);
+        List<Future<ResponseEntity<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            futures.add(executor.submit(call));
+        }
+        awaitParked(threads);
+        allWaiting.countDown();
+        List<ResponseEntity<Object>> responses = new ArrayList<>();
+        for (Future<ResponseEntity<Object>> future : futures) {
+            responses.add(future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return responses;
+    }
+
+
+    private ExecutorService executor(List<Thread> threads) {
+        return Executors.newFixedThreadPool(WAITERS, task -> {
+            Thread thread = new Thread(task);
+            threads.add(thread);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Ждёт, пока все вызовы не остановятся: первый - в заглушке сервера, остальные - в ожидании его ответа.
+     * Ожидающие до сервера не доходят, поэтому защёлка в заглушке их не видит - проверяется состояние потоков.
+     */
+    private void awaitParked(List<Thread> threads) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (threads.size() < WAITERS || !threads.stream().allMatch(thread ->
+                thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING)) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Вызовы не дошли до ожидания ответа");
+            Thread.yield();
+        }
+    }
+
+
+    private RestTemplate blockingRestTemplate() {
+        return build(true);
+    }
+
+
+    private RestTemplate restTemplate() {
+        return build(false);
+    }
+
+
+    private RestTemplate build(boolean blocking) {
+        RestTemplate rest = new RestTemplate((uri, method) -> {
+            serverCalls.incrementAndGet();
+            if (blocking) {
+                try {
+                    allWaiting.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failConnection) {
+                throw new IOException("Connection refused");
+            }
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            lastRequest = request;
+            MockClientHttpResponse response = new MockClientHttpResponse(
+                    "{\"id\":1}".getBytes(StandardCharsets.UTF_8), responseStatus);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.setResponse(response);
+            return request;
+        });
+        rest.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:9090/items"));
+        return rest;
+    }
+}
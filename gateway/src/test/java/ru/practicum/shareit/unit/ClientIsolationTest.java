@@ -0,0 +1,218 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ClientIsolationInterceptor;
+import ru.practicum.shareit.client.ConcurrencyLimitingInterceptor;
+import ru.practicum.shareit.client.LoadBalancingInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ClientIsolationTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockEnvironment environment = new MockEnvironment()
+            .withProperty("shareit-server.isolation.max-concurrent-calls", "2")
+            .withProperty("shareit-server.isolation.sliding-window-size", "4")
+            .withProperty("shareit-server.isolation.minimum-number-of-calls", "4")
+            .withProperty("shareit-server.isolation.wait-in-open-state-ms", "30000");
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Semaphore arrived = new Semaphore(0);
+    private final AtomicInteger serverCalls = new AtomicInteger();
+    private volatile HttpStatus responseStatus = HttpStatus.OK;
+    private volatile boolean failConnection = false;
+    private volatile int failingPort = -1;
+
+    @Test
+    public void testSlowRouteDoesNotBlockOtherRoutes() throws Exception {
+        ClientIsolationInterceptor isolation = new ClientIsolationInterceptor(environment, meterRegistry);
+        BaseClient bookings = new BaseClient(restTemplate("/bookings", true, isolation));
+        BaseClient users = new BaseClient(restTemplate("/users", false, isolation));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<ResponseEntity<Object>>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> bookings.get("/owner", 1L)));
+        futures.add(executor.submit(() -> bookings.get("/owner", 2L)));
+        Assertions.assertTrue(arrived.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        ResponseEntity<Object> rejected = bookings.get("/owner", 3L);
+        ResponseEntity<Object> user = users.get("/1", 1L);
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        Assertions.assertEquals("1", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals(HttpStatus.OK, user.getStatusCode());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.gateway.isolation.rejected")
+                .tag("route", "bookings").tag("reason", "bulkhead").counter().count());
+        Assertions.assertEquals(0.0, meterRegistry.get("resilience4j.bulkhead.available.concurrent.calls")
+                .tag("name", "bookings").gauge().value());
+
+        release.countDown();
+        for (Future<ResponseEntity<Object>> future : futures) {
+            Assertions.assertEquals(HttpStatus.OK, future.get(5, TimeUnit.SECONDS).getStatusCode());
+        }
+        executor.shutdown();
+        Assertions.assertEquals(2.0, meterRegistry.get("resilience4j.bulkhead.available.concurrent.calls")
+                .tag("name", "bookings").gauge().value());
+    }
+
+
+    @Test
+    public void testRouteLimitCanBeOverridden() throws Exception {
+        environment.setProperty("shareit-server.isolation.bookings.max-concurrent-calls", "1");
+        ClientIsolationInterceptor isolation = new ClientIsolationInterceptor(environment, meterRegistry);
+        BaseClient bookings = new BaseClient(restTemplate("/bookings", true, isolation));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<ResponseEntity<Object>> first = executor.submit(() -> bookings.get("/owner", 1L));
+        Assertions.assertTrue(arrived.tryAcquire(1, 5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, bookings.get("/owner", 2L).getStatusCode());
+
+        release.countDown();
+        Assertions.assertEquals(HttpStatus.OK, first.get(5, TimeUnit.SECONDS).getStatusCode());
+        executor.shutdown();
+    }
+
+
+    @Test
+    public void testCircuitOpensOnServerErrorsAndFailsFast() {
+        ClientIsolationInterceptor isolation = new ClientIsolationInterceptor(environment, meterRegistry);
+        BaseClient items = new BaseClient(restTemplate("/items", false, isolation));
+        BaseClient users = new BaseClient(restTemplate("/users", false, isolation));
+
+        responseStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+        for (int i = 0; i < 3; i++) {
+            items.post("", 1L, Map.of("name", "drill"));
+        }
+        failConnection = true;
+        Assertions.assertThrows(ResourceAccessException.class, () -> items.post("", 1L, Map.of("name", "drill")));
+        int callsBeforeOpen = serverCalls.get();
+
+        ResponseEntity<Object> rejected = items.post("", 1L, Map.of("name", "drill"));
+
+        Assertions.assertEquals(callsBeforeOpen, serverCalls.get());
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        Assertions.assertEquals("30", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "items@localhost:9090").tag("state", "open").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.gateway.isolation.rejected")
+                .tag("route", "items").tag("reason", "circuit").counter().count());
+
+        failConnection = false;
+        responseStatus = HttpStatus.OK;
+        Assertions.assertEquals(HttpStatus.OK, users.get("/1", 1L).getStatusCode());
+    }
+
+
+    @Test
+    public void testFailingInstanceOpensOnlyItsCircuit() {
+        ClientIsolationInterceptor isolation = new ClientIsolationInterceptor(environment, meterRegistry);
+        LoadBalancingInterceptor loadBalancer = new LoadBalancingInterceptor(meterRegistry, isolation,
+                List.of("http://localhost:9091", "http://localhost:9092"), 1000, 60000, 0);
+        BaseClient items = new BaseClient(restTemplate("/items", false, loadBalancer, isolation));
+        failingPort = 9091;
+
+        for (int i = 0; i < 40; i++) {
+            items.get("/" + i, 1L);
+        }
+        List<HttpStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            statuses.add(items.get("/" + i, 1L).getStatusCode());
+        }
+
+        Assertions.assertEquals(Collections.nCopies(10, HttpStatus.OK), statuses);
+        Assertions.assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "items@localhost:9091").tag("state", "open").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "items@localhost:9092").tag("state", "closed").gauge().value());
+        Assertions.assertTrue(meterRegistry.find("shareit.gateway.isolation.rejected").counters().isEmpty());
+    }
+
+
+    @Test
+    public void testRequestsShedByLimiterAreNotRouteFailures() throws Exception {
+        ClientIsolationInterceptor isolation = new ClientIsolationInterceptor(environment, meterRegistry);
+        ConcurrencyLimitingInterceptor limiter = new ConcurrencyLimitingInterceptor(meterRegistry, true, 1, 1, 1, 1);
+        BaseClient items = new BaseClient(restTemplate("/items", true, limiter, isolation));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<ResponseEntity<Object>> first = executor.submit(() -> items.post("", 1L, Map.of("name", "drill")));
+        Assertions.assertTrue(arrived.tryAcquire(1, 5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                    items.post("", 1L, Map.of("name", "drill")).getStatusCode());
+        }
+
+        release.countDown();
+        Assertions.assertEquals(HttpStatus.OK, first.get(5, TimeUnit.SECONDS).getStatusCode());
+        executor.shutdown();
+        Assertions.assertEquals(1, serverCalls.get());
+        Assertions.assertEquals(1.0, meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "items@localhost:9090").tag("state", "closed").gauge().value());
+    }
+
+
+    @Test
+    public void testDisabledInterceptorIsNotInstalled() {
+        environment.setProperty("shareit-server.isolation.enabled", "false");
+        RestTemplate rest = new RestTemplate();
+
+        new ClientIsolationInterceptor(environment, meterRegistry).customize(rest);
+
+        Assertions.assertTrue(rest.getInterceptors().isEmpty());
+    }
+
+
+    private RestTemplate restTemplate(String prefix, boolean blocking, RestTemplateCustomizer... interceptors) {
+        RestTemplate rest = new RestTemplate((uri, method) -> {
+            serverCalls.incrementAndGet();
+            if (blocking) {
+                arrived.release();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failConnection) {
+                throw new IOException("Connection refused");
+            }
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            MockClientHttpResponse response = new MockClientHttpResponse("{\"id\":1}".getBytes(StandardCharsets.UTF_8),
+                    uri.getPort() == failingPort ? HttpStatus.INTERNAL_SERVER_ERROR : responseStatus);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.setResponse(response);
+            return request;
+        });
+        rest.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:9090" + prefix));
+        for (RestTemplateCustomizer interceptor : interceptors) {
+            interceptor.customize(rest);
+        }
+        return rest;
+    }
+}
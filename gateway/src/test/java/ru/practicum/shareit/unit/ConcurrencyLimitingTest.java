@@ -0,0 +1,222 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.client.AdaptiveConcurrencyLimiter;
+import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ConcurrencyLimitingInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimitingTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Semaphore arrived = new Semaphore(0);
+    private volatile HttpStatus responseStatus = HttpStatus.OK;
+    private volatile boolean failConnection = false;
+
+    @Test
+    public void testLimiterRejectsAboveLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+
+        Assertions.assertTrue(limiter.tryAcquire());
+        Assertions.assertTrue(limiter.tryAcquire());
+        Assertions.assertFalse(limiter.tryAcquire());
+        Assertions.assertEquals(2, limiter.getInFlight());
+
+        limiter.onSuccess(1_000_000);
+        Assertions.assertTrue(limiter.tryAcquire());
+    }
+
+
+    @Test
+    public void testLimiterGrowsWhileSaturatedAndLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100);
+
+        for (int i = 0; i < 50; i++) {
+            int limit = limiter.getLimit();
+            for (int j = 0; j < limit; j++) {
+                limiter.tryAcquire();
+            }
+            for (int j = 0; j < limit; j++) {
+                limiter.onSuccess(1_000_000);
+            }
+        }
+
+        Assertions.assertTrue(limiter.getLimit() > 4);
+    }
+
+
+    @Test
+    public void testLimiterDoesNotGrowWhenIdle() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(1_000_000);
+        }
+
+        Assertions.assertEquals(10, limiter.getLimit());
+    }
+
+
+    @Test
+    public void testLimiterShrinksWhenLatencyGrows() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(1_000_000);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(10_000_000);
+        }
+
+        Assertions.assertTrue(limiter.getLimit() < 20);
+    }
+
+
+    @Test
+    public void testLimiterBacksOffOnDropsDownToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 3, 100);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.onDropped();
+        }
+
+        Assertions.assertEquals(3, limiter.getLimit());
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+
+    @Test
+    public void testExcessRequestsAreShedWithRetryAfter() throws Exception {
+        ConcurrencyLimitingInterceptor interceptor = interceptor(true);
+        BaseClient bookings = new BaseClient(restTemplate(interceptor, "/bookings", true));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<ResponseEntity<Object>>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> bookings.post("", 1L, Map.of("itemId", 1))));
+        futures.add(executor.submit(() -> bookings.post("", 2L, Map.of("itemId", 1))));
+        Assertions.assertTrue(arrived.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        ResponseEntity<Object> shed = bookings.post("", 3L, Map.of("itemId", 1));
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getStatusCode());
+        Assertions.assertEquals("5", shed.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.gateway.limiter.rejected")
+                .tag("endpoint", "bookings:write").counter().count());
+
+        release.countDown();
+        for (Future<ResponseEntity<Object>> future : futures) {
+            Assertions.assertEquals(HttpStatus.OK, future.get(5, TimeUnit.SECONDS).getStatusCode());
+        }
+        executor.shutdown();
+        Assertions.assertEquals(0.0, meterRegistry.get("shareit.gateway.limiter.in.flight")
+                .tag("endpoint", "bookings:write").gauge().value());
+    }
+
+
+    @Test
+    public void testEndpointClassesHaveSeparateLimits() throws Exception {
+        ConcurrencyLimitingInterceptor interceptor = interceptor(true);
+        BaseClient items = new BaseClient(restTemplate(interceptor, "/items", true));
+        BaseClient bookings = new BaseClient(restTemplate(interceptor, "/bookings", false));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<ResponseEntity<Object>>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> items.get("/search?text={text}", 1L, Map.of("text", "a"))));
+        futures.add(executor.submit(() -> items.get("/search?text={text}", 2L, Map.of("text", "b"))));
+        Assertions.assertTrue(arrived.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                items.get("/search?text={text}", 3L, Map.of("text", "c")).getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, bookings.post("", 1L, Map.of("itemId", 1)).getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, bookings.get("/1", 1L).getStatusCode());
+
+        release.countDown();
+        for (Future<ResponseEntity<Object>> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+
+    @Test
+    public void testOverloadAndConnectionFailuresReduceLimit() {
+        ConcurrencyLimitingInterceptor interceptor = interceptor(true);
+        BaseClient users = new BaseClient(restTemplate(interceptor, "/users", false));
+
+        responseStatus = HttpStatus.SERVICE_UNAVAILABLE;
+        users.get("/1", 1L);
+        failConnection = true;
+        Assertions.assertThrows(ResourceAccessException.class, () -> users.get("/2", 1L));
+
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.gateway.limiter.limit")
+                .tag("endpoint", "users:read").gauge().value());
+    }
+
+
+    @Test
+    public void testDisabledInterceptorIsNotInstalled() {
+        RestTemplate rest = new RestTemplate();
+
+        interceptor(false).customize(rest);
+
+        Assertions.assertTrue(rest.getInterceptors().isEmpty());
+    }
+
+
+    private ConcurrencyLimitingInterceptor interceptor(boolean enabled) {
+        return new ConcurrencyLimitingInterceptor(meterRegistry, enabled, 2, 1, 10, 5);
+    }
+
+
+    private RestTemplate restTemplate(ConcurrencyLimitingInterceptor interceptor, String prefix, boolean blocking) {
+        RestTemplate rest = new RestTemplate((uri, method) -> {
+            if (blocking) {
+                arrived.release();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failConnection) {
+                throw new IOException("Connection refused");
+            }
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            MockClientHttpResponse response = new MockClientHttpResponse(
+                    "{\"id\":1}".getBytes(StandardCharsets.UTF_8), responseStatus);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.setResponse(response);
+            return request;
+        });
+        rest.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:9090" + prefix));
+        interceptor.customize(rest);
+        return rest;
+    }
+}
@@ -0,0 +1,121 @@
+package ru.practicum.shareit.unit;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.shareit.booking.BookingClient;
+import ru.practicum.shareit.booking.controller.BookingController;
+import ru.practicum.shareit.client.ClientIsolationInterceptor;
+import ru.practicum.shareit.client.EventStreamProxy;
+import ru.practicum.shareit.client.LoadBalancingInterceptor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class EventStreamProxyTest {
+    private static final String FIRST_EVENT = "id:1\nevent:booking\ndata:{\"id\":1,\"status\":\"APPROVED\"}\n\n";
+    private static final String SECOND_EVENT = "id:2\nevent:booking\ndata:{\"id\":2,\"status\":\"REJECTED\"}\n\n";
+
+    private HttpServer server;
+    private MockMvc mvc;
+    private volatile String userHeader;
+
+    @BeforeEach
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/bookings/stream", exchange -> {
+            userHeader = exchange.getRequestHeaders().getFirst("X-Sharer-User-Id");
+            if ("404".equals(userHeader)) {
+                byte[] body = "{\"error\":\"Пользователь не найден!\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(404, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(FIRST_EVENT.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                // Пауза дольше request-timeout-ms: таймаут запроса не должен обрывать поток.
+                Thread.sleep(400);
+                out.write(SECOND_EVENT.getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        String url = "http://localhost:" + server.getAddress().getPort();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LoadBalancingInterceptor loadBalancer = new LoadBalancingInterceptor(meterRegistry,
+                new ClientIsolationInterceptor(new MockEnvironment(), meterRegistry), List.of(), 3, 60000, 0);
+        EventStreamProxy proxy = new EventStreamProxy(url, loadBalancer, false, 1000, 200, 5000);
+        BookingClient bookingClient = new BookingClient(url, new RestTemplateBuilder(), proxy);
+        mvc = MockMvcBuilders.standaloneSetup(new BookingController(bookingClient)).build();
+    }
+
+
+    @AfterEach
+    public void stop() {
+        server.stop(0);
+    }
+
+
+    @Test
+    public void testEventsArePassedThrough() throws Exception {
+        MvcResult result = mvc.perform(get("/bookings/stream")
+                        .header("X-Sharer-User-Id", 7L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE))
+                .andExpect(content().string(FIRST_EVENT + SECOND_EVENT));
+        Assertions.assertEquals("7", userHeader);
+    }
+
+
+    @Test
+    public void testServerErrorIsPassedThrough() throws Exception {
+        MvcResult result = mvc.perform(get("/bookings/stream")
+                        .header("X-Sharer-User-Id", 404L))
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(content().bytes("{\"error\":\"Пользователь не найден!\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+
+    @Test
+    public void testUnavailableServer() throws Exception {
+        server.stop(0);
+
+        mvc.perform(get("/bookings/stream")
+                        .header("X-Sharer-User-Id", 7L))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.shareit.unit;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.Http2RestTemplateCustomizer;
+import ru.practicum.shareit.client.JdkHttp2ClientHttpRequestFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+public class JdkHttp2ClientHttpRequestFactoryTest {
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private final AtomicReference<String> receivedUserId = new AtomicReference<>();
+    private final AtomicReference<String> receivedAcceptEncoding = new AtomicReference<>();
+    private HttpServer server;
+    private BaseClient client;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/items", exchange -> {
+            receivedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            receivedUserId.set(exchange.getRequestHeaders().getFirst("X-Sharer-User-Id"));
+            receivedAcceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = "{\"id\":1,\"name\":\"drill\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (path.endsWith("/404")) {
+                body = "Вещь не найдена".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(404, body.length);
+            } else if (path.endsWith("/gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, body.length);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        client = new BaseClient(restTemplate(true));
+    }
+
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+
+    @Test
+    public void testGetWithHeaders() {
+        ResponseEntity<Object> response = client.get("/1", 7L);
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(Map.of("id", 1, "name", "drill"), response.getBody());
+        Assertions.assertEquals("7", receivedUserId.get());
+        Assertions.assertEquals("gzip", receivedAcceptEncoding.get());
+    }
+
+
+    @Test
+    public void testPostSendsBody() {
+        ResponseEntity<Object> response = client.post("", 7L, Map.of("name", "drill"));
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals("{\"name\":\"drill\"}", receivedBody.get());
+    }
+
+
+    @Test
+    public void testGzipResponseIsDecoded() {
+        ResponseEntity<Object> response = client.get("/gzip", 7L);
+
+        Assertions.assertEquals(Map.of("id", 1, "name", "drill"), response.getBody());
+    }
+
+
+    @Test
+    public void testErrorStatusIsPassedThrough() {
+        ResponseEntity<Object> response = client.get("/404", 7L);
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        Assertions.assertEquals("Вещь не найдена", new String((byte[]) response.getBody(), StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    public void testCustomizerKeepsFactoryWhenDisabled() {
+        Assertions.assertTrue(restTemplate(true).getRequestFactory() instanceof JdkHttp2ClientHttpRequestFactory);
+        Assertions.assertTrue(restTemplate(false).getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory);
+    }
+
+
+    private RestTemplate restTemplate(boolean http2Enabled) {
+        RestTemplate rest = new RestTemplate(new HttpComponentsClientHttpRequestFactory());
+        rest.getMessageConverters().removeIf(MappingJackson2SmileHttpMessageConverter.class::isInstance);
+        rest.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:" + server.getAddress().getPort() + "/items"));
+        new Http2RestTemplateCustomizer(http2Enabled, 1000, 5000).customize(rest);
+        return rest;
+    }
+}
@@ -0,0 +1,229 @@
+package ru.practicum.shareit.unit;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.ClientIsolationInterceptor;
+import ru.practicum.shareit.client.LoadBalancingInterceptor;
+import ru.practicum.shareit.client.ReadYourWritesInterceptor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadBalancingTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Backend first = new Backend();
+    private final Backend second = new Backend();
+
+    @BeforeEach
+    public void startBackends() throws IOException {
+        first.start();
+        second.start();
+    }
+
+
+    @AfterEach
+    public void stopBackends() {
+        first.stop();
+        second.stop();
+    }
+
+
+    @Test
+    public void testRequestsAreSpreadAcrossInstances() {
+        BaseClient client = client(interceptor(List.of(first.url(), second.url())));
+
+        for (int i = 0; i < 40; i++) {
+            Assertions.assertEquals(HttpStatus.OK, client.get("/" + i, 1L).getStatusCode());
+        }
+
+        Assertions.assertEquals(40, first.calls.get() + second.calls.get());
+        Assertions.assertTrue(first.calls.get() > 0);
+        Assertions.assertTrue(second.calls.get() > 0);
+    }
+
+
+    @Test
+    public void testFailingInstanceIsEjected() {
+        first.status = 500;
+        BaseClient client = client(interceptor(List.of(first.url(), second.url())));
+
+        for (int i = 0; i < 60; i++) {
+            client.get("/" + i, 1L);
+        }
+
+        Assertions.assertEquals(3, first.calls.get());
+        Assertions.assertEquals(0.0, meterRegistry.get("shareit.gateway.lb.available")
+                .tag("instance", first.url()).gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.gateway.lb.available")
+                .tag("instance", second.url()).gauge().value());
+    }
+
+
+    @Test
+    public void testUnreachableInstanceIsEjected() {
+        first.stop();
+        BaseClient client = client(interceptor(List.of(first.url(), second.url())));
+
+        int failures = 0;
+        for (int i = 0; i < 30; i++) {
+            try {
+                client.get("/" + i, 1L);
+            } catch (ResourceAccessException e) {
+                failures++;
+            }
+        }
+
+        Assertions.assertEquals(3, failures);
+        Assertions.assertEquals(27, second.calls.get());
+    }
+
+
+    @Test
+    public void testUnhealthyInstanceIsSkippedUntilItRecovers() {
+        LoadBalancingInterceptor interceptor = interceptor(List.of(first.url(), second.url()));
+        BaseClient client = client(interceptor);
+
+        first.healthStatus = 503;
+        interceptor.checkHealth();
+        for (int i = 0; i < 20; i++) {
+            client.get("/" + i, 1L);
+        }
+        Assertions.assertEquals(0, first.calls.get());
+
+        first.healthStatus = 200;
+        interceptor.checkHealth();
+        for (int i = 0; i < 40; i++) {
+            client.get("/" + i, 1L);
+        }
+        Assertions.assertTrue(first.calls.get() > 0);
+    }
+
+
+    @Test
+    public void testAllInstancesAreUsedWhenNoneIsHealthy() {
+        LoadBalancingInterceptor interceptor = interceptor(List.of(first.url(), second.url()));
+        BaseClient client = client(interceptor);
+
+        first.healthStatus = 503;
+        second.healthStatus = 503;
+        interceptor.checkHealth();
+
+        Assertions.assertEquals(HttpStatus.OK, client.get("/1", 1L).getStatusCode());
+    }
+
+
+    @Test
+    public void testWriteWindowIsForwardedToEveryInstance() {
+        String until = String.valueOf(System.currentTimeMillis() + 60000);
+        first.primaryUntil = until;
+        second.primaryUntil = until;
+        RestTemplate rest = rest();
+        new ReadYourWritesInterceptor().customize(rest);
+        interceptor(List.of(first.url(), second.url())).customize(rest);
+        BaseClient client = new BaseClient(rest);
+
+        client.get("/0", 2L);
+        Assertions.assertNull(first.forwardedPrimaryUntil);
+        Assertions.assertNull(second.forwardedPrimaryUntil);
+        client.post("/1", 1L, null);
+        for (int i = 0; i < 40; i++) {
+            client.get("/" + i, 1L);
+        }
+
+        Assertions.assertEquals(until, first.forwardedPrimaryUntil);
+        Assertions.assertEquals(until, second.forwardedPrimaryUntil);
+    }
+
+
+    @Test
+    public void testSingleInstanceIsNotBalanced() {
+        RestTemplate rest = new RestTemplate();
+
+        interceptor(List.of(first.url())).customize(rest);
+        interceptor(List.of()).customize(rest);
+
+        Assertions.assertTrue(rest.getInterceptors().isEmpty());
+    }
+
+
+    private LoadBalancingInterceptor interceptor(List<String> urls) {
+        return new LoadBalancingInterceptor(meterRegistry,
+                new ClientIsolationInterceptor(new MockEnvironment(), meterRegistry), urls, 3, 60000, 0);
+    }
+
+
+    private BaseClient client(LoadBalancingInterceptor interceptor) {
+        RestTemplate rest = rest();
+        interceptor.customize(rest);
+        return new BaseClient(rest);
+    }
+
+
+    private static RestTemplate rest() {
+        RestTemplate rest = new RestTemplate(new SimpleClientHttpRequestFactory());
+        rest.getMessageConverters().removeIf(MappingJackson2SmileHttpMessageConverter.class::isInstance);
+        rest.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:9090/items"));
+        return rest;
+    }
+
+
+    private static final class Backend {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile int status = 200;
+        private volatile int healthStatus = 200;
+        private volatile String primaryUntil;
+        private volatile String forwardedPrimaryUntil;
+        private HttpServer server;
+        private int port;
+
+        private void start() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            port = server.getAddress().getPort();
+            server.createContext("/items", exchange -> {
+                calls.incrementAndGet();
+                if (exchange.getRequestMethod().equals("GET")) {
+                    forwardedPrimaryUntil = exchange.getRequestHeaders().getFirst(ReadYourWritesInterceptor.PRIMARY_UNTIL_HEADER);
+                } else if (primaryUntil != null) {
+                    exchange.getResponseHeaders().add(ReadYourWritesInterceptor.PRIMARY_UNTIL_HEADER, primaryUntil);
+                }
+                respond(exchange, status);
+            });
+            server.createContext("/actuator/health", exchange -> respond(exchange, healthStatus));
+            server.start();
+        }
+
+        private void respond(com.sun.net.httpserver.HttpExchange exchange, int code) throws IOException {
+            byte[] body = "{\"status\":\"UP\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private void stop() {
+            server.stop(0);
+        }
+
+        private String url() {
+            return "http://localhost:" + port;
+        }
+    }
+}
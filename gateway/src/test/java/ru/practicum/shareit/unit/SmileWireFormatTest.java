@@ -0,0 +1,99 @@
+package ru.practicum.shareit.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.shareit.client.BaseClient;
+import ru.practicum.shareit.client.SmileRestTemplateCustomizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class SmileWireFormatTest {
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+    private MockClientHttpRequest lastRequest;
+    private HttpStatus responseStatus = HttpStatus.OK;
+    private byte[] responseBody;
+    private MediaType responseType = SMILE;
+
+    @Test
+    public void testRequestsAndResponsesUseSmile() throws Exception {
+        responseBody = smileMapper.writeValueAsBytes(List.of(Map.of("id", 1, "start", "2030-01-01T10:00:00")));
+        BaseClient client = new BaseClient(restTemplate(true));
+
+        ResponseEntity<Object> response = client.post("", 1L, Map.of("itemId", 1));
+
+        Assertions.assertEquals(SMILE, lastRequest.getHeaders().getContentType());
+        Assertions.assertEquals(List.of(SMILE, MediaType.APPLICATION_JSON), lastRequest.getHeaders().getAccept());
+        Assertions.assertEquals(Map.of("itemId", 1), smileMapper.readValue(lastRequest.getBodyAsBytes(), Object.class));
+        Assertions.assertEquals(List.of(Map.of("id", 1, "start", "2030-01-01T10:00:00")), response.getBody());
+        Assertions.assertNull(response.getHeaders().getContentType());
+    }
+
+
+    @Test
+    public void testSmileErrorBodyIsDecoded() throws Exception {
+        responseStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+        responseBody = smileMapper.writeValueAsBytes(Map.of("status", 500, "error", "Internal Server Error"));
+        BaseClient client = new BaseClient(restTemplate(true));
+
+        ResponseEntity<Object> response = client.get("/1", 1L);
+
+        Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        Assertions.assertEquals(Map.of("status", 500, "error", "Internal Server Error"), response.getBody());
+    }
+
+
+    @Test
+    public void testTextErrorBodyIsPassedThrough() {
+        responseStatus = HttpStatus.NOT_FOUND;
+        responseBody = "Вещь не найдена".getBytes(StandardCharsets.UTF_8);
+        BaseClient client = new BaseClient(restTemplate(true));
+
+        ResponseEntity<Object> response = client.get("/1", 1L);
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        Assertions.assertArrayEquals(responseBody, (byte[]) response.getBody());
+    }
+
+
+    @Test
+    public void testJsonIsUsedWhenSmileIsDisabled() {
+        responseType = MediaType.APPLICATION_JSON;
+        responseBody = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        BaseClient client = new BaseClient(restTemplate(false));
+
+        ResponseEntity<Object> response = client.post("", 1L, Map.of("itemId", 1));
+
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, lastRequest.getHeaders().getContentType());
+        Assertions.assertEquals(List.of(MediaType.APPLICATION_JSON), lastRequest.getHeaders().getAccept());
+        Assertions.assertEquals("{\"itemId\":1}", lastRequest.getBodyAsString());
+        Assertions.assertEquals(Map.of("id", 1), response.getBody());
+    }
+
+
+    private RestTemplate restTemplate(boolean smileEnabled) {
+        RestTemplate rest = new RestTemplate((uri, method) -> {
+            lastRequest = new MockClientHttpRequest(method, uri);
+            MockClientHttpResponse response = new MockClientHttpResponse(responseBody, responseStatus);
+            response.getHeaders().setContentType(responseType);
+            lastRequest.setResponse(response);
+            return lastRequest;
+        });
+        rest.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:9090/bookings"));
+        new SmileRestTemplateCustomizer(new Jackson2ObjectMapperBuilder(), smileEnabled).customize(rest);
+        return rest;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.shareit.actuator;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actuator-эндпоинт /actuator/pool возвращает сводку о насыщении пула
+ * соединений с базой данных: число активных, простаивающих и ожидающих
+ * соединения потоков, а также время получения соединения из пула.
+ * Позволяет отличить задержки, вызванные ожиданием соединения, от медленных запросов.
+ */
+@Component
+@Endpoint(id = "pool")
+@RequiredArgsConstructor
+public class PoolMetricsEndpoint {
+
+    private static final String ACQUIRE_TIMER = "hikaricp.connections.acquire";
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public Map<String, Object> pool() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        HikariDataSource hikariDataSource = DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class);
+        if (hikariDataSource == null) {
+            pool.put("status", "UNKNOWN");
+            return pool;
+        }
+        String poolName = hikariDataSource.getPoolName();
+        pool.put("name", poolName);
+        pool.put("maximumPoolSize", hikariDataSource.getMaximumPoolSize());
+        pool.put("minimumIdle", hikariDataSource.getMinimumIdle());
+        pool.put("connectionTimeoutMs", hikariDataSource.getConnectionTimeout());
+
+        HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
+        if (poolMXBean == null) {
+            pool.put("status", "NOT_STARTED");
+            return pool;
+        }
+        pool.put("status", "RUNNING");
+        pool.put("active", poolMXBean.getActiveConnections());
+        pool.put("idle", poolMXBean.getIdleConnections());
+        pool.put("total", poolMXBean.getTotalConnections());
+        pool.put("pending", poolMXBean.getThreadsAwaitingConnection());
+
+        Timer acquire = meterRegistry.find(ACQUIRE_TIMER).tag("pool", poolName).timer();
+        if (acquire != null) {
+            Map<String, Object> acquireTime = new LinkedHashMap<>();
+            acquireTime.put("count", acquire.count());
+            acquireTime.put("meanMs", acquire.mean(TimeUnit.MILLISECONDS));
+            acquireTime.put("maxMs", acquire.max(TimeUnit.MILLISECONDS));
+            pool.put("acquire", acquireTime);
+        }
+        return pool;
+    }
+}
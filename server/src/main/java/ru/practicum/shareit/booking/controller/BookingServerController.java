@@ -2,12 +2,17 @@ package ru.practicum.shareit.booking.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
+import ru.practicum.shareit.booking.service.BookingEventStream;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
 
 import java.util.List;
 
@@ -24,11 +29,15 @@ import java.util.List;
 public class BookingServerController {
 
     private final BookingService bookingServiceImpl;
+    private final BookingEventStream bookingEventStream;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Эндпоинт. Метод получает запрос из микросервиса-шлюза,
      * парсит его в понятные java объекты:
      * @param userId (идентификатор пользователя, добавляющего бронирование на вещь),
+     * @param idempotencyKey (ключ идемпотентности: повтор запроса с тем же ключом
+     * возвращает ответ на первый, см. IdempotencyStore),
      * @param bookingDto (объект самой вещи).
      * В рамках эндпоинта происходит маршрутизация на
      * уровень сервиса, содержащего бизнес-логику
@@ -39,9 +48,11 @@ public class BookingServerController {
      */
     @PostMapping
     public BookingOutcomingDto postBooking(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                            @RequestBody BookingDto bookingDto) {
         log.debug("Принят запрос на добавление бронирования от пользователя с id={}", userId);
-        return bookingServiceImpl.postBooking(userId, bookingDto);
+        return idempotencyStore.execute(userId, idempotencyKey, "POST /bookings", bookingDto,
+                BookingOutcomingDto.class, () -> bookingServiceImpl.postBooking(userId, bookingDto));
     }
 
 
@@ -135,4 +146,43 @@ public class BookingServerController {
         log.debug("Принят запрос на получение списка всех бронирований");
         return bookingServiceImpl.getUserStuffBookings(userId, state, from, size);
     }
+
+
+    /**
+     * Эндпоинт. Метод получает запрос из микросервиса-шлюза,
+     * парсит его в понятные java объекты:
+     * @param userId (идентификатор пользователя, получающего сводку по бронированиям своих вещей),
+     * @param limit (наибольшее количество бронирований, возвращаемых в каждом состоянии).
+     * В рамках эндпоинта происходит маршрутизация на
+     * уровень сервиса, содержащего бизнес-логику
+     * приложения с целью последующего получения из репозитория
+     * числа бронирований вещей пользователя в каждом состоянии и последних из них.
+     *
+     * @return List<BookingSummaryDto> (возвращаемая пользователю сводка по состояниям ALL, CURRENT,
+     * PAST, FUTURE, WAITING и REJECTED)
+     */
+    @GetMapping("/owner/summary")
+    public List<BookingSummaryDto> getUserStuffBookingsSummary(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                               @RequestParam Integer limit) {
+        log.debug("Принят запрос на получение сводки по бронированиям вещей пользователя с id={}", userId);
+        return bookingServiceImpl.getUserStuffBookingsSummary(userId, limit);
+    }
+
+
+    /**
+     * Эндпоинт. Метод получает запрос из микросервиса-шлюза,
+     * парсит его в понятные java объекты:
+     * @param userId (идентификатор пользователя, подписывающегося на изменения своих бронирований).
+     * В рамках эндпоинта открывается поток Server-Sent Events, в который передаются
+     * бронирования пользователя (и бронирования его вещей) при их создании, подтверждении
+     * или отклонении.
+     *
+     * @return SseEmitter (поток событий booking с объектами BookingOutcomingDto и событий resync,
+     * после которых бронирования следует перечитать)
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBookingEvents(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Принят запрос на подписку на события бронирований пользователя с id={}", userId);
+        return bookingEventStream.subscribe(userId);
+    }
 }
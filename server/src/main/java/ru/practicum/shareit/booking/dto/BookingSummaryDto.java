@@ -0,0 +1,19 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Модель данных сводки по бронированиям вещей владельца в одном состоянии,
+ * возвращаемая в теле ответа на HTTP-запрос: число бронирований в состоянии state
+ * и последние из них (не более запрошенного количества).
+ */
+@Data
+@AllArgsConstructor
+public class BookingSummaryDto {
+    private final String state;
+    private long count;
+    private final List<BookingOutcomingDto> bookings;
+}
@@ -71,7 +71,7 @@ public class BookingMapper {
             }
         }
         return new Booking(
-                0L,
+                null,
                 bookingDto.getStart(),
                 bookingDto.getEnd(),
                 item,
@@ -9,13 +9,50 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 /**
- * Модель данных бронирования, используемая на уровне репозитория.
+ * Модель данных бронирования, используемая на уровне репозитория; version - версия
+ * строки для оптимистической блокировки.
+ * Запрос Booking.findOwnerSummary одним проходом по бронированиям вещей владельца
+ * (оперативным и архивным) относит каждое к состояниям ALL, CURRENT, PAST, FUTURE,
+ * WAITING и REJECTED, считает бронирования в каждом состоянии и оставляет по ?3
+ * последних из них; строка результата - бронирование, его состояние и число
+ * бронирований в этом состоянии.
  */
 @Entity
+@NamedNativeQuery(
+        name = "Booking.findOwnerSummary",
+        query = "select s.state, s.total, s.booking_id, s.start_date, s.end_date, s.item_id, s.user_id, s.status, s.version from (" +
+                "select st.state, b.booking_id, b.start_date, b.end_date, b.item_id, b.user_id, b.status, b.version, " +
+                "count(*) over (partition by st.state) as total, " +
+                "row_number() over (partition by st.state order by b.start_date desc, b.booking_id desc) as rn " +
+                "from (" +
+                "select bk.booking_id, bk.start_date, bk.end_date, bk.item_id, bk.user_id, bk.status, bk.version from bookings as bk " +
+                "join items as i on bk.item_id = i.item_id where i.user_id = ?1 " +
+                "union all " +
+                "select ba.booking_id, ba.start_date, ba.end_date, ba.item_id, ba.user_id, ba.status, ba.version from bookings_archive as ba " +
+                "join items as i on ba.item_id = i.item_id where i.user_id = ?1" +
+                ") as b " +
+                "join (" +
+                "select 'ALL' as state union all select 'CURRENT' union all select 'PAST' " +
+                "union all select 'FUTURE' union all select 'WAITING' union all select 'REJECTED'" +
+                ") as st on st.state = 'ALL' " +
+                "or st.state = 'CURRENT' and b.start_date <= ?2 and b.end_date >= ?2 " +
+                "or st.state = 'PAST' and b.end_date < ?2 and b.status <> 'REJECTED' " +
+                "or st.state = 'FUTURE' and b.start_date > ?2 " +
+                "or st.state = b.status and b.status in ('WAITING', 'REJECTED')" +
+                ") as s " +
+                "where s.rn <= ?3 " +
+                "order by s.state, s.start_date desc, s.booking_id desc",
+        resultSetMapping = "BookingSummaryRow")
+@SqlResultSetMapping(
+        name = "BookingSummaryRow",
+        entities = @EntityResult(entityClass = Booking.class),
+        columns = {
+                @ColumnResult(name = "state", type = String.class),
+                @ColumnResult(name = "total", type = Long.class)
+        })
 @Table(name = "bookings", schema = "public")
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class Booking {
     @Id
@@ -35,6 +72,18 @@ public class Booking {
     @Column(name = "status")
     @Enumerated(EnumType.STRING)
     private BookingStatus bookingStatus;
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    public Booking(Long id, LocalDateTime start, LocalDateTime end, Item item, User booker, BookingStatus bookingStatus) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+        this.item = item;
+        this.booker = booker;
+        this.bookingStatus = bookingStatus;
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -1,21 +1,43 @@
 package ru.practicum.shareit.booking.repository;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import ru.practicum.shareit.booking.model.Booking;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Интерфейс BookingJpaRepository является контрактом для последующей реализации,
  * создаваемой на этапе компиляции. Благодаря базовому интерфейсу JpaRepository
  * содержит ряд основных методов, в т.ч. все CRUD-операции. Добавляет ряд
  * собственных, производящим более сложные выборки.
+ * Завершённые бронирования старше горизонта архивации переносятся в таблицу
+ * bookings_archive (см. BookingArchiveJob). Выборки состояний ALL и PAST, счётчики для
+ * постраничного вывода, а также поиск предыдущего бронирования вещи и прошлого
+ * бронирования автора отзыва объединяют обе таблицы; выборки активных бронирований
+ * (CURRENT, FUTURE, WAITING, REJECTED) и проверка пересечения дат обращаются только
+ * к оперативной таблице bookings.
  */
 public interface BookingJpaRepository extends PagingAndSortingRepository<Booking, Long>, CrudRepository<Booking, Long> {
+    String COLUMNS = "booking_id, start_date, end_date, item_id, user_id, status, version";
+    String ARCHIVED_STATUSES = "('APPROVED', 'CANCELED', 'PAST')";
+
+    @Query(value = "select b.* from (" +
+            "select " + COLUMNS + " from bookings where user_id = ?1 " +
+            "union all " +
+            "select " + COLUMNS + " from bookings_archive where user_id = ?1" +
+            ") as b " +
+            "order by b.start_date desc", nativeQuery = true)
     List<Booking> findByBookerIdOrderByStartDesc(Long bookerId, Pageable page);
 
     List<Booking> findByBookerIdAndEndAfterAndStartBeforeOrderByStartDesc(Long bookerId, LocalDateTime now1, LocalDateTime now2, Pageable page);
@@ -34,17 +56,22 @@ public interface BookingJpaRepository extends PagingAndSortingRepository<Booking
             "order by b.start desc")
     List<Booking> findRejectedBookings(Long bookerId, Pageable page);
 
-    @Query("select b from Booking as b " +
-            "join b.booker as u " +
-            "where u.id = ?1 and b.bookingStatus <> 'REJECTED' and b.end < ?2 " +
-            "order by b.start desc")
+    @Query(value = "select b.* from (" +
+            "select " + COLUMNS + " from bookings where user_id = ?1 and status <> 'REJECTED' and end_date < ?2 " +
+            "union all " +
+            "select " + COLUMNS + " from bookings_archive where user_id = ?1 and end_date < ?2" +
+            ") as b " +
+            "order by b.start_date desc", nativeQuery = true)
     List<Booking> findPastBookings(Long bookerId, LocalDateTime now, Pageable page);
 
-    @Query("select b from Booking as b " +
-            "join b.item as i " +
-            "join i.owner as u " +
-            "where u.id = ?1 " +
-            "order by b.start desc")
+    @Query(value = "select b.* from (" +
+            "select bk.booking_id, bk.start_date, bk.end_date, bk.item_id, bk.user_id, bk.status, bk.version from bookings as bk " +
+            "join items as i on bk.item_id = i.item_id where i.user_id = ?1 " +
+            "union all " +
+            "select ba.booking_id, ba.start_date, ba.end_date, ba.item_id, ba.user_id, ba.status, ba.version from bookings_archive as ba " +
+            "join items as i on ba.item_id = i.item_id where i.user_id = ?1" +
+            ") as b " +
+            "order by b.start_date desc", nativeQuery = true)
     List<Booking> findAllStuffBookingsByOwnerId(Long ownerId, Pageable page);
 
     @Query("select b from Booking as b " +
@@ -54,11 +81,16 @@ public interface BookingJpaRepository extends PagingAndSortingRepository<Booking
             "order by b.start desc")
     List<Booking> findCurrentStuffBookingsByOwnerId(Long ownerId, LocalDateTime now, Pageable page);
 
-    @Query("select b from Booking as b " +
-            "join b.item as i " +
-            "join i.owner as u " +
-            "where u.id = ?1 and b.bookingStatus <> 'REJECTED' and b.end < ?2 " +
-            "order by b.start desc")
+    @Query(value = "select b.* from (" +
+            "select bk.booking_id, bk.start_date, bk.end_date, bk.item_id, bk.user_id, bk.status, bk.version from bookings as bk " +
+            "join items as i on bk.item_id = i.item_id " +
+            "where i.user_id = ?1 and bk.status <> 'REJECTED' and bk.end_date < ?2 " +
+            "union all " +
+            "select ba.booking_id, ba.start_date, ba.end_date, ba.item_id, ba.user_id, ba.status, ba.version from bookings_archive as ba " +
+            "join items as i on ba.item_id = i.item_id " +
+            "where i.user_id = ?1 and ba.end_date < ?2" +
+            ") as b " +
+            "order by b.start_date desc", nativeQuery = true)
     List<Booking> findPastStuffBookingsByOwnerId(Long ownerId, LocalDateTime now, Pageable page);
 
     @Query("select b from Booking as b " +
@@ -71,7 +103,7 @@ public interface BookingJpaRepository extends PagingAndSortingRepository<Booking
     @Query("select b from Booking as b " +
             "join b.item as i " +
             "join i.owner as u " +
-            "where b.bookingStatus = 'WAITING' " +
+            "where b.bookingStatus = 'WAITING' and u.id = ?1 " +
             "order by b.start desc")
     List<Booking> findWaitingStuffBookingsByOwnerId(Long ownerId, Pageable page);
 
@@ -82,10 +114,13 @@ public interface BookingJpaRepository extends PagingAndSortingRepository<Booking
             "order by b.start desc")
     List<Booking> findRejectedStuffBookingsByOwnerId(Long ownerId, Pageable page);
 
-    @Query(value = "select b.* from bookings as b " +
+    @Query(value = "select b.* from (" +
+            "select " + COLUMNS + " from bookings where item_id = ?3 and start_date < ?2 and status <> 'REJECTED' " +
+            "union all " +
+            "select " + COLUMNS + " from bookings_archive where item_id = ?3 and start_date < ?2" +
+            ") as b " +
             "join items as i on b.item_id = i.item_id " +
-            "join users as u on i.user_id = u.user_id " +
-            "where u.user_id = ?1 and b.start_date < ?2 and i.item_id = ?3 and b.status <> 'REJECTED' " +
+            "where i.user_id = ?1 " +
             "order by b.end_date desc " +
             "limit 1 ", nativeQuery = true)
     Booking findPreviousUserBooking(Long ownerId, LocalDateTime now, Long itemId);
@@ -98,11 +133,12 @@ public interface BookingJpaRepository extends PagingAndSortingRepository<Booking
             "limit 1", nativeQuery = true)
     Booking findNextUserBooking(Long ownerId, LocalDateTime now, Long itemId);
 
-    @Query("select b from Booking as b " +
-            "join b.booker as u " +
-            "join b.item as i " +
-            "where i.id = ?1 and u.id = ?2 and b.end < ?3")
-    List<Booking> findBookingByItemIdAndBookerId(Long itemId, Long bookerId, LocalDateTime now);
+    @Query(value = "select case when exists (" +
+            "select 1 from bookings where item_id = ?1 and user_id = ?2 and end_date < ?3" +
+            ") or exists (" +
+            "select 1 from bookings_archive where item_id = ?1 and user_id = ?2 and end_date < ?3" +
+            ") then true else false end", nativeQuery = true)
+    boolean existsPastBookingByItemIdAndBookerId(Long itemId, Long bookerId, LocalDateTime now);
 
     @Query(value = "SELECT b.* FROM bookings AS b " +
             "JOIN items AS i ON b.item_id = i.item_id " +
@@ -111,12 +147,101 @@ public interface BookingJpaRepository extends PagingAndSortingRepository<Booking
             "LIMIT 1", nativeQuery = true)
     Booking findBookingForDate(Long itemId, LocalDateTime start, LocalDateTime end);
 
-    @Query(value = "SELECT count(b.*) FROM bookings AS b WHERE b.user_id = ?1", nativeQuery = true)
+    @Query(value = "select (select count(*) from bookings where user_id = ?1) " +
+            "+ (select count(*) from bookings_archive where user_id = ?1)", nativeQuery = true)
     int findAmountByBookerId(Long bookerId);
 
-    @Query(value = "select count(*) from bookings as b " +
-            "join items as i on b.item_id = i.item_id " +
-            "join users as u on i.user_id = u.user_id " +
-            "where u.user_id = ?1", nativeQuery = true)
+    @Query(value = "select (select count(*) from bookings as b " +
+            "join items as i on b.item_id = i.item_id where i.user_id = ?1) " +
+            "+ (select count(*) from bookings_archive as b " +
+            "join items as i on b.item_id = i.item_id where i.user_id = ?1)", nativeQuery = true)
     int findStuffBookingsAmountByOwnerId(Long ownerId);
+
+    /**
+     * Сводка по бронированиям вещей владельца (именованный запрос, см. {@link Booking}).
+     * Каждый элемент - массив из бронирования, названия состояния и числа бронирований в нём.
+     */
+    List<Object[]> findOwnerSummary(Long ownerId, LocalDateTime now, int limit);
+
+    /**
+     * Все бронирования оперативной таблицы вместе с вещами, их владельцами и авторами
+     * бронирований (загрузка модели чтения {@link ru.practicum.shareit.booking.service.BookingReadModel}).
+     */
+    @Query("select b from Booking as b " +
+            "join fetch b.item as i " +
+            "join fetch i.owner " +
+            "join fetch b.booker")
+    List<Booking> findAllWithItemAndBooker();
+
+    /**
+     * Бронирования оперативной таблицы с идентификаторами из ids вместе с вещами, их
+     * владельцами и авторами (догрузка модели чтения, восстановленной из журнала).
+     */
+    @Query("select b from Booking as b " +
+            "join fetch b.item as i " +
+            "join fetch i.owner " +
+            "join fetch b.booker " +
+            "where b.id in ?1")
+    List<Booking> findAllWithItemAndBookerByIdIn(Collection<Long> ids);
+
+    /**
+     * Идентификаторы и версии всех бронирований оперативной таблицы: массивы из двух чисел
+     * (сверка модели чтения, восстановленной из журнала, с базой данных).
+     */
+    @Query("select b.id, b.version from Booking as b")
+    List<Object[]> findAllVersions();
+
+    /**
+     * Эпоха схемы: значение, которое заново создаётся при каждой инициализации схемы базы данных.
+     */
+    @Query(value = "select epoch from schema_epoch", nativeQuery = true)
+    String findSchemaEpoch();
+
+    /**
+     * Число архивных бронирований каждого автора: массивы из идентификатора автора и числа.
+     */
+    @Query(value = "select user_id, count(*) from bookings_archive group by user_id", nativeQuery = true)
+    List<Object[]> countArchivedByBooker();
+
+    /**
+     * Число архивных бронирований вещей каждого владельца: массивы из идентификатора владельца и числа.
+     */
+    @Query(value = "select i.user_id, count(*) from bookings_archive as b " +
+            "join items as i on b.item_id = i.item_id group by i.user_id", nativeQuery = true)
+    List<Object[]> countArchivedByOwner();
+
+    @Query(value = "select " + COLUMNS + " from bookings_archive where booking_id = ?1", nativeQuery = true)
+    Optional<Booking> findArchivedById(Long bookingId);
+
+    /**
+     * Идентификаторы пачки бронирований для переноса в архив. Строки блокируются, а уже
+     * заблокированные пропускаются (SKIP LOCKED в PostgreSQL), так что задания архивации
+     * нескольких экземпляров сервера не переносят одну пачку одновременно.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select b.id from Booking as b " +
+            "where b.end < ?1 and b.bookingStatus in " + ARCHIVED_STATUSES + " " +
+            "order by b.end")
+    List<Long> findArchivableIds(LocalDateTime horizon, Pageable page);
+
+    @Modifying
+    @Query(value = "insert into bookings_archive (" + COLUMNS + ") " +
+            "select " + COLUMNS + " from bookings where booking_id in (?1)", nativeQuery = true)
+    int copyToArchive(List<Long> bookingIds);
+
+    @Modifying
+    @Query(value = "delete from bookings where booking_id in (?1)", nativeQuery = true)
+    int deleteArchived(List<Long> bookingIds);
+
+    /**
+     * Одним запросом переводит ожидающее подтверждения бронирование в статус status, если
+     * ownerId - хозяин забронированной вещи. Возвращает 0, если бронирования нет, оно уже
+     * не ожидает подтверждения или пользователь не хозяин вещи.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "update bookings set status = ?3, version = version + 1 " +
+            "where booking_id = ?1 and status = 'WAITING' " +
+            "and item_id in (select item_id from items where user_id = ?2)", nativeQuery = true)
+    int updateWaitingStatus(Long bookingId, Long ownerId, String status);
 }
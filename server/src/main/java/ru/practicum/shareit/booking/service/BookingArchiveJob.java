@@ -0,0 +1,149 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс BookingArchiveJob раз в interval-ms переносит из оперативной таблицы bookings
+ * в холодную bookings_archive бронирования, закончившиеся раньше horizon-days дней назад
+ * (статусы APPROVED, CANCELED и PAST; ожидающие и отклонённые остаются на месте, чтобы
+ * выборки WAITING и REJECTED не обращались к архиву). Перенос идёт пачками по batch-size
+ * записей, каждая пачка - в отдельной транзакции; строки пачки блокируются, поэтому
+ * задания нескольких экземпляров сервера переносят разные пачки.
+ * Перенесённые бронирования убираются из модели чтения этого экземпляра сервера
+ * (см. BookingReadModel).
+ * При partitioned=true (PostgreSQL) архив секционирован по месяцам end_date, и перед
+ * переносом создаются недостающие секции.
+ */
+@Component
+@Slf4j
+public class BookingArchiveJob {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final BookingJpaRepository bookingJpaRepository;
+    private final BookingReadModel bookingReadModel;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final long horizonDays;
+    private final int batchSize;
+    private final long intervalMs;
+    private final boolean partitioned;
+    private ScheduledExecutorService scheduler;
+
+    public BookingArchiveJob(BookingJpaRepository bookingJpaRepository,
+                             BookingReadModel bookingReadModel,
+                             TransactionTemplate transactionTemplate,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${shareit.booking.archive.horizon-days:90}") long horizonDays,
+                             @Value("${shareit.booking.archive.batch-size:500}") int batchSize,
+                             @Value("${shareit.booking.archive.interval-ms:3600000}") long intervalMs,
+                             @Value("${shareit.booking.archive.partitioned:false}") boolean partitioned) {
+        this.bookingJpaRepository = bookingJpaRepository;
+        this.bookingReadModel = bookingReadModel;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.horizonDays = horizonDays;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.partitioned = partitioned;
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-archive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::run, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Переносит в архив все бронирования, закончившиеся до horizon.
+     *
+     * @param horizon (граница архивации)
+     *
+     * @return int (число перенесённых бронирований)
+     */
+    public int archive(LocalDateTime horizon) {
+        if (partitioned) {
+            createPartitions(horizon);
+        }
+        int archived = 0;
+        while (true) {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> archivableIds = bookingJpaRepository.findArchivableIds(horizon,
+                        PageRequest.of(0, batchSize));
+                if (!archivableIds.isEmpty()) {
+                    bookingJpaRepository.copyToArchive(archivableIds);
+                    bookingJpaRepository.deleteArchived(archivableIds);
+                }
+                return archivableIds;
+            });
+            int moved = ids != null ? ids.size() : 0;
+            if (moved > 0) {
+                bookingReadModel.onArchived(ids);
+            }
+            archived += moved;
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            log.info("В архив перенесено {} бронирований, закончившихся до {}", archived, horizon);
+        }
+        return archived;
+    }
+
+
+    private void run() {
+        try {
+            archive(LocalDateTime.now().minusDays(horizonDays));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось перенести бронирования в архив", e);
+        }
+    }
+
+
+    private void createPartitions(LocalDateTime horizon) {
+        LocalDateTime oldest = jdbcTemplate.queryForObject("select min(end_date) from bookings " +
+                "where end_date < ? and status in " + BookingJpaRepository.ARCHIVED_STATUSES, LocalDateTime.class, horizon);
+        if (oldest == null) {
+            return;
+        }
+        for (LocalDate month = oldest.toLocalDate().withDayOfMonth(1);
+             month.isBefore(horizon.toLocalDate().plusDays(1));
+             month = month.plusMonths(1)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS bookings_archive_" + month.format(PARTITION_SUFFIX) +
+                    " PARTITION OF bookings_archive FOR VALUES FROM ('" + month + "') TO ('" + month.plusMonths(1) + "')");
+        }
+    }
+}
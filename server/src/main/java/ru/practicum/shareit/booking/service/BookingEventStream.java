@@ -0,0 +1,435 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.mapper.BookingMapper;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.datasource.ReplicaRoutingDataSource;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.invalidation.InvalidationListener;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс BookingEventStream рассылает подписчикам (Server-Sent Events) изменения их
+ * бронирований: автору - подтверждение или отклонение, хозяину вещи - новое бронирование
+ * и изменение статуса, чтобы клиентам не приходилось опрашивать GET /bookings.
+ * У каждого соединения своя очередь на buffer-size событий; публикация только кладёт
+ * событие в очереди и не ждёт клиентов, отправку выполняют sender-threads потоков, по
+ * одному на соединение в каждый момент. Если очередь медленного клиента переполнена,
+ * новые события ему не кладутся, а перед следующим отправленным событием он получает
+ * событие resync и должен перечитать бронирования запросом GET /bookings.
+ * Отправка клиенту, чей сокет не принимает данные, блокирует поток. Если отправка
+ * длится дольше send-timeout-ms, подписчик отключается: новые события ему не кладутся,
+ * а пока зависшая отправка не завершится, в пуле работает дополнительный поток, чтобы
+ * остальные клиенты получали события.
+ * Каждые heartbeat-ms в соединение, где за это время ничего не отправлялось, пишется
+ * комментарий, чтобы промежуточные узлы не закрывали его как простаивающее, а обрыв
+ * соединения обнаруживался. Через timeout-ms соединение закрывается, и клиент
+ * переподключается.
+ * Изменения бронирований приходят по {@link InvalidationBus} (ключ "booking:id") от всех
+ * экземпляров сервера, поэтому подписчик получает события, на каком бы экземпляре ни
+ * было изменено бронирование. При потере сообщений шины подписчики получают resync.
+ */
+@Component
+@Slf4j
+public class BookingEventStream implements InvalidationListener {
+
+    private static final String BOOKING_EVENT = "booking";
+    private static final String RESYNC_EVENT = "resync";
+    private static final String BOOKING_KEY = "booking:";
+
+    private final UserJpaRepository userJpaRepository;
+    private final BookingJpaRepository bookingJpaRepository;
+    private final BookingMapper bookingMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int bufferSize;
+    private final long heartbeatMs;
+    private final long timeoutMs;
+    private final long sendTimeoutMs;
+    private final int senderThreads;
+    private final Map<Long, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter dropped;
+    private final Counter stalled;
+    private final ThreadPoolExecutor sender;
+    private int stalledSends;
+    private ScheduledExecutorService heartbeat;
+
+    public BookingEventStream(UserJpaRepository userJpaRepository,
+                              BookingJpaRepository bookingJpaRepository,
+                              BookingMapper bookingMapper,
+                              TransactionTemplate transactionTemplate,
+                              InvalidationBus invalidationBus,
+                              MeterRegistry meterRegistry,
+                              @Value("${shareit.booking.events.buffer-size:32}") int bufferSize,
+                              @Value("${shareit.booking.events.heartbeat-ms:15000}") long heartbeatMs,
+                              @Value("${shareit.booking.events.timeout-ms:600000}") long timeoutMs,
+                              @Value("${shareit.booking.events.send-timeout-ms:5000}") long sendTimeoutMs,
+                              @Value("${shareit.booking.events.sender-threads:2}") int senderThreads) {
+        this.userJpaRepository = userJpaRepository;
+        this.bookingJpaRepository = bookingJpaRepository;
+        this.bookingMapper = bookingMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.bufferSize = bufferSize;
+        this.heartbeatMs = heartbeatMs;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.senderThreads = senderThreads;
+        Gauge.builder("shareit.booking.events.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+        this.dropped = Counter.builder("shareit.booking.events.dropped")
+                .register(meterRegistry);
+        this.stalled = Counter.builder("shareit.booking.events.stalled")
+                .register(meterRegistry);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "booking-events-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        invalidationBus.subscribe(this);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (heartbeatMs > 0 || sendTimeoutMs > 0) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-events-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (heartbeatMs > 0) {
+            heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        }
+        if (sendTimeoutMs > 0) {
+            long period = Math.max(1, sendTimeoutMs / 2);
+            heartbeat.scheduleWithFixedDelay(this::dropStalled, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        sender.shutdownNow();
+        subscriptions.values().forEach(userSubscriptions -> userSubscriptions.forEach(Subscription::complete));
+    }
+
+
+    /**
+     * Открывает поток событий бронирований пользователя.
+     *
+     * @param userId (идентификатор подписывающегося пользователя)
+     *
+     * @return SseEmitter (поток событий, возвращаемый контроллером)
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (!userJpaRepository.existsById(userId)) {
+            log.debug("Объект типа User с id={} отсутствует в базе данных!", userId);
+            throw new NotFoundException("Пользователь не найден!");
+        }
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscription subscription = new Subscription(userId, emitter);
+        subscriptions.compute(userId, (id, userSubscriptions) -> {
+            Set<Subscription> result = userSubscriptions != null ? userSubscriptions : ConcurrentHashMap.newKeySet();
+            result.add(subscription);
+            return result;
+        });
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(e -> remove(subscription));
+        // Первый комментарий сразу отправляет клиенту заголовки ответа.
+        subscription.heartbeatDue = true;
+        subscription.schedule();
+        log.debug("Пользователь с id={} подписан на события бронирований", userId);
+        return emitter;
+    }
+
+
+    protected SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+
+    /**
+     * Передаёт подписчикам userId изменённое бронирование, не дожидаясь отправки.
+     */
+    public void publish(Long userId, BookingOutcomingDto booking) {
+        Set<Subscription> userSubscriptions = userId != null ? subscriptions.get(userId) : null;
+        if (userSubscriptions == null || booking == null) {
+            return;
+        }
+        Event event = new Event(sequence.incrementAndGet(), booking);
+        for (Subscription subscription : userSubscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+
+    /**
+     * Рассылает изменённое бронирование хозяину вещи, а если оно уже не ожидает
+     * подтверждения, - и его автору. Бронирование читается с основного сервера базы
+     * данных, только если у экземпляра есть подписчики.
+     */
+    @Override
+    public void onInvalidate(String key) {
+        if (!key.startsWith(BOOKING_KEY) || subscriptions.isEmpty()) {
+            return;
+        }
+        Long bookingId = Long.valueOf(key.substring(BOOKING_KEY.length()));
+        Booking booking;
+        try {
+            booking = ReplicaRoutingDataSource.onPrimary(() -> transactionTemplate.execute(status ->
+                    bookingJpaRepository.findById(bookingId).orElse(null)));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать бронирование с id={} для подписчиков: {}", bookingId, e.getMessage());
+            onMissed();
+            return;
+        }
+        if (booking == null || booking.getItem() == null || booking.getItem().getOwner() == null) {
+            return;
+        }
+        BookingOutcomingDto changed = bookingMapper.toBookingOutcomingDto(booking);
+        publish(booking.getItem().getOwner().getId(), changed);
+        if (booking.getBookingStatus() != BookingStatus.WAITING && booking.getBooker() != null) {
+            publish(booking.getBooker().getId(), changed);
+        }
+    }
+
+
+    /**
+     * Сообщения шины потеряны, поэтому каждый подписчик получает resync и перечитывает
+     * бронирования сам.
+     */
+    @Override
+    public void onMissed() {
+        for (Set<Subscription> userSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : userSubscriptions) {
+                subscription.droppedSinceResync.incrementAndGet();
+                subscription.schedule();
+            }
+        }
+    }
+
+
+    private void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        for (Set<Subscription> userSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : userSubscriptions) {
+                if (now - subscription.lastSentAt >= heartbeatMs / 2) {
+                    subscription.heartbeatDue = true;
+                    subscription.schedule();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод отключает подписчиков, отправка которым длится дольше
+     * send-timeout-ms, и добавляет в пул поток взамен каждого зависшего.
+     */
+    private void dropStalled() {
+        long now = System.currentTimeMillis();
+        for (Set<Subscription> userSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : userSubscriptions) {
+                if (subscription.stallIfSendingSince(now - sendTimeoutMs)) {
+                    log.debug("Отправка события пользователю с id={} зависла, подписчик отключён", subscription.userId);
+                    stalled.increment();
+                    remove(subscription);
+                }
+            }
+        }
+    }
+
+
+    private void resizeSender(int delta) {
+        synchronized (sender) {
+            stalledSends += delta;
+            int size = senderThreads + stalledSends;
+            if (size > sender.getMaximumPoolSize()) {
+                sender.setMaximumPoolSize(size);
+                sender.setCorePoolSize(size);
+            } else {
+                sender.setCorePoolSize(size);
+                sender.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+
+    private void remove(Subscription subscription) {
+        subscriptions.computeIfPresent(subscription.userId, (id, userSubscriptions) -> {
+            if (userSubscriptions.remove(subscription)) {
+                subscriberCount.decrementAndGet();
+            }
+            return userSubscriptions.isEmpty() ? null : userSubscriptions;
+        });
+    }
+
+
+    private static final class Event {
+        private final long id;
+        private final BookingOutcomingDto booking;
+
+        private Event(long id, BookingOutcomingDto booking) {
+            this.id = id;
+            this.booking = booking;
+        }
+    }
+
+
+    private final class Subscription {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Queue<Event> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicLong droppedSinceResync = new AtomicLong();
+        private volatile boolean stalled;
+        private volatile boolean heartbeatDue;
+        private volatile long lastSentAt = System.currentTimeMillis();
+        private long sendStartedAt;
+
+        private Subscription(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Отмечает подписчика зависшим, если текущая отправка начата не позже deadline, и
+         * добавляет поток в пул; поток убирается, когда зависшая отправка завершится.
+         */
+        private synchronized boolean stallIfSendingSince(long deadline) {
+            if (stalled || sendStartedAt == 0 || sendStartedAt > deadline) {
+                return false;
+            }
+            stalled = true;
+            resizeSender(1);
+            return true;
+        }
+
+        private void offer(Event event) {
+            if (!queue.offer(event)) {
+                droppedSinceResync.incrementAndGet();
+                dropped.increment();
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        /**
+         * Отправляет накопленные события; выполняется не более чем в одном потоке, чтобы
+         * события соединения уходили по порядку.
+         */
+        private void drain() {
+            try {
+                Event event;
+                while ((event = queue.poll()) != null) {
+                    sendResync();
+                    send(SseEmitter.event()
+                            .id(String.valueOf(event.id))
+                            .name(BOOKING_EVENT)
+                            .data(event.booking, MediaType.APPLICATION_JSON));
+                    heartbeatDue = false;
+                }
+                sendResync();
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Соединение потока событий пользователя с id={} закрыто", userId);
+                complete();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!stalled && (!queue.isEmpty() || droppedSinceResync.get() > 0 || heartbeatDue)) {
+                schedule();
+            }
+        }
+
+        private void sendResync() throws IOException {
+            long missed = droppedSinceResync.getAndSet(0);
+            if (missed > 0) {
+                send(SseEmitter.event().name(RESYNC_EVENT).data(missed));
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                if (stalled) {
+                    throw new IOException("Отправка событий подписчику зависла");
+                }
+                sendStartedAt = System.currentTimeMillis();
+            }
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    sendStartedAt = 0;
+                    if (stalled) {
+                        resizeSender(-1);
+                    }
+                }
+            }
+            if (stalled) {
+                throw new IOException("Отправка событий подписчику зависла");
+            }
+            lastSentAt = System.currentTimeMillis();
+        }
+
+        private void complete() {
+            remove(this);
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                log.debug("Поток событий пользователя с id={} уже закрыт", userId);
+            }
+        }
+    }
+}
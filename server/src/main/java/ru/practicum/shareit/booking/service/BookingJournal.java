@@ -0,0 +1,201 @@
+package ru.practicum.shareit.booking.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Класс BookingJournal - журнал изменений модели чтения бронирований на локальном диске.
+ * Состоит из снимка snapshot-N.bin (состояние модели целиком) и журнала journal-N.log
+ * (изменения после снимка), где N - номер поколения. Записи журнала дописываются в файл,
+ * отображённый в память: запись не требует системного вызова и переживает аварийное
+ * завершение процесса. Каждая запись - длина и содержимое; длина пишется последней,
+ * поэтому недописанная запись при чтении выглядит концом журнала.
+ * Новый снимок начинает новое поколение, файлы прежнего удаляются.
+ */
+class BookingJournal {
+
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final Path directory;
+    private final int mapSize;
+    private long generation = -1;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long mappedAt;
+    private long position;
+
+    BookingJournal(Path directory, int mapSize) throws IOException {
+        this.directory = directory;
+        this.mapSize = mapSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> SNAPSHOT.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToLong(matcher -> Long.parseLong(matcher.group(1)))
+                    .max()
+                    .ifPresent(latest -> generation = latest);
+        }
+    }
+
+
+    boolean hasSnapshot() {
+        return generation >= 0;
+    }
+
+
+    /**
+     * Передаёт consumer записи последнего снимка, а затем его журнала, и готовит журнал
+     * к дописыванию после последней целой записи.
+     *
+     * @param consumer (обработчик записи)
+     */
+    void replay(Consumer<byte[]> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(snapshotPath(generation))))) {
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                } catch (EOFException e) {
+                    break;
+                }
+                in.readFully(record);
+                consumer.accept(record);
+            }
+        }
+        open(generation);
+        while (buffer.capacity() - position >= Integer.BYTES) {
+            int length = buffer.getInt((int) position);
+            if (length <= 0 || buffer.capacity() - position - Integer.BYTES < length) {
+                break;
+            }
+            byte[] record = new byte[length];
+            buffer.position((int) position + Integer.BYTES);
+            buffer.get(record);
+            consumer.accept(record);
+            position += Integer.BYTES + length;
+        }
+    }
+
+
+    /**
+     * Дописывает запись в журнал текущего поколения. До первого снимка (или чтения
+     * журнала) записи не сохраняются: без снимка они бесполезны.
+     *
+     * @param record (запись)
+     */
+    void append(byte[] record) {
+        if (buffer == null) {
+            return;
+        }
+        int needed = Integer.BYTES + record.length + Integer.BYTES;
+        if (buffer.capacity() - (position - mappedAt) < needed) {
+            map(position, Math.max(mapSize, needed));
+        }
+        int offset = (int) (position - mappedAt);
+        buffer.position(offset + Integer.BYTES);
+        buffer.put(record);
+        buffer.putInt(offset + Integer.BYTES + record.length, 0);
+        buffer.putInt(offset, record.length);
+        position += Integer.BYTES + record.length;
+    }
+
+
+    /**
+     * Записывает снимок из records и начинает с ним новое поколение с пустым журналом.
+     *
+     * @param records (записи снимка)
+     */
+    void snapshot(Stream<byte[]> records) throws IOException {
+        long next = generation + 1;
+        Path temporary = directory.resolve("snapshot-" + next + ".tmp");
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(file)))) {
+            records.forEachOrdered(record -> {
+                try {
+                    out.writeInt(record.length);
+                    out.write(record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+            file.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.deleteIfExists(journalPath(next));
+        Files.move(temporary, snapshotPath(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        long previous = generation;
+        close();
+        open(next);
+        if (previous >= 0) {
+            Files.deleteIfExists(snapshotPath(previous));
+            Files.deleteIfExists(journalPath(previous));
+        }
+    }
+
+
+    void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+
+    void close() throws IOException {
+        force();
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+
+    private void open(long openedGeneration) throws IOException {
+        generation = openedGeneration;
+        channel = FileChannel.open(journalPath(openedGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        position = 0;
+        map(0, (int) Math.max(mapSize, channel.size()));
+    }
+
+
+    private void map(long at, int size) {
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, at, size);
+            mappedAt = at;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось отобразить журнал в память", e);
+        }
+    }
+
+
+    private Path snapshotPath(long snapshotGeneration) {
+        return directory.resolve("snapshot-" + snapshotGeneration + ".bin");
+    }
+
+
+    private Path journalPath(long journalGeneration) {
+        return directory.resolve("journal-" + journalGeneration + ".log");
+    }
+}
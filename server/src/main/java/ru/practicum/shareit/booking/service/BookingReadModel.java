@@ -0,0 +1,1138 @@
+package ru.practicum.shareit.booking.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.datasource.ReplicaRoutingDataSource;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.invalidation.InvalidationListener;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.mapper.UserMapper;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Класс BookingReadModel - модель чтения бронирований в памяти, включаемая свойством
+ * shareit.booking.read-model.enabled. Хранит бронирования оперативной таблицы bookings,
+ * проиндексированные по автору и по владельцу вещи: у каждого пользователя - массив
+ * бронирований, отсортированный по убыванию даты начала. Массив не изменяется, а
+ * заменяется новым, поэтому чтение идёт без блокировок; граница между будущими и
+ * остальными бронированиями находится двоичным поиском. Вещи и пользователи хранятся
+ * по одному ItemDto и UserDto на объект.
+ * Модель строится при запуске и обновляется по сообщениям {@link InvalidationBus}:
+ * ключ "booking:id" перечитывает бронирование, "item:id" - вещь вместе с отзывами,
+ * "user:id" - пользователя. Сообщения приходят и от других экземпляров сервера,
+ * а экземпляр, выполнивший запись, получает своё сообщение сразу после неё.
+ * Архивные бронирования в модель не входят, модель хранит лишь их число у каждого
+ * пользователя: выборки ALL и PAST пользователя, у которого они есть, идут в базу данных.
+ * Каждое verify-rate-е чтение из памяти сравнивается с ответом основного сервера базы
+ * данных. При расхождении модель сначала перечитывает затронутые бронирования; если
+ * расхождение остаётся, а также при потере сообщений шины модель перестраивается, и до
+ * окончания перестройки все чтения идут в базу данных.
+ * Если задан каталог journal.directory, изменения модели дописываются в локальный
+ * журнал ({@link BookingJournal}), а после каждых snapshot-every записей и каждой
+ * перестройки сохраняется снимок. Снимок начинается с контрольной точки с эпохой схемы -
+ * значением, которое заново создаётся в таблице schema_epoch при каждой инициализации
+ * схемы. При запуске модель восстанавливается из снимка и журнала, а затем сверяется
+ * с базой данных: по идентификаторам и версиям бронирований догружаются только
+ * бронирования, изменённые или созданные, пока экземпляр был остановлен (в том числе
+ * другими экземплярами), исчезнувшие удаляются, вещи, пользователи и число архивных
+ * бронирований перечитываются целиком. Если схема с тех пор пересоздавалась (при
+ * spring.sql.init.mode=always - при каждом запуске, и тогда база данных пуста), журнал
+ * не используется, и модель загружается из базы данных.
+ */
+@Component
+@Slf4j
+public class BookingReadModel implements InvalidationListener {
+
+    private static final String BOOKING_KEY = "booking:";
+    private static final String ITEM_KEY = "item:";
+    private static final String USER_KEY = "user:";
+    private static final Comparator<BookingRow> NEWEST_FIRST = Comparator
+            .comparing((BookingRow row) -> row.start)
+            .thenComparing(row -> row.id)
+            .reversed();
+    private static final BookingRow[] NO_ROWS = new BookingRow[0];
+    private static final int JOURNAL_MAP_SIZE = 4 * 1024 * 1024;
+    private static final int CATCH_UP_BATCH_SIZE = 1000;
+
+    private final BookingJpaRepository bookingJpaRepository;
+    private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    private final UserJpaRepository userJpaRepository;
+    private final ItemMapper itemMapper;
+    private final UserMapper userMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final InvalidationBus invalidationBus;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int verifyRate;
+    private final String journalDirectory;
+    private final int snapshotEvery;
+    private final long busTimeoutMs;
+    private final Object lock = new Object();
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final Counter memoryReads;
+    private final Counter databaseReads;
+    private final Counter mismatches;
+    private volatile State state = new State();
+    private volatile boolean ready;
+    private volatile boolean restoring;
+    private boolean rebuilding;
+    private BookingJournal journal;
+    private int journaled;
+    private ExecutorService rebuilder;
+
+    public BookingReadModel(BookingJpaRepository bookingJpaRepository,
+                            ItemPagingAndSortingRepository itemPagingAndSortingRepository,
+                            UserJpaRepository userJpaRepository,
+                            ItemMapper itemMapper,
+                            UserMapper userMapper,
+                            TransactionTemplate transactionTemplate,
+                            InvalidationBus invalidationBus,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${shareit.booking.read-model.enabled:false}") boolean enabled,
+                            @Value("${shareit.booking.read-model.verify-rate:100}") int verifyRate,
+                            @Value("${shareit.booking.read-model.journal.directory:}") String journalDirectory,
+                            @Value("${shareit.booking.read-model.journal.snapshot-every:10000}") int snapshotEvery,
+                            @Value("${shareit.booking.read-model.journal.bus-timeout-ms:5000}") long busTimeoutMs) {
+        this.bookingJpaRepository = bookingJpaRepository;
+        this.itemPagingAndSortingRepository = itemPagingAndSortingRepository;
+        this.userJpaRepository = userJpaRepository;
+        this.itemMapper = itemMapper;
+        this.userMapper = userMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.invalidationBus = invalidationBus;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.verifyRate = verifyRate;
+        this.journalDirectory = journalDirectory;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.busTimeoutMs = busTimeoutMs;
+        this.memoryReads = Counter.builder("shareit.booking.read-model.reads")
+                .tag("source", "memory")
+                .register(meterRegistry);
+        this.databaseReads = Counter.builder("shareit.booking.read-model.reads")
+                .tag("source", "database")
+                .register(meterRegistry);
+        this.mismatches = Counter.builder("shareit.booking.read-model.mismatches")
+                .register(meterRegistry);
+        Gauge.builder("shareit.booking.read-model.size", this, model -> model.state.bookings.size())
+                .register(meterRegistry);
+        invalidationBus.subscribe(this);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-read-model");
+                thread.setDaemon(true);
+                return thread;
+            });
+            journal = openJournal();
+            if (journal != null && journal.hasSnapshot()) {
+                synchronized (lock) {
+                    rebuilding = true;
+                    restoring = true;
+                }
+                rebuilder.execute(this::restore);
+            } else {
+                scheduleRebuild();
+            }
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder == null) {
+            return;
+        }
+        rebuilder.shutdown();
+        synchronized (lock) {
+            closeJournal();
+        }
+        rebuilder.shutdownNow();
+    }
+
+
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * Выполняет чтение из памяти, а если модель не может на него ответить (вернула null),
+     * или подошла очередь проверки согласованности, - из базы данных.
+     * Проверка читает основной сервер, а не реплику: модель загружается и обновляется
+     * с основного сервера, и отставание реплики выглядело бы расхождением. При проверке
+     * возвращается ответ базы данных; списки сравниваются без учёта порядка бронирований
+     * с одинаковой датой начала. При расхождении бронирования обоих ответов и их вещи
+     * перечитываются (сообщение шины о них могло ещё не дойти), и модель перестраивается,
+     * только если и после этого её ответ расходится с базой данных.
+     *
+     * @param fromMemory (чтение из модели)
+     * @param fromDatabase (чтение из базы данных)
+     *
+     * @return T
+     */
+    public <T> T read(Supplier<T> fromMemory, Supplier<T> fromDatabase) {
+        long readVersion = version.get();
+        T memoryResult = fromMemory.get();
+        if (memoryResult == null) {
+            databaseReads.increment();
+            return fromDatabase.get();
+        }
+        memoryReads.increment();
+        if (verifyRate <= 0 || reads.incrementAndGet() % verifyRate != 0) {
+            return memoryResult;
+        }
+        T databaseResult = ReplicaRoutingDataSource.onPrimary(fromDatabase);
+        if (!Objects.equals(comparable(memoryResult), comparable(databaseResult)) && version.get() == readVersion) {
+            if (refresh(memoryResult, databaseResult)) {
+                T refreshedResult = fromMemory.get();
+                if (refreshedResult == null || Objects.equals(comparable(refreshedResult), comparable(databaseResult))) {
+                    log.debug("Модель чтения бронирований обновлена после расхождения с базой данных");
+                    return databaseResult;
+                }
+            }
+            mismatches.increment();
+            log.warn("Модель чтения бронирований расходится с базой данных и будет перестроена");
+            scheduleRebuild();
+        }
+        return databaseResult;
+    }
+
+
+    /**
+     * Возвращает страницу бронирований автора в состоянии state или null, если ответ
+     * нужно получить из базы данных.
+     *
+     * @param bookerId (идентификатор автора бронирований)
+     * @param state (состояние бронирований)
+     * @param from (индекс первого элемента)
+     * @param size (размер страницы)
+     * @param now (текущий момент времени)
+     *
+     * @return List<BookingOutcomingDto>
+     */
+    public List<BookingOutcomingDto> getBookerBookings(Long bookerId, String state, Integer from, Integer size,
+                                                       LocalDateTime now) {
+        State current = ready ? this.state : null;
+        if (current == null || !current.users.containsKey(bookerId)) {
+            return null;
+        }
+        BookingRow[] rows = current.byBooker.getOrDefault(bookerId, NO_ROWS);
+        long archived = current.archivedByBooker.getOrDefault(bookerId, 0L);
+        Predicate<BookingRow> currentFilter = row -> row.start.isBefore(now) && row.end.isAfter(now);
+        return page(current, rows, archived, state, currentFilter, from, size, now);
+    }
+
+
+    /**
+     * Возвращает страницу бронирований вещей владельца в состоянии state или null, если
+     * ответ нужно получить из базы данных.
+     *
+     * @param ownerId (идентификатор владельца вещей)
+     * @param state (состояние бронирований)
+     * @param from (индекс первого элемента)
+     * @param size (размер страницы)
+     * @param now (текущий момент времени)
+     *
+     * @return List<BookingOutcomingDto>
+     */
+    public List<BookingOutcomingDto> getOwnerBookings(Long ownerId, String state, Integer from, Integer size,
+                                                      LocalDateTime now) {
+        State current = ready ? this.state : null;
+        if (current == null || !current.users.containsKey(ownerId)) {
+            return null;
+        }
+        BookingRow[] rows = current.byOwner.getOrDefault(ownerId, NO_ROWS);
+        long archived = current.archivedByOwner.getOrDefault(ownerId, 0L);
+        Predicate<BookingRow> currentFilter = row -> !row.start.isAfter(now) && !row.end.isBefore(now);
+        return page(current, rows, archived, state, currentFilter, from, size, now);
+    }
+
+
+    /**
+     * Возвращает бронирование с идентификатором bookingId или null, если его нет в модели.
+     * Выбрасывает исключение, если пользователь не является ни автором бронирования,
+     * ни владельцем вещи.
+     *
+     * @param bookingId (идентификатор бронирования)
+     * @param userId (идентификатор пользователя)
+     *
+     * @return BookingOutcomingDto
+     */
+    public BookingOutcomingDto getBooking(Long bookingId, Long userId) {
+        State current = ready ? this.state : null;
+        BookingRow row = current != null ? current.bookings.get(bookingId) : null;
+        if (row == null) {
+            return null;
+        }
+        if (!row.ownerId.equals(userId) && !row.bookerId.equals(userId)) {
+            log.debug("Пользователь с id={} не может получить информацию о бронировании, " +
+                    "поскольку не является хозяином вещи или автором бронирования", userId);
+            throw new NotFoundException("Данный пользователь не может получить информацию о бронировании!");
+        }
+        return toDto(current, row);
+    }
+
+
+    /**
+     * Убирает из модели бронирования, перенесённые в архив этим экземпляром сервера.
+     *
+     * @param bookingIds (идентификаторы бронирований)
+     */
+    public void onArchived(Collection<Long> bookingIds) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            if (rebuilding) {
+                bookingIds.forEach(id -> pending.add(BOOKING_KEY + id));
+                return;
+            }
+            bookingIds.forEach(id -> remove(state, id, true));
+            version.incrementAndGet();
+        }
+    }
+
+
+    @Override
+    public void onInvalidate(String key) {
+        if (!enabled || !(key.startsWith(BOOKING_KEY) || key.startsWith(ITEM_KEY) || key.startsWith(USER_KEY))) {
+            return;
+        }
+        synchronized (lock) {
+            if (rebuilding) {
+                pending.add(key);
+                return;
+            }
+            try {
+                apply(state, key);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить модель чтения бронирований по ключу {}: {}", key, e.getMessage());
+                scheduleRebuild();
+            }
+        }
+    }
+
+
+    @Override
+    public void onMissed() {
+        // до подключения шины потери покрывает сверка с базой данных при восстановлении из журнала
+        if (enabled && !(restoring && !invalidationBus.isAvailable())) {
+            scheduleRebuild();
+        }
+    }
+
+
+    /**
+     * Загружает модель из базы данных заново. Изменения, пришедшие во время загрузки,
+     * применяются к новой модели перед тем, как она начнёт отвечать на чтения.
+     */
+    public synchronized void rebuild() {
+        synchronized (lock) {
+            rebuilding = true;
+            ready = false;
+            pending.clear();
+        }
+        State loaded;
+        try {
+            loaded = transactionTemplate.execute(status -> load());
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                rebuilding = false;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            install(loaded);
+            writeSnapshot();
+        }
+        log.info("Модель чтения бронирований построена: {} бронирований", loaded.bookings.size());
+    }
+
+
+    /**
+     * Закрытый служебный метод восстанавливает модель из снимка и журнала и сверяет её
+     * с базой данных, а если журнал записан для другой эпохи схемы или шина недоступна,
+     * загружает модель из базы данных.
+     */
+    private void restore() {
+        State restored = new State();
+        boolean confirmed = false;
+        try {
+            journal.replay(record -> {
+                JournalEntry entry = decode(record);
+                if (JournalEntry.CHECKPOINT.equals(entry.getType())) {
+                    restored.epoch = entry.getEpoch();
+                }
+                replay(restored, entry);
+            });
+            confirmed = restored.epoch != null && restored.epoch.equals(bookingJpaRepository.findSchemaEpoch())
+                    && awaitBus();
+            if (confirmed) {
+                Integer reloaded = transactionTemplate.execute(status -> catchUp(restored));
+                log.info("Модель чтения бронирований сверена с базой данных: догружено {} бронирований", reloaded);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось восстановить модель чтения бронирований из журнала: {}", e.getMessage());
+            confirmed = false;
+        }
+        restoring = false;
+        if (!confirmed) {
+            log.info("Журнал модели чтения бронирований не подтверждён, модель будет загружена из базы данных");
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Не удалось построить модель чтения бронирований", e);
+            }
+            return;
+        }
+        synchronized (lock) {
+            install(restored);
+            writeSnapshot();
+        }
+        log.info("Модель чтения бронирований восстановлена из журнала: {} бронирований", restored.bookings.size());
+    }
+
+
+    /**
+     * Закрытый служебный метод приводит восстановленную из журнала модель к состоянию базы
+     * данных. Бронирования сверяются по версиям, и из базы данных читаются только новые
+     * и изменённые; вещи, пользователи и число архивных бронирований перечитываются.
+     * Изменения, пришедшие по шине во время сверки, применяются потом в install.
+     *
+     * @param target (восстановленная модель)
+     *
+     * @return int (число догруженных бронирований)
+     */
+    private int catchUp(State target) {
+        Map<Long, Long> versions = new HashMap<>();
+        for (Object[] row : bookingJpaRepository.findAllVersions()) {
+            versions.put(((Number) row[0]).longValue(), row[1] != null ? ((Number) row[1]).longValue() : null);
+        }
+        target.bookings.keySet().retainAll(versions.keySet());
+        List<Long> stale = new ArrayList<>();
+        versions.forEach((id, rowVersion) -> {
+            BookingRow row = target.bookings.get(id);
+            if (row == null || !Objects.equals(row.version, rowVersion)) {
+                stale.add(id);
+            }
+        });
+        for (int from = 0; from < stale.size(); from += CATCH_UP_BATCH_SIZE) {
+            List<Long> batch = stale.subList(from, Math.min(stale.size(), from + CATCH_UP_BATCH_SIZE));
+            for (Booking booking : bookingJpaRepository.findAllWithItemAndBookerByIdIn(batch)) {
+                target.bookings.put(booking.getId(), snapshot(target, booking));
+            }
+        }
+        Map<Long, ItemDto> items = new HashMap<>();
+        itemPagingAndSortingRepository.findAllById(new ArrayList<>(target.items.keySet()))
+                .forEach(item -> items.put(item.getId(), itemMapper.toItemDto(item)));
+        target.items.clear();
+        target.items.putAll(items);
+        Map<Long, UserDto> users = new HashMap<>();
+        userJpaRepository.findAllById(new ArrayList<>(target.users.keySet()))
+                .forEach(user -> users.put(user.getId(), userMapper.toUserDto(user)));
+        target.users.clear();
+        target.users.putAll(users);
+        target.archivedByBooker.clear();
+        for (Object[] row : bookingJpaRepository.countArchivedByBooker()) {
+            target.archivedByBooker.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        target.archivedByOwner.clear();
+        for (Object[] row : bookingJpaRepository.countArchivedByOwner()) {
+            target.archivedByOwner.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        index(target);
+        return stale.size();
+    }
+
+
+    /**
+     * Закрытый служебный метод делает state текущим состоянием модели, применив к нему
+     * изменения, пришедшие во время загрузки. Вызывается под блокировкой lock.
+     *
+     * @param loaded (новое состояние)
+     */
+    private void install(State loaded) {
+        rebuilding = false;
+        state = loaded;
+        List<String> keys = new ArrayList<>(pending);
+        pending.clear();
+        if (!keys.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> keys.forEach(key -> apply(loaded, key)));
+        }
+        version.incrementAndGet();
+        ready = true;
+    }
+
+
+    private boolean awaitBus() {
+        long deadline = System.currentTimeMillis() + busTimeoutMs;
+        while (!invalidationBus.isAvailable()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Закрытый служебный метод перечитывает из базы данных бронирования, входящие
+     * в ответы results, и их вещи. Возвращает false, если модель перестраивается или
+     * обновить её не удалось.
+     *
+     * @param results (ответы модели и базы данных)
+     *
+     * @return boolean
+     */
+    private boolean refresh(Object... results) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Object result : results) {
+            Collection<?> values = result instanceof Collection ? (Collection<?>) result
+                    : Collections.singletonList(result);
+            for (Object value : values) {
+                if (value instanceof BookingOutcomingDto) {
+                    BookingOutcomingDto booking = (BookingOutcomingDto) value;
+                    keys.add(BOOKING_KEY + booking.getId());
+                    if (booking.getItem() != null) {
+                        keys.add(ITEM_KEY + booking.getItem().getId());
+                    }
+                }
+            }
+        }
+        synchronized (lock) {
+            if (rebuilding) {
+                return false;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> keys.forEach(key -> apply(state, key)));
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить модель чтения бронирований: {}", e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void scheduleRebuild() {
+        ready = false;
+        if (rebuilder != null && rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                rebuildScheduled.set(false);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось построить модель чтения бронирований", e);
+                }
+            });
+        }
+    }
+
+
+    private State load() {
+        State loaded = new State();
+        loaded.epoch = bookingJpaRepository.findSchemaEpoch();
+        for (Booking booking : bookingJpaRepository.findAllWithItemAndBooker()) {
+            BookingRow row = snapshot(loaded, booking);
+            loaded.bookings.put(row.id, row);
+        }
+        index(loaded);
+        for (Object[] row : bookingJpaRepository.countArchivedByBooker()) {
+            loaded.archivedByBooker.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        for (Object[] row : bookingJpaRepository.countArchivedByOwner()) {
+            loaded.archivedByOwner.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        return loaded;
+    }
+
+
+    private void index(State target) {
+        Map<Long, List<BookingRow>> byBooker = new HashMap<>();
+        Map<Long, List<BookingRow>> byOwner = new HashMap<>();
+        for (BookingRow row : target.bookings.values()) {
+            byBooker.computeIfAbsent(row.bookerId, id -> new ArrayList<>()).add(row);
+            byOwner.computeIfAbsent(row.ownerId, id -> new ArrayList<>()).add(row);
+        }
+        byBooker.forEach((id, rows) -> target.byBooker.put(id, sorted(rows)));
+        byOwner.forEach((id, rows) -> target.byOwner.put(id, sorted(rows)));
+    }
+
+
+    /**
+     * Закрытый служебный метод перечитывает из базы данных объект, изменение которого
+     * описывает ключ. Вызывается под блокировкой lock.
+     *
+     * @param target (модель)
+     * @param key (ключ изменения)
+     */
+    private void apply(State target, String key) {
+        int separator = key.indexOf(':');
+        Long id = Long.valueOf(key.substring(separator + 1));
+        switch (key.substring(0, separator + 1)) {
+            case BOOKING_KEY: {
+                Optional<Booking> booking = transactionTemplate.execute(status -> bookingJpaRepository.findById(id)
+                        .map(found -> {
+                            put(target, snapshot(target, found));
+                            return found;
+                        }));
+                if (booking == null || booking.isEmpty()) {
+                    remove(target, id, true);
+                }
+                break;
+            }
+            case ITEM_KEY: {
+                if (target.items.containsKey(id)) {
+                    transactionTemplate.executeWithoutResult(status -> itemPagingAndSortingRepository.findById(id)
+                            .ifPresent(item -> refreshItem(target, item)));
+                }
+                break;
+            }
+            default: {
+                if (target.users.containsKey(id)) {
+                    Optional<User> user = userJpaRepository.findById(id);
+                    if (user.isPresent()) {
+                        putUser(target, userMapper.toUserDto(user.get()));
+                    } else if (target.users.remove(id) != null) {
+                        record(target, () -> JournalEntry.userRemoved(id));
+                    }
+                }
+            }
+        }
+        version.incrementAndGet();
+    }
+
+
+    private void refreshItem(State target, Item item) {
+        ItemDto previous = putItem(target, itemMapper.toItemDto(item));
+        if (previous != null && !Objects.equals(previous.getOwner(), item.getOwner().getId())) {
+            scheduleRebuild();
+        }
+    }
+
+
+    private BookingRow snapshot(State target, Booking booking) {
+        Item item = booking.getItem();
+        User owner = item.getOwner();
+        User booker = booking.getBooker();
+        if (!target.items.containsKey(item.getId())) {
+            putItem(target, itemMapper.toItemDto(item));
+        }
+        if (!target.users.containsKey(owner.getId())) {
+            putUser(target, userMapper.toUserDto(owner));
+        }
+        if (!target.users.containsKey(booker.getId())) {
+            putUser(target, userMapper.toUserDto(booker));
+        }
+        return new BookingRow(booking.getId(), booking.getStart(), booking.getEnd(), item.getId(),
+                booker.getId(), owner.getId(), booking.getBookingStatus(), booking.getVersion());
+    }
+
+
+    private void put(State target, BookingRow row) {
+        BookingRow previous = target.bookings.put(row.id, row);
+        if (previous != null) {
+            target.byBooker.computeIfPresent(previous.bookerId, (id, rows) -> without(rows, previous.id));
+            target.byOwner.computeIfPresent(previous.ownerId, (id, rows) -> without(rows, previous.id));
+        }
+        target.byBooker.merge(row.bookerId, new BookingRow[]{row}, (rows, added) -> with(rows, row));
+        target.byOwner.merge(row.ownerId, new BookingRow[]{row}, (rows, added) -> with(rows, row));
+        record(target, () -> JournalEntry.booking(row));
+    }
+
+
+    private ItemDto putItem(State target, ItemDto item) {
+        ItemDto previous = target.items.put(item.getId(), item);
+        record(target, () -> JournalEntry.item(item));
+        return previous;
+    }
+
+
+    private void putUser(State target, UserDto user) {
+        target.users.put(user.getId(), user);
+        record(target, () -> JournalEntry.user(user));
+    }
+
+
+    private void remove(State target, Long id, boolean archived) {
+        BookingRow row = target.bookings.remove(id);
+        if (row == null) {
+            return;
+        }
+        target.byBooker.computeIfPresent(row.bookerId, (userId, rows) -> without(rows, id));
+        target.byOwner.computeIfPresent(row.ownerId, (userId, rows) -> without(rows, id));
+        if (archived) {
+            target.archivedByBooker.merge(row.bookerId, 1L, Long::sum);
+            target.archivedByOwner.merge(row.ownerId, 1L, Long::sum);
+        }
+        record(target, () -> JournalEntry.removed(id, archived));
+    }
+
+
+    private BookingJournal openJournal() {
+        if (journalDirectory.isBlank()) {
+            return null;
+        }
+        try {
+            return new BookingJournal(Path.of(journalDirectory), JOURNAL_MAP_SIZE);
+        } catch (IOException e) {
+            log.warn("Не удалось открыть журнал модели чтения бронирований в {}: {}", journalDirectory, e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод дописывает изменение текущего состояния модели в журнал.
+     * Вызывается под блокировкой lock. Ошибка записи отключает журнал до перезапуска.
+     *
+     * @param target (изменённое состояние)
+     * @param entry (запись журнала)
+     */
+    private void record(State target, Supplier<JournalEntry> entry) {
+        if (journal == null || target != state) {
+            return;
+        }
+        try {
+            journal.append(encode(entry.get()));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать изменение в журнал модели чтения бронирований: {}", e.getMessage());
+            closeJournal();
+            return;
+        }
+        if (++journaled >= snapshotEvery && !rebuilder.isShutdown()) {
+            journaled = 0;
+            rebuilder.execute(() -> {
+                synchronized (lock) {
+                    if (ready && !rebuilding) {
+                        writeSnapshot();
+                    }
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод сохраняет снимок текущего состояния модели.
+     * Вызывается под блокировкой lock.
+     */
+    private void writeSnapshot() {
+        if (journal == null) {
+            return;
+        }
+        State current = state;
+        try {
+            journal.snapshot(Stream.of(
+                    Stream.of(JournalEntry.checkpoint(current.epoch)),
+                    current.users.values().stream().map(JournalEntry::user),
+                    current.items.values().stream().map(JournalEntry::item),
+                    current.bookings.values().stream().map(JournalEntry::booking),
+                    current.archivedByBooker.entrySet().stream()
+                            .map(entry -> JournalEntry.archivedCount(JournalEntry.BOOKER_ARCHIVE, entry)),
+                    current.archivedByOwner.entrySet().stream()
+                            .map(entry -> JournalEntry.archivedCount(JournalEntry.OWNER_ARCHIVE, entry)))
+                    .flatMap(entries -> entries)
+                    .map(this::encode));
+            journaled = 0;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось сохранить снимок модели чтения бронирований: {}", e.getMessage());
+            closeJournal();
+        }
+    }
+
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть журнал модели чтения бронирований: {}", e.getMessage());
+        }
+        journal = null;
+    }
+
+
+    private void replay(State target, JournalEntry entry) {
+        switch (entry.getType()) {
+            case JournalEntry.BOOKING: {
+                target.bookings.put(entry.getId(), new BookingRow(entry.getId(), entry.getStart(), entry.getEnd(),
+                        entry.getItemId(), entry.getBookerId(), entry.getOwnerId(), entry.getStatus(),
+                        entry.getVersion()));
+                break;
+            }
+            case JournalEntry.REMOVED: {
+                BookingRow row = target.bookings.remove(entry.getId());
+                if (row != null && Boolean.TRUE.equals(entry.getArchived())) {
+                    target.archivedByBooker.merge(row.bookerId, 1L, Long::sum);
+                    target.archivedByOwner.merge(row.ownerId, 1L, Long::sum);
+                }
+                break;
+            }
+            case JournalEntry.BOOKER_ARCHIVE: {
+                target.archivedByBooker.put(entry.getId(), entry.getCount());
+                break;
+            }
+            case JournalEntry.OWNER_ARCHIVE: {
+                target.archivedByOwner.put(entry.getId(), entry.getCount());
+                break;
+            }
+            case JournalEntry.ITEM: {
+                target.items.put(entry.getId(), new ItemDto(entry.getId(), entry.getName(), entry.getDescription(),
+                        entry.getAvailable(), entry.getOwnerId(), entry.getRequestId(), entry.getComments()));
+                break;
+            }
+            case JournalEntry.USER: {
+                target.users.put(entry.getId(), new UserDto(entry.getId(), entry.getName(), entry.getEmail()));
+                break;
+            }
+            case JournalEntry.USER_REMOVED: {
+                target.users.remove(entry.getId());
+                break;
+            }
+            default:
+        }
+    }
+
+
+    private byte[] encode(JournalEntry entry) {
+        try {
+            return objectMapper.writeValueAsBytes(entry);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private JournalEntry decode(byte[] record) {
+        try {
+            return objectMapper.readValue(record, JournalEntry.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод выбирает страницу бронирований из массива rows тем же
+     * способом, что и запросы к базе данных в BookingServiceImpl: номер страницы - from / size,
+     * если всего бронирований больше from, иначе первая.
+     */
+    private List<BookingOutcomingDto> page(State current, BookingRow[] rows, long archived, String state,
+                                           Predicate<BookingRow> currentFilter,
+                                           Integer from, Integer size, LocalDateTime now) {
+        int future = futureCount(rows, now);
+        int first = 0;
+        int last = rows.length;
+        Predicate<BookingRow> filter;
+        switch (state) {
+            case "ALL": {
+                if (archived > 0) {
+                    return null;
+                }
+                filter = row -> true;
+                break;
+            }
+            case "CURRENT": {
+                first = future;
+                filter = currentFilter;
+                break;
+            }
+            case "PAST": {
+                if (archived > 0) {
+                    return null;
+                }
+                first = future;
+                filter = row -> row.end.isBefore(now) && row.status != BookingStatus.REJECTED;
+                break;
+            }
+            case "FUTURE": {
+                last = future;
+                filter = row -> true;
+                break;
+            }
+            case "WAITING": {
+                filter = row -> row.status == BookingStatus.WAITING;
+                break;
+            }
+            case "REJECTED": {
+                filter = row -> row.status == BookingStatus.REJECTED;
+                break;
+            }
+            default: return null;
+        }
+        long amount = rows.length + archived;
+        long skip = (long) (amount > from ? from / size : 0) * size;
+        List<BookingOutcomingDto> page = new ArrayList<>(Math.min(size, rows.length));
+        for (int i = first; i < last && page.size() < size; i++) {
+            if (filter.test(rows[i]) && skip-- <= 0) {
+                page.add(toDto(current, rows[i]));
+            }
+        }
+        return page;
+    }
+
+
+    /**
+     * Закрытый служебный метод двоичным поиском находит число бронирований, начинающихся
+     * позже now (они стоят в начале массива).
+     */
+    private static int futureCount(BookingRow[] rows, LocalDateTime now) {
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rows[middle].start.isAfter(now)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    private static BookingOutcomingDto toDto(State current, BookingRow row) {
+        return new BookingOutcomingDto(row.id, row.start, row.end, current.items.get(row.itemId),
+                current.users.get(row.bookerId), row.status != null ? row.status.getDescription() : null);
+    }
+
+
+    private static BookingRow[] sorted(List<BookingRow> rows) {
+        BookingRow[] array = rows.toArray(NO_ROWS);
+        Arrays.sort(array, NEWEST_FIRST);
+        return array;
+    }
+
+
+    private static BookingRow[] with(BookingRow[] rows, BookingRow row) {
+        int position = Arrays.binarySearch(rows, row, NEWEST_FIRST);
+        int insertion = position >= 0 ? position : -position - 1;
+        BookingRow[] result = new BookingRow[rows.length + 1];
+        System.arraycopy(rows, 0, result, 0, insertion);
+        result[insertion] = row;
+        System.arraycopy(rows, insertion, result, insertion + 1, rows.length - insertion);
+        return result;
+    }
+
+
+    private static BookingRow[] without(BookingRow[] rows, Long id) {
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i].id.equals(id)) {
+                if (rows.length == 1) {
+                    return null;
+                }
+                BookingRow[] result = new BookingRow[rows.length - 1];
+                System.arraycopy(rows, 0, result, 0, i);
+                System.arraycopy(rows, i + 1, result, i, rows.length - i - 1);
+                return result;
+            }
+        }
+        return rows;
+    }
+
+
+    private static Object comparable(Object result) {
+        return result instanceof List ? new HashSet<>((List<?>) result) : result;
+    }
+
+
+    /**
+     * Состояние модели. Заменяется целиком при перестройке; между перестройками
+     * изменяется только под блокировкой lock.
+     */
+    private static final class State {
+        private final Map<Long, BookingRow> bookings = new ConcurrentHashMap<>();
+        private final Map<Long, BookingRow[]> byBooker = new ConcurrentHashMap<>();
+        private final Map<Long, BookingRow[]> byOwner = new ConcurrentHashMap<>();
+        private final Map<Long, Long> archivedByBooker = new ConcurrentHashMap<>();
+        private final Map<Long, Long> archivedByOwner = new ConcurrentHashMap<>();
+        private final Map<Long, ItemDto> items = new ConcurrentHashMap<>();
+        private final Map<Long, UserDto> users = new ConcurrentHashMap<>();
+        private String epoch;
+    }
+
+
+    /**
+     * Запись журнала и снимка модели: бронирование, его удаление, вещь, пользователь,
+     * число архивных бронирований или контрольная точка.
+     */
+    @Data
+    @NoArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static final class JournalEntry {
+        static final String BOOKING = "BOOKING";
+        static final String REMOVED = "REMOVED";
+        static final String BOOKER_ARCHIVE = "BOOKER_ARCHIVE";
+        static final String OWNER_ARCHIVE = "OWNER_ARCHIVE";
+        static final String ITEM = "ITEM";
+        static final String USER = "USER";
+        static final String USER_REMOVED = "USER_REMOVED";
+        static final String CHECKPOINT = "CHECKPOINT";
+
+        private String type;
+        private Long id;
+        private LocalDateTime start;
+        private LocalDateTime end;
+        private Long itemId;
+        private Long bookerId;
+        private Long ownerId;
+        private BookingStatus status;
+        private Long version;
+        private Boolean archived;
+        private Long count;
+        private String name;
+        private String description;
+        private String email;
+        private Boolean available;
+        private Long requestId;
+        private List<String> comments;
+        private String epoch;
+
+        private JournalEntry(String type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        private static JournalEntry booking(BookingRow row) {
+            JournalEntry entry = new JournalEntry(BOOKING, row.id);
+            entry.start = row.start;
+            entry.end = row.end;
+            entry.itemId = row.itemId;
+            entry.bookerId = row.bookerId;
+            entry.ownerId = row.ownerId;
+            entry.status = row.status;
+            entry.version = row.version;
+            return entry;
+        }
+
+        private static JournalEntry removed(Long id, boolean archived) {
+            JournalEntry entry = new JournalEntry(REMOVED, id);
+            entry.archived = archived;
+            return entry;
+        }
+
+        private static JournalEntry archivedCount(String type, Map.Entry<Long, Long> count) {
+            JournalEntry entry = new JournalEntry(type, count.getKey());
+            entry.count = count.getValue();
+            return entry;
+        }
+
+        private static JournalEntry item(ItemDto item) {
+            JournalEntry entry = new JournalEntry(ITEM, item.getId());
+            entry.name = item.getName();
+            entry.description = item.getDescription();
+            entry.available = item.getAvailable();
+            entry.ownerId = item.getOwner();
+            entry.requestId = item.getRequestId();
+            entry.comments = item.getComments();
+            return entry;
+        }
+
+        private static JournalEntry user(UserDto user) {
+            JournalEntry entry = new JournalEntry(USER, user.getId());
+            entry.name = user.getName();
+            entry.email = user.getEmail();
+            return entry;
+        }
+
+        private static JournalEntry userRemoved(Long id) {
+            return new JournalEntry(USER_REMOVED, id);
+        }
+
+        private static JournalEntry checkpoint(String epoch) {
+            JournalEntry entry = new JournalEntry(CHECKPOINT, null);
+            entry.epoch = epoch;
+            return entry;
+        }
+    }
+
+
+    private static final class BookingRow {
+        private final Long id;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Long itemId;
+        private final Long bookerId;
+        private final Long ownerId;
+        private final BookingStatus status;
+        private final Long version;
+
+        private BookingRow(Long id, LocalDateTime start, LocalDateTime end, Long itemId,
+                           Long bookerId, Long ownerId, BookingStatus status, Long version) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.itemId = itemId;
+            this.bookerId = bookerId;
+            this.ownerId = ownerId;
+            this.status = status;
+            this.version = version;
+        }
+    }
+}
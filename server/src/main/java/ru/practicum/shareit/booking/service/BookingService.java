@@ -2,6 +2,7 @@ package ru.practicum.shareit.booking.service;
 
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 
 import java.util.List;
 
@@ -22,7 +23,8 @@ public interface BookingService {
     /**
      * Метод обновляет объект бронирования в списке в случае,
      * если он в нём присутствует. Иначе выбрасывает исключение
-     * с сообщением об ошибке.
+     * с сообщением об ошибке. Подтвердить или отклонить можно
+     * только бронирование, ожидающее подтверждения.
      * В случае успеха возвращает обновлённый объект.
      *
      * @param userId (идентификатор пользователя)
@@ -57,4 +59,13 @@ public interface BookingService {
      */
     List<BookingOutcomingDto> getUserStuffBookings(Long userId, String state, Integer from, Integer size);
 
+
+    /**
+     * Метод возвращает сводку по бронированиям вещей пользователя во всех состояниях:
+     * число бронирований и не более limit последних бронирований в каждом.
+     *
+     * @return
+     */
+    List<BookingSummaryDto> getUserStuffBookingsSummary(Long userId, Integer limit);
+
 }
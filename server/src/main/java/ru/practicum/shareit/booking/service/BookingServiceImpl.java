@@ -1,29 +1,43 @@
 package ru.practicum.shareit.booking.service;
 
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.mapper.BookingMapper;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.datasource.ReplicaRoutingDataSource;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.exception.UnsupportedOperationException;
+import ru.practicum.shareit.groupcommit.GroupCommitExecutor;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
+import ru.practicum.shareit.invalidation.InvalidationBus;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxService;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Класс BookingServiceImpl предоставляет функциональность по
@@ -36,46 +50,159 @@ import java.util.Optional;
 @Slf4j
 public class BookingServiceImpl implements BookingService {
 
+    private static final List<String> SUMMARY_STATES = List.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED");
+
     private final BookingJpaRepository bookingJpaRepository;
     private final UserJpaRepository userJpaRepository;
     private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
     private final BookingMapper bookingMapper;
+    private final UserCounterService userCounterService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final InvalidationBus invalidationBus;
+    private final BookingReadModel bookingReadModel;
+    private final GroupCommitExecutor groupCommitExecutor;
+    private final IdempotencyStore idempotencyStore;
 
     @Override
     public BookingOutcomingDto postBooking(Long userId, BookingDto bookingDto) {
         validateNewBooking(bookingDto, userId);
         bookingDto.setStatus(BookingStatus.WAITING.getDescription());
         log.debug("Сохранение бронирования для вещи с id={} в базу данных", bookingDto.getItemId());
-        return bookingMapper.toBookingOutcomingDto(bookingJpaRepository.save(bookingMapper.toBooking(bookingDto, userId)));
+        Booking booking = bookingMapper.toBooking(bookingDto, userId);
+        Item item = booking != null ? booking.getItem() : null;
+        Long ownerId = item != null && item.getOwner() != null ? item.getOwner().getId() : null;
+        IdempotencyStore.Request idempotentRequest = idempotencyStore.current();
+        BookingOutcomingDto bookingOutcomingDto = groupCommitExecutor.execute(() -> {
+            if (groupCommitExecutor.isBatching()) {
+                validateFreeDates(bookingDto);
+            }
+            Booking savedBooking = bookingJpaRepository.save(booking);
+            BookingOutcomingDto createdBooking = bookingMapper.toBookingOutcomingDto(savedBooking);
+            outboxService.record(OutboxEventType.BOOKING_CREATED, savedBooking.getId(), createdBooking);
+            userCounterService.onBookingCreated(userId, ownerId);
+            idempotencyStore.record(idempotentRequest, createdBooking);
+            return createdBooking;
+        });
+        if (bookingOutcomingDto != null) {
+            invalidationBus.publish("booking:" + bookingOutcomingDto.getId());
+        }
+        return bookingOutcomingDto;
     }
 
 
     @Override
     public BookingOutcomingDto patchBooking(Long userId, Boolean approved, Long bookingId) {
-        Booking addedBooking = validateUpdateBooking(bookingId, userId, approved);
-        addedBooking.setBookingStatus(approved ? BookingStatus.APPROVED : BookingStatus.REJECTED);
+        BookingStatus bookingStatus = approved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
         log.debug("Обновление бронирования с id={} в базе данных", bookingId);
-        bookingJpaRepository.save(addedBooking);
-        return bookingMapper.toBookingOutcomingDto(addedBooking);
+        BookingOutcomingDto bookingOutcomingDto = transactionTemplate.execute(status -> {
+            if (bookingJpaRepository.updateWaitingStatus(bookingId, userId, bookingStatus.name()) == 0) {
+                validateUpdateBooking(bookingId, userId, approved);
+                log.debug("Бронирование с id={} изменено другим запросом", bookingId);
+                throw new ObjectOptimisticLockingFailureException(Booking.class, bookingId);
+            }
+            Booking addedBooking = bookingJpaRepository
+                    .findById(bookingId)
+                    .orElseThrow(() -> new NotFoundException("Бронирование не найдено!"));
+            BookingOutcomingDto updatedBooking = bookingMapper.toBookingOutcomingDto(addedBooking);
+            outboxService.record(approved ? OutboxEventType.BOOKING_APPROVED : OutboxEventType.BOOKING_REJECTED,
+                    bookingId, updatedBooking);
+            return updatedBooking;
+        });
+        invalidationBus.publish("booking:" + bookingId);
+        return bookingOutcomingDto;
     }
 
 
     @Override
-    @Transactional(readOnly = true)
     public List<BookingOutcomingDto> getBookings(Long userId, String state, Integer from, Integer size) {
+        LocalDateTime now = LocalDateTime.now();
+        return bookingReadModel.read(
+                () -> bookingReadModel.getBookerBookings(userId, state, from, size, now),
+                () -> readFromDatabase(() -> findBookings(userId, state, from, size, now)));
+    }
+
+
+    @Override
+    public List<BookingOutcomingDto> getUserStuffBookings(Long userId, String state, Integer from, Integer size) {
+        LocalDateTime now = LocalDateTime.now();
+        return bookingReadModel.read(
+                () -> bookingReadModel.getOwnerBookings(userId, state, from, size, now),
+                () -> readFromDatabase(() -> findUserStuffBookings(userId, state, from, size, now)));
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingSummaryDto> getUserStuffBookingsSummary(Long userId, Integer limit) {
+        if (!userJpaRepository.existsById(userId)) {
+            log.debug("Объект типа User с id={} отсутствует в базе данных!", userId);
+            throw new NotFoundException("Пользователь не найден!");
+        }
+
+        Map<String, BookingSummaryDto> summary = new LinkedHashMap<>();
+        for (String state : SUMMARY_STATES) {
+            summary.put(state, new BookingSummaryDto(state, 0, new ArrayList<>()));
+        }
+        for (Object[] row : bookingJpaRepository.findOwnerSummary(userId, LocalDateTime.now(), limit)) {
+            BookingSummaryDto stateSummary = summary.get((String) row[1]);
+            stateSummary.setCount((Long) row[2]);
+            stateSummary.getBookings().add(bookingMapper.toBookingOutcomingDto((Booking) row[0]));
+        }
+        log.debug("Возвращаем сводку по бронированиям вещей пользователя с id={}", userId);
+        return new ArrayList<>(summary.values());
+    }
+
+
+    @Override
+    public BookingOutcomingDto getBooking(Long bookingId, Long userId) {
+        log.debug("Возвращаем бронирование с id={}", bookingId);
+        return bookingReadModel.read(
+                () -> bookingReadModel.getBooking(bookingId, userId),
+                () -> readFromDatabase(() -> bookingMapper.toBookingOutcomingDto(validateGetBooking(bookingId, userId))));
+    }
+
+
+    /**
+     * Закрытый служебный метод выполняет запрос к базе данных в транзакции, направляемой
+     * на реплику. Транзакция открывается только здесь: ответ из модели чтения
+     * BookingReadModel соединения не занимает.
+     *
+     * @param query (запрос к базе данных)
+     *
+     * @return T
+     */
+    private <T> T readFromDatabase(Supplier<T> query) {
+        return ReplicaRoutingDataSource.readOnly(() -> transactionTemplate.execute(status -> query.get()));
+    }
+
+
+    /**
+     * Закрытый служебный метод выбирает из базы данных страницу бронирований
+     * пользователя в состоянии state.
+     *
+     * @param userId (идентификатор автора бронирований)
+     * @param state (состояние бронирований)
+     * @param from (индекс первого элемента)
+     * @param size (размер страницы)
+     * @param now (текущий момент времени)
+     *
+     * @return List<BookingOutcomingDto>
+     */
+    private List<BookingOutcomingDto> findBookings(Long userId, String state, Integer from, Integer size,
+                                                   LocalDateTime now) {
         if (!userJpaRepository.existsById(userId)) {
             log.debug("Объект типа User с id={} отсутствует в базе данных!", userId);
             throw new NotFoundException("Пользователь не найден!");
         }
 
-        int amountOfRequests = bookingJpaRepository.findAmountByBookerId(userId);
+        long amountOfRequests = userCounterService.getBookerBookings(userId);
         int pageNum = amountOfRequests > from ? from / size : 0;
 
         Pageable page = PageRequest
                 .of(pageNum, size)
                 .toOptional()
                 .orElseThrow(() -> new RuntimeException("Ошибка преобразования страницы!"));
-        LocalDateTime now = LocalDateTime.now();
         List<Booking> bookings;
         switch (state) {
             case "ALL": {
@@ -110,22 +237,32 @@ public class BookingServiceImpl implements BookingService {
     }
 
 
-    @Override
-    @Transactional(readOnly = true)
-    public List<BookingOutcomingDto> getUserStuffBookings(Long userId, String state, Integer from, Integer size) {
+    /**
+     * Закрытый служебный метод выбирает из базы данных страницу бронирований
+     * вещей пользователя в состоянии state.
+     *
+     * @param userId (идентификатор владельца вещей)
+     * @param state (состояние бронирований)
+     * @param from (индекс первого элемента)
+     * @param size (размер страницы)
+     * @param now (текущий момент времени)
+     *
+     * @return List<BookingOutcomingDto>
+     */
+    private List<BookingOutcomingDto> findUserStuffBookings(Long userId, String state, Integer from, Integer size,
+                                                            LocalDateTime now) {
         if (!userJpaRepository.existsById(userId)) {
             log.debug("Объект типа User с id={} отсутствует в базе данных!", userId);
             throw new NotFoundException("Пользователь не найден!");
         }
 
-        int amountOfRequests = bookingJpaRepository.findStuffBookingsAmountByOwnerId(userId);
+        long amountOfRequests = userCounterService.getOwnerBookings(userId);
         int pageNum = amountOfRequests > from ? from / size : 0;
 
         Pageable page = PageRequest
                 .of(pageNum, size)
                 .toOptional()
                 .orElseThrow(() -> new RuntimeException("Ошибка преобразования страницы!"));
-        LocalDateTime now = LocalDateTime.now();
         List<Booking> bookings;
         switch (state) {
             case "ALL": {
@@ -160,15 +297,6 @@ public class BookingServiceImpl implements BookingService {
     }
 
 
-    @Override
-    @Transactional(readOnly = true)
-    public BookingOutcomingDto getBooking(Long bookingId, Long userId) {
-        Booking booking = validateGetBooking(bookingId, userId);
-        log.debug("Возвращаем бронирование с id={}", bookingId);
-        return bookingMapper.toBookingOutcomingDto(booking);
-    }
-
-
     /**
      * Закрытый служебный метод проверяет объект типа BookingDto
      * на соответствие ряду условий. Используется впоследствии
@@ -197,11 +325,7 @@ public class BookingServiceImpl implements BookingService {
             throw new ValidationException("Вещь недоступна!");
         }
 
-        Booking crossedBooking = bookingJpaRepository.findBookingForDate(itemId, bookingDto.getStart(), bookingDto.getEnd());
-        if (crossedBooking != null) {
-            log.debug("Попытка добавления объекта типа Booking с датами, пересекающимися с уже существующими объектами");
-            throw new NotFoundException("Найдено другое бронирование на эти даты!");
-        }
+        validateFreeDates(bookingDto);
 
         Item item = itemOpt.get();
         if (item.getOwner().getId().equals(userId)) {
@@ -229,17 +353,36 @@ public class BookingServiceImpl implements BookingService {
 
 
     /**
-     * Закрытый служебный метод проверяет объект типа Booking
-     * на соответствие ряду условий. Используется впоследствии
-     * для валидации объекта типа Booking при попытке его обновления
-     * в репозитории.
+     * Закрытый служебный метод проверяет, что даты бронирования bookingDto не пересекаются
+     * с другими бронированиями вещи. При групповой фиксации (см. GroupCommitExecutor)
+     * проверка повторяется в транзакции, добавляющей бронирование: там она видит и
+     * бронирования, добавленные раньше в той же пачке.
      * В случае неудачи выбрасывает исключение с сообщением об ошибке.
      *
+     * @param bookingDto (приходящий объект бронирования)
+     */
+    private void validateFreeDates(BookingDto bookingDto) {
+        Booking crossedBooking = bookingJpaRepository.findBookingForDate(bookingDto.getItemId(),
+                bookingDto.getStart(), bookingDto.getEnd());
+        if (crossedBooking != null) {
+            log.debug("Попытка добавления объекта типа Booking с датами, пересекающимися с уже существующими объектами");
+            throw new NotFoundException("Найдено другое бронирование на эти даты!");
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод проверяет объект типа Booking
+     * на соответствие ряду условий. Вызывается, если условное
+     * обновление статуса не изменило ни одной строки, чтобы
+     * установить причину отказа.
+     * Выбрасывает исключение с сообщением об ошибке.
+     *
      * @param bookingId (идентификатор бронирования)
      * @param userId (идентификатор пользователя, который вносит изменения в бронирование)
      * @param approved (флаг подтверждения бронирования пользователем)
      */
-    private Booking validateUpdateBooking(Long bookingId, Long userId, Boolean approved) {
+    private void validateUpdateBooking(Long bookingId, Long userId, Boolean approved) {
         if (!bookingJpaRepository.existsById(bookingId)) {
             log.debug("Объект типа Booking с id={} отсутствует в базе данных", bookingId);
             throw new NotFoundException("Бронирование не найдено!");
@@ -274,7 +417,10 @@ public class BookingServiceImpl implements BookingService {
                     userId, bookingId);
             throw new NotFoundException("Данный пользователь не может изменять статус бронирования!");
         }
-        return booking;
+        if (!BookingStatus.WAITING.equals(booking.getBookingStatus())) {
+            log.debug("Статус бронирования с id={} уже изменён", bookingId);
+            throw new BadRequestException("Статус бронирования уже изменён!");
+        }
     }
 
 
@@ -291,6 +437,7 @@ public class BookingServiceImpl implements BookingService {
     private Booking validateGetBooking(Long bookingId, Long userId) {
         Booking booking = bookingJpaRepository
                 .findById(bookingId)
+                .or(() -> bookingJpaRepository.findArchivedById(bookingId))
                 .orElseThrow(() -> new NotFoundException("Бронирование не найдено!"));
         Item item = booking.getItem();
         if (item == null) {
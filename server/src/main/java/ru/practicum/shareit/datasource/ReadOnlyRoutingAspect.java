@@ -0,0 +1,47 @@
+package ru.practicum.shareit.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Аспект ReadOnlyRoutingAspect сообщает {@link ReplicaRoutingDataSource}, что начинается
+ * транзакция только для чтения. Он выполняется раньше перехватчика транзакций: признак
+ * readOnly в TransactionSynchronizationManager появляется лишь после того, как соединение
+ * уже получено (трассировка JDBC запрашивает у него метаданные при открытии транзакции).
+ * Метод, присоединяющийся к уже начатой транзакции, признак не меняет.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReadOnlyRoutingAspect {
+
+    private final TransactionAttributeSource attributeSource = new AnnotationTransactionAttributeSource();
+
+    @Around("@annotation(org.springframework.transaction.annotation.Transactional) "
+            + "|| @within(org.springframework.transaction.annotation.Transactional)")
+    public Object markReadOnly(ProceedingJoinPoint joinPoint) throws Throwable {
+        TransactionAttribute attribute = attributeSource.getTransactionAttribute(
+                ((MethodSignature) joinPoint.getSignature()).getMethod(),
+                AopUtils.getTargetClass(joinPoint.getTarget()));
+        boolean startsTransaction = !TransactionSynchronizationManager.isActualTransactionActive()
+                || attribute != null && attribute.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW;
+        if (attribute == null || !startsTransaction) {
+            return joinPoint.proceed();
+        }
+        boolean previous = ReplicaRoutingDataSource.markReadOnly(attribute.isReadOnly());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.markReadOnly(previous);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.shareit.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фильтр ReadYourWritesFilter обеспечивает пользователю чтение собственных изменений:
+ * после изменяющего запроса (не GET/HEAD/OPTIONS) с заголовком X-Sharer-User-Id все
+ * запросы этого пользователя в течение window-ms читают с основного сервера, а не с
+ * реплик, которые могли ещё не получить изменение.
+ * Окно, запомненное в памяти, действует только на этом экземпляре сервера, а шлюз
+ * распределяет запросы между экземплярами. Поэтому ответ на изменяющий запрос несёт
+ * заголовок X-Primary-Until с моментом окончания окна (мс с начала эпохи), шлюз
+ * передаёт его в следующих запросах пользователя, и любой экземпляр, получивший
+ * запрос с ещё не истёкшим X-Primary-Until, тоже читает с основного сервера.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final String USER_HEADER = "X-Sharer-User-Id";
+    public static final String PRIMARY_UNTIL_HEADER = "X-Primary-Until";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final Map<String, Long> primaryUntil = new ConcurrentHashMap<>();
+    private final long windowMs;
+
+    public ReadYourWritesFilter(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String userId = request.getHeader(USER_HEADER);
+        if (userId == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            long windowEnd = System.currentTimeMillis() + windowMs;
+            primaryUntil.put(userId, windowEnd);
+            response.setHeader(PRIMARY_UNTIL_HEADER, String.valueOf(windowEnd));
+        }
+        long windowEnd = Math.max(primaryUntil.getOrDefault(userId, 0L), forwardedPrimaryUntil(request));
+        ReplicaRoutingDataSource.requirePrimary(windowEnd > System.currentTimeMillis());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.requirePrimary(false);
+            if (write) {
+                primaryUntil.put(userId, System.currentTimeMillis() + windowMs);
+            }
+            if (primaryUntil.size() > CLEANUP_THRESHOLD) {
+                long now = System.currentTimeMillis();
+                primaryUntil.values().removeIf(until -> until <= now);
+            }
+        }
+    }
+
+
+    private static long forwardedPrimaryUntil(HttpServletRequest request) {
+        String header = request.getHeader(PRIMARY_UNTIL_HEADER);
+        if (header == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.shareit.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Конфигурация чтения с реплик. Включается, если в shareit.datasource.replica-urls
+ * перечислены JDBC-адреса реплик; тогда источником данных приложения становится
+ * {@link ReplicaRoutingDataSource} над пулом основного сервера (spring.datasource.*)
+ * и пулами реплик. Пулы реплик получают те же настройки spring.datasource.hikari.*,
+ * учётные данные - из shareit.datasource.replica-username/replica-password (по умолчанию
+ * как у основного сервера). Отставание реплик измеряется каждые lag-check-interval-ms
+ * запросом lag-query (по умолчанию - для потоковой репликации PostgreSQL).
+ */
+@Configuration
+@ConditionalOnExpression("!'${shareit.datasource.replica-urls:}'.trim().isEmpty()")
+public class ReplicaDataSourceConfig {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+    private static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() "
+            + "THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 @Value("${shareit.datasource.replica-urls}") List<String> replicaUrls,
+                                 @Value("${shareit.datasource.replica-username:#{null}}") String replicaUsername,
+                                 @Value("${shareit.datasource.replica-password:#{null}}") String replicaPassword,
+                                 @Value("${shareit.datasource.lag-query:" + POSTGRES_LAG_QUERY + "}") String lagQuery,
+                                 @Value("${shareit.datasource.max-lag-ms:1000}") long maxLagMs,
+                                 @Value("${shareit.datasource.lag-check-interval-ms:1000}") long lagCheckIntervalMs) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool(binder, properties.determineDriverClassName(), properties.determineUrl(),
+                properties.determineUsername(), properties.determinePassword());
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            if (url.trim().isEmpty()) {
+                continue;
+            }
+            HikariDataSource replica = pool(binder, properties.determineDriverClassName(), url.trim(),
+                    replicaUsername != null ? replicaUsername : properties.determineUsername(),
+                    replicaPassword != null ? replicaPassword : properties.determinePassword());
+            String name = "replica-" + (replicas.size() + 1);
+            replica.setPoolName((primary.getPoolName() != null ? primary.getPoolName() + "-" : "") + name);
+            replicas.put(name, replica);
+        }
+
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, replicas, lagQuery, maxLagMs);
+        if (lagCheckIntervalMs > 0) {
+            dataSource.startLagChecks(lagCheckIntervalMs);
+        }
+        return dataSource;
+    }
+
+
+    @Bean
+    public MeterBinder replicaMetrics(DataSource dataSource) throws SQLException {
+        return dataSource.unwrap(ReplicaRoutingDataSource.class)::bindMetrics;
+    }
+
+
+    @Bean
+    public ReadOnlyRoutingAspect readOnlyRoutingAspect() {
+        return new ReadOnlyRoutingAspect();
+    }
+
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${shareit.datasource.read-your-writes-ms:5000}") long windowMs) {
+        return new ReadYourWritesFilter(windowMs);
+    }
+
+
+    private static HikariDataSource pool(Binder binder, String driverClassName, String url, String username, String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setDriverClassName(driverClassName);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        binder.bind(HIKARI_PREFIX, Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+}
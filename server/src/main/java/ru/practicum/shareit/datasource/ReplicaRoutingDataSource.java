@@ -0,0 +1,248 @@
+package ru.practicum.shareit.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Класс ReplicaRoutingDataSource направляет транзакции только для чтения
+ * (@Transactional(readOnly = true), см. {@link ReadOnlyRoutingAspect}) на реплики базы данных,
+ * остальные - на основной сервер.
+ * Реплика выбирается по кругу среди доступных. Реплика недоступна, пока периодическая
+ * проверка не измерила её отставание, если отставание превышает max-lag-ms или проверка
+ * завершилась ошибкой; когда недоступны все реплики, чтение идёт на основной сервер.
+ * Запросы, которым нужно видеть собственные только что сделанные изменения, закрепляются
+ * за основным сервером через {@link #requirePrimary(boolean)}.
+ * Физическое соединение берётся лениво, при первом запросе в транзакции, когда признак
+ * readOnly уже известен.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final long maxLagMs;
+    private ScheduledExecutorService lagChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, String lagQuery, long maxLagMs) {
+        this(primary, toReplicas(replicas), lagQuery, maxLagMs);
+    }
+
+
+    private ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, String lagQuery, long maxLagMs) {
+        super(new Router(primary, replicas));
+        this.primary = primary;
+        this.replicas = replicas;
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLagMs;
+    }
+
+
+    /**
+     * Закрепляет (или открепляет) запросы текущего потока за основным сервером.
+     */
+    public static void requirePrimary(boolean required) {
+        if (required) {
+            PRIMARY_REQUIRED.set(Boolean.TRUE);
+        } else {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+
+    /**
+     * Выполняет запрос на основном сервере, даже если открываемая им транзакция только
+     * читает данные; прежнее закрепление потока восстанавливается после запроса.
+     */
+    public static <T> T onPrimary(Supplier<T> query) {
+        boolean previous = Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+        requirePrimary(true);
+        try {
+            return query.get();
+        } finally {
+            requirePrimary(previous);
+        }
+    }
+
+
+    /**
+     * Выполняет запрос так, что транзакция, которую он открывает без @Transactional
+     * (через TransactionTemplate), направляется на реплику. Запрос внутри уже начатой
+     * транзакции выполняется как есть.
+     */
+    public static <T> T readOnly(Supplier<T> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        boolean previous = markReadOnly(true);
+        try {
+            return query.get();
+        } finally {
+            markReadOnly(previous);
+        }
+    }
+
+
+    /**
+     * Отмечает, что транзакция, начинающаяся в текущем потоке, только читает данные.
+     * Возвращает прежнее значение признака.
+     */
+    static boolean markReadOnly(boolean readOnly) {
+        boolean previous = Boolean.TRUE.equals(READ_ONLY.get());
+        if (readOnly) {
+            READ_ONLY.set(Boolean.TRUE);
+        } else {
+            READ_ONLY.remove();
+        }
+        return previous;
+    }
+
+
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("shareit.datasource.replica.lag", replica, r -> r.lagMs)
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("shareit.datasource.replica.available", replica, r -> r.available ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+    }
+
+
+    public void startLagChecks(long intervalMs) {
+        lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkReplicaLag, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Измеряет отставание каждой реплики запросом lag-query, который должен вернуть
+     * отставание в секундах (NULL или 0 - реплика не отстаёт).
+     */
+    public void checkReplicaLag() {
+        for (Replica replica : replicas) {
+            boolean available;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                replica.lagMs = resultSet.next() ? Math.round(resultSet.getDouble(1) * 1000) : 0;
+                available = replica.lagMs <= maxLagMs;
+            } catch (SQLException e) {
+                log.debug("Не удалось измерить отставание реплики {}", replica.name, e);
+                replica.lagMs = -1;
+                available = false;
+            }
+            if (replica.available != available) {
+                log.warn("Реплика {} {} (отставание {} мс)", replica.name,
+                        available ? "снова принимает чтение" : "исключена из чтения", replica.lagMs);
+            }
+            replica.available = available;
+        }
+    }
+
+
+    @Override
+    public void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        closeQuietly(primary);
+        replicas.forEach(replica -> closeQuietly(replica.dataSource));
+    }
+
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                log.warn("Не удалось закрыть пул соединений", e);
+            }
+        }
+    }
+
+
+    private static List<Replica> toReplicas(Map<String, DataSource> replicas) {
+        List<Replica> result = new ArrayList<>(replicas.size());
+        replicas.forEach((name, dataSource) -> result.add(new Replica(name, dataSource)));
+        return result;
+    }
+
+
+    private static final class Router extends AbstractRoutingDataSource {
+        private final List<Replica> replicas;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Router(DataSource primary, List<Replica> replicas) {
+            this.replicas = replicas;
+            Map<Object, Object> targets = new HashMap<>();
+            targets.put(PRIMARY, primary);
+            replicas.forEach(replica -> targets.put(replica.name, replica.dataSource));
+            setTargetDataSources(targets);
+            setDefaultTargetDataSource(primary);
+            afterPropertiesSet();
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            boolean readOnly = Boolean.TRUE.equals(READ_ONLY.get())
+                    || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            if (!readOnly
+                    || Boolean.TRUE.equals(PRIMARY_REQUIRED.get())
+                    || replicas.isEmpty()) {
+                return PRIMARY;
+            }
+            int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (replica.available) {
+                    return replica.name;
+                }
+            }
+            return PRIMARY;
+        }
+    }
+
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile long lagMs = -1;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
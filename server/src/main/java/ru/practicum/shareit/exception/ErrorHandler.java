@@ -1,6 +1,7 @@
 package ru.practicum.shareit.exception;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -52,12 +53,24 @@ public class ErrorHandler {
     }
 
 
+    @ExceptionHandler
+    public ResponseEntity<Object> handleIdempotencyKeyReused(final IdempotencyKeyReusedException e) {
+        return new ResponseEntity<>(e.getMessage(), new HttpHeaders(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+
     @ExceptionHandler
     public ResponseEntity<Object>  handleSqlException(DataIntegrityViolationException e) {
         return new ResponseEntity<>(e.getMessage(), new HttpHeaders(), HttpStatus.CONFLICT);
     }
 
 
+    @ExceptionHandler
+    public ResponseEntity<Object> handleOptimisticLockingFailure(final OptimisticLockingFailureException e) {
+        return new ResponseEntity<>("Объект изменён другим запросом, повторите запрос!", new HttpHeaders(), HttpStatus.CONFLICT);
+    }
+
+
     @ExceptionHandler
     public ResponseEntity<Object> handleUnsupportedOperationException(final UnsupportedOperationException e) {
         return new ResponseEntity<>(e.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST);
@@ -0,0 +1,11 @@
+package ru.practicum.shareit.exception;
+
+/**
+ * Класс-исключение, объекты которого выбрасываются в случае, если
+ * ключ идемпотентности повторно передан с другим запросом.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
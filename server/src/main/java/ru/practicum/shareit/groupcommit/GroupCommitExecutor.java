@@ -0,0 +1,238 @@
+package ru.practicum.shareit.groupcommit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.exception.ValidationException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Класс GroupCommitExecutor выполняет короткие изменяющие операции (добавление
+ * бронирований и отзывов) в общей транзакции. При enabled=true операции ставятся в
+ * очередь, а отдельный поток забирает их пачками до batch-size штук, ожидая пополнения
+ * пачки не дольше max-delay-ms после первой операции, и фиксирует всю пачку одним
+ * commit. Вызывающий поток дожидается результата своей операции.
+ * Операция, не прошедшая проверку (BadRequestException, NotFoundException,
+ * ValidationException), получает своё исключение, остальные операции пачки фиксируются;
+ * такие исключения операция выбрасывает до изменения данных. Любое другое исключение,
+ * а также неудавшийся commit откатывают пачку целиком - вместе с тем, что успела
+ * записать упавшая операция, - и операции пачки выполняются повторно, каждая в своей
+ * транзакции, чтобы каждая получила свой результат.
+ * При enabled=false каждая операция сразу выполняется в своей транзакции.
+ */
+@Component
+@Slf4j
+public class GroupCommitExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayMs;
+    private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+    private final DistributionSummary batches;
+    private final Counter fallbacks;
+    private volatile boolean stopped;
+    private ExecutorService committer;
+
+    public GroupCommitExecutor(TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${shareit.group-commit.enabled:false}") boolean enabled,
+                               @Value("${shareit.group-commit.batch-size:64}") int batchSize,
+                               @Value("${shareit.group-commit.max-delay-ms:2}") long maxDelayMs) {
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.batches = DistributionSummary.builder("shareit.group-commit.batch-size")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("shareit.group-commit.fallbacks")
+                .register(meterRegistry);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            committer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.execute(this::run);
+        }
+    }
+
+
+    /**
+     * Останавливает поток фиксации; операции, оставшиеся в очереди, выполняются каждая
+     * в своей транзакции.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        if (committer != null) {
+            committer.shutdownNow();
+            committer.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        commitEach(drain());
+    }
+
+
+    /**
+     * Возвращает true, если операции фиксируются пачками.
+     */
+    public boolean isBatching() {
+        return committer != null && !stopped;
+    }
+
+
+    /**
+     * Выполняет операцию write в транзакции (общей с другими операциями при enabled=true)
+     * и возвращает её результат после фиксации.
+     *
+     * @param write (операция)
+     *
+     * @return T
+     */
+    public <T> T execute(Supplier<T> write) {
+        if (committer == null || stopped) {
+            return transactionTemplate.execute(status -> write.get());
+        }
+        Write<T> pending = new Write<>(write);
+        queue.add(pending);
+        if (stopped) {
+            commitEach(drain());
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    private void run() {
+        List<Write<?>> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    Write<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Фиксирует пачку операций одной транзакцией, а при неудаче - каждую отдельно.
+     *
+     * @param batch (пачка операций)
+     */
+    private void commit(List<Write<?>> batch) {
+        batches.record(batch.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(write -> write.attempt(status)));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось зафиксировать пачку из {} операций, фиксируем их по одной: {}",
+                    batch.size(), e.getMessage());
+            fallbacks.increment();
+            commitEach(batch);
+            return;
+        }
+        batch.forEach(Write::complete);
+    }
+
+
+    private void commitEach(List<Write<?>> writes) {
+        for (Write<?> write : writes) {
+            write.commitAlone(transactionTemplate);
+        }
+    }
+
+
+    private List<Write<?>> drain() {
+        List<Write<?>> writes = new ArrayList<>();
+        queue.drainTo(writes);
+        return writes;
+    }
+
+
+    /**
+     * Операция в очереди на фиксацию и её результат.
+     */
+    private static final class Write<T> {
+        private final Supplier<T> operation;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException error;
+
+        Write(Supplier<T> operation) {
+            this.operation = operation;
+        }
+
+
+        private void attempt(TransactionStatus status) {
+            try {
+                value = operation.get();
+                error = null;
+            } catch (BadRequestException | NotFoundException | ValidationException e) {
+                if (status.isRollbackOnly()) {
+                    throw e;
+                }
+                error = e;
+            }
+        }
+
+
+        private void complete() {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+
+
+        private void commitAlone(TransactionTemplate transactionTemplate) {
+            try {
+                result.complete(transactionTemplate.execute(status -> operation.get()));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
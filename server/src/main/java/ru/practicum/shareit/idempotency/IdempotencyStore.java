@@ -0,0 +1,267 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+import ru.practicum.shareit.exception.IdempotencyKeyReusedException;
+import ru.practicum.shareit.idempotency.model.IdempotencyRecord;
+import ru.practicum.shareit.idempotency.repository.IdempotencyJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Класс IdempotencyStore хранит ответы на запросы с заголовком Idempotency-Key в таблице
+ * idempotency_keys. Ответ записывается сервисом в той же транзакции, что и созданный
+ * запросом объект ({@link #record}), а пара (пользователь, ключ) в таблице уникальна.
+ * Повторный запрос пользователя с тем же ключом и тем же телом не выполняется снова, а
+ * получает сохранённый ответ первого; запрос с уже использованным ключом, но другим телом
+ * отклоняется (IdempotencyKeyReusedException). Если повтор пришёл, пока первый запрос ещё
+ * выполняется, запись его ключа нарушает уникальность (или повтор не проходит проверку,
+ * например, на занятые даты): транзакция повтора откатывается, и он получает ответ
+ * первого. После ошибки запроса ключ не сохраняется, и повтор выполняется заново.
+ * Записи хранятся ttl-ms и удаляются каждые purge-interval-ms. Последние cache-size
+ * ответов хранятся и в памяти экземпляра, чтобы повтор не обращался к базе данных.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private final IdempotencyJpaRepository idempotencyJpaRepository;
+    private final ObjectMapper objectMapper;
+    private final long ttlMs;
+    private final long purgeIntervalMs;
+    private final Map<String, IdempotencyRecord> cache;
+    private final ThreadLocal<Request> current = new ThreadLocal<>();
+    private ScheduledExecutorService scheduler;
+
+    public IdempotencyStore(IdempotencyJpaRepository idempotencyJpaRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${shareit.idempotency.ttl-ms:86400000}") long ttlMs,
+                            @Value("${shareit.idempotency.cache-size:10000}") int cacheSize,
+                            @Value("${shareit.idempotency.purge-interval-ms:3600000}") long purgeIntervalMs) {
+        this.idempotencyJpaRepository = idempotencyJpaRepository;
+        this.objectMapper = objectMapper;
+        this.ttlMs = ttlMs;
+        this.purgeIntervalMs = purgeIntervalMs;
+        this.cache = Collections.synchronizedMap(new BoundedCache(cacheSize));
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (purgeIntervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "idempotency-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::purge, purgeIntervalMs, purgeIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Выполняет action, если пользователь userId ещё не выполнял запрос с ключом key,
+     * иначе возвращает сохранённый ответ. Без ключа action выполняется всегда.
+     * Ответ сохраняет сам action, вызывая {@link #record} в транзакции записи.
+     *
+     * @param userId (идентификатор пользователя)
+     * @param key (значение заголовка Idempotency-Key)
+     * @param operation (название операции, например «POST /bookings»)
+     * @param request (тело запроса)
+     * @param responseType (тип ответа)
+     * @param action (выполнение запроса)
+     *
+     * @return T
+     */
+    public <T> T execute(Long userId, String key, String operation, Object request,
+                         Class<T> responseType, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        Request pending = new Request(userId, key, fingerprint(operation, request));
+        IdempotencyRecord stored = find(pending);
+        if (stored != null) {
+            log.debug("Возвращаем сохранённый ответ на запрос с ключом идемпотентности {}", key);
+            return replay(pending, stored, responseType);
+        }
+        current.set(pending);
+        try {
+            T result = action.get();
+            if (pending.saved != null) {
+                cache.put(pending.cacheKey(), pending.saved);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            stored = find(pending);
+            if (stored == null) {
+                throw e;
+            }
+            log.debug("Запрос с ключом идемпотентности {} выполнен параллельным запросом", key);
+            return replay(pending, stored, responseType);
+        } finally {
+            current.remove();
+        }
+    }
+
+
+    /**
+     * Возвращает запрос с ключом идемпотентности, который выполняет текущий поток, или null.
+     * Вызывается до передачи записи в другой поток (например, в GroupCommitExecutor).
+     *
+     * @return Request
+     */
+    public Request current() {
+        return current.get();
+    }
+
+
+    /**
+     * Сохраняет ответ на запрос request в текущей транзакции. Без запроса ничего не делает.
+     *
+     * @param request (запрос, полученный из {@link #current})
+     * @param response (ответ на запрос)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Request request, Object response) {
+        if (request == null) {
+            return;
+        }
+        try {
+            request.saved = idempotencyJpaRepository.save(new IdempotencyRecord(null, request.userId, request.key,
+                    request.fingerprint, objectMapper.writeValueAsString(response), LocalDateTime.now()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать ответ на запрос", e);
+        }
+    }
+
+
+    /**
+     * Удаляет просроченные записи.
+     *
+     * @return int (количество удалённых записей)
+     */
+    public int purge() {
+        try {
+            int deleted = idempotencyJpaRepository.deleteAllExpired(expiredBefore());
+            log.debug("Удалено {} просроченных ключей идемпотентности", deleted);
+            return deleted;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось удалить просроченные ключи идемпотентности: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+
+    private IdempotencyRecord find(Request request) {
+        IdempotencyRecord stored = cache.get(request.cacheKey());
+        if (stored == null) {
+            stored = idempotencyJpaRepository.findByUserIdAndIdempotencyKey(request.userId, request.key).orElse(null);
+        }
+        if (stored == null) {
+            return null;
+        }
+        LocalDateTime expiredBefore = expiredBefore();
+        if (stored.getCreated().isBefore(expiredBefore)) {
+            cache.remove(request.cacheKey());
+            idempotencyJpaRepository.deleteExpired(request.userId, request.key, expiredBefore);
+            return null;
+        }
+        cache.put(request.cacheKey(), stored);
+        return stored;
+    }
+
+
+    private <T> T replay(Request request, IdempotencyRecord stored, Class<T> responseType) {
+        if (!stored.getFingerprint().equals(request.fingerprint)) {
+            log.debug("Ключ идемпотентности {} пользователя с id={} использован для другого запроса",
+                    request.key, request.userId);
+            throw new IdempotencyKeyReusedException("Ключ идемпотентности уже использован для другого запроса!");
+        }
+        try {
+            return objectMapper.readValue(stored.getResponse(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать сохранённый ответ на запрос", e);
+        }
+    }
+
+
+    private LocalDateTime expiredBefore() {
+        return LocalDateTime.now().minus(ttlMs, ChronoUnit.MILLIS);
+    }
+
+
+    private String fingerprint(String operation, Object request) {
+        try {
+            return operation + "#" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать тело запроса", e);
+        }
+    }
+
+
+    /**
+     * Запрос с ключом идемпотентности и его сохранённый ответ.
+     */
+    public static final class Request {
+        private final Long userId;
+        private final String key;
+        private final String fingerprint;
+        private volatile IdempotencyRecord saved;
+
+        private Request(Long userId, String key, String fingerprint) {
+            this.userId = userId;
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+
+        private String cacheKey() {
+            return userId + ":" + key;
+        }
+    }
+
+
+    /**
+     * Кэш последних ответов: при превышении размера вытесняется давно не читавшийся.
+     */
+    private static final class BoundedCache extends LinkedHashMap<String, IdempotencyRecord> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private BoundedCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
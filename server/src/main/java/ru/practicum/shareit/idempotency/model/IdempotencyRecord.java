@@ -0,0 +1,43 @@
+package ru.practicum.shareit.idempotency.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Модель данных выполненного запроса с ключом идемпотентности в таблице idempotency_keys:
+ * записывается в одной транзакции с объектом, созданным запросом. Пара userId и
+ * idempotencyKey уникальна; fingerprint - операция и хэш тела запроса, response -
+ * ответ на запрос в формате JSON.
+ */
+@Entity
+@Table(name = "idempotency_keys", schema = "public")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "idempotency_id")
+    private Long id;
+    @Column(name = "user_id")
+    private Long userId;
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+    @Column(name = "fingerprint")
+    private String fingerprint;
+    @Column(name = "response")
+    private String response;
+    @Column(name = "created")
+    private LocalDateTime created;
+}
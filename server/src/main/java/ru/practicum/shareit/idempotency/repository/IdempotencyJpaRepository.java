@@ -0,0 +1,30 @@
+package ru.practicum.shareit.idempotency.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.idempotency.model.IdempotencyRecord;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Интерфейс IdempotencyJpaRepository хранит ответы на запросы с ключом идемпотентности.
+ * Уникальность пары (user_id, idempotency_key) обеспечивается ограничением таблицы.
+ */
+public interface IdempotencyJpaRepository extends CrudRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord as r " +
+            "where r.userId = ?1 and r.idempotencyKey = ?2 and r.created < ?3")
+    int deleteExpired(Long userId, String idempotencyKey, LocalDateTime createdBefore);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord as r where r.created < ?1")
+    int deleteAllExpired(LocalDateTime createdBefore);
+}
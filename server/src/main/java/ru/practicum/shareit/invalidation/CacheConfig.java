@@ -0,0 +1,22 @@
+package ru.practicum.shareit.invalidation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.shareit.user.dto.UserDto;
+
+/**
+ * Конфигурация локальных кэшей, согласованных между экземплярами сервера через
+ * {@link InvalidationBus}.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public VersionedCache<UserDto> userCache(InvalidationBus invalidationBus,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${shareit.cache.users.max-size:10000}") int maxSize) {
+        return new VersionedCache<>("users", "user:", maxSize, invalidationBus, meterRegistry);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.shareit.invalidation;
+
+/**
+ * Интерфейс InvalidationBus - канал, по которому экземпляры сервера сообщают друг другу
+ * об изменении объектов, чтобы каждый вытеснил их из своих кэшей. Реализация выбирается
+ * свойством shareit.invalidation.bus: local - в пределах одной JVM (один экземпляр,
+ * тесты), postgres - через LISTEN/NOTIFY PostgreSQL.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Сообщает всем экземплярам, в том числе текущему, что объект с ключом key изменён.
+     * Вызывается после фиксации изменения: слушатели текущего экземпляра уведомляются
+     * до возврата из метода.
+     *
+     * @param key (ключ объекта вида "user:1")
+     */
+    void publish(String key);
+
+    void subscribe(InvalidationListener listener);
+
+    /**
+     * Показывает, доходят ли сейчас сообщения до этого экземпляра. Пока канал недоступен,
+     * кэши не должны ни отдавать, ни сохранять значения.
+     *
+     * @return boolean
+     */
+    boolean isAvailable();
+
+
+    /**
+     * Возвращает номер сообщения, до которого включительно этот экземпляр получил все
+     * сообщения шины, или -1, если шина не нумерует сообщения (все изменения проходят
+     * через единственный экземпляр). Имеет смысл, только пока шина доступна.
+     *
+     * @return long
+     */
+    long position();
+}
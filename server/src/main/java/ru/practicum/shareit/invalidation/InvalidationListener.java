@@ -0,0 +1,21 @@
+package ru.practicum.shareit.invalidation;
+
+/**
+ * Интерфейс InvalidationListener получает от {@link InvalidationBus} ключи изменённых
+ * объектов, чтобы вытеснить их из локального кэша.
+ */
+public interface InvalidationListener {
+
+    /**
+     * Объект с ключом key изменён или удалён на одном из экземпляров сервера.
+     *
+     * @param key (ключ объекта вида "user:1")
+     */
+    void onInvalidate(String key);
+
+    /**
+     * Часть сообщений могла быть потеряна (разрыв соединения, пропуск в нумерации),
+     * поэтому любая запись кэша может оказаться устаревшей.
+     */
+    void onMissed();
+}
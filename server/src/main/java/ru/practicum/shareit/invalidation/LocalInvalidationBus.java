@@ -0,0 +1,42 @@
+package ru.practicum.shareit.invalidation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Класс LocalInvalidationBus доставляет сообщения об изменениях слушателям в той же JVM.
+ * Подходит для единственного экземпляра сервера и для тестов, где несколько кэшей
+ * на одной шине изображают разные экземпляры.
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.invalidation.bus", havingValue = "local", matchIfMissing = true)
+public class LocalInvalidationBus implements InvalidationBus {
+
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(String key) {
+        listeners.forEach(listener -> listener.onInvalidate(key));
+    }
+
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+
+    @Override
+    public long position() {
+        return -1;
+    }
+}
@@ -0,0 +1,273 @@
+package ru.practicum.shareit.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Класс PostgresInvalidationBus рассылает сообщения об изменениях через LISTEN/NOTIFY
+ * PostgreSQL. Сообщение имеет вид "номер:ключ", где номер берётся из последовательности
+ * shareit_invalidation_seq, общей для всех экземпляров.
+ * Каждый экземпляр слушает канал на отдельном соединении (вне пула) и по номерам
+ * замечает потерянные сообщения: номер, который не пришёл за gap-timeout-ms, а также
+ * номер, выданный последовательностью (её значение проверяется раз в gap-timeout-ms),
+ * но так и не пришедший, означает потерю, и слушатели получают onMissed().
+ * То же происходит при разрыве соединения; пока оно восстанавливается (раз в reconnect-ms),
+ * шина считается недоступной. Номер, до которого получены все сообщения, возвращает
+ * position().
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.invalidation.bus", havingValue = "postgres")
+@Slf4j
+public class PostgresInvalidationBus implements InvalidationBus {
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final String NOTIFY = "SELECT pg_notify(?, nextval('shareit_invalidation_seq') || ':' || CAST(? AS text))";
+    private static final String LAST_VALUE = "SELECT last_value FROM shareit_invalidation_seq";
+    private static final long MAX_PENDING = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Callable<Connection> connectionSource;
+    private final String channel;
+    private final long gapTimeoutMs;
+    private final long reconnectMs;
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final TreeMap<Long, Long> pending = new TreeMap<>();
+    private final Counter resets;
+    private final Counter publishFailures;
+    private volatile boolean available;
+    private volatile boolean running;
+    private volatile long position = -1;
+    private long lastSeq;
+    private ExecutorService listener;
+
+    @Autowired
+    public PostgresInvalidationBus(JdbcTemplate jdbcTemplate,
+                                   DataSourceProperties properties,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${shareit.invalidation.channel:shareit_invalidation}") String channel,
+                                   @Value("${shareit.invalidation.gap-timeout-ms:1000}") long gapTimeoutMs,
+                                   @Value("${shareit.invalidation.reconnect-ms:1000}") long reconnectMs) {
+        this(jdbcTemplate,
+                () -> DriverManager.getConnection(properties.determineUrl(),
+                        properties.determineUsername(), properties.determinePassword()),
+                meterRegistry, channel, gapTimeoutMs, reconnectMs);
+    }
+
+
+    public PostgresInvalidationBus(JdbcTemplate jdbcTemplate,
+                                   Callable<Connection> connectionSource,
+                                   MeterRegistry meterRegistry,
+                                   String channel,
+                                   long gapTimeoutMs,
+                                   long reconnectMs) {
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Некорректное имя канала: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.connectionSource = connectionSource;
+        this.channel = channel;
+        this.gapTimeoutMs = Math.max(1, gapTimeoutMs);
+        this.reconnectMs = reconnectMs;
+        this.resets = Counter.builder("shareit.invalidation.resets")
+                .register(meterRegistry);
+        this.publishFailures = Counter.builder("shareit.invalidation.publish.failures")
+                .register(meterRegistry);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invalidation-listener");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listener.execute(this::listen);
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        available = false;
+        if (listener != null) {
+            listener.shutdownNow();
+        }
+    }
+
+
+    @Override
+    public void publish(String key) {
+        listeners.forEach(invalidationListener -> invalidationListener.onInvalidate(key));
+        try {
+            jdbcTemplate.query(NOTIFY, resultSet -> null, channel, key);
+        } catch (DataAccessException e) {
+            publishFailures.increment();
+            log.warn("Не удалось разослать сообщение об изменении {}: {}", key, e.getMessage());
+        }
+    }
+
+
+    @Override
+    public void subscribe(InvalidationListener invalidationListener) {
+        listeners.add(invalidationListener);
+    }
+
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = connectionSource.call()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                lastSeq = lastValue(connection);
+                missed();
+                advance();
+                available = true;
+                log.info("Подписка на канал {} установлена", channel);
+                long checked = System.currentTimeMillis();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) gapTimeoutMs);
+                    long now = System.currentTimeMillis();
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter(), now);
+                        }
+                    }
+                    if (now - checked >= gapTimeoutMs) {
+                        expect(lastValue(connection), now);
+                        checked = now;
+                    }
+                    if (!pending.isEmpty() && now - pending.firstEntry().getValue() >= gapTimeoutMs) {
+                        missed();
+                    }
+                    advance();
+                }
+            } catch (Exception e) {
+                available = false;
+                if (!running) {
+                    return;
+                }
+                missed();
+                log.warn("Подписка на канал {} прервана: {}", channel, e.getMessage());
+                try {
+                    Thread.sleep(reconnectMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод разбирает сообщение "номер:ключ", отмечает номер как
+     * полученный и передаёт ключ слушателям.
+     *
+     * @param payload (текст сообщения)
+     * @param now (время получения)
+     */
+    private void receive(String payload, long now) {
+        int separator = payload.indexOf(':');
+        String key = payload;
+        try {
+            long seq = Long.parseLong(payload.substring(0, separator));
+            expect(seq, now);
+            pending.remove(seq);
+            key = payload.substring(separator + 1);
+        } catch (RuntimeException e) {
+            log.warn("Сообщение без номера в канале {}: {}", channel, payload);
+        }
+        for (InvalidationListener invalidationListener : listeners) {
+            invalidationListener.onInvalidate(key);
+        }
+    }
+
+
+    /**
+     * Закрытый служебный метод отмечает номера до seq включительно как ожидаемые.
+     * Сообщения разных экземпляров могут прийти не по порядку номеров, поэтому
+     * пропуск считается потерей лишь через gap-timeout-ms.
+     *
+     * @param seq (последний выданный номер)
+     * @param now (текущее время)
+     */
+    private void expect(long seq, long now) {
+        if (seq <= lastSeq) {
+            return;
+        }
+        if (seq - lastSeq > MAX_PENDING) {
+            lastSeq = seq;
+            missed();
+            return;
+        }
+        for (long next = lastSeq + 1; next <= seq; next++) {
+            pending.putIfAbsent(next, now);
+        }
+        lastSeq = seq;
+    }
+
+
+    /**
+     * Закрытый служебный метод отмечает, что все сообщения до первого недошедшего номера
+     * получены и переданы слушателям.
+     */
+    private void advance() {
+        position = pending.isEmpty() ? lastSeq : pending.firstKey() - 1;
+    }
+
+
+    private void missed() {
+        pending.clear();
+        resets.increment();
+        listeners.forEach(InvalidationListener::onMissed);
+    }
+
+
+    private long lastValue(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(LAST_VALUE)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.shareit.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Класс VersionedCache - локальный кэш объектов одного типа (ключи prefix + id), записи
+ * которого вытесняются сообщениями {@link InvalidationBus}.
+ * Каждое вытеснение увеличивает версию кэша. Значение, загруженное из базы данных,
+ * сохраняется, только если за время загрузки версия не изменилась: иначе сообщение об
+ * изменении могло обогнать загрузку, и в кэш попало бы уже устаревшее значение.
+ * При потере сообщений кэш очищается целиком, а пока шина недоступна, не используется.
+ * Записей не больше max-size: сверх этого значения загружаются без сохранения.
+ *
+ * @param <V> (тип значения)
+ */
+public class VersionedCache<V> implements InvalidationListener {
+
+    private final String prefix;
+    private final int maxSize;
+    private final InvalidationBus invalidationBus;
+    private final Map<String, V> entries = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public VersionedCache(String name, String prefix, int maxSize,
+                          InvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        this.prefix = prefix;
+        this.maxSize = maxSize;
+        this.invalidationBus = invalidationBus;
+        this.hits = Counter.builder("shareit.cache.requests")
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("shareit.cache.requests")
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("shareit.cache.size", entries, Map::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+        invalidationBus.subscribe(this);
+    }
+
+
+    /**
+     * Возвращает значение объекта с идентификатором id из кэша или загружает его.
+     *
+     * @param id (идентификатор объекта)
+     * @param loader (загрузка значения из базы данных)
+     *
+     * @return V
+     */
+    public V get(Long id, Supplier<V> loader) {
+        String key = prefix + id;
+        boolean available = invalidationBus.isAvailable();
+        V value = available ? entries.get(key) : null;
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        long loadedVersion = version.get();
+        value = loader.get();
+        if (available && value != null && entries.size() < maxSize) {
+            entries.put(key, value);
+            if (version.get() != loadedVersion) {
+                entries.remove(key, value);
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * Сообщает всем экземплярам сервера, что объект с идентификатором id изменён.
+     *
+     * @param id (идентификатор объекта)
+     */
+    public void invalidate(Long id) {
+        invalidationBus.publish(prefix + id);
+    }
+
+
+    @Override
+    public void onInvalidate(String key) {
+        if (key.startsWith(prefix)) {
+            version.incrementAndGet();
+            entries.remove(key);
+        }
+    }
+
+
+    @Override
+    public void onMissed() {
+        version.incrementAndGet();
+        entries.clear();
+    }
+}
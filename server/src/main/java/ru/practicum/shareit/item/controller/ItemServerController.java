@@ -3,6 +3,7 @@ package ru.practicum.shareit.item.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
@@ -23,6 +24,7 @@ import java.util.List;
 public class ItemServerController {
 
     private final ItemService itemServiceImpl;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Эндпоинт. Контроллер получает HTTP-из микросервиса-шлюза на добавление
@@ -34,15 +36,19 @@ public class ItemServerController {
      * добавления объекта типа Item в хранилище.
      *
      * @param userId (идентификатор пользователя, отправившего запрос на добавление вещи),
+     * @param idempotencyKey (ключ идемпотентности: повтор запроса с тем же ключом
+     * возвращает ответ на первый, см. IdempotencyStore),
      * @param itemDto (объект арендуемой вещи(dto), который необходимо добавить в хранилище).
      *
      * @return ItemDto (опубликованный объект вещи)
      */
     @PostMapping
     public ItemDto postItem(@RequestHeader("X-Sharer-User-Id") Long userId,
+                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                             @RequestBody ItemDto itemDto) {
         log.debug("Принят запрос на добавление вещи {} от пользователя с id = {}", itemDto.getName(), userId);
-        return itemServiceImpl.postItem(userId, itemDto);
+        return idempotencyStore.execute(userId, idempotencyKey, "POST /items", itemDto, ItemDto.class,
+                () -> itemServiceImpl.postItem(userId, itemDto));
     }
 
 
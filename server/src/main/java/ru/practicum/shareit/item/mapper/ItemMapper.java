@@ -69,7 +69,7 @@ public class ItemMapper {
         if (requestId != null)
             itemRequest = requestJpaRepository.findById(requestId).orElseThrow(() -> new NotFoundException("Запрос не найден!"));
         return new Item(
-                0L,
+                null,
                 itemDto.getName(),
                 itemDto.getDescription(),
                 itemDto.getAvailable(),
@@ -1,6 +1,5 @@
 package ru.practicum.shareit.item.model;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -12,12 +11,13 @@ import javax.persistence.*;
 
 /**
  * Модель данных вещи, используемая на уровне хранилища.
+ * Поле version служит для оптимистической блокировки: изменение, сделанное по
+ * устаревшей версии строки, отклоняется вместо того, чтобы затереть чужое.
  */
 @Entity
 @Table(name = "items", schema = "public")
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class Item {
     @Id
@@ -36,4 +36,16 @@ public class Item {
     @ManyToOne
     @JoinColumn(name = "request_id")
     private ItemRequest request;
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    public Item(Long id, String name, String description, Boolean available, User owner, ItemRequest request) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.available = available;
+        this.owner = owner;
+        this.request = request;
+    }
 }
\ No newline at end of file
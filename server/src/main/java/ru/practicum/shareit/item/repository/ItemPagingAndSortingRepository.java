@@ -1,9 +1,11 @@
 package ru.practicum.shareit.item.repository;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.item.model.Item;
 
 import java.util.List;
@@ -30,4 +32,15 @@ public interface ItemPagingAndSortingRepository extends PagingAndSortingReposito
             "WHERE (lower(it.name) like lower(concat('%',?1,'%')) OR lower(it.description) like lower(concat('%',?2,'%'))) " +
             "AND it.available = true")
     int findAmountBySubstring(String name, String description);
+
+    /**
+     * Изменяет вещь, только если версия строки равна version, и увеличивает её; в отличие
+     * от save не перечитывает строку перед изменением. Возвращает 0, если вещь с тех пор
+     * изменена другим запросом.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Item as it set it.name = ?3, it.description = ?4, it.available = ?5, it.version = it.version + 1 " +
+            "where it.id = ?1 and it.version = ?2")
+    int updateIfVersion(Long itemId, Long version, String name, String description, Boolean available);
 }
\ No newline at end of file
@@ -4,21 +4,30 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.repository.BookingJpaRepository;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.ForbiddenException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.groupcommit.GroupCommitExecutor;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
+import ru.practicum.shareit.invalidation.InvalidationBus;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
 import ru.practicum.shareit.item.mapper.CommentMapper;
 import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.CommentJpaRepository;
 import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxService;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -40,6 +49,12 @@ public class ItemServiceImpl implements ItemService {
     private final BookingJpaRepository bookingJpaRepository;
     private final CommentMapper commentMapper;
     private final ItemMapper itemMapper;
+    private final UserCounterService userCounterService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final InvalidationBus invalidationBus;
+    private final GroupCommitExecutor groupCommitExecutor;
+    private final IdempotencyStore idempotencyStore;
 
     @Override
     public ItemDto postItem(Long userId, ItemDto itemDto) {
@@ -49,7 +64,16 @@ public class ItemServiceImpl implements ItemService {
         }
         Item item = itemMapper.toItem(itemDto, userId);
         log.debug("Сохранение вещи с id={} в базу данных", itemDto.getId());
-        return itemMapper.toItemDto(itemPagingAndSortingRepository.save(item));
+        IdempotencyStore.Request idempotentRequest = idempotencyStore.current();
+        ItemDto savedItemDto = transactionTemplate.execute(status -> {
+            Item savedItem = itemPagingAndSortingRepository.save(item);
+            ItemDto createdItem = itemMapper.toItemDto(savedItem);
+            outboxService.record(OutboxEventType.ITEM_CREATED, savedItem.getId(), createdItem);
+            userCounterService.onItemCreated(userId);
+            idempotencyStore.record(idempotentRequest, createdItem);
+            return createdItem;
+        });
+        return savedItemDto;
     }
 
 
@@ -57,9 +81,19 @@ public class ItemServiceImpl implements ItemService {
     public ItemDto patchItem(Long userId, ItemDto itemDto, Long itemId) {
         Item addedItem = validateUpdateItem(userId, itemId, itemDto);
         itemMapper.updateItemFromDto(itemDto, addedItem);
-        itemPagingAndSortingRepository.save(addedItem);
+        ItemDto updatedItemDto = transactionTemplate.execute(status -> {
+            if (itemPagingAndSortingRepository.updateIfVersion(itemId, addedItem.getVersion(), addedItem.getName(),
+                    addedItem.getDescription(), addedItem.getAvailable()) == 0) {
+                log.debug("Вещь с id={} изменена другим запросом", itemId);
+                throw new ObjectOptimisticLockingFailureException(Item.class, itemId);
+            }
+            ItemDto updatedItem = itemMapper.toItemDto(addedItem);
+            outboxService.record(OutboxEventType.ITEM_UPDATED, addedItem.getId(), updatedItem);
+            return updatedItem;
+        });
+        invalidationBus.publish("item:" + itemId);
         log.debug("Вещь \"{}\" c id={} обновлена!", addedItem.getName(), itemDto.getId());
-        return itemMapper.toItemDto(addedItem);
+        return updatedItemDto;
     }
 
 
@@ -71,7 +105,7 @@ public class ItemServiceImpl implements ItemService {
             throw new NotFoundException("Пользователь не найден!");
         }
 
-        int amountOfRequests = itemPagingAndSortingRepository.findItemsAmountByOwnerId(userId);
+        long amountOfRequests = userCounterService.getItems(userId);
         int pageNum = amountOfRequests > from ? from / size : 0;
 
         Pageable page = PageRequest
@@ -107,14 +141,17 @@ public class ItemServiceImpl implements ItemService {
             return new ArrayList<>();
         }
 
-        int amountOfRequests = itemPagingAndSortingRepository.findAmountBySubstring(text, text);
-        int pageNum = amountOfRequests > from ? from / size : 0;
-
+        // Вместо подсчёта найденных вещей: если на странице нет вещи с порядковым номером from,
+        // найдено не больше from вещей, и возвращается первая страница.
+        int pageNum = from / size;
         Pageable page = PageRequest
                 .of(pageNum, size)
                 .toOptional()
                 .orElseThrow(() -> new RuntimeException("Ошибка преобразования страницы!"));
         List<Item> itemsBySubstring = itemPagingAndSortingRepository.findAllBySubstring(text, text, page);
+        if (pageNum > 0 && itemsBySubstring.size() <= from % size) {
+            itemsBySubstring = itemPagingAndSortingRepository.findAllBySubstring(text, text, page.first());
+        }
         List<ItemGetDto> itemGetDtos = itemMapper.toItemGetDtos(itemsBySubstring, userId);
         log.debug("Передаем список вещей пользователя с id={} в количестве {}", userId, itemGetDtos.size());
         return itemGetDtos;
@@ -122,12 +159,11 @@ public class ItemServiceImpl implements ItemService {
 
 
     public CommentDto addComment(Long itemId, CommentDto commentDto, Long userId) {
-        if (!itemPagingAndSortingRepository.existsById(itemId)) {
-            log.debug("Объект типа Item с id={} отсутствует в базе данных", itemId);
-            throw new NotFoundException("Вещь не найдена!");
-        }
-        if (bookingJpaRepository.findBookingByItemIdAndBookerId(
-                itemId, userId, LocalDateTime.now()).isEmpty()) {
+        if (!isEligibleForComment(itemId, userId)) {
+            if (!itemPagingAndSortingRepository.existsById(itemId)) {
+                log.debug("Объект типа Item с id={} отсутствует в базе данных", itemId);
+                throw new NotFoundException("Вещь не найдена!");
+            }
             log.debug("Пользователь с id={} не пользовался вещью с id={}", userId, itemId);
             throw new BadRequestException("Пользователь не брал вещь!");
         }
@@ -136,7 +172,26 @@ public class ItemServiceImpl implements ItemService {
             throw new BadRequestException("В качестве отзыва передана пустая строка!");
         }
         log.debug("Публикуем отзыв от пользователя с id={} вещи с id={}", userId, itemId);
-        return commentMapper.toCommentDto(commentJpaRepository.save(commentMapper.toComment(commentDto, userId, itemId)));
+        Comment comment = commentMapper.toComment(commentDto, userId, itemId);
+        CommentDto savedComment = groupCommitExecutor.execute(() -> commentMapper.toCommentDto(
+                commentJpaRepository.save(comment)));
+        invalidationBus.publish("item:" + itemId);
+        return savedComment;
+    }
+
+
+    /**
+     * Закрытый служебный метод проверяет, завершалось ли у пользователя хотя бы
+     * одно бронирование вещи, т.е. может ли он оставить к ней отзыв. Проверка
+     * выполняется одним запросом exists по индексу (item_id, user_id, end_date).
+     *
+     * @param itemId (идентификатор вещи)
+     * @param userId (идентификатор автора отзыва)
+     *
+     * @return boolean
+     */
+    private boolean isEligibleForComment(Long itemId, Long userId) {
+        return bookingJpaRepository.existsPastBookingByItemIdAndBookerId(itemId, userId, LocalDateTime.now());
     }
 
 
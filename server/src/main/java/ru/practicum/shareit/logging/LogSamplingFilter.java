@@ -0,0 +1,50 @@
+package ru.practicum.shareit.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фильтр logback, пропускающий лишь каждое rate-е событие уровня ниже WARN.
+ * Предупреждения и ошибки, а также события логгеров из списка exemptLogger
+ * (по префиксу имени) проходят всегда. При rate, равном 1, фильтр ничего не отбрасывает.
+ */
+public class LogSamplingFilter extends Filter<ILoggingEvent> {
+
+    private final List<String> exemptLoggers = new ArrayList<>();
+    private final AtomicLong counter = new AtomicLong();
+    private int rate = 1;
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (rate <= 1 || event.getLevel().isGreaterOrEqual(Level.WARN) || isExempt(event.getLoggerName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return counter.getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+
+
+    public void addExemptLogger(String loggerName) {
+        exemptLoggers.add(loggerName);
+    }
+
+
+    private boolean isExempt(String loggerName) {
+        for (String exemptLogger : exemptLoggers) {
+            if (loggerName.startsWith(exemptLogger)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.shareit.logging;
+
+import net.ttddyy.dsproxy.listener.logging.SLF4JLogLevel;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс SlowQueryDataSourcePostProcessor оборачивает источник данных приложения
+ * в прокси, который записывает в лог ru.practicum.shareit.sql.slow только те
+ * SQL-запросы, что выполнялись дольше порога shareit.sql.slow-query-threshold-ms,
+ * вместе со значениями их параметров.
+ * Активируется лишь при заданном пороге.
+ */
+@Component
+@ConditionalOnProperty("shareit.sql.slow-query-threshold-ms")
+public class SlowQueryDataSourcePostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+    public static final String SLOW_QUERY_LOGGER = "ru.practicum.shareit.sql.slow";
+
+    private long thresholdMs;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        thresholdMs = environment.getRequiredProperty("shareit.sql.slow-query-threshold-ms", Long.class);
+    }
+
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || bean instanceof ProxyDataSource) {
+            return bean;
+        }
+        return ProxyDataSourceBuilder
+                .create(beanName, (DataSource) bean)
+                .logSlowQueryBySlf4j(thresholdMs, TimeUnit.MILLISECONDS, SLF4JLogLevel.WARN, SLOW_QUERY_LOGGER)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.shareit.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Аспект ServiceMetricsAspect замеряет время выполнения каждого публичного метода
+ * классов слоя бизнес-логики (*ServiceImpl) и публикует его в таймере shareit.service
+ * с тегами service, method, state, outcome и exception.
+ * Тег state заполняется для методов, принимающих состояние бронирований; неизвестные
+ * состояния сводятся к UNKNOWN, чтобы пользовательский ввод не порождал новые временные ряды.
+ * Тот же вызов оборачивается дочерним span'ом с именем вида BookingServiceImpl.getBookings,
+ * который оказывается между span'ом HTTP-запроса из шлюза и span'ами порождённых им
+ * SQL-запросов; так каждый вызов сервиса перехватывается один раз.
+ * Запросы к репозиториям замеряются Spring Data в spring.data.repository.invocations.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+
+    public static final String SERVICE_TIMER = "shareit.service";
+
+    private static final String STATE_PARAMETER = "state";
+    private static final Set<String> KNOWN_STATES = Set.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED");
+
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    @Around("execution(public * ru.practicum.shareit..service.*ServiceImpl.*(..))")
+    public Object timeServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Tags tags = Tags.of(
+                Tag.of("service", signature.getDeclaringType().getSimpleName()),
+                Tag.of("method", signature.getName()),
+                Tag.of("state", stateOf(signature.getParameterNames(), joinPoint.getArgs())));
+        Span span = tracer
+                .nextSpan()
+                .name(signature.getDeclaringType().getSimpleName() + "." + signature.getName())
+                .start();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "SUCCESS";
+        String exception = "none";
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = "ERROR";
+            exception = e.getClass().getSimpleName();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+            sample.stop(Timer
+                    .builder(SERVICE_TIMER)
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+
+    private static String stateOf(String[] parameterNames, Object[] args) {
+        if (parameterNames == null) {
+            return "none";
+        }
+        for (int i = 0; i < parameterNames.length; i++) {
+            if (STATE_PARAMETER.equals(parameterNames[i])) {
+                Object state = args[i];
+                return state != null && KNOWN_STATES.contains(state.toString()) ? state.toString() : "UNKNOWN";
+            }
+        }
+        return "none";
+    }
+}
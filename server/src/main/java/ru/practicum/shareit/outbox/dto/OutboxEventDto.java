@@ -0,0 +1,23 @@
+package ru.practicum.shareit.outbox.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Модель данных события изменения, передаваемая внешним потребителям через OutboxSink.
+ * Идентификатор id возрастает в порядке записи событий; payload - изменённый объект
+ * в том виде, в каком его вернул REST API.
+ */
+@Data
+@AllArgsConstructor
+public class OutboxEventDto {
+    private Long id;
+    private String aggregateType;
+    private Long aggregateId;
+    private String type;
+    private LocalDateTime created;
+    private JsonNode payload;
+}
@@ -0,0 +1,51 @@
+package ru.practicum.shareit.outbox.mapper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.outbox.dto.OutboxEventDto;
+import ru.practicum.shareit.outbox.model.OutboxEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Утилитарный класс содержит методы по преобразованию изменённых объектов
+ * в события OutboxEvent и событий OutboxEvent в OutboxEventDto.
+ */
+@AllArgsConstructor
+@Component
+public class OutboxMapper {
+    private final ObjectMapper objectMapper;
+
+    public OutboxEvent toOutboxEvent(String aggregateType, Long aggregateId, String eventType, Object payload) {
+        try {
+            return new OutboxEvent(
+                    null,
+                    aggregateType,
+                    aggregateId,
+                    eventType,
+                    objectMapper.writeValueAsString(payload),
+                    LocalDateTime.now()
+            );
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось преобразовать объект события " + eventType + " в JSON", e);
+        }
+    }
+
+
+    public OutboxEventDto toOutboxEventDto(OutboxEvent outboxEvent) {
+        try {
+            return new OutboxEventDto(
+                    outboxEvent.getId(),
+                    outboxEvent.getAggregateType(),
+                    outboxEvent.getAggregateId(),
+                    outboxEvent.getEventType(),
+                    outboxEvent.getCreated(),
+                    objectMapper.readTree(outboxEvent.getPayload())
+            );
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Событие с id=" + outboxEvent.getId() + " содержит некорректный JSON", e);
+        }
+    }
+}
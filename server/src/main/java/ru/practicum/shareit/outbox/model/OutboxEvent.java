@@ -0,0 +1,42 @@
+package ru.practicum.shareit.outbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Модель данных события изменения в таблице outbox: событие записывается в одной
+ * транзакции с изменением бронирования, вещи или запроса и удаляется после передачи
+ * внешним потребителям. Поле payload содержит изменённый объект в формате JSON.
+ */
+@Entity
+@Table(name = "outbox", schema = "public")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long id;
+    @Column(name = "aggregate_type")
+    private String aggregateType;
+    @Column(name = "aggregate_id")
+    private Long aggregateId;
+    @Column(name = "event_type")
+    private String eventType;
+    @Column(name = "payload")
+    private String payload;
+    @Column(name = "created")
+    private LocalDateTime created;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.shareit.outbox.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Перечисление OutboxEventType содержит типы событий изменений, передаваемых внешним
+ * потребителям, и тип изменённого объекта (aggregateType) каждого из них.
+ */
+@AllArgsConstructor
+@Getter
+public enum OutboxEventType {
+    BOOKING_CREATED("BOOKING"),
+    BOOKING_APPROVED("BOOKING"),
+    BOOKING_REJECTED("BOOKING"),
+    ITEM_CREATED("ITEM"),
+    ITEM_UPDATED("ITEM"),
+    REQUEST_CREATED("REQUEST");
+
+    private String aggregateType;
+}
@@ -0,0 +1,31 @@
+package ru.practicum.shareit.outbox.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import ru.practicum.shareit.outbox.model.OutboxEvent;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.List;
+
+/**
+ * Интерфейс OutboxJpaRepository хранит события изменений до их передачи. Пачка
+ * событий выбирается с блокировкой строк и пропуском уже заблокированных
+ * (SKIP LOCKED в PostgreSQL), так что ретрансляторы нескольких экземпляров сервера
+ * не передают одно событие одновременно.
+ */
+public interface OutboxJpaRepository extends CrudRepository<OutboxEvent, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboxEvent as e order by e.id")
+    List<OutboxEvent> findBatchForUpdate(Pageable pageable);
+
+    @Modifying
+    @Query("delete from OutboxEvent as e where e.id in ?1")
+    int deleteByIds(List<Long> ids);
+}
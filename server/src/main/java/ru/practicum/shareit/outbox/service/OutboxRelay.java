@@ -0,0 +1,127 @@
+package ru.practicum.shareit.outbox.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.outbox.mapper.OutboxMapper;
+import ru.practicum.shareit.outbox.model.OutboxEvent;
+import ru.practicum.shareit.outbox.repository.OutboxJpaRepository;
+import ru.practicum.shareit.outbox.sink.OutboxSink;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Класс OutboxRelay раз в interval-ms передаёт накопленные в таблице outbox события
+ * в OutboxSink пачками по batch-size событий в порядке их записи. Пачка выбирается,
+ * передаётся и удаляется в одной транзакции: если OutboxSink не принял пачку, она
+ * остаётся в таблице и передаётся повторно при следующем запуске (доставка
+ * «хотя бы один раз»).
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxJpaRepository outboxJpaRepository;
+    private final OutboxMapper outboxMapper;
+    private final OutboxSink outboxSink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long intervalMs;
+    private final Counter published;
+    private final Counter failures;
+    private ScheduledExecutorService scheduler;
+
+    public OutboxRelay(OutboxJpaRepository outboxJpaRepository,
+                       OutboxMapper outboxMapper,
+                       OutboxSink outboxSink,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${shareit.outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${shareit.outbox.relay.interval-ms:1000}") long intervalMs) {
+        this.outboxJpaRepository = outboxJpaRepository;
+        this.outboxMapper = outboxMapper;
+        this.outboxSink = outboxSink;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.published = Counter.builder("shareit.outbox.published")
+                .register(meterRegistry);
+        this.failures = Counter.builder("shareit.outbox.relay.failures")
+                .register(meterRegistry);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "outbox-relay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::run, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Передаёт в OutboxSink все накопленные события.
+     *
+     * @return int (число переданных событий)
+     */
+    public int relay() {
+        int relayed = 0;
+        while (true) {
+            Integer sent = transactionTemplate.execute(status -> {
+                List<OutboxEvent> batch = outboxJpaRepository.findBatchForUpdate(PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    return 0;
+                }
+                outboxSink.publish(batch.stream()
+                        .map(outboxMapper::toOutboxEventDto)
+                        .collect(Collectors.toList()));
+                return outboxJpaRepository.deleteByIds(batch.stream()
+                        .map(OutboxEvent::getId)
+                        .collect(Collectors.toList()));
+            });
+            int count = sent != null ? sent : 0;
+            relayed += count;
+            published.increment(count);
+            if (count < batchSize) {
+                break;
+            }
+        }
+        if (relayed > 0) {
+            log.debug("Передано {} событий изменений", relayed);
+        }
+        return relayed;
+    }
+
+
+    private void run() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Не удалось передать события изменений: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.shareit.outbox.service;
+
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+
+/**
+ * Интерфейс-сервис OutboxService определяет контракт записи событий изменений
+ * в таблицу outbox, откуда их передаёт внешним потребителям OutboxRelay.
+ */
+public interface OutboxService {
+
+    /**
+     * Записывает событие изменения. Вызывается только внутри транзакции, в которой
+     * сохраняется само изменение, чтобы событие было записано тогда и только тогда,
+     * когда зафиксировано изменение.
+     *
+     * @param type (тип события)
+     * @param aggregateId (идентификатор изменённого объекта)
+     * @param payload (изменённый объект в том виде, в каком его возвращает REST API)
+     */
+    void record(OutboxEventType type, Long aggregateId, Object payload);
+}
@@ -0,0 +1,26 @@
+package ru.practicum.shareit.outbox.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.outbox.mapper.OutboxMapper;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.repository.OutboxJpaRepository;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxServiceImpl implements OutboxService {
+
+    private final OutboxJpaRepository outboxJpaRepository;
+    private final OutboxMapper outboxMapper;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(OutboxEventType type, Long aggregateId, Object payload) {
+        outboxJpaRepository.save(outboxMapper.toOutboxEvent(type.getAggregateType(), aggregateId, type.name(), payload));
+        log.debug("Записано событие {} объекта с id={}", type, aggregateId);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.shareit.outbox.sink;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.outbox.dto.OutboxEventDto;
+
+import java.util.List;
+
+/**
+ * Класс LogOutboxSink пишет события изменений в журнал приложения (логгер
+ * shareit.outbox), по одному объекту JSON на строку. Используется по умолчанию,
+ * пока не подключён внешний потребитель.
+ */
+@Component
+@ConditionalOnProperty(name = "shareit.outbox.sink", havingValue = "log", matchIfMissing = true)
+@Slf4j(topic = "shareit.outbox")
+public class LogOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper;
+
+    public LogOutboxSink(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+
+    @Override
+    public void publish(List<OutboxEventDto> events) {
+        for (OutboxEventDto event : events) {
+            try {
+                log.info(objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Не удалось преобразовать событие с id=" + event.getId() + " в JSON", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.practicum.shareit.outbox.sink;
+
+import ru.practicum.shareit.outbox.dto.OutboxEventDto;
+
+import java.util.List;
+
+/**
+ * Интерфейс OutboxSink - точка расширения, через которую OutboxRelay передаёт события
+ * изменений внешним потребителям (журнал, файл, брокер сообщений). Реализация выбирается
+ * свойством shareit.outbox.sink.
+ * Метод publish должен вернуть управление лишь после того, как вся пачка принята, и
+ * выбросить исключение, если это не удалось: тогда пачка будет передана повторно.
+ * Поэтому событие может прийти потребителю больше одного раза, и потребители
+ * отбрасывают повторы по id события.
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxEventDto> events);
+}
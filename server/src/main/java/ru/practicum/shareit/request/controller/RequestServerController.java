@@ -2,9 +2,12 @@ package ru.practicum.shareit.request.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.practicum.shareit.request.dto.ItemRequestInDto;
 import ru.practicum.shareit.request.dto.ItemRequestOutDto;
+import ru.practicum.shareit.request.service.ItemRequestFeed;
 import ru.practicum.shareit.request.service.ItemRequestService;
 
 import java.util.List;
@@ -22,6 +25,7 @@ import java.util.List;
 public class RequestServerController {
 
     private final ItemRequestService itemRequestServiceImpl;
+    private final ItemRequestFeed itemRequestFeed;
 
     /**
      * Эндпоинт. Контроллер получает HTTP-запрос из микросервиса-шлюза на добавление
@@ -132,4 +136,46 @@ public class RequestServerController {
         log.debug("Принят запрос на получение всех запросов в количестве {} с позиции {}", size, from);
         return itemRequestServiceImpl.getAllItemRequests(userId, from, size);
     }
+
+
+    /**
+     * Эндпоинт. Контроллер получает HTTP-запрос из микросервиса-шлюза на получение
+     * объектов типа ItemRequest других пользователей, созданных после запроса с
+     * идентификатором after, и направляет его в текущий эндпоинт.
+     * В рамках текущего метода происходит маршрутизация передаваемого
+     * объекта в метод уровня сервиса, содержащего бизнес-логику
+     * извлечения новых объектов типа ItemRequest.
+     *
+     * @param after (идентификатор последнего полученного пользователем запроса вещи),
+     * @param size (наибольшее количество возвращаемых объектов),
+     * @param userId (идентификатор пользователя, получающего новые запросы вещей).
+     *
+     * @return List<ItemRequestOutDto>(список новых запросов вещей по возрастанию идентификатора)
+     */
+    @GetMapping("/feed")
+    public List<ItemRequestOutDto> getItemRequestsAfter(@RequestParam Long after,
+                                                        @RequestParam Integer size,
+                                                        @RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Принят запрос на получение новых запросов вещей после id={} в количестве {}", after, size);
+        return itemRequestServiceImpl.getItemRequestsAfter(userId, after, size);
+    }
+
+
+    /**
+     * Эндпоинт. Метод получает запрос из микросервиса-шлюза,
+     * парсит его в понятные java объекты:
+     * @param after (идентификатор последнего полученного запроса вещи; если не задан,
+     *              передаются только запросы, созданные после подписки),
+     * @param userId (идентификатор пользователя, подписывающегося на новые запросы вещей).
+     * В рамках эндпоинта открывается поток Server-Sent Events, в который передаются
+     * новые запросы вещей других пользователей.
+     *
+     * @return SseEmitter (поток событий request с объектами ItemRequestOutDto)
+     */
+    @GetMapping(value = "/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamItemRequests(@RequestParam(required = false) Long after,
+                                         @RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Принят запрос на подписку на новые запросы вещей пользователя с id={}", userId);
+        return itemRequestFeed.subscribe(userId, after);
+    }
 }
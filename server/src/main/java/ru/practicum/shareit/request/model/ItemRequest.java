@@ -10,7 +10,6 @@ import java.time.LocalDateTime;
 @Table(name = "requests", schema = "public")
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class ItemRequest {
     @Id
@@ -24,4 +23,14 @@ public class ItemRequest {
     private User requester;
     @Column(name = "created")
     private LocalDateTime created;
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    public ItemRequest(Long id, String description, User requester, LocalDateTime created) {
+        this.id = id;
+        this.description = description;
+        this.requester = requester;
+        this.created = created;
+    }
 }
@@ -1,11 +1,13 @@
 package ru.practicum.shareit.request.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import ru.practicum.shareit.request.model.ItemRequest;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -16,6 +18,18 @@ public interface RequestJpaRepository extends PagingAndSortingRepository<ItemReq
     @Query("select r from ItemRequest as r join r.requester as u where u.id = ?1")
     List<ItemRequest> findByUserId(Long userId);
 
+    @Query("select r from ItemRequest as r join r.requester as u where u.id <> ?1 and r.id > ?2 order by r.id")
+    List<ItemRequest> findAllAfter(Long userId, Long after, Pageable pageable);
+
+    @Query("select r from ItemRequest as r where r.id > ?1 order by r.id")
+    List<ItemRequest> findNewerThan(Long after, Pageable pageable);
+
     @Query(value = "select count(*) from requests as r where r.user_id = ?1", nativeQuery = true)
     int findAmountOfRequests(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("update ItemRequest as r set r.description = ?3, r.version = r.version + 1 " +
+            "where r.id = ?1 and r.version = ?2")
+    int updateIfVersion(Long requestId, Long version, String description);
 }
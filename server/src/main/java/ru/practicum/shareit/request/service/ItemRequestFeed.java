@@ -0,0 +1,433 @@
+package ru.practicum.shareit.request.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.request.dto.ItemRequestOutDto;
+import ru.practicum.shareit.request.mapper.ItemRequestMapper;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Класс ItemRequestFeed выдаёт потенциальным владельцам вещей только новые запросы вещей:
+ * запросы других пользователей с идентификатором больше курсора after, по возрастанию
+ * идентификатора. Курсором служит идентификатор последнего полученного запроса.
+ * Последние capacity запросов хранятся в памяти уже преобразованными в ItemRequestOutDto
+ * (кольцевой буфер, самый старый запрос вытесняется новым), поэтому частый опрос не
+ * перечитывает таблицу requests и ответы на запросы. Курсор старше буфера обслуживается
+ * запросом к базе данных.
+ * Буфер пополняется из базы данных сразу после создания запроса на этом экземпляре сервера
+ * и каждые poll-interval-ms, так что в нём оказываются и запросы, созданные на других
+ * экземплярах. Вещи-ответы в буфере - на момент попадания в него запроса; актуальный
+ * список возвращает GET /requests/{id}.
+ * Идентификаторы выдаются до фиксации транзакций, поэтому запрос с меньшим идентификатором
+ * может стать видимым позже запроса с большим. Лента выдаёт запросы только до границы stableId:
+ * выше неё остаётся пропуск в идентификаторах, ещё не заполненный фиксацией. Пропуск
+ * считается окончательным (откат транзакции, удаление), если запрос над ним прочитан
+ * max-commit-delay-ms назад. Каждое пополнение перечитывает запросы выше границы, так что
+ * поздно зафиксированный запрос попадает в буфер, а уже прочитанные не дублируются.
+ * Подписчики (Server-Sent Events) получают новые запросы событием request с id, равным
+ * идентификатору запроса, и при переподключении продолжают с заголовка Last-Event-ID.
+ * Отправку выполняют sender-threads потоков; медленный подписчик не задерживает остальных
+ * и, отстав от буфера, дочитывает пропущенное из базы данных.
+ */
+@Component
+@Slf4j
+public class ItemRequestFeed {
+
+    private static final String REQUEST_EVENT = "request";
+    private static final int SEND_BATCH_SIZE = 50;
+
+    private final RequestJpaRepository requestJpaRepository;
+    private final UserJpaRepository userJpaRepository;
+    private final ItemRequestMapper itemRequestMapper;
+    private final int capacity;
+    private final long pollIntervalMs;
+    private final long maxCommitDelayMs;
+    private final long heartbeatMs;
+    private final long timeoutMs;
+    private final NavigableMap<Long, ItemRequestOutDto> ring = new ConcurrentSkipListMap<>();
+    /**
+     * Прочитанные запросы выше stableId и моменты их прочтения.
+     */
+    private final NavigableMap<Long, Long> pending = new TreeMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter ringReads;
+    private final Counter databaseReads;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+    /**
+     * Курсоры не меньше floor обслуживаются из буфера: все запросы с большим
+     * идентификатором, прочитанные из базы данных, находятся в нём.
+     * До первой загрузки буфера все запросы идут в базу данных.
+     */
+    private volatile long floor = Long.MAX_VALUE;
+    /**
+     * Все запросы с идентификатором не больше stableId уже прочитаны в буфер или
+     * не появятся вовсе; выдаются подписчикам только они.
+     */
+    private volatile long stableId;
+    private int size;
+
+    public ItemRequestFeed(RequestJpaRepository requestJpaRepository,
+                           UserJpaRepository userJpaRepository,
+                           ItemRequestMapper itemRequestMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${shareit.requests.feed.capacity:256}") int capacity,
+                           @Value("${shareit.requests.feed.poll-interval-ms:1000}") long pollIntervalMs,
+                           @Value("${shareit.requests.feed.max-commit-delay-ms:2000}") long maxCommitDelayMs,
+                           @Value("${shareit.requests.feed.heartbeat-ms:15000}") long heartbeatMs,
+                           @Value("${shareit.requests.feed.timeout-ms:600000}") long timeoutMs,
+                           @Value("${shareit.requests.feed.sender-threads:2}") int senderThreads) {
+        this.requestJpaRepository = requestJpaRepository;
+        this.userJpaRepository = userJpaRepository;
+        this.itemRequestMapper = itemRequestMapper;
+        this.capacity = capacity;
+        this.pollIntervalMs = pollIntervalMs;
+        this.maxCommitDelayMs = maxCommitDelayMs;
+        this.heartbeatMs = heartbeatMs;
+        this.timeoutMs = timeoutMs;
+        Gauge.builder("shareit.requests.feed.subscribers", subscribers, Set::size)
+                .register(meterRegistry);
+        this.ringReads = Counter.builder("shareit.requests.feed.reads")
+                .tag("source", "memory")
+                .register(meterRegistry);
+        this.databaseReads = Counter.builder("shareit.requests.feed.reads")
+                .tag("source", "database")
+                .register(meterRegistry);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "request-feed-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @PostConstruct
+    public void start() {
+        scheduler.execute(this::refresh);
+        if (pollIntervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::refresh, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        if (heartbeatMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(Subscriber::complete);
+    }
+
+
+    /**
+     * Сообщает о создании запроса вещи: буфер пополняется из базы данных
+     * в отдельном потоке, не задерживая ответ автору запроса.
+     */
+    public void onCreated() {
+        try {
+            scheduler.execute(this::refresh);
+        } catch (RuntimeException e) {
+            log.debug("Буфер запросов вещей остановлен");
+        }
+    }
+
+
+    /**
+     * Дочитывает в буфер запросы выше границы stableId, вытесняя самые старые, сдвигает
+     * границу и передаёт подписчикам запросы, оказавшиеся ниже неё. При первом вызове
+     * загружает в буфер последние capacity запросов.
+     */
+    public synchronized void refresh() {
+        try {
+            long stable = stableId;
+            if (floor == Long.MAX_VALUE) {
+                load();
+            } else {
+                append();
+            }
+            if (advanceStableId() > stable) {
+                subscribers.forEach(Subscriber::schedule);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось пополнить буфер запросов вещей: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Метод возвращает запросы других пользователей с идентификатором больше after
+     * (и не больше stableId) по возрастанию идентификатора в количестве не более size.
+     *
+     * @param userId (идентификатор пользователя, получающего запросы)
+     * @param after (идентификатор последнего полученного пользователем запроса)
+     * @param size (наибольшее количество возвращаемых запросов)
+     *
+     * @return List<ItemRequestOutDto>
+     */
+    public List<ItemRequestOutDto> getAfter(Long userId, long after, int size) {
+        long stable = stableId;
+        if (after >= floor) {
+            List<ItemRequestOutDto> result = new ArrayList<>();
+            Collection<ItemRequestOutDto> stored = after < stable
+                    ? ring.subMap(after, false, stable, true).values()
+                    : List.of();
+            for (ItemRequestOutDto request : stored) {
+                if (result.size() >= size) {
+                    break;
+                }
+                if (!userId.equals(request.getRequestor())) {
+                    result.add(request);
+                }
+            }
+            // Буфер мог вытеснить часть прочитанного, пока он обходился.
+            if (after >= floor) {
+                ringReads.increment();
+                return result;
+            }
+        }
+        databaseReads.increment();
+        List<ItemRequest> requests = requestJpaRepository.findAllAfter(userId, after, PageRequest.of(0, size));
+        if (floor != Long.MAX_VALUE) {
+            requests = requests.stream()
+                    .filter(itemRequest -> itemRequest.getId() <= stable)
+                    .collect(Collectors.toList());
+        }
+        return itemRequestMapper.toItemRequestOutDtos(requests);
+    }
+
+
+    /**
+     * Открывает поток новых запросов вещей для пользователя.
+     *
+     * @param userId (идентификатор подписывающегося пользователя)
+     * @param after (идентификатор последнего полученного запроса; если не задан,
+     *               передаются только запросы, созданные после подписки)
+     *
+     * @return SseEmitter (поток событий, возвращаемый контроллером)
+     */
+    public SseEmitter subscribe(Long userId, Long after) {
+        if (!userJpaRepository.existsById(userId)) {
+            log.debug("Объект типа User с id={} отсутствует в базе данных!", userId);
+            throw new NotFoundException("Пользователь не найден!");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, emitter, after != null ? after : currentStableId());
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // Первый комментарий сразу отправляет клиенту заголовки ответа.
+        subscriber.heartbeatDue = true;
+        subscriber.schedule();
+        log.debug("Пользователь с id={} подписан на новые запросы вещей после id={}", userId, subscriber.cursor);
+        return emitter;
+    }
+
+
+    private long currentStableId() {
+        if (floor == Long.MAX_VALUE) {
+            refresh();
+        }
+        return stableId;
+    }
+
+
+    /**
+     * Загружает последние capacity запросов. Пропуски между ними считаются окончательными:
+     * запросы, созданные до запуска, уже зафиксированы.
+     */
+    private void load() {
+        List<ItemRequest> latest = new ArrayList<>(requestJpaRepository
+                .findAll(PageRequest.of(0, capacity, Sort.by("id").descending()))
+                .getContent());
+        Collections.reverse(latest);
+        latest.forEach(this::put);
+        pending.clear();
+        stableId = latest.isEmpty() ? 0 : latest.get(latest.size() - 1).getId();
+        floor = latest.size() < capacity ? 0 : latest.get(0).getId() - 1;
+        log.debug("В буфер запросов вещей загружено {} запросов", latest.size());
+    }
+
+
+    private void append() {
+        long after = stableId;
+        List<ItemRequest> fresh;
+        do {
+            fresh = requestJpaRepository.findNewerThan(after, PageRequest.of(0, capacity));
+            for (ItemRequest itemRequest : fresh) {
+                put(itemRequest);
+                after = itemRequest.getId();
+            }
+            while (size > capacity) {
+                Map.Entry<Long, ItemRequestOutDto> oldest = ring.firstEntry();
+                // Граница сдвигается до удаления, чтобы читатели не потеряли запрос.
+                floor = Math.max(floor, oldest.getKey());
+                ring.remove(oldest.getKey());
+                size--;
+            }
+        } while (fresh.size() == capacity);
+    }
+
+
+    private void put(ItemRequest itemRequest) {
+        Long id = itemRequest.getId();
+        if (pending.containsKey(id)) {
+            return;
+        }
+        if (ring.put(id, itemRequestMapper.toItemRequestOutDto(itemRequest)) == null) {
+            size++;
+        }
+        pending.put(id, System.currentTimeMillis());
+    }
+
+
+    /**
+     * Сдвигает stableId по прочитанным запросам, пока под очередным нет пропуска,
+     * ожидающего фиксации. Возвращает новую границу.
+     */
+    private long advanceStableId() {
+        long now = System.currentTimeMillis();
+        long stable = stableId;
+        while (!pending.isEmpty()) {
+            Map.Entry<Long, Long> next = pending.firstEntry();
+            if (next.getKey() != stable + 1 && now - next.getValue() < maxCommitDelayMs) {
+                break;
+            }
+            stable = next.getKey();
+            pending.pollFirstEntry();
+        }
+        stableId = stable;
+        return stable;
+    }
+
+
+    private void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (now - subscriber.lastSentAt >= heartbeatMs / 2) {
+                subscriber.heartbeatDue = true;
+                subscriber.schedule();
+            }
+        }
+    }
+
+
+    private final class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long cursor;
+        private volatile boolean heartbeatDue;
+        private volatile long lastSentAt = System.currentTimeMillis();
+
+        private Subscriber(Long userId, SseEmitter emitter, long cursor) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        /**
+         * Отправляет запросы после курсора; выполняется не более чем в одном потоке, чтобы
+         * запросы уходили по порядку.
+         */
+        private void drain() {
+            try {
+                List<ItemRequestOutDto> batch;
+                do {
+                    long last = stableId;
+                    batch = getAfter(userId, cursor, SEND_BATCH_SIZE);
+                    for (ItemRequestOutDto request : batch) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(request.getId()))
+                                .name(REQUEST_EVENT)
+                                .data(request, MediaType.APPLICATION_JSON));
+                        cursor = request.getId();
+                        lastSentAt = System.currentTimeMillis();
+                        heartbeatDue = false;
+                    }
+                    if (batch.isEmpty()) {
+                        // Остальные прочитанные запросы - собственные запросы подписчика.
+                        cursor = Math.max(cursor, last);
+                    }
+                } while (!batch.isEmpty());
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    lastSentAt = System.currentTimeMillis();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Соединение потока запросов вещей пользователя с id={} закрыто", userId);
+                complete();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Не удалось отправить запросы вещей пользователю с id={}: {}", userId, e.getMessage());
+                complete();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (stableId > cursor || heartbeatDue) {
+                schedule();
+            }
+        }
+
+        private void complete() {
+            subscribers.remove(this);
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                log.debug("Поток запросов вещей пользователя с id={} уже закрыт", userId);
+            }
+        }
+    }
+}
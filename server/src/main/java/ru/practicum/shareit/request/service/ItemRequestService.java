@@ -65,4 +65,18 @@ public interface ItemRequestService {
      * @return List<ItemRequestOutDto> (список запросов в количестве size)
      */
     List<ItemRequestOutDto> getAllItemRequests(Long userId, Integer from, Integer size);
+
+
+    /**
+     * Метод возвращает запросы к вещам других пользователей, созданные после запроса
+     * с идентификатором after, в количестве не более size в порядке от более старых
+     * к более новым. Идентификатор последнего полученного запроса служит курсором
+     * для следующего вызова.
+     *
+     * @param after (идентификатор последнего полученного пользователем запроса)
+     * @param size (Количество запросов, которое необходимо передать за один вызов метода)
+     *
+     * @return List<ItemRequestOutDto> (список новых запросов в количестве не более size)
+     */
+    List<ItemRequestOutDto> getItemRequestsAfter(Long userId, Long after, Integer size);
 }
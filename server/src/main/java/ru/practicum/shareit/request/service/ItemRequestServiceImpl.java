@@ -5,10 +5,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxService;
 import ru.practicum.shareit.request.dto.ItemRequestInDto;
 import ru.practicum.shareit.request.dto.ItemRequestOutDto;
 import ru.practicum.shareit.request.mapper.ItemRequestMapper;
@@ -16,6 +20,7 @@ import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.RequestJpaRepository;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 
 import java.util.List;
 
@@ -27,6 +32,10 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     private final RequestJpaRepository requestJpaRepository;
     private final UserJpaRepository userJpaRepository;
     private final ItemRequestMapper itemRequestMapper;
+    private final UserCounterService userCounterService;
+    private final ItemRequestFeed itemRequestFeed;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
 
 
     @Override
@@ -37,7 +46,16 @@ public class ItemRequestServiceImpl implements ItemRequestService {
         }
         log.debug("Сохранение запроса вещи \"{}\" в базу данных от пользователя с id={}",
                 itemRequestDto.getDescription(), userId);
-        return itemRequestMapper.toItemRequestOutDto(requestJpaRepository.save(itemRequestMapper.toItemRequest(itemRequestDto, userId)));
+        ItemRequest itemRequest = itemRequestMapper.toItemRequest(itemRequestDto, userId);
+        ItemRequestOutDto itemRequestOutDto = transactionTemplate.execute(status -> {
+            ItemRequest savedRequest = requestJpaRepository.save(itemRequest);
+            ItemRequestOutDto createdRequest = itemRequestMapper.toItemRequestOutDto(savedRequest);
+            outboxService.record(OutboxEventType.REQUEST_CREATED, savedRequest.getId(), createdRequest);
+            userCounterService.onRequestCreated(userId);
+            return createdRequest;
+        });
+        itemRequestFeed.onCreated();
+        return itemRequestOutDto;
     }
 
 
@@ -45,8 +63,12 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     public ItemRequestOutDto patchItemRequest(Long userId, ItemRequestInDto itemRequestDto, Long requestId) {
         ItemRequest itemRequest = validateUpdateItemRequest(requestId, userId);
         itemRequestMapper.updateItemRequest(itemRequestDto, itemRequest);
+        if (requestJpaRepository.updateIfVersion(requestId, itemRequest.getVersion(), itemRequest.getDescription()) == 0) {
+            log.debug("Запрос вещи с id={} изменён другим запросом", requestId);
+            throw new ObjectOptimisticLockingFailureException(ItemRequest.class, requestId);
+        }
         log.debug("Запрос вещи c id={} обновлен пользователем {}!", requestId, userId);
-        return itemRequestMapper.toItemRequestOutDto(requestJpaRepository.save(itemRequest));
+        return itemRequestMapper.toItemRequestOutDto(itemRequest);
     }
 
 
@@ -84,7 +106,7 @@ public class ItemRequestServiceImpl implements ItemRequestService {
             throw new NotFoundException("Пользователь не найден!");
         }
 
-        int amountOfRequests = requestJpaRepository.findAmountOfRequests(userId);
+        long amountOfRequests = userCounterService.getRequests(userId);
         int pageNum = amountOfRequests > from ? from / size : 0;
 
         Pageable page = PageRequest
@@ -97,6 +119,19 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     }
 
 
+    @Override
+    public List<ItemRequestOutDto> getItemRequestsAfter(Long userId, Long after, Integer size) {
+        if (!userJpaRepository.existsById(userId)) {
+            log.debug("Объект типа User с id={} отсутствует в базе данных!", userId);
+            throw new NotFoundException("Пользователь не найден!");
+        }
+        List<ItemRequestOutDto> requestDtos = itemRequestFeed.getAfter(userId, after, size);
+        log.debug("Возвращаем пользователю с id={} новые запросы вещей после id={} в количестве {}",
+                userId, after, requestDtos.size());
+        return requestDtos;
+    }
+
+
     /**
      * Закрытый служебный метод проверяет объект типа ItemRequest
      * на соответствие ряду условий. Используется впоследствие
@@ -2,6 +2,7 @@ package ru.practicum.shareit.user.mapper;
 
 import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 import org.mapstruct.NullValuePropertyMappingStrategy;
 import ru.practicum.shareit.user.dto.UserDto;
@@ -15,8 +16,10 @@ import ru.practicum.shareit.user.model.User;
 public interface UserMapper {
     UserDto toUserDto(User user);
 
+    @Mapping(target = "version", ignore = true)
     User toUser(UserDto userDto);
 
+    @Mapping(target = "version", ignore = true)
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     void updateUserFromDto(UserDto userDto, @MappingTarget User user);
 }
@@ -13,7 +13,6 @@ import javax.persistence.*;
 @Table(name = "users", schema = "public")
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 public class User {
     @Id
@@ -24,4 +23,13 @@ public class User {
     private String name;
     @Column(name = "email", unique = true)
     private String email;
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    public User(Long id, String name, String email) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+    }
 }
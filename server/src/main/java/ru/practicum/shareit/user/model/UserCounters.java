@@ -0,0 +1,36 @@
+package ru.practicum.shareit.user.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Модель данных счётчиков пользователя: число его бронирований (как автора и как
+ * хозяина вещей, включая архив), вещей и запросов. Используется при постраничном выводе
+ * вместо подсчёта записей.
+ */
+@Entity
+@Table(name = "user_counters", schema = "public")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserCounters {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    @Column(name = "booker_booking_count")
+    private long bookerBookings;
+    @Column(name = "owner_booking_count")
+    private long ownerBookings;
+    @Column(name = "item_count")
+    private long items;
+    @Column(name = "request_count")
+    private long requests;
+}
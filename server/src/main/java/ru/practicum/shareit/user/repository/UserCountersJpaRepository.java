@@ -0,0 +1,82 @@
+package ru.practicum.shareit.user.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.user.model.UserCounters;
+
+/**
+ * Интерфейс UserCountersJpaRepository хранит счётчики пользователей. Счётчики
+ * изменяются атомарным UPDATE без чтения строки в транзакции, изменяющей записи;
+ * пересчёт по данным таблиц выполняется для диапазона идентификаторов пользователей.
+ */
+public interface UserCountersJpaRepository extends CrudRepository<UserCounters, Long> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "update user_counters set booker_booking_count = booker_booking_count + 1 where user_id = ?1", nativeQuery = true)
+    int incrementBookerBookings(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update user_counters set owner_booking_count = owner_booking_count + 1 where user_id = ?1", nativeQuery = true)
+    int incrementOwnerBookings(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update user_counters set item_count = item_count + 1 where user_id = ?1", nativeQuery = true)
+    int incrementItems(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update user_counters set request_count = request_count + 1 where user_id = ?1", nativeQuery = true)
+    int incrementRequests(Long userId);
+
+    /**
+     * Вычитает из счётчиков хозяев вещей бронирования, сделанные пользователем bookerId.
+     */
+    @Modifying
+    @Query(value = "update user_counters set owner_booking_count = owner_booking_count - " +
+            "(select count(*) from bookings as b join items as i on b.item_id = i.item_id " +
+            "where b.user_id = ?1 and i.user_id = user_counters.user_id) " +
+            "where user_id in (select i.user_id from bookings as b join items as i on b.item_id = i.item_id " +
+            "where b.user_id = ?1)", nativeQuery = true)
+    int subtractBookingsOfBooker(Long bookerId);
+
+    /**
+     * Вычитает из счётчиков авторов бронирований их бронирования вещей пользователя ownerId.
+     */
+    @Modifying
+    @Query(value = "update user_counters set booker_booking_count = booker_booking_count - " +
+            "(select count(*) from bookings as b join items as i on b.item_id = i.item_id " +
+            "where i.user_id = ?1 and b.user_id = user_counters.user_id) " +
+            "where user_id in (select b.user_id from bookings as b join items as i on b.item_id = i.item_id " +
+            "where i.user_id = ?1)", nativeQuery = true)
+    int subtractBookingsOfOwner(Long ownerId);
+
+    @Query(value = "select coalesce(max(user_id), 0) from users", nativeQuery = true)
+    long findMaxUserId();
+
+    @Modifying
+    @Query(value = "insert into user_counters (user_id, booker_booking_count, owner_booking_count, item_count, request_count) " +
+            "select u.user_id, 0, 0, 0, 0 from users as u " +
+            "where u.user_id between ?1 and ?2 " +
+            "and not exists (select 1 from user_counters as c where c.user_id = u.user_id)", nativeQuery = true)
+    int insertMissing(long fromUserId, long toUserId);
+
+    @Modifying
+    @Query(value = "update user_counters set " +
+            "booker_booking_count = " +
+            "(select count(*) from bookings as b where b.user_id = user_counters.user_id) + " +
+            "(select count(*) from bookings_archive as b where b.user_id = user_counters.user_id), " +
+            "owner_booking_count = " +
+            "(select count(*) from bookings as b join items as i on b.item_id = i.item_id " +
+            "where i.user_id = user_counters.user_id) + " +
+            "(select count(*) from bookings_archive as b join items as i on b.item_id = i.item_id " +
+            "where i.user_id = user_counters.user_id), " +
+            "item_count = (select count(*) from items as i where i.user_id = user_counters.user_id), " +
+            "request_count = (select count(*) from requests as r where r.user_id = user_counters.user_id) " +
+            "where user_id between ?1 and ?2", nativeQuery = true)
+    int recount(long fromUserId, long toUserId);
+}
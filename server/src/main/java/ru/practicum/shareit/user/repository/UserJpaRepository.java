@@ -1,6 +1,9 @@
 package ru.practicum.shareit.user.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.user.model.User;
 
 import java.util.List;
@@ -8,4 +11,14 @@ import java.util.List;
 
 public interface UserJpaRepository extends PagingAndSortingRepository<User, Long> {
     List<User> findAll();
+
+    /**
+     * Изменяет пользователя, только если версия строки равна version, и увеличивает её.
+     * Возвращает 0, если пользователь с тех пор изменён другим запросом или удалён.
+     */
+    @Transactional
+    @Modifying
+    @Query("update User as u set u.name = ?3, u.email = ?4, u.version = u.version + 1 " +
+            "where u.id = ?1 and u.version = ?2")
+    int updateIfVersion(Long userId, Long version, String name, String email);
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package ru.practicum.shareit.user.service;
+
+/**
+ * Интерфейс-сервис UserCounterService определяет контракт поддержки счётчиков
+ * пользователя, которые заменяют подсчёт записей при постраничном выводе:
+ * бронирований пользователя как автора и как хозяина вещей, его вещей и запросов.
+ * Методы on* вызываются в той же транзакции, что и изменение записей, поэтому
+ * счётчики не отстают от таблиц.
+ */
+public interface UserCounterService {
+
+    long getBookerBookings(Long userId);
+
+
+    long getOwnerBookings(Long userId);
+
+
+    long getItems(Long userId);
+
+
+    long getRequests(Long userId);
+
+
+    /**
+     * Учитывает новое бронирование у его автора и у хозяина вещи.
+     *
+     * @param bookerId (идентификатор автора бронирования)
+     * @param ownerId (идентификатор хозяина вещи)
+     */
+    void onBookingCreated(Long bookerId, Long ownerId);
+
+
+    void onItemCreated(Long ownerId);
+
+
+    void onRequestCreated(Long userId);
+
+
+    /**
+     * Заводит счётчики нового пользователя. Вызывается в транзакции, добавляющей его.
+     *
+     * @param userId (идентификатор пользователя)
+     */
+    void onUserCreated(Long userId);
+
+
+    /**
+     * Вычитает из счётчиков других пользователей бронирования, которые удаляются вместе
+     * с пользователем: его собственные и бронирования его вещей. Вызывается в транзакции,
+     * удаляющей пользователя, до удаления.
+     *
+     * @param userId (идентификатор удаляемого пользователя)
+     */
+    void onUserDeleting(Long userId);
+
+
+    /**
+     * Пересчитывает счётчики всех пользователей по данным таблиц и заводит
+     * недостающие.
+     *
+     * @return int (число пересчитанных пользователей)
+     */
+    int reconcile();
+}
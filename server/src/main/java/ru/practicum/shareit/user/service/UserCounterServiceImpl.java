@@ -0,0 +1,176 @@
+package ru.practicum.shareit.user.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.user.model.UserCounters;
+import ru.practicum.shareit.user.repository.UserCountersJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Класс UserCounterServiceImpl хранит счётчики пользователей в таблице user_counters.
+ * Строка счётчиков заводится вместе с пользователем; при создании бронирования, вещи
+ * или запроса соответствующий счётчик увеличивается, а при удалении пользователя
+ * из счётчиков других пользователей вычитаются удаляемые с ним бронирования - в той же
+ * транзакции, что и изменение записей.
+ * У пользователей, созданных до появления счётчиков, строки нет, пока её не заведёт
+ * пересчёт; до этого чтение счётчика подсчитывает записи как прежде.
+ * Каждые reconcile-interval-ms счётчики всех пользователей пересчитываются пачками по
+ * reconcile-batch-size идентификаторов, что исправляет расхождения после сбоев.
+ */
+@Service
+@Slf4j
+public class UserCounterServiceImpl implements UserCounterService {
+
+    private final UserCountersJpaRepository userCountersJpaRepository;
+    private final BookingJpaRepository bookingJpaRepository;
+    private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    private final RequestJpaRepository requestJpaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long reconcileIntervalMs;
+    private final int reconcileBatchSize;
+    private ScheduledExecutorService scheduler;
+
+    public UserCounterServiceImpl(UserCountersJpaRepository userCountersJpaRepository,
+                                  BookingJpaRepository bookingJpaRepository,
+                                  ItemPagingAndSortingRepository itemPagingAndSortingRepository,
+                                  RequestJpaRepository requestJpaRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${shareit.counters.reconcile-interval-ms:600000}") long reconcileIntervalMs,
+                                  @Value("${shareit.counters.reconcile-batch-size:1000}") int reconcileBatchSize) {
+        this.userCountersJpaRepository = userCountersJpaRepository;
+        this.bookingJpaRepository = bookingJpaRepository;
+        this.itemPagingAndSortingRepository = itemPagingAndSortingRepository;
+        this.requestJpaRepository = requestJpaRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.reconcileIntervalMs = reconcileIntervalMs;
+        this.reconcileBatchSize = reconcileBatchSize;
+    }
+
+
+    @PostConstruct
+    public void start() {
+        if (reconcileIntervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-counters-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::runReconcile, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    @Override
+    public long getBookerBookings(Long userId) {
+        return read(userId, UserCounters::getBookerBookings, () -> bookingJpaRepository.findAmountByBookerId(userId));
+    }
+
+
+    @Override
+    public long getOwnerBookings(Long userId) {
+        return read(userId, UserCounters::getOwnerBookings, () -> bookingJpaRepository.findStuffBookingsAmountByOwnerId(userId));
+    }
+
+
+    @Override
+    public long getItems(Long userId) {
+        return read(userId, UserCounters::getItems, () -> itemPagingAndSortingRepository.findItemsAmountByOwnerId(userId));
+    }
+
+
+    @Override
+    public long getRequests(Long userId) {
+        return read(userId, UserCounters::getRequests, () -> requestJpaRepository.findAmountOfRequests(userId));
+    }
+
+
+    @Override
+    public void onBookingCreated(Long bookerId, Long ownerId) {
+        userCountersJpaRepository.incrementBookerBookings(bookerId);
+        if (ownerId != null) {
+            userCountersJpaRepository.incrementOwnerBookings(ownerId);
+        }
+    }
+
+
+    @Override
+    public void onItemCreated(Long ownerId) {
+        userCountersJpaRepository.incrementItems(ownerId);
+    }
+
+
+    @Override
+    public void onRequestCreated(Long userId) {
+        userCountersJpaRepository.incrementRequests(userId);
+    }
+
+
+    @Override
+    public void onUserCreated(Long userId) {
+        userCountersJpaRepository.insertMissing(userId, userId);
+    }
+
+
+    @Override
+    public void onUserDeleting(Long userId) {
+        userCountersJpaRepository.subtractBookingsOfBooker(userId);
+        userCountersJpaRepository.subtractBookingsOfOwner(userId);
+    }
+
+
+    @Override
+    public int reconcile() {
+        long maxUserId = userCountersJpaRepository.findMaxUserId();
+        int reconciled = 0;
+        for (long from = 1; from <= maxUserId; from += reconcileBatchSize) {
+            reconciled += reconcile(from, from + reconcileBatchSize - 1);
+        }
+        log.debug("Пересчитаны счётчики {} пользователей", reconciled);
+        return reconciled;
+    }
+
+
+    private long read(Long userId, ToLongFunction<UserCounters> counter, LongSupplier fallback) {
+        Optional<UserCounters> counters = userCountersJpaRepository.findById(userId);
+        return counters.isPresent() ? counter.applyAsLong(counters.get()) : fallback.getAsLong();
+    }
+
+
+    private int reconcile(long fromUserId, long toUserId) {
+        Integer reconciled = transactionTemplate.execute(status -> {
+            userCountersJpaRepository.insertMissing(fromUserId, toUserId);
+            return userCountersJpaRepository.recount(fromUserId, toUserId);
+        });
+        return reconciled != null ? reconciled : 0;
+    }
+
+
+    private void runReconcile() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось пересчитать счётчики пользователей", e);
+        }
+    }
+}
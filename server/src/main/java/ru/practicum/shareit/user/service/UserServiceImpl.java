@@ -5,8 +5,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.mapstruct.factory.Mappers;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.invalidation.VersionedCache;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.mapper.UserMapper;
 import ru.practicum.shareit.user.model.User;
@@ -20,6 +23,8 @@ import java.util.List;
  * взаимодействию со списком пользователей (бизнес-логика) -
  * объекты типа User
  * (добавление, удаление, вывод списка пользователей).
+ * Пользователь, запрошенный по id, кэшируется в userCache; изменение и удаление
+ * пользователя вытесняют его из кэшей всех экземпляров сервера.
  */
 @Service
 @RequiredArgsConstructor
@@ -27,6 +32,9 @@ import java.util.List;
 public class UserServiceImpl implements UserService {
 
     private final UserJpaRepository userJpaRepository;
+    private final VersionedCache<UserDto> userCache;
+    private final TransactionTemplate transactionTemplate;
+    private final UserCounterService userCounterService;
     private final UserMapper userMapper = Mappers.getMapper(UserMapper.class);
 
     @Override
@@ -34,7 +42,11 @@ public class UserServiceImpl implements UserService {
         User user = userMapper.toUser(userDto);
         User addedUser;
         try {
-            addedUser = userJpaRepository.save(user);
+            addedUser = transactionTemplate.execute(status -> {
+                User savedUser = userJpaRepository.save(user);
+                userCounterService.onUserCreated(savedUser.getId());
+                return savedUser;
+            });
         } catch (DataIntegrityViolationException ex) {
             log.debug("При добавлении пользователя {} возникла ошибка на стороне базы данных", userDto.getName());
             throw new DataIntegrityViolationException("Ошибка при добавлении пользователя!");
@@ -49,7 +61,11 @@ public class UserServiceImpl implements UserService {
                         .findById(userId)
                         .orElseThrow(() -> new NotFoundException("Пользователь с таким id не найден!"));
         userMapper.updateUserFromDto(userDto, addedUser);
-        userJpaRepository.save(addedUser);
+        if (userJpaRepository.updateIfVersion(userId, addedUser.getVersion(), addedUser.getName(), addedUser.getEmail()) == 0) {
+            log.debug("Пользователь с id={} изменён другим запросом", userId);
+            throw new ObjectOptimisticLockingFailureException(User.class, userId);
+        }
+        userCache.invalidate(userId);
         log.debug("Пользователь \"{}\" обновлён!", addedUser.getName());
         return userMapper.toUserDto(addedUser);
     }
@@ -69,17 +85,22 @@ public class UserServiceImpl implements UserService {
     @Override
     public Long deleteUser(Long userId) {
         log.debug("Удаляем пользователя с id={}", userId);
-        userJpaRepository.deleteById(userId);
+        transactionTemplate.executeWithoutResult(status -> {
+            userCounterService.onUserDeleting(userId);
+            userJpaRepository.deleteById(userId);
+        });
+        userCache.invalidate(userId);
         return userId;
     }
 
 
-    @Transactional(readOnly = true)
     @Override
     public UserDto getUser(Long userId) {
-       User addedUserOpt = userJpaRepository.findById(userId).orElseThrow(
-               () -> new NotFoundException("Пользователь не найден!"));
-       log.debug("Возвращаем пользователя с id={}", userId);
-        return userMapper.toUserDto(addedUserOpt);
+        // Значение для кэша читается с основного сервера, а не с реплики: отстающая реплика
+        // вернула бы пользователя, сообщение об изменении которого уже обработано.
+        UserDto userDto = userCache.get(userId, () -> transactionTemplate.execute(status -> userMapper.toUserDto(
+                userJpaRepository.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден!")))));
+        log.debug("Возвращаем пользователя с id={}", userId);
+        return userDto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package ru.practicum.shareit.wire;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Класс SmileMessageConverterConfigurer позволяет контроллерам сервера (*ServerController)
+ * принимать и отдавать тела в бинарном формате Smile (application/x-jackson-smile),
+ * который запрашивает шлюз. Smile кодирует те же DTO, что и JSON, но компактнее
+ * и быстрее разбирается.
+ * Конвертер строится на ObjectMapper с настройками Spring Boot, чтобы даты и прочие поля
+ * кодировались так же, как в JSON. Он добавляется в конец списка, поэтому клиенты,
+ * не запросившие Smile явно, по-прежнему получают JSON.
+ */
+@Component
+public class SmileMessageConverterConfigurer implements WebMvcConfigurer {
+
+    private final MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    public SmileMessageConverterConfigurer(Jackson2ObjectMapperBuilder builder) {
+        this.smileConverter = new MappingJackson2SmileHttpMessageConverter(
+                builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(MappingJackson2SmileHttpMessageConverter.class::isInstance);
+        converters.add(smileConverter);
+    }
+}
@@ -0,0 +1,22 @@
+DROP TABLE IF EXISTS bookings_archive;
+DROP TABLE IF EXISTS schema_epoch;
+
+CREATE TABLE IF NOT EXISTS bookings_archive (
+  booking_id BIGINT NOT NULL,
+  start_date TIMESTAMP WITHOUT TIME ZONE,
+  end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  item_id BIGINT,
+  user_id BIGINT,
+  status VARCHAR(255),
+  version BIGINT NOT NULL DEFAULT 0,
+  CONSTRAINT pk_booking_archive PRIMARY KEY (booking_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_booker_start ON bookings_archive (user_id, start_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_item_end ON bookings_archive (item_id, end_date);
+
+CREATE TABLE IF NOT EXISTS schema_epoch (
+  epoch VARCHAR(64) NOT NULL
+);
+
+INSERT INTO schema_epoch (epoch) VALUES (CAST(RANDOM_UUID() AS VARCHAR));
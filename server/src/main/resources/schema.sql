@@ -1,3 +1,6 @@
+DROP TABLE IF EXISTS idempotency_keys;
+DROP TABLE IF EXISTS outbox;
+DROP TABLE IF EXISTS user_counters;
 DROP TABLE IF EXISTS bookings;
 DROP TABLE IF EXISTS comments;
 DROP TABLE IF EXISTS items;
@@ -8,6 +11,7 @@ CREATE TABLE IF NOT EXISTS users (
   user_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
   name VARCHAR(255) NOT NULL,
   email VARCHAR(512) NOT NULL,
+  version BIGINT NOT NULL DEFAULT 0,
   CONSTRAINT pk_user PRIMARY KEY (user_id),
   CONSTRAINT UQ_USER_EMAIL UNIQUE (email)
 );
@@ -17,6 +21,7 @@ CREATE TABLE IF NOT EXISTS requests (
   description VARCHAR(2000),
   user_id BIGINT,
   created TIMESTAMP WITHOUT TIME ZONE,
+  version BIGINT NOT NULL DEFAULT 0,
   CONSTRAINT pk_request PRIMARY KEY (request_id),
   CONSTRAINT fk_requestor_requests FOREIGN KEY (user_id) REFERENCES users
 );
@@ -28,6 +33,7 @@ CREATE TABLE IF NOT EXISTS items (
   is_available BOOLEAN,
   user_id BIGINT,
   request_id BIGINT,
+  version BIGINT NOT NULL DEFAULT 0,
   CONSTRAINT pk_item PRIMARY KEY (item_id),
   CONSTRAINT fk_owner_items FOREIGN KEY (user_id) REFERENCES users,
   CONSTRAINT fk_request_items FOREIGN KEY (request_id) REFERENCES requests
@@ -52,7 +58,48 @@ CREATE TABLE IF NOT EXISTS bookings (
   item_id BIGINT,
   user_id BIGINT,
   status VARCHAR(255),
+  version BIGINT NOT NULL DEFAULT 0,
   CONSTRAINT pk_booking PRIMARY KEY (booking_id),
   CONSTRAINT fk_item_bookings FOREIGN KEY (item_id) REFERENCES items,
   CONSTRAINT fk_booker_bookings FOREIGN KEY (user_id) REFERENCES users
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_item_booker_end ON bookings (item_id, user_id, end_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_end_date ON bookings (end_date);
+
+-- bookings_archive создаётся в schema-h2.sql или schema-postgresql.sql, до таблиц users и items.
+ALTER TABLE bookings_archive ADD CONSTRAINT fk_item_bookings_archive FOREIGN KEY (item_id) REFERENCES items;
+ALTER TABLE bookings_archive ADD CONSTRAINT fk_booker_bookings_archive FOREIGN KEY (user_id) REFERENCES users;
+
+CREATE TABLE IF NOT EXISTS user_counters (
+  user_id BIGINT NOT NULL,
+  booker_booking_count BIGINT NOT NULL DEFAULT 0,
+  owner_booking_count BIGINT NOT NULL DEFAULT 0,
+  item_count BIGINT NOT NULL DEFAULT 0,
+  request_count BIGINT NOT NULL DEFAULT 0,
+  CONSTRAINT pk_user_counters PRIMARY KEY (user_id),
+  CONSTRAINT fk_user_counters FOREIGN KEY (user_id) REFERENCES users ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS outbox (
+  event_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  aggregate_type VARCHAR(32) NOT NULL,
+  aggregate_id BIGINT NOT NULL,
+  event_type VARCHAR(64) NOT NULL,
+  payload VARCHAR NOT NULL,
+  created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_outbox PRIMARY KEY (event_id)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  idempotency_id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  user_id BIGINT NOT NULL,
+  idempotency_key VARCHAR(255) NOT NULL,
+  fingerprint VARCHAR(512) NOT NULL,
+  response VARCHAR NOT NULL,
+  created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_idempotency_keys PRIMARY KEY (idempotency_id),
+  CONSTRAINT uq_idempotency_keys UNIQUE (user_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys (created);
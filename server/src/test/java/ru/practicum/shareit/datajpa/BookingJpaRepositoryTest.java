@@ -547,6 +547,61 @@ public class BookingJpaRepositoryTest {
         Assertions.assertEquals(waitingBookings, foundBookings);
     }
 
+    @Test
+    public void testFindWaitingStuffBookingsOnlyOfOwner() {
+        LocalDateTime now = LocalDateTime.now();
+
+        User owner1 = new User(null, "Petr Petrov", "petrpetrov@gmail.com");
+        User owner2 = new User(null, "Ilya Ilev", "ilyailev@gmail.com");
+        User owner3 = new User(null, "Igor Igorev", "igorigorev@gmail.com");
+
+        User booker1 = new User(null, "Andrey Andreev", "andreyandreev@gmail.com");
+        User booker2 = new User(null, "Alexey Alexeev", "alexeyalexeev@gmail.com");
+
+        Item item1 = new Item(null, "name1", "description1", true, owner1, null);
+        Item item2 = new Item(null, "name2", "description2", true, owner1, null);
+        Item item3 = new Item(null, "name3", "description3", true, owner2, null);
+        Item item4 = new Item(null, "name4", "description4", true, owner3, null);
+
+        Booking booking1 = new Booking(null, now.plusHours(2), now.plusHours(10), item1, booker1, BookingStatus.WAITING);
+        Booking booking2 = new Booking(null, now.plusHours(4), now.plusHours(30), item2, booker2, BookingStatus.WAITING);
+        Booking booking3 = new Booking(null, now.plusHours(6), now.plusHours(50), item2, booker1, BookingStatus.APPROVED);
+        Booking booking4 = new Booking(null, now.plusHours(8), now.plusHours(70), item3, booker1, BookingStatus.REJECTED);
+        Booking booking5 = new Booking(null, now.plusHours(10), now.plusHours(90), item4, booker2, BookingStatus.WAITING);
+
+        userJpaRepository.save(owner1);
+        userJpaRepository.save(owner2);
+        userJpaRepository.save(owner3);
+
+        userJpaRepository.save(booker1);
+        userJpaRepository.save(booker2);
+
+        itemPagingAndSortingRepository.save(item1);
+        itemPagingAndSortingRepository.save(item2);
+        itemPagingAndSortingRepository.save(item3);
+        itemPagingAndSortingRepository.save(item4);
+
+        bookingJpaRepository.save(booking1);
+        bookingJpaRepository.save(booking2);
+        bookingJpaRepository.save(booking3);
+        bookingJpaRepository.save(booking4);
+        bookingJpaRepository.save(booking5);
+
+        Pageable page = PageRequest.of(0, 5);
+
+        List<Booking> waitingBookings = List.of(booking2, booking1);
+        List<Booking> foundBookings = bookingJpaRepository.findWaitingStuffBookingsByOwnerId(owner1.getId(), page);
+        Assertions.assertEquals(waitingBookings, foundBookings);
+
+        waitingBookings = List.of();
+        foundBookings = bookingJpaRepository.findWaitingStuffBookingsByOwnerId(owner2.getId(), page);
+        Assertions.assertEquals(waitingBookings, foundBookings);
+
+        waitingBookings = List.of(booking5);
+        foundBookings = bookingJpaRepository.findWaitingStuffBookingsByOwnerId(owner3.getId(), page);
+        Assertions.assertEquals(waitingBookings, foundBookings);
+    }
+
 
     @Test
     public void testFindRejectedStuffBookingsByOwnerId() {
@@ -749,7 +804,7 @@ public class BookingJpaRepositoryTest {
 
 
     @Test
-    public void testFindBookingByItemIdAndBookerId() {
+    public void testExistsPastBookingByItemIdAndBookerId() {
         LocalDateTime now = LocalDateTime.now();
 
         User owner1 = new User(null, "Petr Petrov", "petrpetrov@gmail.com");
@@ -800,17 +855,10 @@ public class BookingJpaRepositoryTest {
         bookingJpaRepository.save(booking6);
         bookingJpaRepository.save(booking7);
 
-        List<Booking> waitingBookings = List.of(booking1, booking2, booking5);
-        List<Booking> foundBookings = bookingJpaRepository.findBookingByItemIdAndBookerId(item1.getId(), booker1.getId(), now);
-        Assertions.assertEquals(waitingBookings, foundBookings);
-
-        waitingBookings = List.of(booking6);
-        foundBookings = bookingJpaRepository.findBookingByItemIdAndBookerId(item6.getId(), booker2.getId(), now);
-        Assertions.assertEquals(waitingBookings, foundBookings);
-
-        waitingBookings = List.of();
-        foundBookings = bookingJpaRepository.findBookingByItemIdAndBookerId(item5.getId(), booker4.getId(), now);
-        Assertions.assertEquals(waitingBookings, foundBookings);
+        Assertions.assertTrue(bookingJpaRepository.existsPastBookingByItemIdAndBookerId(item1.getId(), booker1.getId(), now));
+        Assertions.assertTrue(bookingJpaRepository.existsPastBookingByItemIdAndBookerId(item6.getId(), booker2.getId(), now));
+        Assertions.assertFalse(bookingJpaRepository.existsPastBookingByItemIdAndBookerId(item3.getId(), booker1.getId(), now));
+        Assertions.assertFalse(bookingJpaRepository.existsPastBookingByItemIdAndBookerId(item5.getId(), booker4.getId(), now));
     }
 
 
@@ -58,6 +58,21 @@ public class ItemJpaRepositoryTest {
     }
 
 
+    @Test
+    public void testUpdateIfVersion() {
+        User owner = new User(null, "Andrey Andreev", "andreyandreev@gmail.com");
+        Item item = new Item(null, "name1", "description1", true, owner, null);
+        userJpaRepository.save(owner);
+        itemPagingAndSortingRepository.save(item);
+        Assertions.assertEquals(0L, item.getVersion());
+
+        Assertions.assertEquals(1, itemPagingAndSortingRepository.updateIfVersion(item.getId(), 0L,
+                "name2", "description2", false));
+        Assertions.assertEquals(0, itemPagingAndSortingRepository.updateIfVersion(item.getId(), 0L,
+                "name3", "description3", true));
+    }
+
+
     @Test
     public void testFindByRequestId() {
 
@@ -0,0 +1,112 @@
+package ru.practicum.shareit.integrational;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingArchiveJob;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserService;
+
+import javax.persistence.EntityManager;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Transactional
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class BookingArchiveTest {
+    private final EntityManager em;
+    private final BookingService bookingService;
+    private final BookingArchiveJob bookingArchiveJob;
+    private final BookingJpaRepository bookingJpaRepository;
+    private final UserService userService;
+    private final UserJpaRepository userJpaRepository;
+    private final ItemService itemService;
+    private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+
+    @Test
+    void testFinishedBookingsAreArchivedAndStillListed() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = new User(null, "Petr Petrov", "petrpetrov@gmail.com");
+        User booker = new User(null, "Ivan Ivanov", "ivanivanov@gmail.com");
+        Item item = new Item(null, "Дрель", "Простая дрель", true, owner, null);
+        em.persist(owner);
+        em.persist(booker);
+        em.persist(item);
+        Booking oldApproved = booking(now.minusDays(201), now.minusDays(200), item, booker, BookingStatus.APPROVED);
+        booking(now.minusDays(151), now.minusDays(150), item, booker, BookingStatus.CANCELED);
+        booking(now.minusDays(121), now.minusDays(120), item, booker, BookingStatus.REJECTED);
+        booking(now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED);
+        booking(now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.WAITING);
+        em.flush();
+
+        int archived = bookingArchiveJob.archive(now.minusDays(90));
+        em.clear();
+
+        assertThat(archived, equalTo(2));
+        assertThat(count("bookings", booker), equalTo(3));
+        assertThat(count("bookings_archive", booker), equalTo(2));
+        assertThat(bookingService.getBookings(booker.getId(), "ALL", 0, 10).size(), equalTo(5));
+        assertThat(bookingService.getBookings(booker.getId(), "PAST", 0, 10).size(), equalTo(3));
+        assertThat(bookingService.getBookings(booker.getId(), "REJECTED", 0, 10).size(), equalTo(1));
+        assertThat(bookingService.getBookings(booker.getId(), "FUTURE", 0, 10).size(), equalTo(1));
+        assertThat(bookingService.getUserStuffBookings(owner.getId(), "ALL", 0, 10).size(), equalTo(5));
+        assertThat(bookingService.getUserStuffBookings(owner.getId(), "PAST", 0, 10).size(), equalTo(3));
+        assertThat(bookingService.getBooking(oldApproved.getId(), booker.getId()).getId(), equalTo(oldApproved.getId()));
+        assertThat(bookingArchiveJob.archive(now.minusDays(90)), equalTo(0));
+    }
+
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testBookerWithArchivedBookingsIsNotDeleted() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Olga Petrova", "olgapetrova@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Oleg Sidorov", "olegsidorov@gmail.com"));
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "Пила", "Ручная пила", true, null, null, List.of()));
+        bookingJpaRepository.save(new Booking(null, now.minusDays(201), now.minusDays(200),
+                itemPagingAndSortingRepository.findById(item.getId()).orElseThrow(),
+                userJpaRepository.findById(booker.getId()).orElseThrow(), BookingStatus.APPROVED));
+
+        bookingArchiveJob.archive(now.minusDays(90));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.deleteUser(booker.getId()));
+        assertThat(bookingService.getUserStuffBookings(owner.getId(), "ALL", 0, 10).size(), equalTo(1));
+    }
+
+
+    private Booking booking(LocalDateTime start, LocalDateTime end, Item item, User booker, BookingStatus status) {
+        Booking booking = new Booking(null, start, end, item, booker, status);
+        em.persist(booking);
+        return booking;
+    }
+
+
+    private int count(String table, User booker) {
+        return ((BigInteger) em.createNativeQuery("select count(*) from " + table + " where user_id = ?1")
+                .setParameter(1, booker.getId())
+                .getSingleResult()).intValue();
+    }
+}
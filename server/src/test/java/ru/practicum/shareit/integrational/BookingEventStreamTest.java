@@ -0,0 +1,150 @@
+package ru.practicum.shareit.integrational;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingEventStream;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+@SpringBootTest(
+        properties = {"db.name=test", "shareit.booking.events.heartbeat-ms=200"},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class BookingEventStreamTest {
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    @Autowired
+    private UserJpaRepository userJpaRepository;
+    @Autowired
+    private ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    @Autowired
+    private BookingJpaRepository bookingJpaRepository;
+    @Autowired
+    private BookingEventStream bookingEventStream;
+    @Autowired
+    private InvalidationBus invalidationBus;
+    @LocalServerPort
+    private int port;
+    private User user;
+    private User booker;
+    private Item item;
+    private Booking booking;
+
+    @AfterEach
+    void deleteUser() {
+        if (booking != null) {
+            bookingJpaRepository.delete(booking);
+        }
+        if (item != null) {
+            itemPagingAndSortingRepository.delete(item);
+        }
+        if (booker != null) {
+            userJpaRepository.delete(booker);
+        }
+        if (user != null) {
+            userJpaRepository.delete(user);
+        }
+    }
+
+
+    @Test
+    void testSubscriberReceivesBookingsAndHeartbeats() throws Exception {
+        user = userJpaRepository.save(new User(null, "Stream Subscriber", "streamsubscriber@gmail.com"));
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        BookingOutcomingDto booking = new BookingOutcomingDto(7L, start, start.plusDays(1),
+                new ItemDto(1L, "Дрель", "Простая дрель", true, 2L, null, List.of()),
+                new UserDto(user.getId(), user.getName(), user.getEmail()),
+                "APPROVED");
+
+        HttpResponse<InputStream> response = httpClient.send(request(user.getId()), HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode(), equalTo(200));
+        assertThat(response.headers().firstValue("Content-Type").orElse(""), startsWith("text/event-stream"));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            assertThat(reader.readLine(), equalTo(":heartbeat"));
+            assertThat(reader.readLine(), equalTo(""));
+
+            bookingEventStream.publish(user.getId() + 1000, booking);
+            bookingEventStream.publish(user.getId(), booking);
+            assertThat(reader.readLine(), startsWith("id:"));
+            assertThat(reader.readLine(), equalTo("event:booking"));
+            String data = reader.readLine();
+            assertThat(data, startsWith("data:"));
+            assertThat(data, containsString("\"id\":7"));
+            assertThat(data, containsString("\"status\":\"APPROVED\""));
+            assertThat(reader.readLine(), equalTo(""));
+
+            assertThat(reader.readLine(), equalTo(":heartbeat"));
+        }
+    }
+
+
+    @Test
+    void testBookingChangedOnAnyInstanceReachesSubscriber() throws Exception {
+        user = userJpaRepository.save(new User(null, "Stream Owner", "streamowner@gmail.com"));
+        booker = userJpaRepository.save(new User(null, "Stream Booker", "streambooker@gmail.com"));
+        item = itemPagingAndSortingRepository.save(new Item(null, "Пила", "Ручная пила", true, user, null));
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        booking = bookingJpaRepository.save(new Booking(null, start, start.plusDays(1), item, booker, BookingStatus.WAITING));
+
+        HttpResponse<InputStream> response = httpClient.send(request(user.getId()), HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            assertThat(reader.readLine(), equalTo(":heartbeat"));
+            assertThat(reader.readLine(), equalTo(""));
+
+            invalidationBus.publish("item:" + item.getId());
+            invalidationBus.publish("booking:" + booking.getId());
+            assertThat(reader.readLine(), startsWith("id:"));
+            assertThat(reader.readLine(), equalTo("event:booking"));
+            String data = reader.readLine();
+            assertThat(data, containsString("\"id\":" + booking.getId()));
+            assertThat(data, containsString("\"status\":\"WAITING\""));
+        }
+    }
+
+
+    @Test
+    void testUnknownUserCannotSubscribe() throws Exception {
+        HttpResponse<String> response = httpClient.send(request(-1L), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode(), equalTo(404));
+    }
+
+
+    private HttpRequest request(Long userId) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/bookings/stream"))
+                .header("X-Sharer-User-Id", String.valueOf(userId))
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+    }
+}
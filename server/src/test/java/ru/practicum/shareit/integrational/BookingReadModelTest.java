@@ -0,0 +1,173 @@
+package ru.practicum.shareit.integrational;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingArchiveJob;
+import ru.practicum.shareit.booking.service.BookingReadModel;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.mapper.UserMapper;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
+import ru.practicum.shareit.user.service.UserService;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(
+        properties = {
+                "db.name=test",
+                "spring.datasource.url=jdbc:h2:mem:shareit-read-model",
+                "shareit.booking.read-model.enabled=true",
+                "shareit.booking.read-model.verify-rate=1"
+        },
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class BookingReadModelTest {
+    private static final List<String> STATES = List.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED");
+
+    private final BookingReadModel bookingReadModel;
+    private final BookingService bookingService;
+    private final BookingArchiveJob bookingArchiveJob;
+    private final UserService userService;
+    private final UserCounterService userCounterService;
+    private final ItemService itemService;
+    private final BookingJpaRepository bookingJpaRepository;
+    private final UserJpaRepository userJpaRepository;
+    private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    private final MeterRegistry meterRegistry;
+    private final ItemMapper itemMapper;
+    private final UserMapper userMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final InvalidationBus invalidationBus;
+    private final ObjectMapper objectMapper;
+    private final DataSource dataSource;
+
+    @Test
+    void testReadsFromMemoryMatchDatabase() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Petr Petrov", "petrpetrov@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Ivan Ivanov", "ivanivanov@gmail.com"));
+        UserDto stranger = userService.postUser(new UserDto(null, "Anna Ivanova", "annaivanova@gmail.com"));
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "Дрель", "Простая дрель", true, null, null, List.of()));
+        Booking archivable = booking(now.minusDays(201), now.minusDays(200), item, booker, BookingStatus.APPROVED);
+        booking(now.minusDays(3), now.minusDays(2), item, booker, BookingStatus.APPROVED);
+        booking(now.minusDays(5), now.minusDays(4), item, booker, BookingStatus.REJECTED);
+        booking(now.minusDays(1), now.plusDays(1), item, booker, BookingStatus.APPROVED);
+        userCounterService.reconcile();
+        bookingReadModel.rebuild();
+
+        Long waitingId = bookingService.postBooking(booker.getId(),
+                new BookingDto(null, now.plusDays(2), now.plusDays(3), item.getId(), booker.getId(), null)).getId();
+        Long rejectedId = bookingService.postBooking(booker.getId(),
+                new BookingDto(null, now.plusDays(4), now.plusDays(5), item.getId(), booker.getId(), null)).getId();
+        bookingService.patchBooking(owner.getId(), false, rejectedId);
+        itemService.addComment(item.getId(), new CommentDto(null, "Хорошая дрель", null, null, null, null), booker.getId());
+        bookingArchiveJob.archive(now.minusDays(90));
+
+        for (String state : STATES) {
+            for (int from = 0; from < 6; from += 2) {
+                bookingService.getBookings(booker.getId(), state, from, 2);
+                bookingService.getUserStuffBookings(owner.getId(), state, from, 2);
+            }
+        }
+        assertThat(bookingService.getBookings(booker.getId(), "FUTURE", 0, 10).size(), equalTo(2));
+        assertThat(bookingService.getBookings(booker.getId(), "ALL", 0, 10).size(), equalTo(6));
+        assertThat(bookingService.getUserStuffBookings(owner.getId(), "WAITING", 0, 10).size(), equalTo(1));
+        assertThat(bookingService.getBooking(waitingId, owner.getId()).getItem().getComments(),
+                equalTo(List.of("Хорошая дрель")));
+        assertThat(bookingService.getBooking(archivable.getId(), booker.getId()).getId(), equalTo(archivable.getId()));
+        assertThrows(NotFoundException.class, () -> bookingService.getBooking(waitingId, stranger.getId()));
+
+        assertThat(bookingReadModel.isReady(), equalTo(true));
+        assertThat(meterRegistry.get("shareit.booking.read-model.mismatches").counter().count(), equalTo(0.0));
+        assertThat(meterRegistry.get("shareit.booking.read-model.reads").tag("source", "memory")
+                .counter().count(), greaterThan(0.0));
+        assertThat(meterRegistry.get("shareit.booking.read-model.size").gauge().value(), equalTo(5.0));
+    }
+
+
+    @Test
+    void testJournalCatchesUpButIsNotRestoredOverFreshSchema(@TempDir Path directory) {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Olga Petrova", "olgapetrova@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Oleg Ivanov", "olegivanov@gmail.com"));
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "Пила", "Ручная пила", true, null, null, List.of()));
+        booking(now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.WAITING);
+
+        BookingReadModel journaledModel = started(journaledModel(directory));
+        journaledModel.stop();
+        BookingReadModel restoredModel = started(journaledModel(directory));
+        restoredModel.stop();
+        assertThat(restoredModel.getBookerBookings(booker.getId(), "ALL", 0, 10, now).size(), equalTo(1));
+
+        booking(now.plusDays(3), now.plusDays(4), item, booker, BookingStatus.WAITING);
+        BookingReadModel caughtUpModel = started(journaledModel(directory));
+        caughtUpModel.stop();
+        assertThat(caughtUpModel.getBookerBookings(booker.getId(), "ALL", 0, 10, now).size(), equalTo(2));
+
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql"), new ClassPathResource("schema.sql"))
+                .execute(dataSource);
+        BookingReadModel reloadedModel = started(journaledModel(directory));
+        reloadedModel.stop();
+        assertThat(reloadedModel.getBookerBookings(booker.getId(), "ALL", 0, 10, now), nullValue());
+    }
+
+
+    private BookingReadModel journaledModel(Path directory) {
+        return new BookingReadModel(bookingJpaRepository, itemPagingAndSortingRepository, userJpaRepository,
+                itemMapper, userMapper, transactionTemplate, invalidationBus, objectMapper,
+                new SimpleMeterRegistry(), true, 0, directory.toString(), 10000, 1000);
+    }
+
+
+    private BookingReadModel started(BookingReadModel model) {
+        model.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!model.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(model.isReady(), equalTo(true));
+        return model;
+    }
+
+
+    private Booking booking(LocalDateTime start, LocalDateTime end, ItemDto itemDto, UserDto bookerDto,
+                            BookingStatus status) {
+        Item item = itemPagingAndSortingRepository.findById(itemDto.getId()).orElseThrow();
+        User booker = userJpaRepository.findById(bookerDto.getId()).orElseThrow();
+        return bookingJpaRepository.save(new Booking(null, start, end, item, booker, status));
+    }
+}
@@ -8,15 +8,20 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.mapper.BookingMapper;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.mapper.UserMapper;
+import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.service.UserService;
 
 import javax.persistence.EntityManager;
@@ -42,6 +47,30 @@ public class BookingServiceTest {
     private final UserMapper userMapper;
     private final ItemMapper itemMapper;
 
+    @Test
+    public void testPatchBookingChangesOnlyWaitingBooking() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Ivan Ivanov", "ivanivanov@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Petr Petrov", "petrpetrov@gmail.com"));
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "name1", "description1", true, owner.getId(), null, List.of()));
+        BookingOutcomingDto booking = bookingService.postBooking(booker.getId(),
+                new BookingDto(null, now.plusDays(1), now.plusDays(2), item.getId(), booker.getId(), "WAITING"));
+
+        Assertions.assertThrows(NotFoundException.class,
+                () -> bookingService.patchBooking(booker.getId(), true, booking.getId()));
+
+        BookingOutcomingDto approved = bookingService.patchBooking(owner.getId(), true, booking.getId());
+        assertThat(approved.getStatus(), equalTo("APPROVED"));
+        assertThat(approved.getBooker().getId(), equalTo(booker.getId()));
+
+        BadRequestException exception = Assertions.assertThrows(BadRequestException.class,
+                () -> bookingService.patchBooking(owner.getId(), false, booking.getId()));
+        assertThat(exception.getMessage(), equalTo("Статус бронирования уже изменён!"));
+        assertThat(em.find(Booking.class, booking.getId()).getBookingStatus(), equalTo(BookingStatus.APPROVED));
+    }
+
+
     @Test
     public void testGetUserStuffBookingsOk() {
 
@@ -151,4 +180,50 @@ public class BookingServiceTest {
 
         Assertions.assertNull(bookingMapper.toBookingOutcomingDto(null));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testGetUserStuffBookingsSummary() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = new User(null, "Petr Petrov", "petrpetrov@gmail.com");
+        User booker = new User(null, "Ivan Ivanov", "ivanivanov@gmail.com");
+        Item item = new Item(null, "Дрель", "Простая дрель", true, owner, null);
+        em.persist(owner);
+        em.persist(booker);
+        em.persist(item);
+        em.persist(new Booking(null, now.minusDays(3), now.minusDays(2), item, booker, BookingStatus.APPROVED));
+        em.persist(new Booking(null, now.minusDays(1), now.plusDays(1), item, booker, BookingStatus.APPROVED));
+        em.persist(new Booking(null, now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.WAITING));
+        em.persist(new Booking(null, now.plusDays(3), now.plusDays(4), item, booker, BookingStatus.WAITING));
+        em.persist(new Booking(null, now.plusDays(5), now.plusDays(6), item, booker, BookingStatus.REJECTED));
+        em.flush();
+        em.createNativeQuery("insert into bookings_archive (booking_id, start_date, end_date, item_id, user_id, status) " +
+                        "values (100000, ?1, ?2, ?3, ?4, 'APPROVED')")
+                .setParameter(1, now.minusDays(200))
+                .setParameter(2, now.minusDays(199))
+                .setParameter(3, item.getId())
+                .setParameter(4, booker.getId())
+                .executeUpdate();
+
+        List<BookingSummaryDto> summary = bookingService.getUserStuffBookingsSummary(owner.getId(), 2);
+
+        assertThat(summary.size(), equalTo(6));
+        assertSummary(summary.get(0), "ALL", 6, 2);
+        assertSummary(summary.get(1), "CURRENT", 1, 1);
+        assertSummary(summary.get(2), "PAST", 2, 2);
+        assertSummary(summary.get(3), "FUTURE", 3, 2);
+        assertSummary(summary.get(4), "WAITING", 2, 2);
+        assertSummary(summary.get(5), "REJECTED", 1, 1);
+        assertThat(summary.get(0).getBookings().get(0).getStart(), equalTo(now.plusDays(5)));
+        assertThat(summary.get(2).getBookings().get(1).getId(), equalTo(100000L));
+        assertThat(bookingService.getUserStuffBookingsSummary(booker.getId(), 2).get(0).getCount(), equalTo(0L));
+        Assertions.assertThrows(NotFoundException.class, () -> bookingService.getUserStuffBookingsSummary(-1L, 2));
+    }
+
+
+    private void assertSummary(BookingSummaryDto stateSummary, String state, long count, int size) {
+        assertThat(stateSummary.getState(), equalTo(state));
+        assertThat(stateSummary.getCount(), equalTo(count));
+        assertThat(stateSummary.getBookings().size(), equalTo(size));
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.shareit.integrational;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.repository.CommentJpaRepository;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+
+@SpringBootTest(
+        properties = {
+                "db.name=test",
+                "spring.datasource.url=jdbc:h2:mem:shareit-group-commit",
+                "shareit.group-commit.enabled=true",
+                "shareit.group-commit.batch-size=16",
+                "shareit.group-commit.max-delay-ms=200"
+        },
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class GroupCommitTest {
+    private static final int BOOKERS = 8;
+
+    private final BookingService bookingService;
+    private final ItemService itemService;
+    private final UserService userService;
+    private final BookingJpaRepository bookingJpaRepository;
+    private final CommentJpaRepository commentJpaRepository;
+    private final UserJpaRepository userJpaRepository;
+    private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    void testConcurrentInsertsAreCommittedTogether() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Petr Petrov", "petrpetrov@gmail.com"));
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "Дрель", "Простая дрель", true, null, null, List.of()));
+        UserDto commenter = userService.postUser(new UserDto(null, "Anna Ivanova", "annaivanova@gmail.com"));
+        bookingJpaRepository.save(new Booking(null, now.minusDays(3), now.minusDays(2),
+                itemPagingAndSortingRepository.findById(item.getId()).orElseThrow(),
+                userJpaRepository.findById(commenter.getId()).orElseThrow(), BookingStatus.APPROVED));
+        List<UserDto> bookers = new ArrayList<>();
+        for (int i = 0; i < BOOKERS; i++) {
+            bookers.add(userService.postUser(new UserDto(null, "Booker " + i, "booker" + i + "@gmail.com")));
+        }
+
+        ExecutorService callers = Executors.newFixedThreadPool(BOOKERS + 1);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<CompletableFuture<?>> bookings = new ArrayList<>();
+        for (int i = 0; i < BOOKERS; i++) {
+            UserDto booker = bookers.get(i);
+            int day = i < BOOKERS - 2 ? i * 2 + 1 : 20;
+            bookings.add(CompletableFuture.supplyAsync(() -> {
+                await(ready);
+                return bookingService.postBooking(booker.getId(), new BookingDto(null, now.plusDays(day),
+                        now.plusDays(day + 1), item.getId(), booker.getId(), null));
+            }, callers));
+        }
+        CompletableFuture<CommentDto> comment = CompletableFuture.supplyAsync(() -> {
+            await(ready);
+            return itemService.addComment(item.getId(),
+                    new CommentDto(null, "Хорошая дрель", null, null, null, null), commenter.getId());
+        }, callers);
+        ready.countDown();
+
+        int failed = 0;
+        for (CompletableFuture<?> booking : bookings) {
+            try {
+                booking.join();
+            } catch (CompletionException e) {
+                assertThat(e.getCause(), instanceOf(NotFoundException.class));
+                failed++;
+            }
+        }
+        callers.shutdown();
+
+        assertThat(failed, equalTo(1));
+        assertThat(bookingService.getUserStuffBookings(owner.getId(), "FUTURE", 0, 20).size(), equalTo(BOOKERS - 1));
+        assertThat(comment.join().getText(), equalTo("Хорошая дрель"));
+        assertThat(commentJpaRepository.findAll().size(), equalTo(1));
+        assertThat(meterRegistry.get("shareit.group-commit.batch-size").summary().max(), greaterThan(1.0));
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
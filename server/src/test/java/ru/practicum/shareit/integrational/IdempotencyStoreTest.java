@@ -0,0 +1,138 @@
+package ru.practicum.shareit.integrational;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.IdempotencyKeyReusedException;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
+import ru.practicum.shareit.idempotency.repository.IdempotencyJpaRepository;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(
+        properties = {
+                "db.name=test",
+                "spring.datasource.url=jdbc:h2:mem:shareit-idempotency",
+                "shareit.group-commit.enabled=true"
+        },
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class IdempotencyStoreTest {
+    private final IdempotencyStore idempotencyStore;
+    private final IdempotencyJpaRepository idempotencyJpaRepository;
+    private final BookingService bookingService;
+    private final BookingJpaRepository bookingJpaRepository;
+    private final ItemService itemService;
+    private final ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    @Test
+    void testRetryReturnsStoredResponse() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Petr Petrov", "petrpetrov@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Ivan Ivanov", "ivanivanov@gmail.com"));
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "Дрель", "Простая дрель", true, null, null, List.of()));
+        BookingDto bookingDto = new BookingDto(null, now.plusDays(1), now.plusDays(2), item.getId(), booker.getId(), null);
+        long bookings = bookingJpaRepository.count();
+
+        BookingOutcomingDto first = postBooking(idempotencyStore, booker.getId(), "booking-1", bookingDto);
+        IdempotencyStore restartedStore = new IdempotencyStore(idempotencyJpaRepository, objectMapper, 60000, 10, 0);
+        BookingOutcomingDto retried = postBooking(restartedStore, booker.getId(), "booking-1",
+                new BookingDto(null, bookingDto.getStart(), bookingDto.getEnd(), item.getId(), booker.getId(), null));
+
+        assertThat(retried, equalTo(first));
+        assertThat(bookingJpaRepository.count(), equalTo(bookings + 1));
+        assertThrows(IdempotencyKeyReusedException.class, () -> postBooking(restartedStore, booker.getId(), "booking-1",
+                new BookingDto(null, now.plusDays(3), now.plusDays(4), item.getId(), booker.getId(), null)));
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(NotFoundException.class, () -> idempotencyStore.execute(owner.getId(), "item-1", "POST /items",
+                item, ItemDto.class, () -> {
+                    calls.incrementAndGet();
+                    throw new NotFoundException("Пользователь не существует!");
+                }));
+        ItemDto posted = idempotencyStore.execute(owner.getId(), "item-1", "POST /items", item, ItemDto.class,
+                () -> {
+                    calls.incrementAndGet();
+                    return itemService.postItem(owner.getId(), item);
+                });
+        assertThat(calls.get(), equalTo(2));
+        assertThat(restartedStore.execute(owner.getId(), "item-1", "POST /items", item, ItemDto.class,
+                () -> itemService.postItem(owner.getId(), item)), equalTo(posted));
+    }
+
+
+    @Test
+    void testConcurrentRetryGetsResponseOfFirstRequest() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Anna Petrova", "annapetrova@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Oleg Ivanov", "olegivanov@gmail.com"));
+        ItemDto itemDto = new ItemDto(null, "Пила", "Ручная пила", true, null, null, List.of());
+        long items = itemPagingAndSortingRepository.count();
+
+        ItemDto retriedItem = idempotencyStore.execute(owner.getId(), "item-2", "POST /items", itemDto, ItemDto.class,
+                () -> {
+                    runConcurrently(() -> idempotencyStore.execute(owner.getId(), "item-2", "POST /items", itemDto,
+                            ItemDto.class, () -> itemService.postItem(owner.getId(), itemDto)));
+                    return itemService.postItem(owner.getId(), itemDto);
+                });
+
+        assertThat(itemPagingAndSortingRepository.count(), equalTo(items + 1));
+        BookingDto bookingDto = new BookingDto(null, now.plusDays(1), now.plusDays(2), retriedItem.getId(),
+                booker.getId(), null);
+        BookingOutcomingDto[] first = new BookingOutcomingDto[1];
+        BookingOutcomingDto retried = idempotencyStore.execute(booker.getId(), "booking-2", "POST /bookings",
+                bookingDto, BookingOutcomingDto.class, () -> {
+                    runConcurrently(() -> first[0] = postBooking(idempotencyStore, booker.getId(), "booking-2",
+                            bookingDto));
+                    return bookingService.postBooking(booker.getId(), bookingDto);
+                });
+
+        assertThat(retried, equalTo(first[0]));
+        assertThat(bookingJpaRepository.findAmountByBookerId(booker.getId()), equalTo(1));
+    }
+
+
+    /**
+     * Выполняет запрос в другом потоке и дожидается его завершения: так повтор застаёт
+     * ключ ещё не записанным, а первый запрос фиксирует его раньше повтора.
+     */
+    private void runConcurrently(Runnable request) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(request).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    private BookingOutcomingDto postBooking(IdempotencyStore store, Long userId, String key, BookingDto bookingDto) {
+        return store.execute(userId, key, "POST /bookings", bookingDto, BookingOutcomingDto.class,
+                () -> bookingService.postBooking(userId, bookingDto));
+    }
+}
@@ -0,0 +1,152 @@
+package ru.practicum.shareit.integrational;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.practicum.shareit.request.dto.ItemRequestInDto;
+import ru.practicum.shareit.request.dto.ItemRequestOutDto;
+import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.request.service.ItemRequestFeed;
+import ru.practicum.shareit.request.service.ItemRequestService;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+@SpringBootTest(
+        properties = {"db.name=test", "shareit.requests.feed.heartbeat-ms=200"},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ItemRequestFeedTest {
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    @Autowired
+    private UserJpaRepository userJpaRepository;
+    @Autowired
+    private RequestJpaRepository requestJpaRepository;
+    @Autowired
+    private ItemRequestService itemRequestService;
+    @Autowired
+    private ItemRequestFeed itemRequestFeed;
+    @LocalServerPort
+    private int port;
+    private final List<User> users = new ArrayList<>();
+    private final List<Long> requestIds = new ArrayList<>();
+
+    @AfterEach
+    void deleteRequests() {
+        requestIds.forEach(requestJpaRepository::deleteById);
+        userJpaRepository.deleteAll(users);
+    }
+
+
+    @Test
+    void testSubscriberReceivesNewRequestsOfOtherUsers() throws Exception {
+        User subscriber = save(new User(null, "Feed Subscriber", "feedsubscriber@gmail.com"));
+        User requester = save(new User(null, "Feed Requester", "feedrequester@gmail.com"));
+        itemRequestFeed.refresh();
+
+        HttpResponse<InputStream> response = httpClient.send(request(subscriber.getId(), ""), HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode(), equalTo(200));
+        assertThat(response.headers().firstValue("Content-Type").orElse(""), startsWith("text/event-stream"));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            assertThat(reader.readLine(), equalTo(":heartbeat"));
+            assertThat(reader.readLine(), equalTo(""));
+
+            post(subscriber, "Собственный запрос");
+            ItemRequestOutDto foreign = post(requester, "Нужна дрель");
+            itemRequestFeed.refresh();
+            assertThat(skipHeartbeats(reader), equalTo("id:" + foreign.getId()));
+            assertThat(reader.readLine(), equalTo("event:request"));
+            String data = reader.readLine();
+            assertThat(data, startsWith("data:"));
+            assertThat(data, containsString("\"description\":\"Нужна дрель\""));
+            assertThat(reader.readLine(), equalTo(""));
+
+            assertThat(reader.readLine(), equalTo(":heartbeat"));
+        }
+    }
+
+
+    @Test
+    void testNewRequestsAfterCursor() {
+        User subscriber = save(new User(null, "Feed Reader", "feedreader@gmail.com"));
+        User requester = save(new User(null, "Feed Author", "feedauthor@gmail.com"));
+        ItemRequestOutDto first = post(requester, "Нужна лестница");
+        post(subscriber, "Собственный запрос");
+        ItemRequestOutDto second = post(requester, "Нужен молоток");
+        itemRequestFeed.refresh();
+
+        List<Long> fromMemory = ids(itemRequestService.getItemRequestsAfter(subscriber.getId(), first.getId() - 1, 10));
+        List<Long> fromCursor = ids(itemRequestService.getItemRequestsAfter(subscriber.getId(), first.getId(), 10));
+
+        assertThat(fromMemory, equalTo(List.of(first.getId(), second.getId())));
+        assertThat(fromCursor, equalTo(List.of(second.getId())));
+    }
+
+
+    @Test
+    void testUnknownUserCannotSubscribe() throws Exception {
+        HttpResponse<String> response = httpClient.send(request(-1L, "?after=0"), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode(), equalTo(404));
+    }
+
+
+    private User save(User user) {
+        User saved = userJpaRepository.save(user);
+        users.add(saved);
+        return saved;
+    }
+
+
+    private ItemRequestOutDto post(User requester, String description) {
+        ItemRequestOutDto itemRequest = itemRequestService.postItemRequest(requester.getId(),
+                new ItemRequestInDto(null, description, requester.getId()));
+        requestIds.add(itemRequest.getId());
+        return itemRequest;
+    }
+
+
+    private String skipHeartbeats(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        while (":heartbeat".equals(line) || "".equals(line)) {
+            line = reader.readLine();
+        }
+        return line;
+    }
+
+
+    private List<Long> ids(List<ItemRequestOutDto> requests) {
+        return requests.stream().map(ItemRequestOutDto::getId).collect(Collectors.toList());
+    }
+
+
+    private HttpRequest request(Long userId, String query) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/requests/feed/stream" + query))
+                .header("X-Sharer-User-Id", String.valueOf(userId))
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+    }
+}
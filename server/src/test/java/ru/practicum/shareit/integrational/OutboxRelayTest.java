@@ -0,0 +1,150 @@
+package ru.practicum.shareit.integrational;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.IllegalTransactionStateException;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxRelay;
+import ru.practicum.shareit.outbox.service.OutboxService;
+import ru.practicum.shareit.request.dto.ItemRequestInDto;
+import ru.practicum.shareit.request.dto.ItemRequestOutDto;
+import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.request.service.ItemRequestService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+@SpringBootTest(
+        properties = {"db.name=test", "shareit.outbox.sink=file", "shareit.outbox.file=target/outbox/relay-test.jsonl"},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class OutboxRelayTest {
+    private static final Path FILE = Path.of("target/outbox/relay-test.jsonl");
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private ItemRequestService itemRequestService;
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private OutboxService outboxService;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private UserJpaRepository userJpaRepository;
+    @Autowired
+    private ItemPagingAndSortingRepository itemPagingAndSortingRepository;
+    @Autowired
+    private RequestJpaRepository requestJpaRepository;
+    @Autowired
+    private BookingJpaRepository bookingJpaRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    private final List<Long> userIds = new ArrayList<>();
+    private Long requestId;
+    private Long itemId;
+    private Long bookingId;
+
+    @AfterEach
+    void delete() {
+        if (bookingId != null) {
+            bookingJpaRepository.deleteById(bookingId);
+        }
+        if (itemId != null) {
+            itemPagingAndSortingRepository.deleteById(itemId);
+        }
+        if (requestId != null) {
+            requestJpaRepository.deleteById(requestId);
+        }
+        userIds.forEach(userJpaRepository::deleteById);
+    }
+
+
+    @Test
+    void testChangesArePublishedInOrder() throws IOException {
+        outboxRelay.relay();
+        int published = Files.readAllLines(FILE, StandardCharsets.UTF_8).size();
+        UserDto owner = postUser("Outbox Owner", "outboxowner@gmail.com");
+        UserDto booker = postUser("Outbox Booker", "outboxbooker@gmail.com");
+        ItemRequestOutDto request = itemRequestService.postItemRequest(booker.getId(),
+                new ItemRequestInDto(null, "Нужна дрель", booker.getId()));
+        requestId = request.getId();
+        ItemDto item = itemService.postItem(owner.getId(),
+                new ItemDto(null, "Дрель", "Простая дрель", true, owner.getId(), requestId, null));
+        itemId = item.getId();
+        itemService.patchItem(owner.getId(),
+                new ItemDto(itemId, null, "Аккумуляторная дрель", null, null, null, null), itemId);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        BookingOutcomingDto booking = bookingService.postBooking(booker.getId(),
+                new BookingDto(null, start, start.plusDays(1), itemId, booker.getId(), null));
+        bookingId = booking.getId();
+        bookingService.patchBooking(owner.getId(), true, bookingId);
+
+        assertThat(outboxRelay.relay(), greaterThanOrEqualTo(5));
+        assertThat(outboxRelay.relay(), equalTo(0));
+
+        List<JsonNode> events = new ArrayList<>();
+        List<String> lines = Files.readAllLines(FILE, StandardCharsets.UTF_8);
+        for (String line : lines.subList(published, lines.size())) {
+            JsonNode event = objectMapper.readTree(line);
+            long aggregateId = event.get("aggregateId").asLong();
+            String aggregateType = event.get("aggregateType").asText();
+            if ("REQUEST".equals(aggregateType) && aggregateId == requestId
+                    || "ITEM".equals(aggregateType) && aggregateId == itemId
+                    || "BOOKING".equals(aggregateType) && aggregateId == bookingId) {
+                events.add(event);
+            }
+        }
+        List<String> types = new ArrayList<>();
+        events.forEach(event -> types.add(event.get("type").asText()));
+        assertThat(types, equalTo(List.of(
+                OutboxEventType.REQUEST_CREATED.name(),
+                OutboxEventType.ITEM_CREATED.name(),
+                OutboxEventType.ITEM_UPDATED.name(),
+                OutboxEventType.BOOKING_CREATED.name(),
+                OutboxEventType.BOOKING_APPROVED.name())));
+        assertThat(events.get(2).get("payload").get("description").asText(), equalTo("Аккумуляторная дрель"));
+        assertThat(events.get(4).get("payload").get("status").asText(), equalTo("APPROVED"));
+        assertThat(events.get(4).get("id").asLong(), greaterThanOrEqualTo(events.get(0).get("id").asLong() + 4));
+    }
+
+
+    @Test
+    void testEventIsNotRecordedOutsideTransaction() {
+        Assertions.assertThrows(IllegalTransactionStateException.class,
+                () -> outboxService.record(OutboxEventType.ITEM_CREATED, 1L, "{}"));
+    }
+
+
+    private UserDto postUser(String name, String email) {
+        UserDto user = userService.postUser(new UserDto(null, name, email));
+        userIds.add(user.getId());
+        return user;
+    }
+}
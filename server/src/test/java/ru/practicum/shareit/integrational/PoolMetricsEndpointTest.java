@@ -0,0 +1,35 @@
+package ru.practicum.shareit.integrational;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.actuator.PoolMetricsEndpoint;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasKey;
+
+@Transactional
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class PoolMetricsEndpointTest {
+    private final PoolMetricsEndpoint poolMetricsEndpoint;
+
+    @Test
+    void testPoolSaturationIsReported() {
+        Map<String, Object> pool = poolMetricsEndpoint.pool();
+
+        assertThat(pool.get("status"), equalTo("RUNNING"));
+        assertThat((Integer) pool.get("active"), greaterThanOrEqualTo(1));
+        assertThat(pool, hasKey("idle"));
+        assertThat(pool, hasKey("pending"));
+        assertThat(pool, hasKey("acquire"));
+    }
+}
@@ -0,0 +1,189 @@
+package ru.practicum.shareit.integrational;
+
+import lombok.RequiredArgsConstructor;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.datasource.ReadYourWritesFilter;
+import ru.practicum.shareit.datasource.ReplicaRoutingDataSource;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import javax.servlet.FilterChain;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(
+        properties = {
+                "db.name=test",
+                "spring.datasource.url=jdbc:h2:mem:shareit-primary;DB_CLOSE_DELAY=-1",
+                "shareit.datasource.replica-urls=" + ReplicaRoutingTest.REPLICA_URL,
+                "shareit.datasource.lag-query=SELECT lag_seconds FROM replica_lag",
+                "shareit.datasource.max-lag-ms=1000",
+                "shareit.datasource.lag-check-interval-ms=0"
+        },
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReplicaRoutingTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:shareit-replica;DB_CLOSE_DELAY=-1";
+    private static final long REPLICA_USER_ID = 1000L;
+
+    private static JdbcTemplate replica;
+
+    private final DataSource routedDataSource;
+    private final UserService userService;
+    private final BookingService bookingService;
+    private ReplicaRoutingDataSource dataSource;
+
+    @BeforeAll
+    static void createReplica() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL(REPLICA_URL);
+        h2.setUser("test");
+        h2.setPassword("test");
+        try (Connection connection = h2.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-h2.sql"));
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+        }
+        replica = new JdbcTemplate(h2);
+        replica.execute("CREATE TABLE IF NOT EXISTS replica_lag (lag_seconds DOUBLE)");
+        replica.update("DELETE FROM replica_lag");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+        replica.update("INSERT INTO users (user_id, name, email) VALUES (?, 'Replica', 'replica@mail.ru')", REPLICA_USER_ID);
+    }
+
+
+    @BeforeEach
+    void unwrapDataSource() throws Exception {
+        dataSource = routedDataSource.unwrap(ReplicaRoutingDataSource.class);
+    }
+
+
+    @AfterEach
+    void resetReplica() {
+        replica.update("UPDATE replica_lag SET lag_seconds = 0");
+        ReplicaRoutingDataSource.requirePrimary(false);
+    }
+
+
+    @Test
+    void testReadOnlyTransactionReadsFromReplica() {
+        dataSource.checkReplicaLag();
+
+        assertThat(emails(), hasItem("replica@mail.ru"));
+    }
+
+
+    @Test
+    void testBookingsFallbackReadsFromReplica() {
+        dataSource.checkReplicaLag();
+
+        assertThat(bookingService.getBookings(REPLICA_USER_ID, "ALL", 0, 10), equalTo(List.of()));
+    }
+
+
+    @Test
+    void testCachedUserIsReadFromPrimary() {
+        dataSource.checkReplicaLag();
+
+        assertThrows(NotFoundException.class, () -> userService.getUser(REPLICA_USER_ID));
+    }
+
+
+    @Test
+    void testWritesGoToPrimary() {
+        dataSource.checkReplicaLag();
+
+        UserDto saved = userService.postUser(new UserDto(null, "Primary", "primary@mail.ru"));
+
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM users WHERE email = 'primary@mail.ru'", Integer.class),
+                equalTo(0));
+        userService.deleteUser(saved.getId());
+    }
+
+
+    @Test
+    void testReadYourWritesReadsFromPrimary() {
+        dataSource.checkReplicaLag();
+        ReplicaRoutingDataSource.requirePrimary(true);
+
+        assertThat(emails(), not(hasItem("replica@mail.ru")));
+    }
+
+
+    @Test
+    void testWriteWindowIsCarriedToAnotherInstance() throws Exception {
+        dataSource.checkReplicaLag();
+        MockHttpServletRequest write = new MockHttpServletRequest("PATCH", "/users/1");
+        write.addHeader("X-Sharer-User-Id", "1");
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        new ReadYourWritesFilter(10000).doFilter(write, writeResponse, new MockFilterChain());
+        String primaryUntil = writeResponse.getHeader(ReadYourWritesFilter.PRIMARY_UNTIL_HEADER);
+        List<List<String>> reads = new ArrayList<>();
+        FilterChain read = (request, response) -> reads.add(emails());
+        ReadYourWritesFilter otherInstance = new ReadYourWritesFilter(10000);
+
+        otherInstance.doFilter(get(primaryUntil), new MockHttpServletResponse(), read);
+        otherInstance.doFilter(get(String.valueOf(System.currentTimeMillis() - 1)), new MockHttpServletResponse(), read);
+
+        assertThat(reads.get(0), not(hasItem("replica@mail.ru")));
+        assertThat(reads.get(1), hasItem("replica@mail.ru"));
+    }
+
+
+    @Test
+    void testOnPrimaryReadsFromPrimaryAndRestoresRouting() {
+        dataSource.checkReplicaLag();
+
+        assertThat(ReplicaRoutingDataSource.onPrimary(this::emails), not(hasItem("replica@mail.ru")));
+        assertThat(emails(), hasItem("replica@mail.ru"));
+    }
+
+
+    @Test
+    void testLaggingReplicaFallsBackToPrimary() {
+        replica.update("UPDATE replica_lag SET lag_seconds = 5");
+        dataSource.checkReplicaLag();
+
+        assertThat(emails(), not(hasItem("replica@mail.ru")));
+
+        replica.update("UPDATE replica_lag SET lag_seconds = 0.5");
+        dataSource.checkReplicaLag();
+
+        assertThat(emails(), hasItem("replica@mail.ru"));
+    }
+
+
+    private static MockHttpServletRequest get(String primaryUntil) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader("X-Sharer-User-Id", "1");
+        request.addHeader(ReadYourWritesFilter.PRIMARY_UNTIL_HEADER, primaryUntil);
+        return request;
+    }
+
+
+    private List<String> emails() {
+        return userService.getUsers().stream().map(UserDto::getEmail).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,59 @@
+package ru.practicum.shareit.integrational;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exception.UnsupportedOperationException;
+import ru.practicum.shareit.metrics.ServiceMetricsAspect;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+@Transactional
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ServiceMetricsTest {
+    private final MeterRegistry meterRegistry;
+    private final BookingService bookingService;
+    private final UserService userService;
+
+    @Test
+    void testServiceCallsAreTimedByState() {
+        UserDto user = userService.postUser(new UserDto(null, "Petr Petrov", "petrpetrov@gmail.com"));
+        long unknownBefore = unknownStateCount();
+
+        bookingService.getBookings(user.getId(), "PAST", 0, 10);
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> bookingService.getBookings(user.getId(), "SOMETIMES", 0, 10));
+
+        Timer past = meterRegistry.find(ServiceMetricsAspect.SERVICE_TIMER)
+                .tags("service", "BookingServiceImpl", "method", "getBookings", "state", "PAST", "outcome", "SUCCESS")
+                .timer();
+        Timer postUser = meterRegistry.find(ServiceMetricsAspect.SERVICE_TIMER)
+                .tags("service", "UserServiceImpl", "method", "postUser", "state", "none")
+                .timer();
+
+        assertThat(past, notNullValue());
+        assertThat(postUser, notNullValue());
+        assertThat(unknownStateCount(), equalTo(unknownBefore + 1));
+    }
+
+
+    private long unknownStateCount() {
+        Timer unknown = meterRegistry.find(ServiceMetricsAspect.SERVICE_TIMER)
+                .tags("method", "getBookings", "state", "UNKNOWN", "exception", "UnsupportedOperationException")
+                .timer();
+        return unknown != null ? unknown.count() : 0;
+    }
+}
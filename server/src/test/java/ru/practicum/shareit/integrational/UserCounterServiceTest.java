@@ -0,0 +1,104 @@
+package ru.practicum.shareit.integrational;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.model.UserCounters;
+import ru.practicum.shareit.user.service.UserCounterService;
+import ru.practicum.shareit.user.service.UserService;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+@Transactional
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class UserCounterServiceTest {
+    private final EntityManager em;
+    private final UserCounterService userCounterService;
+    private final UserService userService;
+
+    @Test
+    void testCountersFollowCreatedRecordsAndReconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = new User(null, "Petr Petrov", "petrpetrov@gmail.com");
+        User booker = new User(null, "Ivan Ivanov", "ivanivanov@gmail.com");
+        em.persist(owner);
+        em.persist(booker);
+        Item item = new Item(null, "Дрель", "Простая дрель", true, owner, null);
+        em.persist(item);
+        em.persist(new Booking(null, now.minusDays(2), now.minusDays(1), item, booker, BookingStatus.APPROVED));
+        em.flush();
+
+        assertThat(userCounterService.getItems(owner.getId()), equalTo(1L));
+        assertThat(userCounterService.getBookerBookings(booker.getId()), equalTo(1L));
+        assertThat(userCounterService.reconcile(), greaterThanOrEqualTo(2));
+
+        em.persist(new Item(null, "Отвёртка", "Крестовая отвёртка", true, owner, null));
+        em.flush();
+        userCounterService.onItemCreated(owner.getId());
+        em.persist(new Booking(null, now.plusDays(1), now.plusDays(2), item, booker, BookingStatus.WAITING));
+        em.flush();
+        userCounterService.onBookingCreated(booker.getId(), owner.getId());
+        em.persist(new ItemRequest(null, "Нужна дрель", booker, now));
+        em.flush();
+        userCounterService.onRequestCreated(booker.getId());
+
+        assertThat(userCounterService.getItems(owner.getId()), equalTo(2L));
+        assertThat(userCounterService.getBookerBookings(booker.getId()), equalTo(2L));
+        assertThat(userCounterService.getOwnerBookings(owner.getId()), equalTo(2L));
+        assertThat(userCounterService.getRequests(booker.getId()), equalTo(1L));
+
+        em.createNativeQuery("update user_counters set booker_booking_count = 7, item_count = 0")
+                .executeUpdate();
+        em.clear();
+        assertThat(userCounterService.getBookerBookings(booker.getId()), equalTo(7L));
+
+        assertThat(userCounterService.reconcile(), greaterThanOrEqualTo(2));
+        em.clear();
+        assertThat(userCounterService.getBookerBookings(booker.getId()), equalTo(2L));
+        assertThat(userCounterService.getItems(owner.getId()), equalTo(2L));
+    }
+
+
+    @Test
+    void testNewUserGetsCountersAndDeletionUpdatesOthers() {
+        LocalDateTime now = LocalDateTime.now();
+        UserDto owner = userService.postUser(new UserDto(null, "Petr Petrov", "petrpetrov@gmail.com"));
+        UserDto booker = userService.postUser(new UserDto(null, "Ivan Ivanov", "ivanivanov@gmail.com"));
+        assertThat(em.find(UserCounters.class, owner.getId()), notNullValue());
+
+        Item item = new Item(null, "Дрель", "Простая дрель", true, em.find(User.class, owner.getId()), null);
+        em.persist(item);
+        em.persist(new Booking(null, now.plusDays(1), now.plusDays(2), item, em.find(User.class, booker.getId()),
+                BookingStatus.WAITING));
+        em.flush();
+        userCounterService.onItemCreated(owner.getId());
+        userCounterService.onBookingCreated(booker.getId(), owner.getId());
+        em.clear();
+        assertThat(userCounterService.getOwnerBookings(owner.getId()), equalTo(1L));
+
+        userCounterService.onUserDeleting(booker.getId());
+        em.clear();
+        assertThat(userCounterService.getOwnerBookings(owner.getId()), equalTo(0L));
+
+        userCounterService.onUserDeleting(owner.getId());
+        em.clear();
+        assertThat(userCounterService.getBookerBookings(booker.getId()), equalTo(0L));
+    }
+}
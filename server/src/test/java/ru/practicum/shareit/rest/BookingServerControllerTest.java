@@ -1,6 +1,9 @@
 package ru.practicum.shareit.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,39 +12,61 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.practicum.shareit.booking.controller.BookingServerController;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
+import ru.practicum.shareit.booking.service.BookingEventStream;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.exception.IdempotencyKeyReusedException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.exception.UnsupportedOperationException;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.user.dto.UserDto;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = BookingServerController.class)
 public class BookingServerControllerTest {
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
     @Autowired
     private ObjectMapper mapper = new ObjectMapper();
     @MockBean
     private BookingService bookingService;
+    @MockBean
+    private BookingEventStream bookingEventStream;
+    @MockBean
+    private IdempotencyStore idempotencyStore;
     @Autowired
     private MockMvc mvc;
 
 
+    @BeforeEach
+    public void passThroughIdempotencyStore() {
+        when(idempotencyStore.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(5).get());
+    }
+
+
     @Test
     public void testPostBookingOk() throws Exception {
         LocalDateTime start = LocalDateTime.now().plusDays(1);
@@ -71,6 +96,43 @@ public class BookingServerControllerTest {
     }
 
 
+    @Test
+    public void testPostBookingPassesIdempotencyKey() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        LocalDateTime end = LocalDateTime.now().plusDays(2);
+        ItemDto itemDto = new ItemDto(1L, "name", "description", true, 2L, 2L, List.of());
+        UserDto booker = new UserDto(1L, "Petr Petrov", "petrpetrov@gmail.com");
+        BookingDto bookingDto = new BookingDto(null, start, end, 1L, 1L, null);
+        when(bookingService.postBooking(Mockito.anyLong(), Mockito.any(BookingDto.class)))
+                .thenReturn(new BookingOutcomingDto(1L, start, end, itemDto, booker, "WAITING"));
+
+        mvc.perform(post("/bookings")
+                        .content(mapper.writeValueAsString(bookingDto))
+                        .header("X-Sharer-User-Id", 1L)
+                        .header("Idempotency-Key", "booking-retry")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1L), Long.class));
+        Mockito.verify(idempotencyStore).execute(Mockito.eq(1L), Mockito.eq("booking-retry"),
+                Mockito.eq("POST /bookings"), Mockito.any(BookingDto.class), Mockito.eq(BookingOutcomingDto.class),
+                Mockito.any());
+
+        Mockito.doThrow(new IdempotencyKeyReusedException("Ключ идемпотентности уже использован для другого запроса!"))
+                .when(idempotencyStore).execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(),
+                        Mockito.any(), Mockito.any());
+        mvc.perform(post("/bookings")
+                        .content(mapper.writeValueAsString(new BookingDto(null, start, end.plusDays(1), 1L, 1L, null)))
+                        .header("X-Sharer-User-Id", 1L)
+                        .header("Idempotency-Key", "booking-retry")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(422));
+    }
+
+
     @Test
     public void testPostBookingNotFoundException() throws Exception {
 
@@ -471,4 +533,98 @@ public class BookingServerControllerTest {
                 .andDo(MockMvcResultHandlers.print())
                 .andExpect(status().is(400));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testGetUserBookingsSmileMatchesJson() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        LocalDateTime end = LocalDateTime.now().plusDays(2);
+        ItemDto itemDto = new ItemDto(1L, "name", "description", true, 2L, 2L, List.of());
+        UserDto booker = new UserDto(1L, "Petr Petrov", "petrpetrov@gmail.com");
+        BookingOutcomingDto bookingOutcomingDto = new BookingOutcomingDto(1L, start, end, itemDto, booker, "WAITING");
+        when(bookingService.getBookings(Mockito.anyLong(), Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt()))
+                .thenReturn(List.of(bookingOutcomingDto));
+
+        byte[] smile = mvc.perform(get("/bookings?state=ALL&from=0&size=10")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(SMILE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        String json = mvc.perform(get("/bookings?state=ALL&from=0&size=10")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        Assertions.assertEquals(mapper.readValue(json, Object.class), new ObjectMapper(new SmileFactory()).readValue(smile, Object.class));
+    }
+
+
+    @Test
+    public void testPostBookingSmile() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        LocalDateTime end = LocalDateTime.now().plusDays(2);
+        ItemDto itemDto = new ItemDto(1L, "name", "description", true, 2L, 2L, List.of());
+        UserDto booker = new UserDto(1L, "Petr Petrov", "petrpetrov@gmail.com");
+        BookingDto bookingDto = new BookingDto(1L, start, end, 1L, 1L, null);
+        when(bookingService.postBooking(Mockito.anyLong(), Mockito.any(BookingDto.class)))
+                .thenReturn(new BookingOutcomingDto(1L, start, end, itemDto, booker, "WAITING"));
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+
+        mvc.perform(post("/bookings")
+                        .content(smileMapper.writeValueAsBytes(mapper.readValue(mapper.writeValueAsString(bookingDto), Object.class)))
+                        .header("X-Sharer-User-Id", 1L)
+                        .contentType(SMILE)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("WAITING")));
+
+        Mockito.verify(bookingService).postBooking(1L, bookingDto);
+    }
+
+
+    @Test
+    public void testGetUserStuffBookingsSummaryOk() throws Exception {
+
+        when(bookingService.getUserStuffBookingsSummary(1L, 3))
+                .thenReturn(List.of(
+                        new BookingSummaryDto("ALL", 4, List.of()),
+                        new BookingSummaryDto("CURRENT", 0, List.of())));
+
+        mvc.perform(get("/bookings/owner/summary?limit=3")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].state", is("ALL")))
+                .andExpect(jsonPath("$[0].count", is(4)))
+                .andExpect(jsonPath("$[1].state", is("CURRENT")))
+                .andExpect(jsonPath("$[1].bookings.length()", is(0)));
+    }
+
+
+    @Test
+    public void testStreamBookingEventsOk() throws Exception {
+
+        when(bookingEventStream.subscribe(1L)).thenReturn(new SseEmitter(1000L));
+
+        mvc.perform(get("/bookings/stream")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+
+    @Test
+    public void testStreamBookingEventsNotFoundException() throws Exception {
+
+        when(bookingEventStream.subscribe(Mockito.anyLong())).thenThrow(NotFoundException.class);
+
+        mvc.perform(get("/bookings/stream")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().is(404));
+    }
+}
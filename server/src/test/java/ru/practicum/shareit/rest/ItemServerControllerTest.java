@@ -1,12 +1,14 @@
 package ru.practicum.shareit.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
@@ -15,16 +17,19 @@ import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.ForbiddenException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
 import ru.practicum.shareit.item.controller.ItemServerController;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
@@ -43,6 +48,8 @@ public class ItemServerControllerTest {
     private ItemService itemService;
     @MockBean
     private UserJpaRepository userJpaRepository;
+    @MockBean
+    private IdempotencyStore idempotencyStore;
     @Autowired
     private MockMvc mvc;
     private ItemDto itemDto = new ItemDto(
@@ -51,6 +58,14 @@ public class ItemServerControllerTest {
             1L, "name", "description", true, 1L, 1L, null, null, List.of());
 
 
+    @BeforeEach
+    public void passThroughIdempotencyStore() {
+        when(idempotencyStore.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(5).get());
+    }
+
+
     @Test
     public void testPostItemOk() throws Exception {
         when(itemService.postItem(Mockito.anyLong(), Mockito.any(ItemDto.class)))
@@ -72,6 +87,25 @@ public class ItemServerControllerTest {
     }
 
 
+    @Test
+    public void testPostItemPassesIdempotencyKey() throws Exception {
+        when(itemService.postItem(Mockito.anyLong(), Mockito.any(ItemDto.class)))
+                .thenReturn(itemDto);
+
+        mvc.perform(post("/items")
+                        .content(mapper.writeValueAsString(itemDto))
+                        .header("X-Sharer-User-Id", 1L)
+                        .header("Idempotency-Key", "item-retry")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(itemDto.getId()), Long.class));
+        Mockito.verify(idempotencyStore).execute(Mockito.eq(1L), Mockito.eq("item-retry"), Mockito.eq("POST /items"),
+                Mockito.any(ItemDto.class), Mockito.eq(ItemDto.class), Mockito.any());
+    }
+
+
     @Test
     public void testPostItemNotFoundException() throws Exception {
         when(itemService.postItem(Mockito.anyLong(), any(ItemDto.class)))
@@ -159,6 +193,21 @@ public class ItemServerControllerTest {
     }
 
 
+    @Test
+    public void testPatchItemConflict() throws Exception {
+        when(itemService.patchItem(Mockito.anyLong(), any(ItemDto.class), Mockito.anyLong()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Item.class, 1L));
+
+        mvc.perform(patch("/items/" + 1)
+                        .content(mapper.writeValueAsString(itemDto))
+                        .header("X-Sharer-User-Id", 1L)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
+
     @Test
     public void testPatchItemNotFoundException() throws Exception {
         when(itemService.patchItem(Mockito.anyLong(), any(ItemDto.class), Mockito.anyLong()))
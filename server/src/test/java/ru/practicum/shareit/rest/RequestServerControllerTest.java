@@ -8,12 +8,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.request.controller.RequestServerController;
 import ru.practicum.shareit.request.dto.ItemRequestInDto;
 import ru.practicum.shareit.request.dto.ItemRequestOutDto;
+import ru.practicum.shareit.request.service.ItemRequestFeed;
 import ru.practicum.shareit.request.service.ItemRequestService;
 import org.junit.jupiter.api.Test;
 
@@ -28,6 +30,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -37,6 +40,8 @@ public class RequestServerControllerTest {
     private ObjectMapper mapper = new ObjectMapper();
     @MockBean
     private ItemRequestService itemRequestService;
+    @MockBean
+    private ItemRequestFeed itemRequestFeed;
     @Autowired
     private MockMvc mvc;
 
@@ -323,4 +328,60 @@ public class RequestServerControllerTest {
                 .andDo(MockMvcResultHandlers.print())
                 .andExpect(status().is(400));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testGetItemRequestsAfterOk() throws Exception {
+        ItemRequestOutDto itemRequestOutDto1 = new ItemRequestOutDto(
+                6L, "description1", 2L, LocalDateTime.now(), List.of());
+
+        when(itemRequestService.getItemRequestsAfter(1L, 5L, 20))
+                .thenReturn(List.of(itemRequestOutDto1));
+
+        mvc.perform(get("/requests/feed?after=5&size=20")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(6L), Long.class))
+                .andExpect(jsonPath("$[0].requestor", is(2L), Long.class));
+    }
+
+
+    @Test
+    public void testGetItemRequestsAfterNotFoundException() throws Exception {
+
+        when(itemRequestService.getItemRequestsAfter(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyInt()))
+                .thenThrow(NotFoundException.class);
+
+        mvc.perform(get("/requests/feed?after=0&size=20")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(404));
+    }
+
+
+    @Test
+    public void testStreamItemRequestsOk() throws Exception {
+
+        when(itemRequestFeed.subscribe(1L, 5L)).thenReturn(new SseEmitter(1000L));
+
+        mvc.perform(get("/requests/feed/stream?after=5")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+
+    @Test
+    public void testStreamItemRequestsNotFoundException() throws Exception {
+
+        when(itemRequestFeed.subscribe(Mockito.anyLong(), Mockito.any())).thenThrow(NotFoundException.class);
+
+        mvc.perform(get("/requests/feed/stream")
+                        .header("X-Sharer-User-Id", 1L)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().is(404));
+    }
+}
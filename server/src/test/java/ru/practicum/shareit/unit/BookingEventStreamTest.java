@@ -0,0 +1,238 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.mapper.BookingMapper;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingEventStream;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class BookingEventStreamTest {
+    private static final long WAIT_SECONDS = 5;
+
+    @Mock
+    private UserJpaRepository mockUserJpaRepository;
+    @Mock
+    private BookingJpaRepository mockBookingJpaRepository;
+    @Mock
+    private BookingMapper mockBookingMapper;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    @Mock
+    private InvalidationBus mockInvalidationBus;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<SseEmitter> emitters = new ArrayDeque<>();
+    private final User owner = new User(1L, "Petr Petrov", "petrpetrov@gmail.com");
+    private final User booker = new User(2L, "Ivan Ivanov", "ivanivanov@gmail.com");
+    private final Item item = new Item(1L, "Дрель", "Простая дрель", true, owner, null);
+    private BookingEventStream bookingEventStream;
+
+    @BeforeEach
+    public void create() {
+        Mockito
+                .when(mockUserJpaRepository.existsById(Mockito.anyLong()))
+                .thenReturn(true);
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        Mockito
+                .when(mockBookingMapper.toBookingOutcomingDto(Mockito.any(Booking.class)))
+                .thenAnswer(invocation -> toDto(invocation.getArgument(0)));
+        bookingEventStream = new BookingEventStream(mockUserJpaRepository, mockBookingJpaRepository,
+                mockBookingMapper, mockTransactionTemplate, mockInvalidationBus, meterRegistry,
+                32, 0, 0, 100, 1) {
+            @Override
+            protected SseEmitter createEmitter(long timeoutMs) {
+                return emitters.remove();
+            }
+        };
+        bookingEventStream.start();
+    }
+
+
+    @AfterEach
+    public void stop() {
+        bookingEventStream.stop();
+    }
+
+
+    @Test
+    public void testSubscribesToInvalidationBus() {
+        Mockito.verify(mockInvalidationBus).subscribe(bookingEventStream);
+    }
+
+
+    @Test
+    public void testBookingFromBusIsSentToOwnerAndToBookerOnceDecided() throws Exception {
+        RecordingEmitter ownerEmitter = subscribe(owner.getId(), new RecordingEmitter(null));
+        RecordingEmitter bookerEmitter = subscribe(booker.getId(), new RecordingEmitter(null));
+        Mockito
+                .when(mockBookingJpaRepository.findById(5L))
+                .thenReturn(Optional.of(booking(5L, BookingStatus.WAITING)));
+        Mockito
+                .when(mockBookingJpaRepository.findById(6L))
+                .thenReturn(Optional.of(booking(6L, BookingStatus.APPROVED)));
+
+        bookingEventStream.onInvalidate("item:1");
+        bookingEventStream.onInvalidate("booking:5");
+        bookingEventStream.onInvalidate("booking:6");
+
+        Assertions.assertEquals("booking 5 WAITING", ownerEmitter.next());
+        Assertions.assertEquals("booking 6 APPROVED", ownerEmitter.next());
+        Assertions.assertEquals("booking 6 APPROVED", bookerEmitter.next());
+        Mockito.verify(mockBookingJpaRepository, Mockito.times(2)).findById(Mockito.anyLong());
+    }
+
+
+    @Test
+    public void testBusIsNotReadWithoutSubscribers() {
+        bookingEventStream.onInvalidate("booking:5");
+
+        Mockito.verifyNoInteractions(mockBookingJpaRepository);
+    }
+
+
+    @Test
+    public void testMissedBusMessagesResyncSubscribers() throws Exception {
+        RecordingEmitter emitter = subscribe(owner.getId(), new RecordingEmitter(null));
+
+        bookingEventStream.onMissed();
+
+        Assertions.assertEquals("resync 1", emitter.next());
+    }
+
+
+    @Test
+    public void testStalledSubscriberIsDroppedAndOthersStillReceiveEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter stalledEmitter = subscribe(owner.getId(), new RecordingEmitter(release));
+        RecordingEmitter emitter = subscribe(booker.getId(), new RecordingEmitter(null));
+
+        Assertions.assertEquals(1.0, meterRegistry.counter("shareit.booking.events.stalled").count());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.booking.events.subscribers").gauge().value());
+
+        release.countDown();
+
+        Assertions.assertTrue(stalledEmitter.completed.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        bookingEventStream.publish(owner.getId(), toDto(booking(5L, BookingStatus.WAITING)));
+        bookingEventStream.publish(booker.getId(), toDto(booking(5L, BookingStatus.WAITING)));
+        Assertions.assertEquals("booking 5 WAITING", emitter.next());
+        Assertions.assertEquals(1, stalledEmitter.sent.size());
+    }
+
+
+    private RecordingEmitter subscribe(Long userId, RecordingEmitter emitter) throws Exception {
+        emitters.add(emitter);
+        bookingEventStream.subscribe(userId);
+        if (emitter.release == null) {
+            Assertions.assertEquals("heartbeat", emitter.next());
+        }
+        return emitter;
+    }
+
+
+    private Booking booking(Long id, BookingStatus status) {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        return new Booking(id, start, start.plusDays(1), item, booker, status);
+    }
+
+
+    private BookingOutcomingDto toDto(Booking booking) {
+        return new BookingOutcomingDto(booking.getId(), booking.getStart(), booking.getEnd(),
+                new ItemDto(item.getId(), item.getName(), item.getDescription(), true, null, null, List.of()),
+                new UserDto(booker.getId(), booker.getName(), booker.getEmail()),
+                booking.getBookingStatus().name());
+    }
+
+
+    /**
+     * Запоминает отправленные события; если задан release, каждая отправка ждёт его, как
+     * запись в сокет клиента, который не читает данные.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sent.add(builder.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .map(RecordingEmitter::describe)
+                    .collect(Collectors.joining()).trim());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        private String next() throws InterruptedException {
+            return sent.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        private static String describe(Object data) {
+            if (data instanceof BookingOutcomingDto) {
+                BookingOutcomingDto booking = (BookingOutcomingDto) data;
+                return booking.getId() + " " + booking.getStatus();
+            }
+            if (!(data instanceof String)) {
+                return data.toString();
+            }
+            StringBuilder description = new StringBuilder();
+            for (String line : ((String) data).split("\n")) {
+                if (line.startsWith(":")) {
+                    description.append(line.substring(1));
+                } else if (line.startsWith("event:")) {
+                    description.append(line.substring("event:".length())).append(' ');
+                }
+            }
+            return description.toString();
+        }
+    }
+}
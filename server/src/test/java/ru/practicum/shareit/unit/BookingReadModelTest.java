@@ -0,0 +1,341 @@
+package ru.practicum.shareit.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapstruct.factory.Mappers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingReadModel;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.invalidation.LocalInvalidationBus;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.user.mapper.UserMapper;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class BookingReadModelTest {
+    @Mock
+    private BookingJpaRepository mockBookingJpaRepository;
+    @Mock
+    private ItemPagingAndSortingRepository mockItemPagingAndSortingRepository;
+    @Mock
+    private UserJpaRepository mockUserJpaRepository;
+    @Mock
+    private ItemMapper mockItemMapper;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    private final LocalInvalidationBus invalidationBus = new LocalInvalidationBus();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final LocalDateTime now = LocalDateTime.now();
+    private final User owner = new User(1L, "Petr Petrov", "petrpetrov@gmail.com");
+    private final User booker = new User(2L, "Ivan Ivanov", "ivanivanov@gmail.com");
+    private final Item item = new Item(1L, "Дрель", "Простая дрель", true, owner, null);
+    private BookingReadModel bookingReadModel;
+
+    @BeforeEach
+    public void create() {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        Mockito
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                    return null;
+                })
+                .when(mockTransactionTemplate).executeWithoutResult(Mockito.any());
+        Mockito
+                .when(mockItemMapper.toItemDto(Mockito.any(Item.class)))
+                .thenAnswer(invocation -> {
+                    Item mapped = invocation.getArgument(0);
+                    return new ItemDto(mapped.getId(), mapped.getName(), mapped.getDescription(), mapped.getAvailable(),
+                            mapped.getOwner().getId(), null, List.of());
+                });
+        Mockito
+                .when(mockBookingJpaRepository.findAllWithItemAndBooker())
+                .thenReturn(List.of(
+                        booking(1L, now.minusDays(3), now.minusDays(2), BookingStatus.APPROVED),
+                        booking(2L, now.minusDays(1), now.plusDays(1), BookingStatus.APPROVED),
+                        booking(3L, now.plusDays(1), now.plusDays(2), BookingStatus.WAITING),
+                        booking(4L, now.plusDays(3), now.plusDays(4), BookingStatus.REJECTED)));
+        Mockito
+                .when(mockBookingJpaRepository.findSchemaEpoch())
+                .thenReturn("epoch-1");
+        Mockito
+                .when(mockBookingJpaRepository.findAllVersions())
+                .thenReturn(versions(1L, 2L, 3L, 4L));
+        Mockito
+                .when(mockItemPagingAndSortingRepository.findAllById(Mockito.any()))
+                .thenReturn(List.of(item));
+        Mockito
+                .when(mockUserJpaRepository.findAllById(Mockito.any()))
+                .thenReturn(List.of(owner, booker));
+        bookingReadModel = model(invalidationBus, 0, "", 10000);
+        bookingReadModel.rebuild();
+    }
+
+
+    @Test
+    public void testStatesAreServedFromMemory() {
+        Assertions.assertEquals(List.of(4L, 3L, 2L, 1L), ids(bookingReadModel.getBookerBookings(2L, "ALL", 0, 10, now)));
+        Assertions.assertEquals(List.of(2L), ids(bookingReadModel.getBookerBookings(2L, "CURRENT", 0, 10, now)));
+        Assertions.assertEquals(List.of(1L), ids(bookingReadModel.getBookerBookings(2L, "PAST", 0, 10, now)));
+        Assertions.assertEquals(List.of(4L, 3L), ids(bookingReadModel.getOwnerBookings(1L, "FUTURE", 0, 10, now)));
+        Assertions.assertEquals(List.of(3L), ids(bookingReadModel.getOwnerBookings(1L, "WAITING", 0, 10, now)));
+        Assertions.assertEquals(List.of(4L), ids(bookingReadModel.getOwnerBookings(1L, "REJECTED", 0, 10, now)));
+        Assertions.assertEquals(List.of(2L, 1L), ids(bookingReadModel.getBookerBookings(2L, "ALL", 2, 2, now)));
+        Assertions.assertEquals(List.of(4L, 3L), ids(bookingReadModel.getBookerBookings(2L, "ALL", 5, 2, now)));
+        Assertions.assertNull(bookingReadModel.getBookerBookings(99L, "ALL", 0, 10, now));
+        Assertions.assertNull(bookingReadModel.getBookerBookings(2L, "UNSUPPORTED", 0, 10, now));
+    }
+
+
+    @Test
+    public void testGetBookingChecksAccess() {
+        Assertions.assertEquals(booker.getName(), bookingReadModel.getBooking(1L, 1L).getBooker().getName());
+        Assertions.assertEquals(item.getName(), bookingReadModel.getBooking(1L, 2L).getItem().getName());
+        Assertions.assertNull(bookingReadModel.getBooking(99L, 2L));
+        Assertions.assertThrows(NotFoundException.class, () -> bookingReadModel.getBooking(1L, 3L));
+    }
+
+
+    @Test
+    public void testWritesAreAppliedFromBus() {
+        Mockito
+                .when(mockBookingJpaRepository.findById(3L))
+                .thenReturn(Optional.of(booking(3L, now.plusDays(1), now.plusDays(2), BookingStatus.APPROVED)));
+        Mockito
+                .when(mockBookingJpaRepository.findById(5L))
+                .thenReturn(Optional.of(booking(5L, now.plusDays(5), now.plusDays(6), BookingStatus.WAITING)));
+
+        invalidationBus.publish("booking:3");
+        invalidationBus.publish("booking:5");
+
+        Assertions.assertEquals(List.of(5L), ids(bookingReadModel.getOwnerBookings(1L, "WAITING", 0, 10, now)));
+        Assertions.assertEquals(List.of(5L, 4L, 3L), ids(bookingReadModel.getBookerBookings(2L, "FUTURE", 0, 10, now)));
+
+        invalidationBus.publish("booking:1");
+
+        Assertions.assertNull(bookingReadModel.getBookerBookings(2L, "PAST", 0, 10, now));
+        Assertions.assertEquals(List.of(2L), ids(bookingReadModel.getBookerBookings(2L, "CURRENT", 0, 10, now)));
+    }
+
+
+    @Test
+    public void testUserAndItemSnapshotsAreRefreshed() {
+        Mockito
+                .when(mockUserJpaRepository.findById(2L))
+                .thenReturn(Optional.of(new User(2L, "Ivan Petrov", "ivanivanov@gmail.com")));
+        Mockito
+                .when(mockItemPagingAndSortingRepository.findById(1L))
+                .thenReturn(Optional.of(new Item(1L, "Дрель", "Ударная дрель", true, owner, null)));
+
+        invalidationBus.publish("user:2");
+        invalidationBus.publish("item:1");
+        invalidationBus.publish("request:1");
+
+        BookingOutcomingDto booking = bookingReadModel.getBooking(2L, 2L);
+        Assertions.assertEquals("Ivan Petrov", booking.getBooker().getName());
+        Assertions.assertEquals("Ударная дрель", booking.getItem().getDescription());
+    }
+
+
+    @Test
+    public void testArchivedBookingsSendHistoryToDatabase() {
+        bookingReadModel.onArchived(List.of(1L));
+
+        Assertions.assertNull(bookingReadModel.getBookerBookings(2L, "ALL", 0, 10, now));
+        Assertions.assertNull(bookingReadModel.getOwnerBookings(1L, "PAST", 0, 10, now));
+        Assertions.assertNull(bookingReadModel.getBooking(1L, 2L));
+        Assertions.assertEquals(List.of(4L, 3L), ids(bookingReadModel.getBookerBookings(2L, "FUTURE", 0, 10, now)));
+    }
+
+
+    @Test
+    public void testMismatchFallsBackToDatabase() {
+        BookingReadModel verifyingModel = model(invalidationBus, 1, "", 10000);
+        verifyingModel.rebuild();
+
+        Assertions.assertEquals(List.of(), verifyingModel.read(() -> List.of(1L), List::of));
+        Assertions.assertEquals(List.of(2L), verifyingModel.read(() -> null, () -> List.of(2L)));
+        Assertions.assertFalse(verifyingModel.isReady());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.booking.read-model.mismatches").counter().count());
+
+        invalidationBus.publish("booking:1");
+        verifyingModel.onMissed();
+        verifyingModel.rebuild();
+        Assertions.assertTrue(verifyingModel.isReady());
+    }
+
+
+    @Test
+    public void testMismatchOfLateBusMessageIsRefreshedWithoutRebuild() {
+        BookingReadModel verifyingModel = model(invalidationBus, 1, "", 10000);
+        verifyingModel.rebuild();
+        BookingOutcomingDto waiting = verifyingModel.getBooking(3L, 2L);
+        BookingOutcomingDto approved = new BookingOutcomingDto(waiting.getId(), waiting.getStart(), waiting.getEnd(),
+                waiting.getItem(), waiting.getBooker(), BookingStatus.APPROVED.getDescription());
+        Mockito
+                .when(mockBookingJpaRepository.findById(3L))
+                .thenReturn(Optional.of(booking(3L, now.plusDays(1), now.plusDays(2), BookingStatus.APPROVED)));
+
+        Assertions.assertEquals(approved, verifyingModel.read(() -> verifyingModel.getBooking(3L, 2L), () -> approved));
+        Assertions.assertTrue(verifyingModel.isReady());
+        Assertions.assertEquals(approved, verifyingModel.getBooking(3L, 2L));
+        Assertions.assertEquals(0.0, meterRegistry.get("shareit.booking.read-model.mismatches").counter().count());
+    }
+
+
+    @Test
+    public void testRestartsFromJournal(@TempDir Path directory) {
+        Mockito
+                .when(mockBookingJpaRepository.findById(5L))
+                .thenReturn(Optional.of(booking(5L, now.plusDays(5), now.plusDays(6), BookingStatus.WAITING)));
+        Mockito
+                .when(mockUserJpaRepository.findById(2L))
+                .thenReturn(Optional.of(new User(2L, "Ivan Petrov", "ivanivanov@gmail.com")));
+        BookingReadModel journaledModel = started(model(invalidationBus, 0, directory.toString(), 2));
+        invalidationBus.publish("booking:5");
+        journaledModel.onArchived(List.of(1L));
+        invalidationBus.publish("user:2");
+        journaledModel.stop();
+        Mockito
+                .when(mockBookingJpaRepository.findAllVersions())
+                .thenReturn(versions(2L, 3L, 4L, 5L));
+        Mockito
+                .when(mockUserJpaRepository.findAllById(Mockito.any()))
+                .thenReturn(List.of(owner, new User(2L, "Ivan Petrov", "ivanivanov@gmail.com")));
+        Mockito
+                .when(mockBookingJpaRepository.countArchivedByBooker())
+                .thenReturn(List.<Object[]>of(new Object[]{2L, 1L}));
+
+        BookingReadModel restartedModel = started(model(invalidationBus, 0, directory.toString(), 2));
+        restartedModel.stop();
+
+        Mockito.verify(mockBookingJpaRepository, Mockito.times(2)).findAllWithItemAndBooker();
+        Mockito.verify(mockBookingJpaRepository, Mockito.never()).findAllWithItemAndBookerByIdIn(Mockito.any());
+        Assertions.assertEquals(List.of(5L, 4L, 3L), ids(restartedModel.getOwnerBookings(1L, "FUTURE", 0, 10, now)));
+        Assertions.assertEquals(List.of(2L), ids(restartedModel.getBookerBookings(2L, "CURRENT", 0, 10, now)));
+        Assertions.assertNull(restartedModel.getBookerBookings(2L, "PAST", 0, 10, now));
+        Assertions.assertEquals("Ivan Petrov", restartedModel.getBooking(5L, 1L).getBooker().getName());
+        Assertions.assertEquals(item.getDescription(), restartedModel.getBooking(5L, 1L).getItem().getDescription());
+    }
+
+
+    @Test
+    public void testJournalCatchesUpWithChangesMadeWhileStopped(@TempDir Path directory) {
+        started(model(invalidationBus, 0, directory.toString(), 10000)).stop();
+        Booking approved = booking(3L, now.plusDays(1), now.plusDays(2), BookingStatus.APPROVED);
+        approved.setVersion(1L);
+        Mockito
+                .when(mockBookingJpaRepository.findAllVersions())
+                .thenReturn(List.of(new Object[]{1L, null}, new Object[]{2L, null}, new Object[]{3L, 1L},
+                        new Object[]{6L, null}));
+        Mockito
+                .when(mockBookingJpaRepository.findAllWithItemAndBookerByIdIn(Mockito.any()))
+                .thenReturn(List.of(approved, booking(6L, now.plusDays(7), now.plusDays(8), BookingStatus.WAITING)));
+
+        BookingReadModel restartedModel = started(model(invalidationBus, 0, directory.toString(), 10000));
+        restartedModel.stop();
+
+        Mockito.verify(mockBookingJpaRepository, Mockito.times(2)).findAllWithItemAndBooker();
+        Mockito.verify(mockBookingJpaRepository).findAllWithItemAndBookerByIdIn(
+                Mockito.argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(3L, 6L))));
+        Assertions.assertEquals(List.of(6L, 3L, 2L, 1L), ids(restartedModel.getBookerBookings(2L, "ALL", 0, 10, now)));
+        Assertions.assertEquals(List.of(6L), ids(restartedModel.getOwnerBookings(1L, "WAITING", 0, 10, now)));
+    }
+
+
+    @Test
+    public void testJournalIsNotUsedWithoutBus(@TempDir Path directory) {
+        InvalidationBus mockInvalidationBus = Mockito.mock(InvalidationBus.class);
+        started(model(mockInvalidationBus, 0, directory.toString(), 10000)).stop();
+
+        BookingReadModel restartedModel = started(model(mockInvalidationBus, 0, directory.toString(), 10000));
+        restartedModel.stop();
+
+        Mockito.verify(mockBookingJpaRepository, Mockito.times(3)).findAllWithItemAndBooker();
+        Mockito.verify(mockBookingJpaRepository, Mockito.never()).findAllVersions();
+    }
+
+
+    @Test
+    public void testJournalOfRecreatedSchemaIsReloaded(@TempDir Path directory) {
+        started(model(invalidationBus, 0, directory.toString(), 10000)).stop();
+        Mockito
+                .when(mockBookingJpaRepository.findSchemaEpoch())
+                .thenReturn("epoch-2");
+        Mockito
+                .when(mockBookingJpaRepository.findAllWithItemAndBooker())
+                .thenReturn(List.of());
+
+        BookingReadModel restartedModel = started(model(invalidationBus, 0, directory.toString(), 10000));
+        restartedModel.stop();
+
+        Mockito.verify(mockBookingJpaRepository, Mockito.times(3)).findAllWithItemAndBooker();
+        Assertions.assertNull(restartedModel.getBookerBookings(2L, "ALL", 0, 10, now));
+    }
+
+
+    private BookingReadModel model(InvalidationBus bus, int verifyRate, String directory, int snapshotEvery) {
+        return new BookingReadModel(mockBookingJpaRepository, mockItemPagingAndSortingRepository, mockUserJpaRepository,
+                mockItemMapper, Mappers.getMapper(UserMapper.class), mockTransactionTemplate, bus, objectMapper,
+                meterRegistry, true, verifyRate, directory, snapshotEvery, 1000);
+    }
+
+
+    private BookingReadModel started(BookingReadModel model) {
+        model.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!model.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        Assertions.assertTrue(model.isReady());
+        return model;
+    }
+
+
+    private Booking booking(Long id, LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        return new Booking(id, start, end, item, booker, status);
+    }
+
+
+    private static List<Object[]> versions(Long... ids) {
+        return Arrays.stream(ids).map(id -> new Object[]{id, null}).collect(Collectors.toList());
+    }
+
+
+    private List<Long> ids(List<BookingOutcomingDto> bookings) {
+        return bookings.stream().map(BookingOutcomingDto::getId).collect(Collectors.toList());
+    }
+}
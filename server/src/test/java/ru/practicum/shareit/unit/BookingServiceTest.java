@@ -1,5 +1,6 @@
 package ru.practicum.shareit.unit;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,25 +11,35 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingOutcomingDto;
 import ru.practicum.shareit.booking.mapper.BookingMapper;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.booking.service.BookingReadModel;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.booking.service.BookingServiceImpl;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.UnsupportedOperationException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.groupcommit.GroupCommitExecutor;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
+import ru.practicum.shareit.invalidation.InvalidationBus;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxService;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -45,15 +56,37 @@ public class BookingServiceTest {
     private ItemPagingAndSortingRepository mockItemPagingAndSortingRepository;
     @Mock
     private BookingMapper mockBookingMapper;
+    @Mock
+    private UserCounterService mockUserCounterService;
+    @Mock
+    private OutboxService mockOutboxService;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    @Mock
+    private InvalidationBus mockInvalidationBus;
+    @Mock
+    private IdempotencyStore mockIdempotencyStore;
     private BookingService bookingService;
 
     @BeforeEach
     public void create() {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
         bookingService = new BookingServiceImpl(
                 mockBookingJpaRepository,
                 mockUserJpaRepository,
                 mockItemPagingAndSortingRepository,
-                mockBookingMapper
+                mockBookingMapper,
+                mockUserCounterService,
+                mockOutboxService,
+                mockTransactionTemplate,
+                mockInvalidationBus,
+                new BookingReadModel(mockBookingJpaRepository, mockItemPagingAndSortingRepository,
+                        mockUserJpaRepository, null, null, mockTransactionTemplate, mockInvalidationBus,
+                        null, new SimpleMeterRegistry(), false, 100, "", 10000, 0),
+                new GroupCommitExecutor(mockTransactionTemplate, new SimpleMeterRegistry(), false, 64, 2),
+                mockIdempotencyStore
         );
     }
 
@@ -91,6 +124,7 @@ public class BookingServiceTest {
                 .thenReturn(bookingOutcomingDto);
 
         Assertions.assertEquals(bookingOutcomingDto, bookingService.postBooking(3L, bookingDto));
+        Mockito.verify(mockOutboxService).record(OutboxEventType.BOOKING_CREATED, 1L, bookingOutcomingDto);
     }
 
 
@@ -388,8 +422,34 @@ public class BookingServiceTest {
         ItemDto itemDto = new ItemDto(1L, "name", "description", true, 1L, 1L, List.of());
         LocalDateTime start = LocalDateTime.now().plusDays(1);
         LocalDateTime end = LocalDateTime.now().plusDays(2);
-        Booking booking = new Booking(1L, start, end, item, booker, BookingStatus.WAITING);
-        BookingOutcomingDto bookingOutcomingDto = new BookingOutcomingDto(1L, start, end, itemDto, bookerDto, BookingStatus.WAITING.getDescription());
+        Booking booking = new Booking(1L, start, end, item, booker, BookingStatus.APPROVED);
+        BookingOutcomingDto bookingOutcomingDto = new BookingOutcomingDto(1L, start, end, itemDto, bookerDto, BookingStatus.APPROVED.getDescription());
+
+        Mockito
+                .when(mockBookingJpaRepository.updateWaitingStatus(1L, 1L, "APPROVED"))
+                .thenReturn(1);
+        Mockito
+                .when(mockBookingJpaRepository.findById(Mockito.anyLong()))
+                .thenReturn(Optional.of(booking));
+        Mockito
+                .when(mockBookingMapper.toBookingOutcomingDto(Mockito.any(Booking.class)))
+                .thenReturn(bookingOutcomingDto);
+
+        Assertions.assertEquals(bookingOutcomingDto, bookingService.patchBooking(1L, true, 1L));
+        Mockito.verify(mockBookingJpaRepository, Mockito.never()).existsById(Mockito.anyLong());
+        Mockito.verify(mockBookingJpaRepository, Mockito.never()).save(Mockito.any(Booking.class));
+        Mockito.verify(mockOutboxService).record(OutboxEventType.BOOKING_APPROVED, 1L, bookingOutcomingDto);
+        Mockito.verify(mockInvalidationBus).publish("booking:1");
+    }
+
+
+    @Test
+    public void testPatchBookingChangedConcurrently() {
+        User owner = new User(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
+        User booker = new User(3L, "Alexey Alexeev", "alexeyalexeev@gmail.com");
+        Item item = new Item(1L, "name", "description", true, owner, null);
+        Booking booking = new Booking(1L, LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2),
+                item, booker, BookingStatus.WAITING);
 
         Mockito
                 .when(mockBookingJpaRepository.existsById(Mockito.anyLong()))
@@ -400,11 +460,39 @@ public class BookingServiceTest {
         Mockito
                 .when(mockBookingJpaRepository.findById(Mockito.anyLong()))
                 .thenReturn(Optional.of(booking));
+
+        Assertions.assertThrows(
+                ObjectOptimisticLockingFailureException.class,
+                () -> bookingService.patchBooking(1L, false, 1L));
+        Mockito.verifyNoInteractions(mockOutboxService);
+        Mockito.verify(mockInvalidationBus, Mockito.never()).publish(Mockito.anyString());
+    }
+
+
+    @Test
+    public void testPatchBookingAlreadyRejected() {
+        User owner = new User(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
+        User booker = new User(3L, "Alexey Alexeev", "alexeyalexeev@gmail.com");
+        Item item = new Item(1L, "name", "description", true, owner, null);
+        Booking booking = new Booking(1L, LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2),
+                item, booker, BookingStatus.REJECTED);
+
         Mockito
-                .when(mockBookingMapper.toBookingOutcomingDto(Mockito.any(Booking.class)))
-                .thenReturn(bookingOutcomingDto);
+                .when(mockBookingJpaRepository.existsById(Mockito.anyLong()))
+                .thenReturn(true);
+        Mockito
+                .when(mockUserJpaRepository.existsById(Mockito.anyLong()))
+                .thenReturn(true);
+        Mockito
+                .when(mockBookingJpaRepository.findById(Mockito.anyLong()))
+                .thenReturn(Optional.of(booking));
 
-        Assertions.assertEquals(bookingOutcomingDto, bookingService.patchBooking(1L, true, 1L));
+        final BadRequestException exception = Assertions.assertThrows(
+                BadRequestException.class,
+                () -> bookingService.patchBooking(1L, true, 1L));
+
+        Assertions.assertEquals("Статус бронирования уже изменён!", exception.getMessage());
+        Mockito.verifyNoInteractions(mockOutboxService);
     }
 
 
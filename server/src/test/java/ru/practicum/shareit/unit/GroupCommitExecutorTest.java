@@ -0,0 +1,147 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.groupcommit.GroupCommitExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class GroupCommitExecutorTest {
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<TransactionStatus> transaction = new AtomicReference<>();
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private GroupCommitExecutor groupCommitExecutor;
+
+    @BeforeEach
+    public void create() {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> {
+                    transaction.set(new SimpleTransactionStatus());
+                    return ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(transaction.get());
+                });
+        Mockito
+                .doAnswer(invocation -> {
+                    transaction.set(new SimpleTransactionStatus());
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(transaction.get());
+                    return null;
+                })
+                .when(mockTransactionTemplate).executeWithoutResult(Mockito.any());
+    }
+
+
+    @AfterEach
+    public void destroy() throws InterruptedException {
+        callers.shutdownNow();
+        if (groupCommitExecutor != null) {
+            groupCommitExecutor.stop();
+        }
+    }
+
+
+    @Test
+    public void testDisabledExecutorCommitsEachWrite() {
+        groupCommitExecutor = new GroupCommitExecutor(mockTransactionTemplate, meterRegistry, false, 64, 2);
+        groupCommitExecutor.start();
+
+        Assertions.assertEquals(1, groupCommitExecutor.execute(() -> 1));
+        Mockito.verify(mockTransactionTemplate).execute(Mockito.any());
+        Mockito.verify(mockTransactionTemplate, Mockito.never()).executeWithoutResult(Mockito.any());
+    }
+
+
+    @Test
+    public void testBatchCompletesEachWriteWithItsOwnResult() {
+        groupCommitExecutor = new GroupCommitExecutor(mockTransactionTemplate, meterRegistry, true, 2, 10_000);
+        groupCommitExecutor.start();
+
+        CompletableFuture<Integer> first = submit(() -> 1);
+        CompletableFuture<Integer> rejected = submit(() -> {
+            throw new BadRequestException("Пользователь не брал вещь!");
+        });
+
+        Assertions.assertEquals(1, first.join());
+        CompletionException exception = Assertions.assertThrows(CompletionException.class, rejected::join);
+        Assertions.assertInstanceOf(BadRequestException.class, exception.getCause());
+        Mockito.verify(mockTransactionTemplate).executeWithoutResult(Mockito.any());
+        Mockito.verify(mockTransactionTemplate, Mockito.never()).execute(Mockito.any());
+        Assertions.assertEquals(2.0, meterRegistry.get("shareit.group-commit.batch-size").summary().max());
+    }
+
+
+    @Test
+    public void testBrokenBatchIsCommittedWriteByWrite() {
+        groupCommitExecutor = new GroupCommitExecutor(mockTransactionTemplate, meterRegistry, true, 2, 10_000);
+        groupCommitExecutor.start();
+
+        CompletableFuture<Integer> first = submit(() -> 1);
+        CompletableFuture<Integer> broken = submit(() -> {
+            transaction.get().setRollbackOnly();
+            throw new IllegalStateException("Нарушено ограничение целостности");
+        });
+
+        Assertions.assertEquals(1, first.join());
+        CompletionException exception = Assertions.assertThrows(CompletionException.class, broken::join);
+        Assertions.assertInstanceOf(IllegalStateException.class, exception.getCause());
+        Mockito.verify(mockTransactionTemplate, Mockito.times(2)).execute(Mockito.any());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.group-commit.fallbacks").counter().count());
+    }
+
+
+    @Test
+    public void testWriteFailingAfterItsChangesRollsBackTheBatch() {
+        groupCommitExecutor = new GroupCommitExecutor(mockTransactionTemplate, meterRegistry, true, 2, 10_000);
+        groupCommitExecutor.start();
+
+        CompletableFuture<Integer> first = submit(() -> 1);
+        CompletableFuture<Integer> failed = submit(() -> {
+            throw new IllegalArgumentException("Не удалось сериализовать событие");
+        });
+
+        Assertions.assertEquals(1, first.join());
+        CompletionException exception = Assertions.assertThrows(CompletionException.class, failed::join);
+        Assertions.assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        Mockito.verify(mockTransactionTemplate, Mockito.times(2)).execute(Mockito.any());
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.group-commit.fallbacks").counter().count());
+    }
+
+
+    @Test
+    public void testStoppedExecutorCommitsEachWrite() throws InterruptedException {
+        groupCommitExecutor = new GroupCommitExecutor(mockTransactionTemplate, meterRegistry, true, 2, 2);
+        groupCommitExecutor.start();
+        groupCommitExecutor.stop();
+
+        Assertions.assertEquals(1, groupCommitExecutor.execute(() -> 1));
+        Mockito.verify(mockTransactionTemplate).execute(Mockito.any());
+    }
+
+
+    private <T> CompletableFuture<T> submit(Supplier<T> write) {
+        return CompletableFuture.supplyAsync(() -> groupCommitExecutor.execute(write), callers);
+    }
+}
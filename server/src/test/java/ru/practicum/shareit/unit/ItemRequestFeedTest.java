@@ -0,0 +1,213 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.request.dto.ItemRequestOutDto;
+import ru.practicum.shareit.request.mapper.ItemRequestMapper;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.request.service.ItemRequestFeed;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserJpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ItemRequestFeedTest {
+    @Mock
+    private RequestJpaRepository mockRequestJpaRepository;
+    @Mock
+    private UserJpaRepository mockUserJpaRepository;
+    @Mock
+    private ItemRequestMapper mockItemRequestMapper;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final User requester = new User(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
+    private final User otherRequester = new User(2L, "Petr Petrov", "petrpetrov@gmail.com");
+    private ItemRequestFeed itemRequestFeed;
+
+    @BeforeEach
+    public void create() {
+        Mockito
+                .when(mockItemRequestMapper.toItemRequestOutDto(Mockito.any(ItemRequest.class)))
+                .thenAnswer(invocation -> toDto(invocation.getArgument(0)));
+        Mockito
+                .when(mockItemRequestMapper.toItemRequestOutDtos(Mockito.anyList()))
+                .thenAnswer(invocation -> invocation.<List<ItemRequest>>getArgument(0).stream()
+                        .map(this::toDto)
+                        .collect(Collectors.toList()));
+        itemRequestFeed = new ItemRequestFeed(mockRequestJpaRepository, mockUserJpaRepository,
+                mockItemRequestMapper, meterRegistry, 2, 0, 0, 0, 1000, 1);
+    }
+
+
+    @Test
+    public void testReadsDatabaseBeforeLoad() {
+        Mockito
+                .when(mockRequestJpaRepository.findAllAfter(Mockito.eq(1L), Mockito.eq(0L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(2L, otherRequester)));
+
+        Assertions.assertEquals(List.of(2L), ids(itemRequestFeed.getAfter(1L, 0L, 10)));
+        Assertions.assertEquals(1.0, reads("database"));
+    }
+
+
+    @Test
+    public void testReadsLatestRequestsFromMemory() {
+        Mockito
+                .when(mockRequestJpaRepository.findAll(Mockito.any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(request(3L, otherRequester), request(2L, requester))));
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(3L), ids(itemRequestFeed.getAfter(1L, 1L, 10)));
+        Assertions.assertEquals(List.of(2L, 3L), ids(itemRequestFeed.getAfter(5L, 1L, 10)));
+        Assertions.assertEquals(List.of(2L), ids(itemRequestFeed.getAfter(5L, 1L, 1)));
+        Assertions.assertEquals(List.of(), ids(itemRequestFeed.getAfter(5L, 3L, 10)));
+        Assertions.assertEquals(4.0, reads("memory"));
+        Mockito.verify(mockRequestJpaRepository, Mockito.never())
+                .findAllAfter(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+
+    @Test
+    public void testEvictedCursorFallsBackToDatabase() {
+        Mockito
+                .when(mockRequestJpaRepository.findAll(Mockito.any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(request(3L, otherRequester), request(2L, otherRequester))));
+        Mockito
+                .when(mockRequestJpaRepository.findNewerThan(Mockito.eq(3L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(4L, otherRequester)));
+        Mockito
+                .when(mockRequestJpaRepository.findAllAfter(Mockito.eq(1L), Mockito.eq(1L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(2L, otherRequester), request(3L, otherRequester)));
+        itemRequestFeed.refresh();
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(3L, 4L), ids(itemRequestFeed.getAfter(1L, 2L, 10)));
+        Assertions.assertEquals(List.of(2L, 3L), ids(itemRequestFeed.getAfter(1L, 1L, 2)));
+        Assertions.assertEquals(1.0, reads("memory"));
+        Assertions.assertEquals(1.0, reads("database"));
+    }
+
+
+    @Test
+    public void testRequestCommittedOutOfOrderIsNotSkipped() {
+        itemRequestFeed = new ItemRequestFeed(mockRequestJpaRepository, mockUserJpaRepository,
+                mockItemRequestMapper, meterRegistry, 10, 0, 60000, 0, 1000, 1);
+        Mockito
+                .when(mockRequestJpaRepository.findAll(Mockito.any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(request(1L, otherRequester))));
+        Mockito
+                .when(mockRequestJpaRepository.findNewerThan(Mockito.eq(1L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(3L, otherRequester)))
+                .thenReturn(List.of(request(2L, otherRequester), request(3L, otherRequester)));
+        itemRequestFeed.refresh();
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(), ids(itemRequestFeed.getAfter(5L, 1L, 10)));
+
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(2L, 3L), ids(itemRequestFeed.getAfter(5L, 1L, 10)));
+        Assertions.assertEquals(List.of(), ids(itemRequestFeed.getAfter(5L, 3L, 10)));
+        Mockito.verify(mockRequestJpaRepository, Mockito.times(2))
+                .findNewerThan(Mockito.eq(1L), Mockito.any(Pageable.class));
+    }
+
+
+    @Test
+    public void testGapIsSkippedAfterCommitDelay() {
+        Mockito
+                .when(mockRequestJpaRepository.findAll(Mockito.any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(request(1L, otherRequester))));
+        Mockito
+                .when(mockRequestJpaRepository.findNewerThan(Mockito.eq(1L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(3L, otherRequester)));
+        itemRequestFeed.refresh();
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(3L), ids(itemRequestFeed.getAfter(5L, 1L, 10)));
+    }
+
+
+    @Test
+    public void testDatabaseReadStopsAtUncommittedGap() {
+        itemRequestFeed = new ItemRequestFeed(mockRequestJpaRepository, mockUserJpaRepository,
+                mockItemRequestMapper, meterRegistry, 1, 0, 60000, 0, 1000, 1);
+        Mockito
+                .when(mockRequestJpaRepository.findAll(Mockito.any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(request(1L, otherRequester))));
+        Mockito
+                .when(mockRequestJpaRepository.findNewerThan(Mockito.eq(1L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(3L, otherRequester)));
+        Mockito
+                .when(mockRequestJpaRepository.findAllAfter(Mockito.eq(5L), Mockito.eq(0L), Mockito.any(Pageable.class)))
+                .thenReturn(List.of(request(1L, otherRequester), request(3L, otherRequester)));
+        itemRequestFeed.refresh();
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(1L), ids(itemRequestFeed.getAfter(5L, 0L, 10)));
+    }
+
+
+    @Test
+    public void testRefreshSurvivesDatabaseFailure() {
+        Mockito
+                .when(mockRequestJpaRepository.findAll(Mockito.any(Pageable.class)))
+                .thenThrow(new DataAccessResourceFailureException("Нет соединения"))
+                .thenReturn(new PageImpl<>(List.of(request(2L, otherRequester))));
+        itemRequestFeed.refresh();
+        itemRequestFeed.onCreated();
+        itemRequestFeed.refresh();
+
+        Assertions.assertEquals(List.of(2L), ids(itemRequestFeed.getAfter(1L, 0L, 10)));
+        Assertions.assertEquals(1.0, reads("memory"));
+        itemRequestFeed.stop();
+        itemRequestFeed.onCreated();
+    }
+
+
+    @Test
+    public void testUnknownUserCannotSubscribe() {
+        Mockito
+                .when(mockUserJpaRepository.existsById(1L))
+                .thenReturn(false);
+
+        Assertions.assertThrows(NotFoundException.class, () -> itemRequestFeed.subscribe(1L, null));
+    }
+
+
+    private ItemRequest request(Long id, User user) {
+        return new ItemRequest(id, "description" + id, user, LocalDateTime.now());
+    }
+
+
+    private ItemRequestOutDto toDto(ItemRequest itemRequest) {
+        return new ItemRequestOutDto(itemRequest.getId(), itemRequest.getDescription(),
+                itemRequest.getRequester().getId(), itemRequest.getCreated(), List.of());
+    }
+
+
+    private List<Long> ids(List<ItemRequestOutDto> requests) {
+        return requests.stream().map(ItemRequestOutDto::getId).collect(Collectors.toList());
+    }
+
+
+    private double reads(String source) {
+        return meterRegistry.get("shareit.requests.feed.reads").tag("source", source).counter().count();
+    }
+}
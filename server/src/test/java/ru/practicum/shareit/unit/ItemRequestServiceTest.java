@@ -10,17 +10,23 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxService;
 import ru.practicum.shareit.request.dto.ItemRequestInDto;
 import ru.practicum.shareit.request.dto.ItemRequestOutDto;
 import ru.practicum.shareit.request.mapper.ItemRequestMapper;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.request.service.ItemRequestFeed;
 import ru.practicum.shareit.request.service.ItemRequestService;
 import ru.practicum.shareit.request.service.ItemRequestServiceImpl;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -35,14 +41,29 @@ public class ItemRequestServiceTest {
     private UserJpaRepository mockUserJpaRepository;
     @Mock
     private ItemRequestMapper mockItemRequestMapper;
+    @Mock
+    private UserCounterService mockUserCounterService;
+    @Mock
+    private ItemRequestFeed mockItemRequestFeed;
+    @Mock
+    private OutboxService mockOutboxService;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
     private ItemRequestService itemRequestService;
 
     @BeforeEach
     public void create() {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
         itemRequestService = new ItemRequestServiceImpl(
                 mockRequestJpaRepository,
                 mockUserJpaRepository,
-                mockItemRequestMapper);
+                mockItemRequestMapper,
+                mockUserCounterService,
+                mockItemRequestFeed,
+                mockOutboxService,
+                mockTransactionTemplate);
     }
 
 
@@ -66,6 +87,8 @@ public class ItemRequestServiceTest {
                 .when(mockItemRequestMapper.toItemRequestOutDto(Mockito.any(ItemRequest.class)))
                 .thenReturn(itemRequestOutDto);
         Assertions.assertEquals(itemRequestService.postItemRequest(1L, itemRequestInDto), itemRequestOutDto);
+        Mockito.verify(mockItemRequestFeed).onCreated();
+        Mockito.verify(mockOutboxService).record(OutboxEventType.REQUEST_CREATED, 1L, itemRequestOutDto);
     }
 
 
@@ -98,8 +121,8 @@ public class ItemRequestServiceTest {
                 .when(mockItemRequestMapper.toItemRequest(Mockito.any(ItemRequestInDto.class), Mockito.anyLong()))
                 .thenReturn(itemRequest);
         Mockito
-                .when(mockRequestJpaRepository.save(Mockito.any(ItemRequest.class)))
-                .thenReturn(itemRequest);
+                .when(mockRequestJpaRepository.updateIfVersion(Mockito.anyLong(), Mockito.any(), Mockito.any()))
+                .thenReturn(1);
         Mockito
                 .when(mockItemRequestMapper.toItemRequestOutDto(Mockito.any(ItemRequest.class)))
                 .thenReturn(itemRequestOutDto);
@@ -269,4 +292,29 @@ public class ItemRequestServiceTest {
                 () -> itemRequestService.getAllItemRequests(1L, 1, 10));
         Assertions.assertEquals("Пользователь не найден!", exception.getMessage());
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testGetItemRequestsAfterOk() {
+        ItemRequestOutDto itemRequestOutDto = new ItemRequestOutDto(6L, "description", 2L, LocalDateTime.now(), List.of());
+        Mockito
+                .when(mockUserJpaRepository.existsById(1L))
+                .thenReturn(true);
+        Mockito
+                .when(mockItemRequestFeed.getAfter(1L, 5L, 20))
+                .thenReturn(List.of(itemRequestOutDto));
+
+        Assertions.assertEquals(List.of(itemRequestOutDto), itemRequestService.getItemRequestsAfter(1L, 5L, 20));
+    }
+
+
+    @Test
+    public void testGetItemRequestsAfterWithoutExistingUser() {
+        Mockito
+                .when(mockUserJpaRepository.existsById(Mockito.anyLong()))
+                .thenReturn(false);
+
+        Assertions.assertThrows(NotFoundException.class, () -> itemRequestService.getItemRequestsAfter(1L, 5L, 20));
+        Mockito.verifyNoInteractions(mockItemRequestFeed);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.unit;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,13 +10,17 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import ru.practicum.shareit.booking.model.Booking;
-import ru.practicum.shareit.booking.model.BookingStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.repository.BookingJpaRepository;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.ForbiddenException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.groupcommit.GroupCommitExecutor;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
+import ru.practicum.shareit.invalidation.InvalidationBus;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemGetDto;
@@ -27,11 +32,15 @@ import ru.practicum.shareit.item.repository.CommentJpaRepository;
 import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.item.service.ItemServiceImpl;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.service.OutboxService;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -53,18 +62,37 @@ public class ItemServiceTest {
     private CommentMapper mockCommentMapper;
     @Mock
     private ItemMapper mockItemMapper;
+    @Mock
+    private UserCounterService mockUserCounterService;
+    @Mock
+    private OutboxService mockOutboxService;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    @Mock
+    private InvalidationBus mockInvalidationBus;
+    @Mock
+    private IdempotencyStore mockIdempotencyStore;
     private ItemService itemService;
 
 
     @BeforeEach
     private void create() {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
         itemService = new ItemServiceImpl(
                 mockItemPagingAndSortingRepository,
                 mockUserJpaRepository,
                 mockCommentJpaRepository,
                 mockBookingJpaRepository,
                 mockCommentMapper,
-                mockItemMapper);
+                mockItemMapper,
+                mockUserCounterService,
+                mockOutboxService,
+                mockTransactionTemplate,
+                mockInvalidationBus,
+                new GroupCommitExecutor(mockTransactionTemplate, new SimpleMeterRegistry(), false, 64, 2),
+                mockIdempotencyStore);
     }
 
 
@@ -90,6 +118,7 @@ public class ItemServiceTest {
                 .thenReturn(item);
         ItemDto addedItemDto = itemService.postItem(1L, itemDto);
         Assertions.assertEquals(itemDto, addedItemDto);
+        Mockito.verify(mockOutboxService).record(OutboxEventType.ITEM_CREATED, 1L, itemDto);
     }
 
 
@@ -125,14 +154,17 @@ public class ItemServiceTest {
                 .thenReturn(item);
 
         Mockito
-                .when(mockItemPagingAndSortingRepository.save(Mockito.any(Item.class)))
-                .thenReturn(item);
+                .when(mockItemPagingAndSortingRepository.updateIfVersion(Mockito.anyLong(), Mockito.any(), Mockito.any(),
+                        Mockito.any(), Mockito.any()))
+                .thenReturn(1);
 
         Mockito
                 .when(mockItemPagingAndSortingRepository.findById(Mockito.anyLong()))
                 .thenReturn(Optional.of(item));
         ItemDto updatedItemDto = itemService.patchItem(1L, itemDto, 1L);
         Assertions.assertEquals(itemDto, updatedItemDto);
+        Mockito.verify(mockOutboxService).record(OutboxEventType.ITEM_UPDATED, 1L, itemDto);
+        Mockito.verify(mockInvalidationBus).publish("item:1");
     }
 
 
@@ -350,6 +382,33 @@ public class ItemServiceTest {
     }
 
 
+    @Test
+    public void getItemsBySearchBeyondResultsReturnsFirstPage() {
+        User user1 = new User(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
+        Item item1 = new Item(1L, "item1", "description2", true, user1, null);
+        ItemGetDto itemDto1 = new ItemGetDto(
+                1L, "item1", "description2", true, 1L, null, null, null, List.of());
+
+        Mockito
+                .when(mockUserJpaRepository.existsById(Mockito.anyLong()))
+                .thenReturn(true);
+        Mockito
+                .when(mockItemPagingAndSortingRepository.findAllBySubstring("descr", "descr", PageRequest.of(2, 5)))
+                .thenReturn(List.of(item1));
+        Mockito
+                .when(mockItemPagingAndSortingRepository.findAllBySubstring("descr", "descr", PageRequest.of(0, 5)))
+                .thenReturn(List.of(item1, item1, item1, item1, item1));
+        Mockito
+                .when(mockItemMapper.toItemGetDtos(Mockito.anyList(), Mockito.anyLong()))
+                .thenAnswer(invocation -> Collections.nCopies(((List<?>) invocation.getArgument(0)).size(), itemDto1));
+
+        Assertions.assertEquals(1, itemService.getItemsBySearch("descr", 1L, 10, 5).size());
+        Assertions.assertEquals(5, itemService.getItemsBySearch("descr", 1L, 11, 5).size());
+        Mockito.verify(mockItemPagingAndSortingRepository, Mockito.never())
+                .findAmountBySubstring(Mockito.anyString(), Mockito.anyString());
+    }
+
+
     @Test
     public void getItemsBySearchEmptyOk() {
         Mockito
@@ -384,11 +443,9 @@ public class ItemServiceTest {
         User booker = new User(1L, "Petr Petrov", "petrpetrov@gmail.com");
         ItemRequest itemRequest = new ItemRequest(1L, "description1", booker, LocalDateTime.now());
         Item item = new Item(1L, "item1", "description2", true, booker, itemRequest);
-        Booking booking = new Booking(
-                1L, LocalDateTime.now().minusDays(2), LocalDateTime.now().minusDays(1), item, booker, BookingStatus.APPROVED);
         Mockito
-                .when(mockBookingJpaRepository.findBookingByItemIdAndBookerId(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(LocalDateTime.class)))
-                .thenReturn(List.of(booking));
+                .when(mockBookingJpaRepository.existsPastBookingByItemIdAndBookerId(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(LocalDateTime.class)))
+                .thenReturn(true);
         LocalDateTime now = LocalDateTime.now();
         CommentDto commentDto = new CommentDto(1L, "text", 2L, 1L, "Michael222", now);
         User author = new User(2L, "Petr Petrov", "petrpetrov@gmail.com");
@@ -407,6 +464,36 @@ public class ItemServiceTest {
     }
 
 
+    @Test
+    public void addCommentChecksEligibilityEveryTime() {
+        User booker = new User(1L, "Petr Petrov", "petrpetrov@gmail.com");
+        Item item = new Item(1L, "item1", "description2", true, booker, null);
+        LocalDateTime now = LocalDateTime.now();
+        CommentDto commentDto = new CommentDto(1L, "text", 2L, 1L, "Petr Petrov", now);
+        Comment comment = new Comment(1L, "text", booker, item, now);
+        Mockito
+                .when(mockBookingJpaRepository.existsPastBookingByItemIdAndBookerId(
+                        Mockito.anyLong(), Mockito.anyLong(), Mockito.any(LocalDateTime.class)))
+                .thenReturn(true);
+        Mockito
+                .when(mockCommentMapper.toComment(Mockito.any(CommentDto.class), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(comment);
+        Mockito
+                .when(mockCommentJpaRepository.save(Mockito.any(Comment.class)))
+                .thenReturn(comment);
+        Mockito
+                .when(mockCommentMapper.toCommentDto(Mockito.any(Comment.class)))
+                .thenReturn(commentDto);
+
+        itemService.addComment(1L, commentDto, 2L);
+        itemService.addComment(1L, commentDto, 2L);
+
+        Mockito.verify(mockBookingJpaRepository, Mockito.times(2))
+                .existsPastBookingByItemIdAndBookerId(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(LocalDateTime.class));
+        Mockito.verify(mockItemPagingAndSortingRepository, Mockito.never()).existsById(Mockito.anyLong());
+    }
+
+
     @Test
     public void addCommentItemNotFound() {
         Mockito
@@ -426,9 +513,9 @@ public class ItemServiceTest {
                 .when(mockItemPagingAndSortingRepository.existsById(Mockito.anyLong()))
                 .thenReturn(true);
         Mockito
-                .when(mockBookingJpaRepository.findBookingByItemIdAndBookerId(
+                .when(mockBookingJpaRepository.existsPastBookingByItemIdAndBookerId(
                         Mockito.anyLong(), Mockito.anyLong(), Mockito.any(LocalDateTime.class)))
-                .thenReturn(List.of());
+                .thenReturn(false);
         final BadRequestException exception = Assertions.assertThrows(
                 BadRequestException.class,
                 () -> itemService.addComment(1L, null, 1L));
@@ -447,12 +534,10 @@ public class ItemServiceTest {
         Item item = new Item(1L, "item1", "description2", true, booker, itemRequest);
         LocalDateTime now = LocalDateTime.now();
         CommentDto commentDto = new CommentDto(1L, "", 2L, 1L, "Michael222", now);
-        Booking booking = new Booking(
-                1L, LocalDateTime.now().minusDays(2), LocalDateTime.now().minusDays(1), item, booker, BookingStatus.APPROVED);
         Mockito
-                .when(mockBookingJpaRepository.findBookingByItemIdAndBookerId(
+                .when(mockBookingJpaRepository.existsPastBookingByItemIdAndBookerId(
                         Mockito.anyLong(), Mockito.anyLong(), Mockito.any(LocalDateTime.class)))
-                .thenReturn(List.of(booking));
+                .thenReturn(true);
         final BadRequestException exception = Assertions.assertThrows(
                 BadRequestException.class,
                 () -> itemService.addComment(1L, commentDto, 1L));
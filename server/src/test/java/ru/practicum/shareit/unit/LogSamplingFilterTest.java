@@ -0,0 +1,54 @@
+package ru.practicum.shareit.unit;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.logging.LogSamplingFilter;
+
+public class LogSamplingFilterTest {
+
+    @Test
+    public void testEveryNthEventBelowWarnPasses() {
+        LogSamplingFilter filter = new LogSamplingFilter();
+        filter.setRate(3);
+
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.Any", Level.INFO)));
+        Assertions.assertEquals(FilterReply.DENY, filter.decide(event("ru.practicum.shareit.Any", Level.INFO)));
+        Assertions.assertEquals(FilterReply.DENY, filter.decide(event("ru.practicum.shareit.Any", Level.DEBUG)));
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.Any", Level.INFO)));
+    }
+
+
+    @Test
+    public void testWarningsAndExemptLoggersAreNeverSampled() {
+        LogSamplingFilter filter = new LogSamplingFilter();
+        filter.setRate(1000);
+        filter.addExemptLogger("ru.practicum.shareit.sql");
+        filter.decide(event("ru.practicum.shareit.Any", Level.INFO));
+
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.Any", Level.WARN)));
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.Any", Level.ERROR)));
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.sql.slow", Level.INFO)));
+        Assertions.assertEquals(FilterReply.DENY, filter.decide(event("ru.practicum.shareit.Any", Level.INFO)));
+    }
+
+
+    @Test
+    public void testDefaultRateKeepsEverything() {
+        LogSamplingFilter filter = new LogSamplingFilter();
+
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.Any", Level.DEBUG)));
+        Assertions.assertEquals(FilterReply.NEUTRAL, filter.decide(event("ru.practicum.shareit.Any", Level.DEBUG)));
+    }
+
+
+    private static LoggingEvent event(String loggerName, Level level) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLoggerName(loggerName);
+        event.setLevel(level);
+        event.setMessage("message");
+        return event;
+    }
+}
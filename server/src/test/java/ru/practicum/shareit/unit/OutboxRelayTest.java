@@ -0,0 +1,121 @@
+package ru.practicum.shareit.unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.outbox.mapper.OutboxMapper;
+import ru.practicum.shareit.outbox.model.OutboxEvent;
+import ru.practicum.shareit.outbox.model.OutboxEventType;
+import ru.practicum.shareit.outbox.repository.OutboxJpaRepository;
+import ru.practicum.shareit.outbox.service.OutboxRelay;
+import ru.practicum.shareit.outbox.sink.LogOutboxSink;
+import ru.practicum.shareit.outbox.sink.OutboxSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class OutboxRelayTest {
+    @Mock
+    private OutboxJpaRepository mockOutboxJpaRepository;
+    @Mock
+    private OutboxSink mockOutboxSink;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final OutboxMapper outboxMapper = new OutboxMapper(objectMapper);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    public void create() {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        Mockito
+                .when(mockOutboxJpaRepository.deleteByIds(Mockito.anyList()))
+                .thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+        outboxRelay = new OutboxRelay(mockOutboxJpaRepository, outboxMapper, mockOutboxSink,
+                mockTransactionTemplate, meterRegistry, 2, 0);
+    }
+
+
+    @Test
+    public void testRelaysAllBatches() {
+        Mockito
+                .when(mockOutboxJpaRepository.findBatchForUpdate(Mockito.any(Pageable.class)))
+                .thenReturn(List.of(event(1L), event(2L)))
+                .thenReturn(List.of(event(3L)));
+
+        Assertions.assertEquals(3, outboxRelay.relay());
+        Assertions.assertEquals(3.0, meterRegistry.get("shareit.outbox.published").counter().count());
+        Mockito.verify(mockOutboxSink, Mockito.times(2)).publish(Mockito.anyList());
+        Mockito.verify(mockOutboxJpaRepository).deleteByIds(List.of(1L, 2L));
+        Mockito.verify(mockOutboxJpaRepository).deleteByIds(List.of(3L));
+    }
+
+
+    @Test
+    public void testRejectedBatchIsNotDeleted() {
+        Mockito
+                .when(mockOutboxJpaRepository.findBatchForUpdate(Mockito.any(Pageable.class)))
+                .thenReturn(List.of(event(1L)));
+        Mockito
+                .doThrow(new UncheckedIOException("Диск переполнен", new IOException()))
+                .when(mockOutboxSink).publish(Mockito.anyList());
+
+        Assertions.assertThrows(UncheckedIOException.class, () -> outboxRelay.relay());
+        Mockito.verify(mockOutboxJpaRepository, Mockito.never()).deleteByIds(Mockito.anyList());
+    }
+
+
+    @Test
+    public void testScheduledRelaySurvivesFailures() {
+        Mockito
+                .when(mockOutboxJpaRepository.findBatchForUpdate(Mockito.any(Pageable.class)))
+                .thenThrow(new IllegalStateException("Нет соединения"))
+                .thenReturn(List.of());
+        OutboxRelay scheduledRelay = new OutboxRelay(mockOutboxJpaRepository, outboxMapper, mockOutboxSink,
+                mockTransactionTemplate, meterRegistry, 2, 10);
+        scheduledRelay.start();
+        try {
+            Mockito.verify(mockOutboxJpaRepository, Mockito.timeout(2000).atLeast(2))
+                    .findBatchForUpdate(Mockito.any(Pageable.class));
+        } finally {
+            scheduledRelay.stop();
+        }
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.outbox.relay.failures").counter().count());
+    }
+
+
+    @Test
+    public void testLogSinkAcceptsEvents() {
+        LogOutboxSink logOutboxSink = new LogOutboxSink(objectMapper);
+
+        Assertions.assertDoesNotThrow(() -> logOutboxSink.publish(List.of(
+                outboxMapper.toOutboxEventDto(event(1L)))));
+    }
+
+
+    private OutboxEvent event(Long id) {
+        OutboxEvent event = outboxMapper.toOutboxEvent(OutboxEventType.ITEM_UPDATED.getAggregateType(), id,
+                OutboxEventType.ITEM_UPDATED.name(), Map.of("id", id));
+        event.setId(id);
+        return event;
+    }
+}
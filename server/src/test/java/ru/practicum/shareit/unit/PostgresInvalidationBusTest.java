@@ -0,0 +1,196 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import ru.practicum.shareit.invalidation.InvalidationListener;
+import ru.practicum.shareit.invalidation.PostgresInvalidationBus;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PostgresInvalidationBusTest {
+    private static final long GAP_TIMEOUT_MS = 100;
+
+    @Mock
+    private JdbcTemplate mockJdbcTemplate;
+    @Mock
+    private Connection mockConnection;
+    @Mock
+    private PGConnection mockPgConnection;
+    @Mock
+    private Statement mockStatement;
+    @Mock
+    private ResultSet mockResultSet;
+    @Mock
+    private InvalidationListener mockListener;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<PGNotification[]> notifications = new LinkedBlockingQueue<>();
+    private final AtomicLong lastValue = new AtomicLong(1);
+    private final AtomicInteger connectionFailures = new AtomicInteger();
+    private PostgresInvalidationBus invalidationBus;
+
+    @BeforeEach
+    public void create() throws SQLException {
+        Mockito
+                .when(mockConnection.createStatement())
+                .thenReturn(mockStatement);
+        Mockito
+                .when(mockStatement.executeQuery(Mockito.anyString()))
+                .thenReturn(mockResultSet);
+        Mockito
+                .when(mockResultSet.next())
+                .thenReturn(true);
+        Mockito
+                .when(mockResultSet.getLong(1))
+                .thenAnswer(invocation -> lastValue.get());
+        Mockito
+                .when(mockConnection.unwrap(PGConnection.class))
+                .thenReturn(mockPgConnection);
+        Mockito
+                .when(mockPgConnection.getNotifications(Mockito.anyInt()))
+                .thenAnswer(invocation -> notifications.poll(invocation.<Integer>getArgument(0), TimeUnit.MILLISECONDS));
+        invalidationBus = new PostgresInvalidationBus(mockJdbcTemplate, () -> {
+            if (connectionFailures.getAndDecrement() > 0) {
+                throw new SQLException("Нет соединения");
+            }
+            return mockConnection;
+        }, meterRegistry, "shareit_invalidation", GAP_TIMEOUT_MS, 10);
+        invalidationBus.subscribe(mockListener);
+    }
+
+
+    @AfterEach
+    public void stop() {
+        invalidationBus.stop();
+    }
+
+
+    @Test
+    public void testNotificationsReachListeners() throws SQLException {
+        connect();
+
+        notifications.add(new PGNotification[]{notification("2:user:1"), notification("item:7")});
+
+        Mockito.verify(mockListener, Mockito.timeout(1000)).onInvalidate("user:1");
+        Mockito.verify(mockListener, Mockito.timeout(1000)).onInvalidate("item:7");
+        Mockito.verify(mockStatement).execute("LISTEN shareit_invalidation");
+    }
+
+
+    @Test
+    public void testPublishNotifiesLocalListenersFirst() {
+        Mockito
+                .when(mockJdbcTemplate.query(Mockito.anyString(), Mockito.<ResultSetExtractor<Object>>any(),
+                        Mockito.eq("shareit_invalidation"), Mockito.eq("user:2")))
+                .thenThrow(new DataAccessResourceFailureException("Нет соединения"));
+
+        invalidationBus.publish("user:1");
+        invalidationBus.publish("user:2");
+
+        Mockito.verify(mockListener).onInvalidate("user:1");
+        Mockito.verify(mockListener).onInvalidate("user:2");
+        Mockito.verify(mockJdbcTemplate).query(Mockito.contains("pg_notify"), Mockito.<ResultSetExtractor<Object>>any(),
+                Mockito.eq("shareit_invalidation"), Mockito.eq("user:1"));
+        Assertions.assertEquals(1.0, meterRegistry.get("shareit.invalidation.publish.failures").counter().count());
+    }
+
+
+    @Test
+    public void testReorderedNotificationsAreNotMissed() throws Exception {
+        connect();
+
+        notifications.add(new PGNotification[]{notification("3:user:1")});
+        notifications.add(new PGNotification[]{notification("2:user:2")});
+        Mockito.verify(mockListener, Mockito.timeout(1000)).onInvalidate("user:2");
+        Thread.sleep(3 * GAP_TIMEOUT_MS);
+
+        Mockito.verify(mockListener, Mockito.times(1)).onMissed();
+        Assertions.assertTrue(invalidationBus.isAvailable());
+        Assertions.assertEquals(3, invalidationBus.position());
+    }
+
+
+    @Test
+    public void testGapIsReportedAsMissed() throws SQLException {
+        connect();
+
+        notifications.add(new PGNotification[]{notification("3:user:1")});
+
+        Mockito.verify(mockListener, Mockito.timeout(1000).times(2)).onMissed();
+    }
+
+
+    @Test
+    public void testLostLastNotificationIsReportedAsMissed() throws SQLException {
+        connect();
+
+        lastValue.set(2);
+
+        Mockito.verify(mockListener, Mockito.timeout(1000).times(2)).onMissed();
+        Assertions.assertEquals(2.0, meterRegistry.get("shareit.invalidation.resets").counter().count());
+    }
+
+
+    @Test
+    public void testReconnectsAfterFailures() throws SQLException {
+        connectionFailures.set(1);
+        Mockito
+                .when(mockPgConnection.getNotifications(Mockito.anyInt()))
+                .thenThrow(new SQLException("Соединение разорвано"))
+                .thenAnswer(invocation -> notifications.poll(invocation.<Integer>getArgument(0), TimeUnit.MILLISECONDS));
+        invalidationBus.start();
+
+        Mockito.verify(mockStatement, Mockito.timeout(1000).times(2)).execute("LISTEN shareit_invalidation");
+        Mockito.verify(mockListener, Mockito.timeout(1000).atLeast(4)).onMissed();
+        Mockito.verify(mockConnection, Mockito.atLeast(1)).close();
+    }
+
+
+    @Test
+    public void testInvalidChannelIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PostgresInvalidationBus(
+                mockJdbcTemplate, () -> mockConnection, meterRegistry, "shareit; drop table users", 100, 100));
+    }
+
+
+    private void connect() throws SQLException {
+        invalidationBus.start();
+        Mockito.verify(mockStatement, Mockito.timeout(1000)).execute("LISTEN shareit_invalidation");
+        Mockito.verify(mockListener, Mockito.timeout(1000)).onMissed();
+        for (int i = 0; i < 100 && !invalidationBus.isAvailable(); i++) {
+            Thread.onSpinWait();
+        }
+    }
+
+
+    private PGNotification notification(String parameter) {
+        PGNotification notification = Mockito.mock(PGNotification.class);
+        Mockito
+                .when(notification.getParameter())
+                .thenReturn(parameter);
+        return notification;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.shareit.unit;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import ru.practicum.shareit.logging.SlowQueryDataSourcePostProcessor;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+public class SlowQueryDataSourcePostProcessorTest {
+    private SlowQueryDataSourcePostProcessor postProcessor;
+
+    @BeforeEach
+    public void create() {
+        postProcessor = new SlowQueryDataSourcePostProcessor();
+        postProcessor.setEnvironment(new MockEnvironment().withProperty("shareit.sql.slow-query-threshold-ms", "100"));
+    }
+
+
+    @Test
+    public void testDataSourceIsWrapped() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:slowquery");
+
+        Object processed = postProcessor.postProcessAfterInitialization(h2, "dataSource");
+
+        Assertions.assertTrue(processed instanceof ProxyDataSource);
+        try (Connection connection = ((DataSource) processed).getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select 1")) {
+            Assertions.assertTrue(resultSet.next());
+        }
+        Assertions.assertSame(processed, postProcessor.postProcessAfterInitialization(processed, "dataSource"));
+    }
+
+
+    @Test
+    public void testOtherBeansAreLeftAlone() {
+        Object bean = new Object();
+
+        Assertions.assertSame(bean, postProcessor.postProcessAfterInitialization(bean, "bean"));
+    }
+}
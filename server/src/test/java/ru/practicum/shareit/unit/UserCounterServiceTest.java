@@ -0,0 +1,131 @@
+package ru.practicum.shareit.unit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.repository.BookingJpaRepository;
+import ru.practicum.shareit.item.repository.ItemPagingAndSortingRepository;
+import ru.practicum.shareit.request.repository.RequestJpaRepository;
+import ru.practicum.shareit.user.model.UserCounters;
+import ru.practicum.shareit.user.repository.UserCountersJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterServiceImpl;
+
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class UserCounterServiceTest {
+    @Mock
+    private UserCountersJpaRepository mockUserCountersJpaRepository;
+    @Mock
+    private BookingJpaRepository mockBookingJpaRepository;
+    @Mock
+    private ItemPagingAndSortingRepository mockItemPagingAndSortingRepository;
+    @Mock
+    private RequestJpaRepository mockRequestJpaRepository;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    private UserCounterServiceImpl create(long reconcileIntervalMs) {
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        return new UserCounterServiceImpl(
+                mockUserCountersJpaRepository,
+                mockBookingJpaRepository,
+                mockItemPagingAndSortingRepository,
+                mockRequestJpaRepository,
+                mockTransactionTemplate,
+                reconcileIntervalMs,
+                2);
+    }
+
+
+    @Test
+    public void testReadFallsBackToCountWithoutCounters() {
+        UserCounterServiceImpl userCounterService = create(0);
+        Mockito
+                .when(mockUserCountersJpaRepository.findById(1L))
+                .thenReturn(Optional.empty());
+        Mockito
+                .when(mockUserCountersJpaRepository.findById(2L))
+                .thenReturn(Optional.of(new UserCounters(2L, 0L, 0L, 0L, 4L)));
+        Mockito
+                .when(mockRequestJpaRepository.findAmountOfRequests(1L))
+                .thenReturn(3);
+
+        Assertions.assertEquals(3L, userCounterService.getRequests(1L));
+        Assertions.assertEquals(4L, userCounterService.getRequests(2L));
+    }
+
+
+    @Test
+    public void testBookingCreatedIncrementsBookerAndOwner() {
+        UserCounterServiceImpl userCounterService = create(0);
+        Mockito
+                .when(mockUserCountersJpaRepository.incrementOwnerBookings(2L))
+                .thenReturn(0);
+
+        userCounterService.onBookingCreated(1L, 2L);
+        userCounterService.onBookingCreated(1L, null);
+
+        Mockito.verify(mockUserCountersJpaRepository, Mockito.times(2)).incrementBookerBookings(1L);
+        Mockito.verify(mockUserCountersJpaRepository).incrementOwnerBookings(2L);
+        Mockito.verify(mockUserCountersJpaRepository, Mockito.never())
+                .insertMissing(Mockito.anyLong(), Mockito.anyLong());
+    }
+
+
+    @Test
+    public void testUserDeletingSubtractsBookingsFromOtherUsers() {
+        UserCounterServiceImpl userCounterService = create(0);
+
+        userCounterService.onUserCreated(3L);
+        userCounterService.onUserDeleting(3L);
+
+        Mockito.verify(mockUserCountersJpaRepository).insertMissing(3L, 3L);
+        Mockito.verify(mockUserCountersJpaRepository).subtractBookingsOfBooker(3L);
+        Mockito.verify(mockUserCountersJpaRepository).subtractBookingsOfOwner(3L);
+    }
+
+
+    @Test
+    public void testReconcileGoesInBatches() {
+        UserCounterServiceImpl userCounterService = create(0);
+        Mockito
+                .when(mockUserCountersJpaRepository.findMaxUserId())
+                .thenReturn(5L);
+        Mockito
+                .when(mockUserCountersJpaRepository.recount(Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(2);
+
+        Assertions.assertEquals(6, userCounterService.reconcile());
+        Mockito.verify(mockUserCountersJpaRepository).recount(1L, 2L);
+        Mockito.verify(mockUserCountersJpaRepository).recount(3L, 4L);
+        Mockito.verify(mockUserCountersJpaRepository).recount(5L, 6L);
+    }
+
+
+    @Test
+    public void testScheduledReconcileSurvivesFailures() {
+        UserCounterServiceImpl userCounterService = create(10);
+        Mockito
+                .when(mockUserCountersJpaRepository.findMaxUserId())
+                .thenThrow(new IllegalStateException("database is down"))
+                .thenReturn(0L);
+
+        userCounterService.start();
+        try {
+            Mockito.verify(mockUserCountersJpaRepository, Mockito.timeout(2000).atLeast(2)).findMaxUserId();
+        } finally {
+            userCounterService.stop();
+        }
+    }
+}
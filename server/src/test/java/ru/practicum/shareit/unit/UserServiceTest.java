@@ -1,39 +1,65 @@
 package ru.practicum.shareit.unit;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.exception.AlreadyExistsException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.invalidation.LocalInvalidationBus;
+import ru.practicum.shareit.invalidation.VersionedCache;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserJpaRepository;
+import ru.practicum.shareit.user.service.UserCounterService;
 import ru.practicum.shareit.user.service.UserService;
 import ru.practicum.shareit.user.service.UserServiceImpl;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
 public class UserServiceTest {
     @Mock
     private UserJpaRepository mockUserJpaRepository;
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+    @Mock
+    private UserCounterService mockUserCounterService;
     private UserService userService;
 
 
     @BeforeEach
     private void create() {
-        userService = new UserServiceImpl(mockUserJpaRepository);
+        Mockito
+                .when(mockTransactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        Mockito
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                    return null;
+                })
+                .when(mockTransactionTemplate).executeWithoutResult(Mockito.any());
+        VersionedCache<UserDto> userCache = new VersionedCache<>("users", "user:", 10,
+                new LocalInvalidationBus(), new SimpleMeterRegistry());
+        userService = new UserServiceImpl(mockUserJpaRepository, userCache, mockTransactionTemplate,
+                mockUserCounterService);
     }
 
 
@@ -47,6 +73,7 @@ public class UserServiceTest {
         UserDto userDto = new UserDto(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
         UserDto addedUserDto = userService.postUser(userDto);
         Assertions.assertEquals(userDto, addedUserDto);
+        Mockito.verify(mockUserCounterService).onUserCreated(1L);
     }
 
 
@@ -101,9 +128,10 @@ public class UserServiceTest {
     @Test
     public void testPatchUserOk() {
         User addedUser = new User(1L, "Ivan Ivanov", "ivanivanov1@gmail.com");
+        addedUser.setVersion(0L);
         Mockito
-                .when(mockUserJpaRepository.save(Mockito.any(User.class)))
-                .thenReturn(addedUser);
+                .when(mockUserJpaRepository.updateIfVersion(1L, 0L, "Ivan Ivanov", "ivanivanov1@gmail.com"))
+                .thenReturn(1);
         Mockito
                 .when(mockUserJpaRepository.findById(Mockito.anyLong()))
                 .thenReturn(Optional.of(addedUser));
@@ -111,6 +139,24 @@ public class UserServiceTest {
         UserDto userDto = new UserDto(1L, "Ivan Ivanov", "ivanivanov1@gmail.com");
         UserDto addedUserDto = userService.patchUser(1L, userDto);
         Assertions.assertEquals(userDto, addedUserDto);
+        Mockito.verify(mockUserJpaRepository, Mockito.never()).save(Mockito.any(User.class));
+    }
+
+
+    @Test
+    public void testPatchUserChangedConcurrently() {
+        User addedUser = new User(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
+        addedUser.setVersion(0L);
+        Mockito
+                .when(mockUserJpaRepository.findById(Mockito.anyLong()))
+                .thenReturn(Optional.of(addedUser));
+        Mockito
+                .when(mockUserJpaRepository.updateIfVersion(1L, 0L, "Ivan Petrov", "ivanivanov@gmail.com"))
+                .thenReturn(0);
+
+        Assertions.assertThrows(
+                ObjectOptimisticLockingFailureException.class,
+                () -> userService.patchUser(1L, new UserDto(1L, "Ivan Petrov", null)));
     }
 
 
@@ -197,9 +243,32 @@ public class UserServiceTest {
     }
 
 
+    @Test
+    public void testGetUserIsCachedUntilPatched() {
+        User user = new User(1L, "Ivan Ivanov", "ivanivanov@gmail.com");
+        Mockito
+                .when(mockUserJpaRepository.findById(1L))
+                .thenReturn(Optional.of(user));
+        Mockito
+                .when(mockUserJpaRepository.updateIfVersion(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(1);
+
+        userService.getUser(1L);
+        userService.getUser(1L);
+        Mockito.verify(mockUserJpaRepository, Mockito.times(1)).findById(1L);
+
+        userService.patchUser(1L, new UserDto(1L, "Ivan Petrov", null));
+        Assertions.assertEquals(new UserDto(1L, "Ivan Petrov", "ivanivanov@gmail.com"), userService.getUser(1L));
+        Mockito.verify(mockUserJpaRepository, Mockito.times(3)).findById(1L);
+    }
+
+
     @Test
     public void testDeleteUserOk() {
         Mockito.doNothing().when(mockUserJpaRepository).deleteById(Mockito.anyLong());
         Assertions.assertEquals(userService.deleteUser(1L), 1L);
+        InOrder inOrder = Mockito.inOrder(mockUserCounterService, mockUserJpaRepository);
+        inOrder.verify(mockUserCounterService).onUserDeleting(1L);
+        inOrder.verify(mockUserJpaRepository).deleteById(1L);
     }
 }
\ No newline at end of file
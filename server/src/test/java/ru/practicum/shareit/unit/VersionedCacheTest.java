@@ -0,0 +1,112 @@
+package ru.practicum.shareit.unit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.practicum.shareit.invalidation.InvalidationBus;
+import ru.practicum.shareit.invalidation.LocalInvalidationBus;
+import ru.practicum.shareit.invalidation.VersionedCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VersionedCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LocalInvalidationBus invalidationBus = new LocalInvalidationBus();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void testInvalidationEvictsOnEveryNode() {
+        VersionedCache<String> firstNode = cache(invalidationBus);
+        VersionedCache<String> secondNode = new VersionedCache<>("users-2", "user:", 10, invalidationBus, meterRegistry);
+
+        firstNode.get(1L, this::load);
+        secondNode.get(1L, this::load);
+        firstNode.get(1L, this::load);
+        secondNode.get(1L, this::load);
+        Assertions.assertEquals(2, loads.get());
+
+        firstNode.invalidate(1L);
+        Assertions.assertEquals("value3", firstNode.get(1L, this::load));
+        Assertions.assertEquals("value4", secondNode.get(1L, this::load));
+        Assertions.assertEquals(2.0, meterRegistry.get("shareit.cache.requests")
+                .tag("cache", "users").tag("result", "miss").counter().count());
+    }
+
+
+    @Test
+    public void testValueInvalidatedDuringLoadIsNotCached() {
+        VersionedCache<String> cache = cache(invalidationBus);
+
+        Assertions.assertEquals("stale", cache.get(1L, () -> {
+            invalidationBus.publish("user:1");
+            return "stale";
+        }));
+        Assertions.assertEquals("value1", cache.get(1L, this::load));
+        Assertions.assertEquals("value1", cache.get(1L, this::load));
+    }
+
+
+    @Test
+    public void testOtherKeysDoNotEvict() {
+        VersionedCache<String> cache = cache(invalidationBus);
+        cache.get(1L, this::load);
+
+        invalidationBus.publish("item:1");
+        invalidationBus.publish("user:2");
+        cache.get(1L, this::load);
+
+        Assertions.assertEquals(1, loads.get());
+    }
+
+
+    @Test
+    public void testMissedMessagesClearCache() {
+        VersionedCache<String> cache = cache(invalidationBus);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        cache.onMissed();
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        Assertions.assertEquals(4, loads.get());
+        Assertions.assertEquals(2.0, meterRegistry.get("shareit.cache.size").gauge().value());
+    }
+
+
+    @Test
+    public void testCacheIsBypassedWhileBusIsUnavailable() {
+        InvalidationBus unavailableBus = Mockito.mock(InvalidationBus.class);
+        VersionedCache<String> cache = cache(unavailableBus);
+
+        cache.get(1L, this::load);
+        cache.get(1L, this::load);
+
+        Assertions.assertEquals(2, loads.get());
+        Mockito.verify(unavailableBus).subscribe(cache);
+    }
+
+
+    @Test
+    public void testEntriesOverMaxSizeAreNotCached() {
+        VersionedCache<String> cache = new VersionedCache<>("small", "user:", 1, invalidationBus, meterRegistry);
+
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        Assertions.assertEquals(3, loads.get());
+    }
+
+
+    private VersionedCache<String> cache(InvalidationBus bus) {
+        return new VersionedCache<>("users", "user:", 10, bus, meterRegistry);
+    }
+
+
+    private String load() {
+        return "value" + loads.incrementAndGet();
+    }
+}